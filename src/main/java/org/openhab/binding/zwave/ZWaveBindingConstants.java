@@ -35,9 +35,14 @@ public class ZWaveBindingConstants {
     public final static String CONFIGURATION_SUC = "controller_suc";
     public final static String CONFIGURATION_NETWORKKEY = "security_networkkey";
     public final static String CONFIGURATION_SECUREINCLUSION = "security_inclusionmode";
+    public final static String CONFIGURATION_NONCEPREFETCH = "security_nonceprefetch";
     public final static String CONFIGURATION_HEALTIME = "heal_time";
+    public final static String CONFIGURATION_HEALWINDOW = "heal_window";
     public final static String CONFIGURATION_INCLUSION_MODE = "inclusion_mode";
     public final static String CONFIGURATION_INCLUSIONTIMEOUT = "controller_inclusiontimeout";
+    public final static String CONFIGURATION_MAXTRANSACTIONS = "controller_maxtransactions";
+    public final static String CONFIGURATION_INITCONCURRENCY = "controller_initconcurrency";
+    public final static String CONFIGURATION_FASTRESTART = "controller_fastrestart";
 
     public final static String CONFIGURATION_SWITCHALLMODE = "switchall_mode";
     public final static String CONFIGURATION_WAKEUPNODE = "wakeup_node";
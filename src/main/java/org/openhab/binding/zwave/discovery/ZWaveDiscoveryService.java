@@ -145,17 +145,7 @@ public class ZWaveDiscoveryService extends AbstractDiscoveryService implements E
         ThingUID bridgeUID = controllerHandler.getThing().getUID();
 
         // Search the database for this product information
-        ZWaveProduct foundProduct = null;
-        for (ZWaveProduct product : ZWaveConfigProvider.getProductIndex()) {
-            if (product == null) {
-                continue;
-            }
-            logger.debug("NODE {}: Checking {}", node.getNodeId(), product.getThingTypeUID());
-            if (product.match(node) == true) {
-                foundProduct = product;
-                break;
-            }
-        }
+        ZWaveProduct foundProduct = ZWaveConfigProvider.findProduct(node);
 
         // Create the thing UID
         // The final thingType will be set once the device initialises
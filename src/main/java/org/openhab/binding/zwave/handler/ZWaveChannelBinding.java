@@ -0,0 +1,242 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.handler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.smarthome.core.thing.ThingTypeUID;
+import org.openhab.binding.zwave.ZWaveBindingConstants;
+import org.openhab.binding.zwave.handler.ZWaveThingChannel.DataType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A parsed channel binding, as defined in the channel properties of the thing type.
+ * <p>
+ * Each binding property has a key of the form <code>binding:type:dataType</code> and a value of the form
+ * <code>commandClass[:endpoint],...[;arg1=val1,arg2=val2...]</code>. The properties are the same for every thing of
+ * the same type, so the parsed bindings are cached by thing type, channel and a fingerprint of the properties, and are
+ * only parsed once however many things there are. The bindings are immutable - each thing adds its own channel
+ * configuration to a copy of the arguments.
+ */
+public class ZWaveChannelBinding {
+    private final static Logger logger = LoggerFactory.getLogger(ZWaveChannelBinding.class);
+
+    private final static Map<CacheKey, CacheEntry> cache = new ConcurrentHashMap<CacheKey, CacheEntry>();
+
+    private final boolean command;
+    private final boolean state;
+    private final DataType dataType;
+    private final List<CommandClassBinding> commandClasses;
+    private final Map<String, String> arguments;
+
+    private ZWaveChannelBinding(boolean command, boolean state, DataType dataType,
+            List<CommandClassBinding> commandClasses, Map<String, String> arguments) {
+        this.command = command;
+        this.state = state;
+        this.dataType = dataType;
+        this.commandClasses = Collections.unmodifiableList(commandClasses);
+        this.arguments = Collections.unmodifiableMap(arguments);
+    }
+
+    /**
+     * Gets the bindings for a channel. If the channel has already been parsed for this thing type, the cached
+     * bindings are returned.
+     *
+     * @param thingTypeUID the type of the thing the channel belongs to
+     * @param channelId the ID of the channel
+     * @param properties the channel properties
+     * @return the list of bindings in the channel properties
+     */
+    public static List<ZWaveChannelBinding> getBindings(ThingTypeUID thingTypeUID, String channelId,
+            Map<String, String> properties) {
+        CacheKey key = new CacheKey(thingTypeUID, channelId, properties);
+        CacheEntry entry = cache.get(key);
+
+        // Changed properties (eg if the thing type has been updated) will almost always have a different fingerprint,
+        // so the full compare only guards against a hash collision
+        if (entry == null || !entry.properties.equals(properties)) {
+            entry = new CacheEntry(properties, parseBindings(channelId, properties));
+            cache.put(key, entry);
+        }
+        return entry.bindings;
+    }
+
+    /**
+     * Clears the cache of parsed bindings
+     */
+    public static void clearCache() {
+        cache.clear();
+    }
+
+    private static List<ZWaveChannelBinding> parseBindings(String channelId, Map<String, String> properties) {
+        List<ZWaveChannelBinding> bindings = new ArrayList<ZWaveChannelBinding>();
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            String[] bindingType = property.getKey().split(":");
+            if (bindingType.length != 3) {
+                continue;
+            }
+            if (!ZWaveBindingConstants.CHANNEL_CFG_BINDING.equals(bindingType[0])) {
+                continue;
+            }
+
+            String[] bindingProperties = property.getValue().split(";");
+
+            // Get the command classes - comma separated
+            List<CommandClassBinding> commandClasses = new ArrayList<CommandClassBinding>();
+            for (String cc : bindingProperties[0].split(",")) {
+                String[] ccSplit = cc.split(":");
+                int endpoint = 0;
+
+                if (ccSplit.length == 2) {
+                    endpoint = Integer.parseInt(ccSplit[1]);
+                }
+                commandClasses.add(new CommandClassBinding(ccSplit[0], endpoint));
+            }
+
+            // Convert the arguments to a map
+            // - comma separated list of arguments "arg1=val1, arg2=val2"
+            Map<String, String> argumentMap = new HashMap<String, String>();
+            if (bindingProperties.length == 2) {
+                String[] arguments = bindingProperties[1].split(",");
+                for (String arg : arguments) {
+                    String[] prop = arg.split("=");
+                    argumentMap.put(prop[0].trim(), (prop[1] != null) ? prop[1].trim() : null);
+                }
+            }
+
+            // Get the data type
+            DataType dataType = DataType.DecimalType;
+            try {
+                dataType = DataType.valueOf(bindingType[2]);
+            } catch (IllegalArgumentException e) {
+                logger.warn("Invalid item type defined ({}) for channel {}. Assuming DecimalType", bindingType[2],
+                        channelId);
+            }
+
+            boolean command = "*".equals(bindingType[1]) || "Command".equals(bindingType[1]);
+            boolean state = "*".equals(bindingType[1]) || "State".equals(bindingType[1]);
+            bindings.add(new ZWaveChannelBinding(command, state, dataType, commandClasses, argumentMap));
+        }
+        return Collections.unmodifiableList(bindings);
+    }
+
+    /**
+     * Returns true if the first command class handles commands for the channel
+     *
+     * @return true if this is a command binding
+     */
+    public boolean isCommand() {
+        return command;
+    }
+
+    /**
+     * Returns true if the command classes update the channel state
+     *
+     * @return true if this is a state binding
+     */
+    public boolean isState() {
+        return state;
+    }
+
+    /**
+     * Gets the data type of the channel
+     *
+     * @return the {@link DataType}
+     */
+    public DataType getDataType() {
+        return dataType;
+    }
+
+    /**
+     * Gets the command classes bound to the channel, in the order they are defined
+     *
+     * @return list of {@link CommandClassBinding}
+     */
+    public List<CommandClassBinding> getCommandClasses() {
+        return commandClasses;
+    }
+
+    /**
+     * Gets the arguments defined in the binding. These don't include the channel configuration.
+     *
+     * @return unmodifiable map of arguments
+     */
+    public Map<String, String> getArguments() {
+        return arguments;
+    }
+
+    /**
+     * A command class, and the endpoint it's on, bound to a channel
+     */
+    public static class CommandClassBinding {
+        private final String commandClass;
+        private final int endpoint;
+
+        private CommandClassBinding(String commandClass, int endpoint) {
+            this.commandClass = commandClass;
+            this.endpoint = endpoint;
+        }
+
+        public String getCommandClass() {
+            return commandClass;
+        }
+
+        public int getEndpoint() {
+            return endpoint;
+        }
+    }
+
+    private static class CacheKey {
+        private final ThingTypeUID thingTypeUID;
+        private final String channelId;
+        private final int propertiesSize;
+        private final int propertiesHash;
+
+        private CacheKey(ThingTypeUID thingTypeUID, String channelId, Map<String, String> properties) {
+            this.thingTypeUID = thingTypeUID;
+            this.channelId = channelId;
+            this.propertiesSize = properties.size();
+            this.propertiesHash = properties.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * thingTypeUID.hashCode() + channelId.hashCode()) + propertiesHash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return propertiesHash == other.propertiesHash && propertiesSize == other.propertiesSize
+                    && thingTypeUID.equals(other.thingTypeUID) && channelId.equals(other.channelId);
+        }
+    }
+
+    private static class CacheEntry {
+        private final Map<String, String> properties;
+        private final List<ZWaveChannelBinding> bindings;
+
+        private CacheEntry(Map<String, String> properties, List<ZWaveChannelBinding> bindings) {
+            this.properties = new HashMap<String, String>(properties);
+            this.bindings = bindings;
+        }
+    }
+}
@@ -11,9 +11,11 @@ package org.openhab.binding.zwave.handler;
 import static org.openhab.binding.zwave.ZWaveBindingConstants.*;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -36,7 +38,12 @@ import org.openhab.binding.zwave.event.BindingEventDTO;
 import org.openhab.binding.zwave.event.BindingEventFactory;
 import org.openhab.binding.zwave.event.BindingEventType;
 import org.openhab.binding.zwave.internal.ZWaveEventPublisher;
+import org.openhab.binding.zwave.internal.ZWaveHealScheduler;
+import org.openhab.binding.zwave.internal.ZWaveHealScheduler.HealHandler;
+import org.openhab.binding.zwave.internal.ZWavePollingScheduler;
+import org.openhab.binding.zwave.internal.ZWavePollingScheduler.PollingHandler;
 import org.openhab.binding.zwave.internal.protocol.SerialMessage;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessagePriority;
 import org.openhab.binding.zwave.internal.protocol.ZWaveController;
 import org.openhab.binding.zwave.internal.protocol.ZWaveEventListener;
 import org.openhab.binding.zwave.internal.protocol.ZWaveIoHandler;
@@ -67,13 +74,71 @@ public abstract class ZWaveControllerHandler extends BaseBridgeHandler implement
     private ServiceRegistration discoveryRegistration;
 
     private volatile ZWaveController controller;
+    private final ZWavePollingScheduler pollingScheduler = new ZWavePollingScheduler();
+    private final ZWaveHealScheduler healScheduler = new ZWaveHealScheduler(new HealHandler() {
+        @Override
+        public List<Integer> getHealNodes() {
+            List<Integer> nodes = new ArrayList<Integer>();
+            if (controller == null) {
+                return nodes;
+            }
+            for (ZWaveNode node : controller.getNodes()) {
+                // Battery devices can't be healed as they're not listening
+                if (node.getNodeId() != controller.getOwnNodeId() && node.getNodeInitStage() == ZWaveNodeInitStage.DONE
+                        && (node.isListening() || node.isFrequentlyListening())) {
+                    nodes.add(node.getNodeId());
+                }
+            }
+            return nodes;
+        }
+
+        @Override
+        public int getDeadCount(int nodeId) {
+            ZWaveNode node = getNode(nodeId);
+            return node == null ? 0 : node.getDeadCount();
+        }
+
+        @Override
+        public int getRetryCount(int nodeId) {
+            ZWaveNode node = getNode(nodeId);
+            return node == null ? 0 : node.getRetryCount();
+        }
+
+        @Override
+        public boolean healNode(int nodeId) {
+            return ZWaveControllerHandler.this.healNode(nodeId);
+        }
+
+        @Override
+        public boolean isHealComplete(int nodeId) {
+            ZWaveNode node = getNode(nodeId);
+            if (node == null) {
+                return true;
+            }
+            ZWaveNodeInitStage stage = node.getNodeInitStage();
+            return stage == ZWaveNodeInitStage.DONE || stage.ordinal() < ZWaveNodeInitStage.HEAL_START.ordinal();
+        }
+
+        @Override
+        public int getPendingMessages() {
+            if (controller == null) {
+                return 0;
+            }
+            return controller.getSendQueueLength(SerialMessagePriority.Get);
+        }
+    });
 
     private Boolean isMaster;
     private Boolean isSUC;
     private String networkKey;
     private Integer secureInclusionMode;
+    private Boolean noncePrefetch;
     private Integer healTime;
+    private Integer healWindow;
     private Integer wakeupDefaultPeriod;
+    private Integer maxTransactions;
+    private Integer initConcurrency;
+    private Boolean fastRestart;
 
     private final int SEARCHTIME_DEFAULT = 30;
     private int searchTime;
@@ -101,6 +166,27 @@ public abstract class ZWaveControllerHandler extends BaseBridgeHandler implement
             secureInclusionMode = 0;
         }
 
+        param = getConfig().get(CONFIGURATION_NONCEPREFETCH);
+        if (param instanceof Boolean && param != null) {
+            noncePrefetch = (Boolean) param;
+        } else {
+            noncePrefetch = false;
+        }
+
+        param = getConfig().get(CONFIGURATION_HEALTIME);
+        if (param instanceof BigDecimal && param != null) {
+            healTime = ((BigDecimal) param).intValue();
+        } else {
+            healTime = -1;
+        }
+
+        param = getConfig().get(CONFIGURATION_HEALWINDOW);
+        if (param instanceof BigDecimal && param != null) {
+            healWindow = ((BigDecimal) param).intValue();
+        } else {
+            healWindow = 4;
+        }
+
         param = getConfig().get(CONFIGURATION_INCLUSIONTIMEOUT);
         if (param instanceof BigDecimal && param != null) {
             searchTime = ((BigDecimal) param).intValue();
@@ -115,6 +201,27 @@ public abstract class ZWaveControllerHandler extends BaseBridgeHandler implement
             wakeupDefaultPeriod = 0;
         }
 
+        param = getConfig().get(CONFIGURATION_MAXTRANSACTIONS);
+        if (param instanceof BigDecimal && param != null) {
+            maxTransactions = ((BigDecimal) param).intValue();
+        } else {
+            maxTransactions = 0;
+        }
+
+        param = getConfig().get(CONFIGURATION_INITCONCURRENCY);
+        if (param instanceof BigDecimal && param != null) {
+            initConcurrency = ((BigDecimal) param).intValue();
+        } else {
+            initConcurrency = 0;
+        }
+
+        param = getConfig().get(CONFIGURATION_FASTRESTART);
+        if (param instanceof Boolean && param != null) {
+            fastRestart = (Boolean) param;
+        } else {
+            fastRestart = false;
+        }
+
         param = getConfig().get(CONFIGURATION_SUC);
         if (param instanceof Boolean && param != null) {
             isSUC = (Boolean) param;
@@ -166,8 +273,12 @@ public abstract class ZWaveControllerHandler extends BaseBridgeHandler implement
         config.put("masterController", isMaster.toString());
         config.put("isSUC", isSUC ? "true" : "false");
         config.put("secureInclusion", secureInclusionMode.toString());
+        config.put("noncePrefetch", noncePrefetch ? "true" : "false");
         config.put("networkKey", networkKey);
         config.put("wakeupDefaultPeriod", wakeupDefaultPeriod.toString());
+        config.put("maxTransactions", maxTransactions.toString());
+        config.put("initConcurrency", initConcurrency.toString());
+        config.put("fastRestart", fastRestart ? "true" : "false");
 
         // MAJOR BODGE
         // The security class uses a static member to set the key so for now
@@ -179,7 +290,7 @@ public abstract class ZWaveControllerHandler extends BaseBridgeHandler implement
 
         // TODO: Handle soft reset better!
         controller = new ZWaveController(this, config);
-        controller.addEventListener(this);
+        controller.addApplicationEventListener(this);
 
         // if (aliveCheckPeriod != null) {
         // networkMonitor.setPollPeriod(aliveCheckPeriod);
@@ -192,6 +303,13 @@ public abstract class ZWaveControllerHandler extends BaseBridgeHandler implement
         // this.zConfigurationService = new ZWaveConfiguration(this.zController, this.networkMonitor);
         // zController.addEventListener(this.zConfigurationService);
 
+        // Start polling
+        pollingScheduler.start(scheduler);
+
+        // Start the nightly heal
+        healScheduler.setWindow(healTime, healWindow);
+        healScheduler.start(scheduler);
+
         // Start the discovery service
         discoveryService = new ZWaveDiscoveryService(this, searchTime);
         discoveryService.activate();
@@ -203,6 +321,9 @@ public abstract class ZWaveControllerHandler extends BaseBridgeHandler implement
 
     @Override
     public void dispose() {
+        pollingScheduler.stop();
+        healScheduler.stop();
+
         // Remove the discovery service
         if (discoveryService != null) {
             discoveryService.deactivate();
@@ -220,6 +341,7 @@ public abstract class ZWaveControllerHandler extends BaseBridgeHandler implement
         if (controller != null) {
             this.controller = null;
             controller.removeEventListener(this);
+            controller.shutdown();
         }
     }
 
@@ -232,6 +354,7 @@ public abstract class ZWaveControllerHandler extends BaseBridgeHandler implement
         validateConfigurationParameters(configurationParameters);
 
         boolean reinitialise = false;
+        boolean updateHeal = false;
 
         Configuration configuration = editConfiguration();
         for (Entry<String, Object> configurationParameter : configurationParameters.entrySet()) {
@@ -268,6 +391,24 @@ public abstract class ZWaveControllerHandler extends BaseBridgeHandler implement
                     // TODO: Do we need to set this immediately
                 } else if (cfg[1].equals("inclusiontimeout") && value instanceof BigDecimal) {
                     reinitialise = true;
+                } else if (cfg[1].equals("maxtransactions") && value instanceof BigDecimal) {
+                    maxTransactions = ((BigDecimal) value).intValue();
+                    controller.setMaxTransactions(maxTransactions);
+                } else if (cfg[1].equals("initconcurrency") && value instanceof BigDecimal) {
+                    initConcurrency = ((BigDecimal) value).intValue();
+                    controller.setInitConcurrency(initConcurrency);
+                } else if (cfg[1].equals("fastrestart") && value instanceof Boolean) {
+                    fastRestart = (Boolean) value;
+                    controller.setFastRestart(fastRestart);
+                }
+            }
+            if ("heal".equals(cfg[0])) {
+                if (cfg[1].equals("time") && value instanceof BigDecimal) {
+                    healTime = ((BigDecimal) value).intValue();
+                    updateHeal = true;
+                } else if (cfg[1].equals("window") && value instanceof BigDecimal) {
+                    healWindow = ((BigDecimal) value).intValue();
+                    updateHeal = true;
                 }
             }
             if ("security".equals(cfg[0])) {
@@ -298,6 +439,11 @@ public abstract class ZWaveControllerHandler extends BaseBridgeHandler implement
 
                         ZWaveSecurityCommandClass.setRealNetworkKey((String) value);
                     }
+                } else if (cfg[1].equals("nonceprefetch") && value instanceof Boolean) {
+                    noncePrefetch = (Boolean) value;
+                    if (controller != null) {
+                        controller.setNoncePrefetch(noncePrefetch);
+                    }
                 }
             }
 
@@ -311,6 +457,10 @@ public abstract class ZWaveControllerHandler extends BaseBridgeHandler implement
         // Persist changes
         updateConfiguration(configuration);
 
+        if (updateHeal) {
+            healScheduler.setWindow(healTime, healWindow);
+        }
+
         if (reinitialise == true) {
             dispose();
             initialize();
@@ -581,6 +731,13 @@ public abstract class ZWaveControllerHandler extends BaseBridgeHandler implement
         controller.incomingPacket(serialMessage);
     }
 
+    protected void incomingAck() {
+        if (controller == null) {
+            return;
+        }
+        controller.incomingAck();
+    }
+
     @Override
     public void deviceDiscovered(int nodeId) {
         if (discoveryService == null) {
@@ -637,7 +794,7 @@ public abstract class ZWaveControllerHandler extends BaseBridgeHandler implement
         if (controller == null) {
             return false;
         }
-        controller.addEventListener(zWaveThingHandler);
+        controller.addApplicationEventListener(zWaveThingHandler, zWaveThingHandler.getNodeId());
         return true;
     }
 
@@ -681,6 +838,50 @@ public abstract class ZWaveControllerHandler extends BaseBridgeHandler implement
         controller.reinitialiseNode(nodeId);
     }
 
+    /**
+     * Registers a node with the polling scheduler
+     *
+     * @param nodeId the node ID
+     * @param handler the {@link PollingHandler} to poll the node
+     * @param period the polling period in milliseconds
+     */
+    public void registerPolling(int nodeId, PollingHandler handler, long period) {
+        pollingScheduler.register(nodeId, handler, period);
+    }
+
+    /**
+     * Removes a node from the polling scheduler
+     *
+     * @param nodeId the node ID
+     */
+    public void unregisterPolling(int nodeId) {
+        pollingScheduler.unregister(nodeId);
+    }
+
+    /**
+     * Requests a node is polled after a delay
+     *
+     * @param nodeId the node ID
+     * @param delay the delay in milliseconds
+     */
+    public void requestPoll(int nodeId, long delay) {
+        pollingScheduler.pollNow(nodeId, delay);
+    }
+
+    public void saveNode(int nodeId) {
+        if (controller == null) {
+            return;
+        }
+        controller.saveNode(controller.getNode(nodeId));
+    }
+
+    public void deleteSavedNode(int nodeId) {
+        if (controller == null) {
+            return;
+        }
+        controller.deleteSavedNode(nodeId);
+    }
+
     public boolean healNode(int nodeId) {
         if (controller == null) {
             return false;
@@ -11,6 +11,7 @@ package org.openhab.binding.zwave.handler;
 import static org.openhab.binding.zwave.ZWaveBindingConstants.*;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.TooManyListenersException;
 
 import org.eclipse.smarthome.core.library.types.DecimalType;
@@ -21,6 +22,8 @@ import org.eclipse.smarthome.core.thing.ThingStatusDetail;
 import org.eclipse.smarthome.core.types.Command;
 import org.openhab.binding.zwave.ZWaveBindingConstants;
 import org.openhab.binding.zwave.internal.protocol.SerialMessage;
+import org.openhab.binding.zwave.internal.protocol.ZWaveFrameDecoder;
+import org.openhab.binding.zwave.internal.protocol.ZWaveFrameDecoder.FrameHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -145,21 +148,26 @@ public class ZWaveSerialHandler extends ZWaveControllerHandler {
      * ZWave controller Receive Thread. Takes care of receiving all messages.
      * It uses a semaphore to synchronize communication with the sending thread.
      */
-    private class ZWaveReceiveThread extends Thread implements SerialPortEventListener {
+    private class ZWaveReceiveThread extends Thread implements SerialPortEventListener, FrameHandler {
 
-        private final int SEARCH_SOF = 0;
-        private final int SEARCH_LEN = 1;
-        private final int SEARCH_DAT = 2;
+        private static final long COUNTER_UPDATE_PERIOD = 1000;
 
-        private int rxState = SEARCH_SOF;
-        private int messageLength;
-        private int rxLength;
-        private byte[] rxBuffer;
+        private final ZWaveFrameDecoder decoder = new ZWaveFrameDecoder();
 
-        private static final int SOF = 0x01;
-        private static final int ACK = 0x06;
-        private static final int NAK = 0x15;
-        private static final int CAN = 0x18;
+        private final ChannelUID channelSOF = new ChannelUID(getThing().getUID(), CHANNEL_SERIAL_SOF);
+        private final ChannelUID channelACK = new ChannelUID(getThing().getUID(), CHANNEL_SERIAL_ACK);
+        private final ChannelUID channelNAK = new ChannelUID(getThing().getUID(), CHANNEL_SERIAL_NAK);
+        private final ChannelUID channelCAN = new ChannelUID(getThing().getUID(), CHANNEL_SERIAL_CAN);
+        private final ChannelUID channelOOF = new ChannelUID(getThing().getUID(), CHANNEL_SERIAL_OOF);
+        private final ChannelUID channelCSE = new ChannelUID(getThing().getUID(), CHANNEL_SERIAL_CSE);
+
+        private int publishedSOF = 0;
+        private int publishedACK = 0;
+        private int publishedNAK = 0;
+        private int publishedCAN = 0;
+        private int publishedOOF = 0;
+        private int publishedCSE = 0;
+        private long lastCounterUpdate = 0;
 
         private final Logger logger = LoggerFactory.getLogger(ZWaveReceiveThread.class);
 
@@ -194,6 +202,88 @@ public class ZWaveSerialHandler extends ZWaveControllerHandler {
             }
         }
 
+        @Override
+        public void frameReceived(byte[] buffer, int offset, int length) {
+            // Keep track of statistics
+            SOFCount++;
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("Receive Message = {}", SerialMessage.bb2hex(buffer, offset, length));
+            }
+            SerialMessage recvMessage = new SerialMessage(buffer, offset, length);
+            if (recvMessage.isValid) {
+                logger.trace("Message is valid, sending ACK");
+                sendResponse(ZWaveFrameDecoder.ACK);
+
+                incomingMessage(recvMessage);
+            } else {
+                CSECount++;
+                logger.debug("Message is invalid, discarding");
+                sendResponse(ZWaveFrameDecoder.NAK);
+            }
+        }
+
+        @Override
+        public void controlReceived(int control) {
+            switch (control) {
+                case ZWaveFrameDecoder.ACK:
+                    // Keep track of statistics
+                    ACKCount++;
+                    logger.trace("Received ACK");
+                    incomingAck();
+                    break;
+
+                case ZWaveFrameDecoder.NAK:
+                    // A NAK means the CRC was incorrectly received by the controller
+                    NAKCount++;
+                    logger.debug("Protocol error (NAK), discarding");
+
+                    // TODO: Add NAK processing
+                    break;
+
+                case ZWaveFrameDecoder.CAN:
+                    // The CAN means that the controller dropped the frame
+                    CANCount++;
+                    logger.debug("Protocol error (CAN), resending");
+
+                    // TODO: Add CAN processing (Resend?)
+                    break;
+            }
+        }
+
+        @Override
+        public void outOfFrameReceived(int value) {
+            OOFCount++;
+            logger.debug(String.format("Protocol error (OOF). Got 0x%02X.", value));
+            // Let the timeout deal with sending the NAK
+        }
+
+        /**
+         * Publishes the serial statistics. The counters are updated for every byte received, but are only published
+         * periodically, and only if they've changed.
+         */
+        private void publishCounters() {
+            long now = System.currentTimeMillis();
+            if (now - lastCounterUpdate < COUNTER_UPDATE_PERIOD) {
+                return;
+            }
+            lastCounterUpdate = now;
+
+            publishedSOF = publishCounter(channelSOF, SOFCount, publishedSOF);
+            publishedACK = publishCounter(channelACK, ACKCount, publishedACK);
+            publishedNAK = publishCounter(channelNAK, NAKCount, publishedNAK);
+            publishedCAN = publishCounter(channelCAN, CANCount, publishedCAN);
+            publishedOOF = publishCounter(channelOOF, OOFCount, publishedOOF);
+            publishedCSE = publishCounter(channelCSE, CSECount, publishedCSE);
+        }
+
+        private int publishCounter(ChannelUID channel, int count, int published) {
+            if (count != published) {
+                updateState(channel, new DecimalType(count));
+            }
+            return count;
+        }
+
         /**
          * Run method. Runs the actual receiving process.
          */
@@ -202,123 +292,27 @@ public class ZWaveSerialHandler extends ZWaveControllerHandler {
             logger.debug("Starting ZWave thread: Receive");
             try {
                 // Send a NAK to resynchronise communications
-                sendResponse(NAK);
+                sendResponse(ZWaveFrameDecoder.NAK);
 
+                InputStream inputStream = serialPort.getInputStream();
                 while (!interrupted()) {
-                    int nextByte;
-
                     try {
-                        nextByte = serialPort.getInputStream().read();
-
-                        // If byte value is -1, this is a timeout
-                        if (nextByte == -1) {
-                            if (rxState != SEARCH_SOF) {
+                        // Read everything that's available
+                        if (decoder.read(inputStream) <= 0) {
+                            // This is a timeout
+                            if (decoder.reset()) {
                                 // If we're not searching for a new frame when we get a timeout, something bad happened
                                 logger.debug("Receive Timeout - Sending NAK");
-                                rxState = SEARCH_SOF;
                             }
-                            continue;
+                        } else {
+                            decoder.process(this);
                         }
                     } catch (IOException e) {
                         logger.error("Got I/O exception {} during receiving. exiting thread.", e.getLocalizedMessage());
                         break;
                     }
 
-                    switch (rxState) {
-                        case SEARCH_SOF:
-                            switch (nextByte) {
-                                case SOF:
-                                    logger.trace("Received SOF");
-
-                                    // Keep track of statistics
-                                    SOFCount++;
-                                    updateState(new ChannelUID(getThing().getUID(), CHANNEL_SERIAL_SOF),
-                                            new DecimalType(SOFCount));
-                                    rxState = SEARCH_LEN;
-                                    break;
-
-                                case ACK:
-                                    // Keep track of statistics
-                                    ACKCount++;
-                                    updateState(new ChannelUID(getThing().getUID(), CHANNEL_SERIAL_ACK),
-                                            new DecimalType(ACKCount));
-                                    logger.trace("Received ACK");
-                                    break;
-
-                                case NAK:
-                                    // A NAK means the CRC was incorrectly received by the controller
-                                    NAKCount++;
-                                    updateState(new ChannelUID(getThing().getUID(), CHANNEL_SERIAL_NAK),
-                                            new DecimalType(NAKCount));
-                                    logger.debug("Protocol error (NAK), discarding");
-
-                                    // TODO: Add NAK processing
-                                    break;
-
-                                case CAN:
-                                    // The CAN means that the controller dropped the frame
-                                    CANCount++;
-                                    updateState(new ChannelUID(getThing().getUID(), CHANNEL_SERIAL_CAN),
-                                            new DecimalType(CANCount));
-                                    logger.debug("Protocol error (CAN), resending");
-
-                                    // TODO: Add CAN processing (Resend?)
-                                    break;
-
-                                default:
-                                    OOFCount++;
-                                    updateState(new ChannelUID(getThing().getUID(), CHANNEL_SERIAL_OOF),
-                                            new DecimalType(OOFCount));
-                                    logger.debug(String.format("Protocol error (OOF). Got 0x%02X.", nextByte));
-                                    // Let the timeout deal with sending the NAK
-                                    break;
-                            }
-                            break;
-
-                        case SEARCH_LEN:
-                            // Sanity check the frame length
-                            if (nextByte < 4 || nextByte > 64) {
-                                logger.debug("Frame length is out of limits ({})", nextByte);
-
-                                break;
-                            }
-                            messageLength = (nextByte & 0xff) + 2;
-
-                            rxBuffer = new byte[messageLength];
-                            rxBuffer[0] = SOF;
-                            rxBuffer[1] = (byte) nextByte;
-                            rxLength = 2;
-                            rxState = SEARCH_DAT;
-                            break;
-
-                        case SEARCH_DAT:
-                            rxBuffer[rxLength] = (byte) nextByte;
-                            rxLength++;
-
-                            if (rxLength < messageLength) {
-                                break;
-                            }
-
-                            logger.debug("Receive Message = {}", SerialMessage.bb2hex(rxBuffer));
-                            SerialMessage recvMessage = new SerialMessage(rxBuffer);
-                            if (recvMessage.isValid) {
-                                logger.trace("Message is valid, sending ACK");
-                                sendResponse(ACK);
-
-                                incomingMessage(recvMessage);
-                            } else {
-                                CSECount++;
-                                updateState(new ChannelUID(getThing().getUID(), CHANNEL_SERIAL_CSE),
-                                        new DecimalType(CSECount));
-
-                                logger.debug("Message is invalid, discarding");
-                                sendResponse(NAK);
-                            }
-
-                            rxState = SEARCH_SOF;
-                            break;
-                    }
-
+                    publishCounters();
                 }
             } catch (Exception e) {
                 logger.error("Exception during ZWave thread: Receive {}", e.getMessage());
@@ -338,8 +332,10 @@ public class ZWaveSerialHandler extends ZWaveControllerHandler {
             return;
         }
 
-        logger.debug("NODE {}: Sending REQUEST Message = {}", serialMessage.getMessageNode(),
-                SerialMessage.bb2hex(buffer));
+        if (logger.isDebugEnabled()) {
+            logger.debug("NODE {}: Sending REQUEST Message = {}", serialMessage.getMessageNode(),
+                    SerialMessage.bb2hex(buffer));
+        }
 
         try {
             synchronized (serialPort.getOutputStream()) {
@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.handler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.smarthome.core.thing.ChannelUID;
+import org.openhab.binding.zwave.handler.ZWaveThingChannel.DataType;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass.CommandClass;
+
+/**
+ * Routes incoming events and commands to the channels of a thing.
+ * <p>
+ * The index is built once when the thing is initialised, and is not changed afterwards. Incoming value events are
+ * looked up by endpoint and {@link CommandClass}, and commands by {@link ChannelUID} and {@link DataType}, so there's
+ * no need to search through all the channels, or compare command class names, for every event.
+ */
+public class ZWaveThingChannelIndex {
+    public final static ZWaveThingChannelIndex EMPTY = new ZWaveThingChannelIndex(
+            Collections.<ZWaveThingChannel> emptyList(), Collections.<ZWaveThingChannel> emptyList());
+
+    private final static ZWaveThingChannel[] NO_CHANNELS = new ZWaveThingChannel[0];
+
+    // State channels, indexed by endpoint
+    private final List<Map<CommandClass, ZWaveThingChannel[]>> stateChannels;
+
+    // Command channels, with an array for each channel indexed by the data type ordinal
+    private final Map<ChannelUID, ZWaveThingChannel[]> commandChannels;
+
+    /**
+     * Constructor. Builds the index from the channel lists.
+     *
+     * @param commandChannels the channels that accept commands
+     * @param stateChannels the channels that are updated from events
+     */
+    public ZWaveThingChannelIndex(List<ZWaveThingChannel> commandChannels, List<ZWaveThingChannel> stateChannels) {
+        this.commandChannels = new HashMap<ChannelUID, ZWaveThingChannel[]>();
+        for (ZWaveThingChannel channel : commandChannels) {
+            ZWaveThingChannel[] dataTypes = this.commandChannels.get(channel.getUID());
+            if (dataTypes == null) {
+                dataTypes = new ZWaveThingChannel[DataType.values().length];
+                this.commandChannels.put(channel.getUID(), dataTypes);
+            }
+
+            // The first channel defined for a data type is used
+            if (dataTypes[channel.getDataType().ordinal()] == null) {
+                dataTypes[channel.getDataType().ordinal()] = channel;
+            }
+        }
+
+        // Collect the state channels in order, then convert to arrays
+        List<Map<CommandClass, List<ZWaveThingChannel>>> channelLists;
+        channelLists = new ArrayList<Map<CommandClass, List<ZWaveThingChannel>>>();
+        for (ZWaveThingChannel channel : stateChannels) {
+            // The channel must use the command class label, as events are matched against it
+            CommandClass commandClass = CommandClass.getCommandClass(channel.getCommandClass());
+            if (commandClass == null || !commandClass.getLabel().equals(channel.getCommandClass())) {
+                continue;
+            }
+
+            while (channelLists.size() <= channel.getEndpoint()) {
+                channelLists.add(null);
+            }
+            Map<CommandClass, List<ZWaveThingChannel>> endpointChannels = channelLists.get(channel.getEndpoint());
+            if (endpointChannels == null) {
+                endpointChannels = new EnumMap<CommandClass, List<ZWaveThingChannel>>(CommandClass.class);
+                channelLists.set(channel.getEndpoint(), endpointChannels);
+            }
+            List<ZWaveThingChannel> channels = endpointChannels.get(commandClass);
+            if (channels == null) {
+                channels = new ArrayList<ZWaveThingChannel>();
+                endpointChannels.put(commandClass, channels);
+            }
+            channels.add(channel);
+        }
+
+        this.stateChannels = new ArrayList<Map<CommandClass, ZWaveThingChannel[]>>(channelLists.size());
+        for (Map<CommandClass, List<ZWaveThingChannel>> endpointChannels : channelLists) {
+            if (endpointChannels == null) {
+                this.stateChannels.add(null);
+                continue;
+            }
+            Map<CommandClass, ZWaveThingChannel[]> endpointArrays = new EnumMap<CommandClass, ZWaveThingChannel[]>(
+                    CommandClass.class);
+            for (Map.Entry<CommandClass, List<ZWaveThingChannel>> entry : endpointChannels.entrySet()) {
+                endpointArrays.put(entry.getKey(), entry.getValue().toArray(NO_CHANNELS));
+            }
+            this.stateChannels.add(endpointArrays);
+        }
+    }
+
+    /**
+     * Gets the channels that should be updated from an event
+     *
+     * @param endpoint the endpoint the event came from
+     * @param commandClass the command class of the event
+     * @return the channels, in the order they were defined. This is never null, and must not be modified.
+     */
+    public ZWaveThingChannel[] getStateChannels(int endpoint, CommandClass commandClass) {
+        if (endpoint < 0 || endpoint >= stateChannels.size()) {
+            return NO_CHANNELS;
+        }
+        Map<CommandClass, ZWaveThingChannel[]> endpointChannels = stateChannels.get(endpoint);
+        if (endpointChannels == null) {
+            return NO_CHANNELS;
+        }
+        ZWaveThingChannel[] channels = endpointChannels.get(commandClass);
+        if (channels == null) {
+            return NO_CHANNELS;
+        }
+        return channels;
+    }
+
+    /**
+     * Gets the channel that should handle a command
+     *
+     * @param channelUID the channel the command was sent to
+     * @param dataType the type of the command
+     * @return the channel, or null if the channel doesn't accept this type of command
+     */
+    public ZWaveThingChannel getCommandChannel(ChannelUID channelUID, DataType dataType) {
+        ZWaveThingChannel[] dataTypes = commandChannels.get(channelUID);
+        if (dataTypes == null) {
+            return null;
+        }
+        return dataTypes[dataType.ordinal()];
+    }
+}
@@ -22,7 +22,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TimeZone;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.smarthome.config.core.Configuration;
@@ -42,8 +42,11 @@ import org.eclipse.smarthome.core.types.Command;
 import org.eclipse.smarthome.core.types.RefreshType;
 import org.eclipse.smarthome.core.types.State;
 import org.openhab.binding.zwave.ZWaveBindingConstants;
+import org.openhab.binding.zwave.handler.ZWaveChannelBinding.CommandClassBinding;
 import org.openhab.binding.zwave.handler.ZWaveThingChannel.DataType;
 import org.openhab.binding.zwave.internal.ZWaveConfigProvider;
+import org.openhab.binding.zwave.internal.ZWavePollingScheduler;
+import org.openhab.binding.zwave.internal.ZWavePollingScheduler.PollingHandler;
 import org.openhab.binding.zwave.internal.ZWaveProduct;
 import org.openhab.binding.zwave.internal.protocol.SerialMessage;
 import org.openhab.binding.zwave.internal.protocol.ZWaveAssociation;
@@ -73,7 +76,6 @@ import org.openhab.binding.zwave.internal.protocol.event.ZWaveInitializationStat
 import org.openhab.binding.zwave.internal.protocol.event.ZWaveNetworkEvent;
 import org.openhab.binding.zwave.internal.protocol.event.ZWaveNodeStatusEvent;
 import org.openhab.binding.zwave.internal.protocol.event.ZWaveTransactionCompletedEvent;
-import org.openhab.binding.zwave.internal.protocol.initialization.ZWaveNodeSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -89,14 +91,15 @@ public class ZWaveThingHandler extends ConfigStatusThingHandler implements ZWave
     private boolean finalTypeSet = false;
 
     private int nodeId;
-    private List<ZWaveThingChannel> thingChannelsCmd = Collections.emptyList();
-    private List<ZWaveThingChannel> thingChannelsState = Collections.emptyList();
+    private volatile ZWaveThingChannelIndex thingChannelIndex = ZWaveThingChannelIndex.EMPTY;
     private List<ZWaveThingChannel> thingChannelsPoll = Collections.emptyList();
 
     private Map<Integer, ZWaveConfigSubParameter> subParameters = new HashMap<Integer, ZWaveConfigSubParameter>();
     private Map<String, Object> pendingCfg = new HashMap<String, Object>();
 
-    private ScheduledFuture<?> pollingJob = null;
+    private boolean pollingRegistered = false;
+    private volatile long lastPollTime = 0;
+    private final Map<ChannelUID, Long> channelReportTimes = new ConcurrentHashMap<ChannelUID, Long>();
     private final long POLLING_PERIOD_MIN = 15;
     private final long POLLING_PERIOD_MAX = 86400;
     private final long POLLING_PERIOD_DEFAULT = 1800;
@@ -171,73 +174,33 @@ public class ZWaveThingHandler extends ConfigStatusThingHandler implements ZWave
 
         // Create the channels list to simplify processing incoming events
         // synchronized (thingChannelsState) {
-        thingChannelsCmd = new ArrayList<ZWaveThingChannel>();
+        List<ZWaveThingChannel> thingChannelsCmd = new ArrayList<ZWaveThingChannel>();
+        List<ZWaveThingChannel> thingChannelsState = new ArrayList<ZWaveThingChannel>();
         thingChannelsPoll = new ArrayList<ZWaveThingChannel>();
-        thingChannelsState = new ArrayList<ZWaveThingChannel>();
         for (Channel channel : getThing().getChannels()) {
             // Process the channel properties and configuration
-            Map<String, String> properties = channel.getProperties();
             Configuration configuration = channel.getConfiguration();
 
             logger.debug("NODE {}: Initialising channel {}", nodeId, channel.getUID());
 
-            for (String key : properties.keySet()) {
-                String[] bindingType = key.split(":");
-                if (bindingType.length != 3) {
-                    continue;
-                }
-                if (!ZWaveBindingConstants.CHANNEL_CFG_BINDING.equals(bindingType[0])) {
-                    continue;
-                }
-
-                String[] bindingProperties = properties.get(key).split(";");
-
-                // TODO: Check length???
-
-                // Get the command classes - comma separated
-                String[] cmdClasses = bindingProperties[0].split(",");
-
-                // Convert the arguments to a map
-                // - comma separated list of arguments "arg1=val1, arg2=val2"
-                Map<String, String> argumentMap = new HashMap<String, String>();
-                if (bindingProperties.length == 2) {
-                    String[] arguments = bindingProperties[1].split(",");
-                    for (String arg : arguments) {
-                        String[] prop = arg.split("=");
-                        argumentMap.put(prop[0].trim(), (prop[1] != null) ? prop[1].trim() : null);
-                        // logger.debug("Adding Argument {}=={}", prop[0], prop[1]);
-                    }
-                }
-
+            // The bindings are parsed once for each thing type
+            for (ZWaveChannelBinding binding : ZWaveChannelBinding.getBindings(getThing().getThingTypeUID(),
+                    channel.getUID().getId(), channel.getProperties())) {
                 // Process the user configuration and add it to the argument map
+                Map<String, String> argumentMap = new HashMap<String, String>(binding.getArguments());
                 for (String configName : configuration.getProperties().keySet()) {
                     argumentMap.put(configName, configuration.get(configName).toString());
                 }
 
                 // Add all the command classes...
                 boolean first = true;
-                for (String cc : cmdClasses) {
-                    String[] ccSplit = cc.split(":");
-                    int endpoint = 0;
-
-                    if (ccSplit.length == 2) {
-                        endpoint = Integer.parseInt(ccSplit[1]);
-                    }
-
-                    // Get the data type
-                    DataType dataType = DataType.DecimalType;
-                    try {
-                        dataType = DataType.valueOf(bindingType[2]);
-                    } catch (IllegalArgumentException e) {
-                        logger.warn("NODE {}: Invalid item type defined ({}). Assuming DecimalType", nodeId, dataType);
-                    }
-
+                for (CommandClassBinding cc : binding.getCommandClasses()) {
                     // logger.debug("Creating - arg map is {} long", argumentMap.size());
-                    ZWaveThingChannel chan = new ZWaveThingChannel(controllerHandler, channel.getUID(), dataType,
-                            ccSplit[0], endpoint, argumentMap);
+                    ZWaveThingChannel chan = new ZWaveThingChannel(controllerHandler, channel.getUID(),
+                            binding.getDataType(), cc.getCommandClass(), cc.getEndpoint(), argumentMap);
 
                     // First time round, and this is a command - then add the command
-                    if (first && ("*".equals(bindingType[1]) || "Command".equals(bindingType[1]))) {
+                    if (first && binding.isCommand()) {
                         thingChannelsCmd.add(chan);
                         logger.debug("NODE {}: Initialising cmd channel {}", nodeId, channel.getUID());
                     }
@@ -250,7 +213,7 @@ public class ZWaveThingHandler extends ConfigStatusThingHandler implements ZWave
                     }
 
                     // Add the state and polling handlers
-                    if ("*".equals(bindingType[1]) || "State".equals(bindingType[1])) {
+                    if (binding.isState()) {
                         logger.debug("NODE {}: Initialising state channel {}", nodeId, channel.getUID());
                         thingChannelsState.add(chan);
                     }
@@ -261,6 +224,9 @@ public class ZWaveThingHandler extends ConfigStatusThingHandler implements ZWave
             // }
         }
 
+        // Build the index used to route events and commands to the channels
+        thingChannelIndex = new ZWaveThingChannelIndex(thingChannelsCmd, thingChannelsState);
+
         startPolling();
     }
 
@@ -309,17 +275,8 @@ public class ZWaveThingHandler extends ConfigStatusThingHandler implements ZWave
             return false;
         }
 
-        ZWaveProduct foundProduct = null;
-        for (ZWaveProduct product : ZWaveConfigProvider.getProductIndex()) {
-            if (product == null) {
-                continue;
-            }
-            // logger.debug("Checking {}", product.getThingTypeUID());
-            if (product.match(deviceManufacturer, deviceType, deviceId, parmVersion) == true) {
-                foundProduct = product;
-                break;
-            }
-        }
+        ZWaveProduct foundProduct = ZWaveConfigProvider.findProduct(deviceManufacturer, deviceType, deviceId,
+                parmVersion);
 
         // Did we find the thing type?
         if (foundProduct == null) {
@@ -333,14 +290,113 @@ public class ZWaveThingHandler extends ConfigStatusThingHandler implements ZWave
     }
 
     /**
-     * Start polling with an initial delay
+     * Handler called by the polling scheduler in the controller handler to poll the node
+     */
+    private final PollingHandler pollingHandler = new PollingHandler() {
+        @Override
+        public int poll(boolean refresh) {
+            logger.debug("NODE {}: Polling...", nodeId);
+            ZWaveNode node = controllerHandler.getNode(nodeId);
+            if (node == null || node.isInitializationComplete() == false) {
+                logger.debug("NODE {}: Polling deferred until initialisation complete", nodeId);
+                return 0;
+            }
+
+            long now = System.currentTimeMillis();
+            List<SerialMessage> messages = new ArrayList<SerialMessage>();
+            for (ZWaveThingChannel channel : thingChannelsPoll) {
+                // Only poll channels that are linked to an item
+                if (!isLinked(channel.getUID().getId())) {
+                    logger.trace("NODE {}: Polling skipped for unlinked channel {}", nodeId, channel.getUID());
+                    continue;
+                }
+
+                // Don't poll channels that have reported since the last poll, unless a refresh was requested
+                if (!refresh && ZWavePollingScheduler.isReportFresh(getChannelReportTime(channel.getUID()),
+                        lastPollTime, pollingPeriod * 1000, now)) {
+                    logger.debug("NODE {}: Polling skipped for {} as it reported recently", nodeId, channel.getUID());
+                    continue;
+                }
+
+                logger.debug("NODE {}: Polling {}", nodeId, channel.getUID());
+                if (channel.converter == null) {
+                    logger.debug("NODE {}: Polling aborted as no converter found for {}", nodeId, channel.getUID());
+                } else {
+                    List<SerialMessage> poll = channel.converter.executeRefresh(channel, node);
+                    if (poll != null) {
+                        messages.addAll(poll);
+                    }
+                }
+            }
+
+            // If this is a battery device, then we want to check if it stops responding
+            // If no message received in twice the wakeup period, then we're DEAD
+            ZWaveWakeUpCommandClass wakeupCommandClass = (ZWaveWakeUpCommandClass) node
+                    .getCommandClass(CommandClass.WAKE_UP);
+            if (wakeupCommandClass != null && wakeupCommandClass.getInterval() != 0) {
+                if (node.getLastReceived()
+                        .getTime() < (System.currentTimeMillis() - (wakeupCommandClass.getInterval() * 2000))) {
+                    node.setNodeState(ZWaveNodeState.DEAD);
+                }
+            }
+
+            // Send all the messages
+            for (SerialMessage message : messages) {
+                controllerHandler.sendData(message);
+            }
+            lastPollTime = now;
+            return messages.size();
+        }
+
+        @Override
+        public long getLastReportTime() {
+            // The node is only up to date if all the polled channels have reported
+            long oldest = 0;
+            for (ZWaveThingChannel channel : thingChannelsPoll) {
+                if (!isLinked(channel.getUID().getId())) {
+                    continue;
+                }
+                long reportTime = getChannelReportTime(channel.getUID());
+                if (reportTime == 0) {
+                    return 0;
+                }
+                if (oldest == 0 || reportTime < oldest) {
+                    oldest = reportTime;
+                }
+            }
+            return oldest;
+        }
+    };
+
+    private long getChannelReportTime(ChannelUID channelUID) {
+        Long reportTime = channelReportTimes.get(channelUID);
+        return reportTime == null ? 0 : reportTime;
+    }
+
+    /**
+     * Start polling with an initial delay.
+     * The polling itself is managed by the polling scheduler in the controller handler.
      *
      * @param initialPeriod time to start in milliseconds
      */
     private void startPolling(long initialPeriod) {
-        if (pollingJob != null) {
-            pollingJob.cancel(true);
-            pollingJob = null;
+        if (controllerHandler == null) {
+            return;
+        }
+
+        if (!pollingRegistered) {
+            startPolling();
+        }
+        controllerHandler.requestPoll(nodeId, initialPeriod);
+        logger.debug("NODE {}: Polling requested in {} milliseconds.", nodeId, initialPeriod);
+    }
+
+    /**
+     * Register with the polling scheduler using the current polling period
+     */
+    private void startPolling() {
+        if (controllerHandler == null) {
+            return;
         }
 
         if (pollingPeriod < POLLING_PERIOD_MIN) {
@@ -355,61 +411,19 @@ public class ZWaveThingHandler extends ConfigStatusThingHandler implements ZWave
             pollingPeriod = POLLING_PERIOD_MAX;
         }
 
-        Runnable pollingRunnable = new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    // TODO: If/when this code changes, we should only poll channels that are linked.
-                    logger.debug("NODE {}: Polling...", nodeId);
-                    ZWaveNode node = controllerHandler.getNode(nodeId);
-                    if (node == null || node.isInitializationComplete() == false) {
-                        logger.debug("NODE {}: Polling deferred until initialisation complete", nodeId);
-                        return;
-                    }
-
-                    List<SerialMessage> messages = new ArrayList<SerialMessage>();
-                    for (ZWaveThingChannel channel : thingChannelsPoll) {
-                        logger.debug("NODE {}: Polling {}", nodeId, channel.getUID());
-                        if (channel.converter == null) {
-                            logger.debug("NODE {}: Polling aborted as no converter found for {}", nodeId,
-                                    channel.getUID());
-                        } else {
-                            List<SerialMessage> poll = channel.converter.executeRefresh(channel, node);
-                            if (poll != null) {
-                                messages.addAll(poll);
-                            }
-                        }
-                    }
-
-                    // If this is a battery device, then we want to check if it stops responding
-                    // If no message received in twice the wakeup period, then we're DEAD
-                    ZWaveWakeUpCommandClass wakeupCommandClass = (ZWaveWakeUpCommandClass) node
-                            .getCommandClass(CommandClass.WAKE_UP);
-                    if (wakeupCommandClass != null && wakeupCommandClass.getInterval() != 0) {
-                        if (node.getLastReceived()
-                                .getTime() < (System.currentTimeMillis() - (wakeupCommandClass.getInterval() * 2000))) {
-                            node.setNodeState(ZWaveNodeState.DEAD);
-                        }
-                    }
-
-                    // Send all the messages
-                    for (SerialMessage message : messages) {
-                        controllerHandler.sendData(message);
-                    }
-                } catch (Exception e) {
-                    logger.warn(String.format("NODE %d: Polling aborted due to exception", nodeId), e);
-                }
-            }
-        };
-
-        pollingJob = scheduler.scheduleAtFixedRate(pollingRunnable, initialPeriod, pollingPeriod * 1000,
-                TimeUnit.MILLISECONDS);
-        logger.debug("NODE {}: Polling intialised at {} seconds - start in {} milliseconds.", nodeId, pollingPeriod,
-                initialPeriod);
+        controllerHandler.registerPolling(nodeId, pollingHandler, pollingPeriod * 1000);
+        pollingRegistered = true;
+        logger.debug("NODE {}: Polling intialised at {} seconds.", nodeId, pollingPeriod);
     }
 
-    private void startPolling() {
-        startPolling(pollingPeriod * 1000);
+    /**
+     * Remove this node from the polling scheduler
+     */
+    private void stopPolling() {
+        if (pollingRegistered && controllerHandler != null) {
+            controllerHandler.unregisterPolling(nodeId);
+        }
+        pollingRegistered = false;
     }
 
     @Override
@@ -472,11 +486,11 @@ public class ZWaveThingHandler extends ConfigStatusThingHandler implements ZWave
     public void dispose() {
         logger.debug("Handler disposed. Unregistering listener.");
         if (nodeId != 0) {
+            stopPolling();
+
             if (controllerHandler != null) {
-                // Save the XML so that any changes to configuration is saved
-                ZWaveNodeSerializer nodeSerializer = new ZWaveNodeSerializer();
-                ZWaveNode node = controllerHandler.getNode(nodeId);
-                nodeSerializer.SerializeNode(node);
+                // Save the node so that any changes to configuration is saved
+                controllerHandler.saveNode(nodeId);
 
                 // Remove the event listener
                 controllerHandler.removeEventListener(this);
@@ -484,11 +498,6 @@ public class ZWaveThingHandler extends ConfigStatusThingHandler implements ZWave
             nodeId = 0;
         }
 
-        if (pollingJob != null) {
-            pollingJob.cancel(true);
-            pollingJob = null;
-        }
-
         controllerHandler = null;
     }
 
@@ -833,9 +842,8 @@ public class ZWaveThingHandler extends ConfigStatusThingHandler implements ZWave
                         && ((BigDecimal) valueObject).intValue() == ZWaveBindingConstants.ACTION_CHECK_VALUE) {
                     logger.debug("NODE {}: Re-initialising node!", nodeId);
 
-                    // Delete the saved XML
-                    ZWaveNodeSerializer nodeSerializer = new ZWaveNodeSerializer();
-                    nodeSerializer.DeleteNode(nodeId);
+                    // Delete the saved node
+                    controllerHandler.deleteSavedNode(nodeId);
 
                     controllerHandler.reinitialiseNode(nodeId);
                 }
@@ -883,14 +891,7 @@ public class ZWaveThingHandler extends ConfigStatusThingHandler implements ZWave
         }
 
         // Find the channel
-        ZWaveThingChannel cmdChannel = null;
-        for (ZWaveThingChannel channel : thingChannelsCmd) {
-            if (channel.getUID().equals(channelUID) && channel.getDataType() == dataType) {
-                cmdChannel = channel;
-                break;
-            }
-        }
-
+        ZWaveThingChannel cmdChannel = thingChannelIndex.getCommandChannel(channelUID, dataType);
         if (cmdChannel == null) {
             logger.debug("NODE {}: Command for unknown channel {} with {}", nodeId, channelUID, dataType);
             return;
@@ -921,6 +922,15 @@ public class ZWaveThingHandler extends ConfigStatusThingHandler implements ZWave
         }
     }
 
+    /**
+     * Gets the node ID of the device handled by this thing
+     *
+     * @return the node ID
+     */
+    public int getNodeId() {
+        return nodeId;
+    }
+
     @Override
     public void ZWaveIncomingEvent(ZWaveEvent incomingEvent) {
         // Check if this event is for this device
@@ -1071,24 +1081,9 @@ public class ZWaveThingHandler extends ConfigStatusThingHandler implements ZWave
                 updateConfiguration(configuration);
             }
 
-            if (thingChannelsState == null) {
-                logger.debug("NODE {}: No state handlers!", nodeId);
-                return;
-            }
-
-            // Process the channels to see if we're interested
-            for (ZWaveThingChannel channel : thingChannelsState) {
-                // logger.debug("NODE {}: Checking channel {}", nodeId, channel.getUID());
-
-                if (channel.getEndpoint() != event.getEndpoint()) {
-                    continue;
-                }
-
-                // Is this command class associated with this channel?
-                if (!channel.getCommandClass().equals(commandClass)) {
-                    continue;
-                }
-
+            // Process the channels associated with this endpoint and command class
+            for (ZWaveThingChannel channel : thingChannelIndex.getStateChannels(event.getEndpoint(),
+                    event.getCommandClass())) {
                 if (channel.converter == null) {
                     logger.debug("NODE {}: No converter set for channel {}", nodeId, channel.getUID());
                     return;
@@ -1101,6 +1096,7 @@ public class ZWaveThingHandler extends ConfigStatusThingHandler implements ZWave
                     logger.debug("NODE {}: Updating channel state {} to {} [{}]", nodeId, channel.getUID(), state,
                             state.getClass().getSimpleName());
 
+                    channelReportTimes.put(channel.getUID(), System.currentTimeMillis());
                     updateState(channel.getUID(), state);
                 }
             }
@@ -1235,10 +1231,7 @@ public class ZWaveThingHandler extends ConfigStatusThingHandler implements ZWave
                     updateStatus(ThingStatus.REMOVED, ThingStatusDetail.NONE, "Node was excluded from the controller");
 
                     // Stop polling
-                    if (pollingJob != null) {
-                        pollingJob.cancel(true);
-                        pollingJob = null;
-                    }
+                    stopPolling();
                     break;
                 default:
                     break;
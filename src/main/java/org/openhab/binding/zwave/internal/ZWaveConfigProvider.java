@@ -54,7 +54,7 @@ public class ZWaveConfigProvider implements ConfigDescriptionProvider, ConfigOpt
     private static ConfigDescriptionRegistry configDescriptionRegistry;
 
     private static Set<ThingTypeUID> zwaveThingTypeUIDList = new HashSet<ThingTypeUID>();
-    private static List<ZWaveProduct> productIndex = new ArrayList<ZWaveProduct>();
+    private static volatile ZWaveProductIndex productIndex = null;
 
     private static final Object productIndexLock = new Object();
 
@@ -304,7 +304,7 @@ public class ZWaveConfigProvider implements ConfigDescriptionProvider, ConfigOpt
 
         synchronized (productIndexLock) {
             zwaveThingTypeUIDList = new HashSet<ThingTypeUID>();
-            productIndex = new ArrayList<ZWaveProduct>();
+            List<ZWaveProduct> products = new ArrayList<ZWaveProduct>();
 
             // Get all the thing types
             Collection<ThingType> thingTypes = thingTypeRegistry.getThingTypes();
@@ -342,19 +342,69 @@ public class ZWaveConfigProvider implements ConfigDescriptionProvider, ConfigOpt
                     }
                     String versionMin = thingProperties.get(ZWaveBindingConstants.PROPERTY_XML_VERSIONMIN);
                     String versionMax = thingProperties.get(ZWaveBindingConstants.PROPERTY_XML_VERSIONMAX);
-                    productIndex.add(new ZWaveProduct(thingType.getUID(),
+                    products.add(new ZWaveProduct(thingType.getUID(),
                             Integer.parseInt(thingProperties.get(ZWaveBindingConstants.PROPERTY_XML_MANUFACTURER), 16),
                             type, id, versionMin, versionMax));
                 }
             }
+
+            productIndex = new ZWaveProductIndex(products);
         }
     }
 
-    public static synchronized List<ZWaveProduct> getProductIndex() {
-        if (productIndex.size() == 0) {
-            initialiseZWaveThings();
+    /**
+     * Gets the product index. The index is built the first time it's needed, and is shared by everything that needs
+     * to look up products.
+     *
+     * @return the {@link ZWaveProductIndex}
+     */
+    private static ZWaveProductIndex getIndex() {
+        ZWaveProductIndex index = productIndex;
+        if (index == null || index.size() == 0) {
+            synchronized (productIndexLock) {
+                if (productIndex == null || productIndex.size() == 0) {
+                    initialiseZWaveThings();
+                }
+                index = productIndex;
+            }
+        }
+        return index;
+    }
+
+    public static List<ZWaveProduct> getProductIndex() {
+        ZWaveProductIndex index = getIndex();
+        if (index == null) {
+            return Collections.emptyList();
+        }
+        return index.getProducts();
+    }
+
+    /**
+     * Finds the product in the database that matches the device information
+     *
+     * @param manufacturer the manufacturer ID
+     * @param type the device type
+     * @param id the device ID
+     * @param version the application version
+     * @return the matching {@link ZWaveProduct} or null if the product is unknown
+     */
+    public static ZWaveProduct findProduct(int manufacturer, int type, int id, String version) {
+        ZWaveProductIndex index = getIndex();
+        if (index == null) {
+            return null;
         }
-        return productIndex;
+        return index.find(manufacturer, type, id, version);
+    }
+
+    /**
+     * Finds the product in the database that matches the node
+     *
+     * @param node the {@link ZWaveNode}
+     * @return the matching {@link ZWaveProduct} or null if the product is unknown
+     */
+    public static ZWaveProduct findProduct(ZWaveNode node) {
+        return findProduct(node.getManufacturer(), node.getDeviceType(), node.getDeviceId(),
+                node.getApplicationVersion());
     }
 
     public static Set<ThingTypeUID> getSupportedThingTypes() {
@@ -379,12 +429,11 @@ public class ZWaveConfigProvider implements ConfigDescriptionProvider, ConfigOpt
             return null;
         }
 
-        for (ZWaveProduct product : ZWaveConfigProvider.getProductIndex()) {
-            if (product.match(node) == true) {
-                return thingTypeRegistry.getThingType(product.thingTypeUID);
-            }
+        ZWaveProduct product = findProduct(node);
+        if (product == null) {
+            return null;
         }
-        return null;
+        return thingTypeRegistry.getThingType(product.thingTypeUID);
     }
 
     public static ConfigDescription getThingTypeConfig(ThingType type) {
@@ -0,0 +1,328 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scheduler for the nightly network heal.
+ * <p>
+ * Healing a node deletes and reassigns its return routes and updates its neighbours, which uses a lot of network
+ * time. Rather than healing every node at once, the heal is rolled across the network during a maintenance window -:
+ * <ul>
+ * <li>Only a few nodes are healed at the same time</li>
+ * <li>Nodes with the most failures are healed first, so they're healed even if the window ends before all nodes</li>
+ * <li>The heal is paused while there are user messages waiting to be sent</li>
+ * <li>Heals are spread across the window, and are limited to a share of the network bandwidth</li>
+ * </ul>
+ * Any nodes that haven't been healed by the end of the window are left until the next night.
+ */
+public class ZWaveHealScheduler {
+    private final static Logger logger = LoggerFactory.getLogger(ZWaveHealScheduler.class);
+
+    private final static long TICK_PERIOD = 5000;
+
+    // Number of nodes healed at the same time, and the time after which a heal is assumed to have failed
+    private final static int MAX_ACTIVE = 2;
+    private final static long HEAL_TIMEOUT = 600000;
+
+    // Estimated airtime used by each heal, and the percentage of the network time healing may use
+    private final static long HEAL_AIRTIME = 2000;
+    private final static long AIRTIME_SHARE = 10;
+    private final static long AIRTIME_BURST = 4000;
+
+    private final static long HOUR = 3600000;
+
+    /**
+     * Interface to the network being healed
+     */
+    public interface HealHandler {
+        /**
+         * Gets the nodes that can be healed
+         *
+         * @return list of node IDs
+         */
+        List<Integer> getHealNodes();
+
+        /**
+         * Gets the number of times the node has been marked as dead
+         *
+         * @param nodeId the node ID
+         * @return the dead count
+         */
+        int getDeadCount(int nodeId);
+
+        /**
+         * Gets the number of messages to the node that have needed to be retried
+         *
+         * @param nodeId the node ID
+         * @return the retry count
+         */
+        int getRetryCount(int nodeId);
+
+        /**
+         * Starts healing a node. This is called from the scheduler thread and must not block.
+         *
+         * @param nodeId the node ID
+         * @return true if the heal was started
+         */
+        boolean healNode(int nodeId);
+
+        /**
+         * Checks if a node has finished healing
+         *
+         * @param nodeId the node ID
+         * @return true if the node is no longer healing
+         */
+        boolean isHealComplete(int nodeId);
+
+        /**
+         * Gets the number of user messages waiting to be sent. Heal, initialisation and polling messages aren't
+         * included.
+         *
+         * @return number of queued messages
+         */
+        int getPendingMessages();
+    }
+
+    private final HealHandler handler;
+    private final ArrayDeque<Integer> pending = new ArrayDeque<Integer>();
+    private final Map<Integer, Long> active = new HashMap<Integer, Long>();
+    private ScheduledFuture<?> healJob = null;
+    private int healHour = -1;
+    private long windowLength = 4 * HOUR;
+    private long windowStart = 0;
+    private long windowEnd = 0;
+    private long nextHeal = 0;
+    private long airtimeBudget = AIRTIME_BURST;
+    private long lastTick = 0;
+
+    /**
+     * Constructor
+     *
+     * @param handler the {@link HealHandler} for the network
+     */
+    public ZWaveHealScheduler(HealHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Sets the maintenance window. The heal starts at the start of the window each day.
+     *
+     * @param healHour the hour the window starts, or -1 to disable the heal
+     * @param windowHours the length of the window in hours
+     */
+    public synchronized void setWindow(int healHour, int windowHours) {
+        if (healHour < 0 || healHour > 23) {
+            this.healHour = -1;
+        } else {
+            this.healHour = healHour;
+        }
+        windowLength = Math.max(1, Math.min(23, windowHours)) * HOUR;
+        windowStart = 0;
+    }
+
+    /**
+     * Starts the scheduler
+     *
+     * @param executor the {@link ScheduledExecutorService} used to run the scheduler
+     */
+    public synchronized void start(ScheduledExecutorService executor) {
+        if (healJob != null) {
+            return;
+        }
+
+        healJob = executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    process();
+                } catch (Exception e) {
+                    logger.warn("Network heal aborted due to exception", e);
+                }
+            }
+        }, TICK_PERIOD, TICK_PERIOD, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the scheduler and abandons any heal in progress
+     */
+    public synchronized void stop() {
+        if (healJob != null) {
+            healJob.cancel(false);
+            healJob = null;
+        }
+        pending.clear();
+        active.clear();
+        windowEnd = 0;
+    }
+
+    /**
+     * Checks if the network heal is in progress
+     *
+     * @return true if there are nodes still to be healed
+     */
+    public synchronized boolean isHealing() {
+        return !pending.isEmpty() || !active.isEmpty();
+    }
+
+    /**
+     * Starts healing nodes that are due
+     */
+    public void process() {
+        long now = getTime();
+        List<Integer> heals = new ArrayList<Integer>();
+
+        synchronized (this) {
+            if (lastTick != 0) {
+                airtimeBudget = Math.min(AIRTIME_BURST, airtimeBudget + (now - lastTick) * AIRTIME_SHARE / 100);
+            }
+            lastTick = now;
+
+            // Remove nodes that have finished healing
+            Iterator<Map.Entry<Integer, Long>> iterator = active.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Integer, Long> entry = iterator.next();
+                if (handler.isHealComplete(entry.getKey())) {
+                    logger.debug("NODE {}: Heal complete", entry.getKey());
+                    iterator.remove();
+                } else if (now - entry.getValue() > HEAL_TIMEOUT) {
+                    logger.debug("NODE {}: Heal timed out", entry.getKey());
+                    iterator.remove();
+                }
+            }
+
+            if (healHour < 0) {
+                pending.clear();
+                return;
+            }
+
+            if (windowEnd != 0 && now >= windowEnd) {
+                if (!pending.isEmpty()) {
+                    logger.info("Network heal window ended with {} nodes not healed", pending.size());
+                    pending.clear();
+                }
+                windowEnd = 0;
+            }
+
+            if (windowStart == 0) {
+                windowStart = getNextWindow(now);
+            }
+            if (windowEnd == 0 && now >= windowStart) {
+                windowEnd = windowStart + windowLength;
+                windowStart = getNextWindow(now);
+                startWindow(now);
+            }
+
+            if (pending.isEmpty() || active.size() >= MAX_ACTIVE || now < nextHeal) {
+                return;
+            }
+
+            // Give way to user traffic
+            if (handler.getPendingMessages() > 0) {
+                logger.debug("Network heal paused while messages are queued");
+                return;
+            }
+
+            if (airtimeBudget <= 0) {
+                return;
+            }
+
+            Integer nodeId = pending.poll();
+            active.put(nodeId, now);
+            heals.add(nodeId);
+            airtimeBudget -= HEAL_AIRTIME;
+
+            // Spread the remaining nodes evenly over the rest of the window
+            nextHeal = now + (windowEnd - now) / (pending.size() + 1);
+        }
+
+        for (Integer nodeId : heals) {
+            boolean started;
+            try {
+                started = handler.healNode(nodeId);
+            } catch (Exception e) {
+                logger.warn(String.format("NODE %d: Heal aborted due to exception", nodeId), e);
+                started = false;
+            }
+            if (!started) {
+                synchronized (this) {
+                    active.remove(nodeId);
+                    nextHeal = 0;
+                }
+            }
+        }
+    }
+
+    private void startWindow(long now) {
+        final Map<Integer, Integer> deadCounts = new HashMap<Integer, Integer>();
+        final Map<Integer, Integer> retryCounts = new HashMap<Integer, Integer>();
+        List<Integer> nodes = new ArrayList<Integer>(handler.getHealNodes());
+        for (Integer nodeId : nodes) {
+            deadCounts.put(nodeId, handler.getDeadCount(nodeId));
+            retryCounts.put(nodeId, handler.getRetryCount(nodeId));
+        }
+
+        // Heal the least reliable nodes first
+        Collections.sort(nodes, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer node1, Integer node2) {
+                int result = deadCounts.get(node2).compareTo(deadCounts.get(node1));
+                if (result == 0) {
+                    result = retryCounts.get(node2).compareTo(retryCounts.get(node1));
+                }
+                if (result == 0) {
+                    result = node1.compareTo(node2);
+                }
+                return result;
+            }
+        });
+
+        pending.clear();
+        pending.addAll(nodes);
+        nextHeal = now;
+        logger.info("Network heal started for {} nodes", pending.size());
+    }
+
+    private long getNextWindow(long now) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(now);
+        calendar.set(Calendar.HOUR_OF_DAY, healHour);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        if (calendar.getTimeInMillis() <= now) {
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * Gets the current time
+     *
+     * @return time in milliseconds
+     */
+    protected long getTime() {
+        return System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,284 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Central scheduler for polling all the nodes in the network.
+ * <p>
+ * Rather than each thing running its own polling job, each node registers with the scheduler which runs a single
+ * periodic task. This allows the polling to be managed across the whole network -:
+ * <ul>
+ * <li>Polls are spread evenly across the polling period, rather than all firing together</li>
+ * <li>If a node has sent a report since it was last polled, the poll is postponed as we already have fresh data</li>
+ * <li>The time spent polling is limited to a share of the network bandwidth, so polling doesn't delay commands</li>
+ * </ul>
+ * Refresh requests are always processed, and aren't limited by the bandwidth share.
+ */
+public class ZWavePollingScheduler {
+    private final static Logger logger = LoggerFactory.getLogger(ZWavePollingScheduler.class);
+
+    private final static long TICK_PERIOD = 1000;
+
+    // Reports received within this time after a poll are assumed to be the response to the poll
+    private final static long POLL_RESPONSE_TIME = 10000;
+
+    // Estimated airtime used by each poll message, and the percentage of the network time polling may use
+    private final static long MESSAGE_AIRTIME = 100;
+    private final static long AIRTIME_SHARE = 25;
+    private final static long AIRTIME_BURST = 5000;
+
+    // Used to spread nodes across the polling period - the golden ratio gives an even spread for any number of nodes
+    private final static double SPREAD_FACTOR = 0.6180339887;
+
+    /**
+     * Interface implemented by anything that needs to be polled
+     */
+    public interface PollingHandler {
+        /**
+         * Polls the node. This is called from the scheduler thread and must not block.
+         * <p>
+         * For a normal poll, the handler should skip anything that has reported since the last poll - see
+         * {@link ZWavePollingScheduler#isReportFresh(long, long, long, long)}.
+         *
+         * @param refresh true if this poll was requested, and everything should be polled
+         * @return the number of messages sent
+         */
+        int poll(boolean refresh);
+
+        /**
+         * Gets the time the node last reported everything that is polled. If the node polls several values, this is
+         * the time of the oldest report, so the poll is only postponed if every value has reported.
+         *
+         * @return time in milliseconds, or 0 if no report has been received
+         */
+        long getLastReportTime();
+    }
+
+    private final Map<Integer, PollEntry> entries = new HashMap<Integer, PollEntry>();
+    private ScheduledFuture<?> pollingJob = null;
+    private long airtimeBudget = AIRTIME_BURST;
+    private long lastTick = 0;
+
+    private static final Comparator<PollEntry> dueComparator = new Comparator<PollEntry>() {
+        @Override
+        public int compare(PollEntry entry1, PollEntry entry2) {
+            return Long.compare(entry1.getDueTime(), entry2.getDueTime());
+        }
+    };
+
+    /**
+     * Starts the scheduler
+     *
+     * @param executor the {@link ScheduledExecutorService} used to run the scheduler
+     */
+    public synchronized void start(ScheduledExecutorService executor) {
+        if (pollingJob != null) {
+            return;
+        }
+
+        pollingJob = executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    process();
+                } catch (Exception e) {
+                    logger.warn("Polling aborted due to exception", e);
+                }
+            }
+        }, TICK_PERIOD, TICK_PERIOD, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the scheduler and removes all nodes
+     */
+    public synchronized void stop() {
+        if (pollingJob != null) {
+            pollingJob.cancel(false);
+            pollingJob = null;
+        }
+        entries.clear();
+    }
+
+    /**
+     * Registers a node for polling. If the node is already registered, the period is updated.
+     *
+     * @param nodeId the node ID
+     * @param handler the {@link PollingHandler} to poll the node
+     * @param period the polling period in milliseconds
+     */
+    public synchronized void register(int nodeId, PollingHandler handler, long period) {
+        long now = getTime();
+        PollEntry entry = entries.get(nodeId);
+        if (entry == null) {
+            entry = new PollEntry(nodeId);
+            entries.put(nodeId, entry);
+        }
+
+        entry.handler = handler;
+        entry.period = period;
+
+        // Give each node its own slot in the polling period
+        double slot = (nodeId * SPREAD_FACTOR) % 1.0;
+        entry.nextPoll = now + (long) (period * slot);
+
+        logger.debug("NODE {}: Polling registered at {}ms - start in {}ms", nodeId, period, entry.nextPoll - now);
+    }
+
+    /**
+     * Removes a node from the scheduler
+     *
+     * @param nodeId the node ID
+     */
+    public synchronized void unregister(int nodeId) {
+        entries.remove(nodeId);
+    }
+
+    /**
+     * Requests the node is polled after a delay. This doesn't change the normal polling schedule.
+     *
+     * @param nodeId the node ID
+     * @param delay the delay in milliseconds
+     */
+    public synchronized void pollNow(int nodeId, long delay) {
+        PollEntry entry = entries.get(nodeId);
+        if (entry == null) {
+            return;
+        }
+
+        long refreshTime = getTime() + delay;
+        if (entry.refreshTime == 0 || refreshTime < entry.refreshTime) {
+            entry.refreshTime = refreshTime;
+        }
+    }
+
+    /**
+     * Polls all nodes that are due
+     */
+    public void process() {
+        long now = getTime();
+        List<PollEntry> polls = new ArrayList<PollEntry>();
+
+        synchronized (this) {
+            if (lastTick != 0) {
+                airtimeBudget = Math.min(AIRTIME_BURST, airtimeBudget + (now - lastTick) * AIRTIME_SHARE / 100);
+            }
+            lastTick = now;
+
+            List<PollEntry> due = new ArrayList<PollEntry>();
+            for (PollEntry entry : entries.values()) {
+                if (entry.getDueTime() <= now) {
+                    due.add(entry);
+                }
+            }
+            Collections.sort(due, dueComparator);
+
+            for (PollEntry entry : due) {
+                boolean refresh = entry.refreshTime != 0 && entry.refreshTime <= now;
+                if (!refresh) {
+                    // Postpone the poll if the node has reported since the last poll
+                    long lastReport = entry.handler.getLastReportTime();
+                    if (isReportFresh(lastReport, entry.lastPoll, entry.period, now)) {
+                        logger.debug("NODE {}: Polling postponed as node reported recently", entry.nodeId);
+                        entry.nextPoll = lastReport + entry.period;
+                        continue;
+                    }
+
+                    // Leave the poll until the next tick if we've used our share of the network
+                    if (airtimeBudget <= 0) {
+                        continue;
+                    }
+                }
+
+                if (entry.nextPoll <= now) {
+                    entry.nextPoll += entry.period;
+                    if (entry.nextPoll <= now) {
+                        entry.nextPoll = now + entry.period;
+                    }
+                }
+                entry.refresh = refresh;
+                entry.refreshTime = 0;
+                entry.lastPoll = now;
+                airtimeBudget -= entry.messages * MESSAGE_AIRTIME;
+                polls.add(entry);
+            }
+        }
+
+        for (PollEntry entry : polls) {
+            int messages;
+            try {
+                messages = entry.handler.poll(entry.refresh);
+            } catch (Exception e) {
+                logger.warn(String.format("NODE %d: Polling aborted due to exception", entry.nodeId), e);
+                continue;
+            }
+            synchronized (this) {
+                airtimeBudget -= (messages - entry.messages) * MESSAGE_AIRTIME;
+                entry.messages = messages;
+            }
+        }
+    }
+
+    /**
+     * Checks if a report makes a poll unnecessary. Reports received shortly after a poll are assumed to be the
+     * response to the poll, so they don't count.
+     *
+     * @param lastReport the time of the report, or 0 if there hasn't been one
+     * @param lastPoll the time of the last poll
+     * @param period the polling period in milliseconds
+     * @param now the current time
+     * @return true if the value reported since the last poll, and within the polling period
+     */
+    public static boolean isReportFresh(long lastReport, long lastPoll, long period, long now) {
+        return lastReport > lastPoll + POLL_RESPONSE_TIME && lastReport + period > now;
+    }
+
+    /**
+     * Gets the current time
+     *
+     * @return time in milliseconds
+     */
+    protected long getTime() {
+        return System.currentTimeMillis();
+    }
+
+    private class PollEntry {
+        private final int nodeId;
+        private PollingHandler handler;
+        private long period;
+        private long nextPoll;
+        private long refreshTime = 0;
+        private long lastPoll = 0;
+        private boolean refresh = false;
+        private int messages = 1;
+
+        PollEntry(int nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        long getDueTime() {
+            if (refreshTime != 0 && refreshTime < nextPoll) {
+                return refreshTime;
+            }
+            return nextPoll;
+        }
+    }
+}
@@ -60,8 +60,6 @@ public class ZWaveProduct {
     }
 
     public boolean match(int testManufacturer, int testType, int testId, String testVersion) {
-        Version vIn = new Version(testVersion);
-
         if (manufacturer != testManufacturer) {
             return false;
         }
@@ -74,16 +72,26 @@ public class ZWaveProduct {
             return false;
         }
 
+        return matchVersion(new Version(testVersion));
+    }
+
+    /**
+     * Checks if a version is within the version range of this product
+     *
+     * @param version the version of the device
+     * @return true if the version is within the range
+     */
+    boolean matchVersion(Version version) {
         // If the node version is less than the database version, then no match
         if (versionMin != null) {
-            if (vIn.compareTo(versionMin) < 0) {
+            if (version.compareTo(versionMin) < 0) {
                 return false;
             }
         }
 
         // If the node version is greater than the database version, then no match
         if (versionMax != null) {
-            if (vIn.compareTo(versionMax) > 0) {
+            if (version.compareTo(versionMax) > 0) {
                 return false;
             }
         }
@@ -0,0 +1,191 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openhab.binding.zwave.internal.protocol.ZWaveNode;
+import org.osgi.framework.Version;
+
+/**
+ * Index of the {@link ZWaveProduct}s in the product database.
+ * <p>
+ * Products are held in buckets keyed on the manufacturer, device type and device ID. Products that match any device
+ * type or ID are held in their own buckets, so a lookup only needs to check the few buckets that could match. Within
+ * each bucket the products are sorted by their minimum version.
+ * <p>
+ * Where more than one product matches a device, the product that was added to the index first is returned. This
+ * gives the same result as checking each product in turn.
+ */
+public class ZWaveProductIndex {
+    private final List<ZWaveProduct> products = new ArrayList<ZWaveProduct>();
+    private final Map<ProductKey, List<IndexEntry>> index = new HashMap<ProductKey, List<IndexEntry>>();
+
+    private static final Comparator<IndexEntry> versionComparator = new Comparator<IndexEntry>() {
+        @Override
+        public int compare(IndexEntry entry1, IndexEntry entry2) {
+            return entry1.product.versionMin.compareTo(entry2.product.versionMin);
+        }
+    };
+
+    /**
+     * Constructor. Creates the index from a list of products.
+     *
+     * @param products the list of {@link ZWaveProduct}s in priority order
+     */
+    public ZWaveProductIndex(List<ZWaveProduct> products) {
+        for (ZWaveProduct product : products) {
+            if (product == null) {
+                continue;
+            }
+
+            ProductKey key = new ProductKey(product.manufacturer, product.type, product.id);
+            List<IndexEntry> bucket = index.get(key);
+            if (bucket == null) {
+                bucket = new ArrayList<IndexEntry>(1);
+                index.put(key, bucket);
+            }
+            bucket.add(new IndexEntry(product, this.products.size()));
+            this.products.add(product);
+        }
+
+        for (List<IndexEntry> bucket : index.values()) {
+            Collections.sort(bucket, versionComparator);
+        }
+    }
+
+    /**
+     * Gets all products in the index
+     *
+     * @return unmodifiable list of {@link ZWaveProduct}s
+     */
+    public List<ZWaveProduct> getProducts() {
+        return Collections.unmodifiableList(products);
+    }
+
+    /**
+     * Gets the number of products in the index
+     *
+     * @return number of products
+     */
+    public int size() {
+        return products.size();
+    }
+
+    /**
+     * Finds the product that matches the node
+     *
+     * @param node the {@link ZWaveNode}
+     * @return the matching {@link ZWaveProduct} or null if there is no match
+     */
+    public ZWaveProduct find(ZWaveNode node) {
+        return find(node.getManufacturer(), node.getDeviceType(), node.getDeviceId(), node.getApplicationVersion());
+    }
+
+    /**
+     * Finds the product that matches the device information
+     *
+     * @param manufacturer the manufacturer ID
+     * @param type the device type
+     * @param id the device ID
+     * @param version the application version
+     * @return the matching {@link ZWaveProduct} or null if there is no match
+     */
+    public ZWaveProduct find(int manufacturer, int type, int id, String version) {
+        if (products.isEmpty()) {
+            return null;
+        }
+
+        Version deviceVersion = new Version(version);
+        IndexEntry found = find(new ProductKey(manufacturer, type, id), deviceVersion, null);
+        found = find(new ProductKey(manufacturer, type, null), deviceVersion, found);
+        found = find(new ProductKey(manufacturer, null, id), deviceVersion, found);
+        found = find(new ProductKey(manufacturer, null, null), deviceVersion, found);
+
+        return found == null ? null : found.product;
+    }
+
+    private IndexEntry find(ProductKey key, Version version, IndexEntry found) {
+        List<IndexEntry> bucket = index.get(key);
+        if (bucket == null) {
+            return found;
+        }
+
+        // Find the first product with a minimum version above the device version.
+        // Only products before this can match.
+        int low = 0;
+        int high = bucket.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (bucket.get(mid).product.versionMin.compareTo(version) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        for (int cnt = 0; cnt < low; cnt++) {
+            IndexEntry entry = bucket.get(cnt);
+            if ((found == null || entry.order < found.order) && entry.product.matchVersion(version)) {
+                found = entry;
+            }
+        }
+        return found;
+    }
+
+    private static class IndexEntry {
+        private final ZWaveProduct product;
+        private final int order;
+
+        IndexEntry(ZWaveProduct product, int order) {
+            this.product = product;
+            this.order = order;
+        }
+    }
+
+    private static class ProductKey {
+        private final int manufacturer;
+        private final Integer type;
+        private final Integer id;
+
+        ProductKey(Integer manufacturer, Integer type, Integer id) {
+            this.manufacturer = manufacturer;
+            this.type = type;
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return (manufacturer * 31 + (type == null ? -1 : type)) * 31 + (id == null ? -1 : id);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ProductKey)) {
+                return false;
+            }
+            ProductKey other = (ProductKey) obj;
+            if (manufacturer != other.manufacturer) {
+                return false;
+            }
+            if (type == null ? other.type != null : !type.equals(other.type)) {
+                return false;
+            }
+            return id == null ? other.id == null : id.equals(other.id);
+        }
+    }
+}
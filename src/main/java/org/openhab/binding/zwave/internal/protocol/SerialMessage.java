@@ -8,15 +8,12 @@
  */
 package org.openhab.binding.zwave.internal.protocol;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
-import org.apache.commons.lang.ArrayUtils;
 import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass.CommandClass;
 import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveSecurityCommandClass;
 import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveWakeUpCommandClass;
@@ -45,6 +42,7 @@ public class SerialMessage {
 
     private long sequenceNumber;
     private byte[] messagePayload;
+    private byte[] messageBuffer;
     private int messageLength = 0;
     private SerialMessageType messageType;
     private int messageClassKey;
@@ -139,10 +137,29 @@ public class SerialMessage {
      * @param buffer the buffer to create the SerialMessage from.
      */
     public SerialMessage(int nodeId, byte[] buffer) {
-        logger.trace("NODE {}: Creating new SerialMessage from buffer = {}", nodeId, SerialMessage.bb2hex(buffer));
-        messageLength = buffer.length - 2; // buffer[1]; TODO: Why is this commented out?!?
-        byte messageCheckSumm = calculateChecksum(buffer);
-        byte messageCheckSummReceived = buffer[messageLength + 1];
+        this(nodeId, buffer, 0, buffer.length);
+    }
+
+    /**
+     * Constructor. Creates a new instance of the SerialMessage class from a frame held within a larger buffer. This
+     * allows the receive buffer to be reused, without copying each frame into its own buffer first.
+     *
+     * @param buffer the buffer holding the frame
+     * @param offset the offset of the frame (ie the SOF) within the buffer
+     * @param length the length of the frame, including the SOF and checksum
+     */
+    public SerialMessage(byte[] buffer, int offset, int length) {
+        this(255, buffer, offset, length);
+    }
+
+    private SerialMessage(int nodeId, byte[] buffer, int offset, int length) {
+        if (logger.isTraceEnabled()) {
+            logger.trace("NODE {}: Creating new SerialMessage from buffer = {}", nodeId,
+                    SerialMessage.bb2hex(buffer, offset, length));
+        }
+        messageLength = length - 2; // buffer[1]; TODO: Why is this commented out?!?
+        byte messageCheckSumm = calculateChecksum(buffer, offset, length);
+        byte messageCheckSummReceived = buffer[offset + messageLength + 1];
         if (messageCheckSumm == messageCheckSummReceived) {
             logger.trace("NODE {}: Checksum matched", nodeId);
             isValid = true;
@@ -153,11 +170,14 @@ public class SerialMessage {
             return;
         }
         this.priority = SerialMessagePriority.High;
-        this.messageType = buffer[2] == 0x00 ? SerialMessageType.Request : SerialMessageType.Response;
-        this.messageClassKey = buffer[3] & 0xFF;
-        this.messagePayload = ArrayUtils.subarray(buffer, 4, messageLength + 1);
+        this.messageType = buffer[offset + 2] == 0x00 ? SerialMessageType.Request : SerialMessageType.Response;
+        this.messageClassKey = buffer[offset + 3] & 0xFF;
+        this.messagePayload = new byte[Math.max(0, messageLength - 3)];
+        System.arraycopy(buffer, offset + 4, messagePayload, 0, messagePayload.length);
         this.messageNode = nodeId;
-        logger.trace("NODE {}: Message payload = {}", getMessageNode(), SerialMessage.bb2hex(messagePayload));
+        if (logger.isTraceEnabled()) {
+            logger.trace("NODE {}: Message payload = {}", getMessageNode(), SerialMessage.bb2hex(messagePayload));
+        }
     }
 
     /**
@@ -167,8 +187,20 @@ public class SerialMessage {
      * @return string the string representation
      */
     static public String bb2hex(byte[] bb) {
+        return bb2hex(bb, 0, bb.length);
+    }
+
+    /**
+     * Converts part of a byte array to a hexadecimal string representation
+     *
+     * @param bb the byte array to convert
+     * @param offset the offset of the first byte to convert
+     * @param length the number of bytes to convert
+     * @return string the string representation
+     */
+    static public String bb2hex(byte[] bb, int offset, int length) {
         StringBuilder result = new StringBuilder();
-        for (int i = 0; i < bb.length; i++) {
+        for (int i = offset; i < offset + length; i++) {
             result.append(String.format("%02X ", bb[i]));
         }
         return result.toString();
@@ -191,11 +223,25 @@ public class SerialMessage {
      * @return the checksum value.
      */
     private static byte calculateChecksum(byte[] buffer) {
+        return calculateChecksum(buffer, 0, buffer.length);
+    }
+
+    /**
+     * Calculates a checksum for a frame within the specified buffer.
+     *
+     * @param buffer the buffer holding the frame.
+     * @param offset the offset of the frame within the buffer.
+     * @param length the length of the frame.
+     * @return the checksum value.
+     */
+    private static byte calculateChecksum(byte[] buffer, int offset, int length) {
         byte checkSum = (byte) 0xFF;
-        for (int i = 1; i < buffer.length - 1; i++) {
+        for (int i = offset + 1; i < offset + length - 1; i++) {
             checkSum = (byte) (checkSum ^ buffer[i]);
         }
-        logger.trace(String.format("Calculated checksum = 0x%02X", checkSum));
+        if (logger.isTraceEnabled()) {
+            logger.trace(String.format("Calculated checksum = 0x%02X", checkSum));
+        }
         return checkSum;
     }
 
@@ -214,45 +260,46 @@ public class SerialMessage {
 
     /**
      * Gets the SerialMessage as a byte array.
+     * The frame is only encoded the first time this is called, and the same buffer is then returned until the
+     * payload, callback ID or transmit options are changed. The returned buffer must not be modified.
      *
      * @return the message
      */
     public byte[] getMessageBuffer() {
-        ByteArrayOutputStream resultByteBuffer = new ByteArrayOutputStream();
-        byte[] result;
-        resultByteBuffer.write((byte) 0x01);
-        final SerialMessageClass messageClass = SerialMessageClass.getMessageClass(messageClassKey);
-        int messageLength = messagePayload.length
-                + (messageClass == SerialMessageClass.SendData && this.messageType == SerialMessageType.Request ? 5
-                        : 3); // calculate and set length
-
-        resultByteBuffer.write((byte) messageLength);
-        resultByteBuffer.write((byte) messageType.ordinal());
-        resultByteBuffer.write((byte) messageClassKey);
-
-        try {
-            resultByteBuffer.write(messagePayload);
-        } catch (IOException e) {
-            logger.debug("Error getting message buffer: ", e);
+        byte[] result = messageBuffer;
+        if (result == null) {
+            result = encodeMessageBuffer();
+            messageBuffer = result;
         }
+        return result;
+    }
 
-        // Callback ID and transmit options for a Send Data message.
-        if (messageClass == SerialMessageClass.SendData && this.messageType == SerialMessageType.Request) {
-            resultByteBuffer.write(transmitOptions);
-            resultByteBuffer.write(callbackId);
+    /**
+     * Encodes the frame, including the SOF, length and checksum.
+     *
+     * @return the encoded frame
+     */
+    private byte[] encodeMessageBuffer() {
+        // Callback ID and transmit options are added for a Send Data request
+        boolean sendData = messageClassKey == SerialMessageClass.SendData.getKey()
+                && messageType == SerialMessageType.Request;
+        int messageLength = messagePayload.length + (sendData ? 5 : 3);
+
+        byte[] result = new byte[messageLength + 2];
+        result[0] = 0x01;
+        result[1] = (byte) messageLength;
+        result[2] = (byte) messageType.ordinal();
+        result[3] = (byte) messageClassKey;
+        System.arraycopy(messagePayload, 0, result, 4, messagePayload.length);
+        if (sendData) {
+            result[messagePayload.length + 4] = (byte) transmitOptions;
+            result[messagePayload.length + 5] = (byte) callbackId;
         }
-
-        // Make space in the array for the checksum
-        resultByteBuffer.write((byte) 0x00);
-
-        // Convert to a byte array
-        result = resultByteBuffer.toByteArray();
-
-        // Calculate the checksum
-        result[result.length - 1] = 0x01;
         result[result.length - 1] = calculateChecksum(result);
 
-        logger.debug("Assembled message buffer = " + SerialMessage.bb2hex(result));
+        if (logger.isTraceEnabled()) {
+            logger.trace("Assembled message buffer = {}", SerialMessage.bb2hex(result));
+        }
         return result;
     }
 
@@ -362,6 +409,7 @@ public class SerialMessage {
      */
     public void setMessagePayload(byte[] messagePayload) {
         this.messagePayload = messagePayload;
+        this.messageBuffer = null;
     }
 
     /**
@@ -380,6 +428,7 @@ public class SerialMessage {
      */
     public void setTransmitOptions(int transmitOptions) {
         this.transmitOptions = transmitOptions;
+        this.messageBuffer = null;
     }
 
     /**
@@ -407,6 +456,7 @@ public class SerialMessage {
      */
     public void setCallbackId(int callbackId) {
         this.callbackId = callbackId;
+        this.messageBuffer = null;
     }
 
     /**
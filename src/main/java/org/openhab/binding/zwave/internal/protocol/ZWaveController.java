@@ -12,14 +12,22 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -39,9 +47,11 @@ import org.openhab.binding.zwave.internal.protocol.event.ZWaveNetworkEvent;
 import org.openhab.binding.zwave.internal.protocol.event.ZWaveNetworkStateEvent;
 import org.openhab.binding.zwave.internal.protocol.event.ZWaveNodeStatusEvent;
 import org.openhab.binding.zwave.internal.protocol.event.ZWaveTransactionCompletedEvent;
+import org.openhab.binding.zwave.internal.protocol.initialization.ZWaveNodeInitPipeline;
 import org.openhab.binding.zwave.internal.protocol.initialization.ZWaveNodeInitStage;
-import org.openhab.binding.zwave.internal.protocol.initialization.ZWaveNodeSerializer;
+import org.openhab.binding.zwave.internal.protocol.initialization.ZWaveNodePersistence;
 import org.openhab.binding.zwave.internal.protocol.security.SecurityEncapsulatedSerialMessage;
+import org.openhab.binding.zwave.internal.protocol.security.ZWaveSecurityEncapsulationScheduler;
 import org.openhab.binding.zwave.internal.protocol.serialmessage.AddNodeMessageClass;
 import org.openhab.binding.zwave.internal.protocol.serialmessage.AssignReturnRouteMessageClass;
 import org.openhab.binding.zwave.internal.protocol.serialmessage.AssignSucReturnRouteMessageClass;
@@ -84,7 +94,8 @@ public class ZWaveController {
     private final static Logger logger = LoggerFactory.getLogger(ZWaveController.class);
 
     private static final int ZWAVE_RESPONSE_TIMEOUT = 5000;
-    private static final int INITIAL_TX_QUEUE_SIZE = 128;
+    private static final int MAX_OUTSTANDING_TRANSACTIONS = 3;
+    private static final long REJECT_BACKOFF = 250;
     private static final int INITIAL_RX_QUEUE_SIZE = 8;
     private static final long WATCHDOG_TIMER_PERIOD = 10000;
 
@@ -93,20 +104,42 @@ public class ZWaveController {
     private static final int TRANSMIT_OPTION_EXPLORE = 0x20;
 
     private final ConcurrentHashMap<Integer, ZWaveNode> zwaveNodes = new ConcurrentHashMap<Integer, ZWaveNode>();
-    private final ArrayList<ZWaveEventListener> zwaveEventListeners = new ArrayList<ZWaveEventListener>();
-    private final PriorityBlockingQueue<SerialMessage> sendQueue = new PriorityBlockingQueue<SerialMessage>(
-            INITIAL_TX_QUEUE_SIZE, new SerialMessage.SerialMessageComparator(this));
+    private final CopyOnWriteArrayList<ZWaveEventListener> zwaveEventListeners =
+            new CopyOnWriteArrayList<ZWaveEventListener>();
+    private final ConcurrentHashMap<Integer, CopyOnWriteArrayList<ZWaveEventListener>> zwaveNodeEventListeners =
+            new ConcurrentHashMap<Integer, CopyOnWriteArrayList<ZWaveEventListener>>();
+    private final ZWaveSendQueue sendQueue = new ZWaveSendQueue(this);
     private final PriorityBlockingQueue<SerialMessage> recvQueue = new PriorityBlockingQueue<SerialMessage>(
             INITIAL_RX_QUEUE_SIZE, new SerialMessage.SerialMessageComparator(this));
     private ZWaveSendThread sendThread;
     private ZWaveInputThread inputThread;
+    private final ZWaveTimerService timerService = new ZWaveTimerService();
+    private final ZWaveNodePersistence nodePersistence = new ZWaveNodePersistence();
+    private final ZWaveEventDispatcher eventDispatcher = new ZWaveEventDispatcher();
+    private final ZWaveSecurityEncapsulationScheduler securityEncapsulationScheduler =
+            new ZWaveSecurityEncapsulationScheduler();
+    private final ZWaveTransactionManager transactionManager = new ZWaveTransactionManager();
+    private final ZWaveNetworkTopology topology = new ZWaveNetworkTopology();
+    private final ZWaveNodeInitPipeline nodeInitPipeline;
+    private final ZWaveCommandProcessor[] messageDispatchers = ZWaveCommandProcessor.createMessageDispatchers();
 
     private final Semaphore sendAllowed = new Semaphore(1);
-    private final Semaphore transactionCompleted = new Semaphore(1);
     private volatile SerialMessage lastSentMessage = null;
-    private long lastMessageStartTime = 0;
     private long longestResponseTime = 0;
     private int zWaveResponseTimeout = ZWAVE_RESPONSE_TIMEOUT;
+    private int maxOutstandingTransactions = MAX_OUTSTANDING_TRANSACTIONS;
+
+    // Outstanding transactions are held by the transaction manager. Only one transaction per node is allowed, so
+    // messages for a node with an outstanding transaction are held until it completes.
+    // The held messages are protected by transactionLock, which is also used to wake the send thread.
+    private final Object transactionLock = new Object();
+
+    // Messages the controller rejected because it was busy. These are resent once another transaction finishes, or
+    // after a short backoff, and messages for the same node are held until then so they stay in order.
+    private final Map<Integer, SerialMessage> rejectedMessages = new LinkedHashMap<Integer, SerialMessage>();
+    private long finishedTransactions = 0;
+    private long rejectFinishedTransactions = 0;
+    private long rejectRetryTime = 0;
     private Timer watchdog;
 
     private String zWaveVersion = "Unknown";
@@ -117,13 +150,14 @@ public class ZWaveController {
     private int deviceType = 0;
     private int deviceId = 0;
     private int ZWaveLibraryType = 0;
-    private int sentDataPointer = 1;
     private boolean setSUC = false;
     private ZWaveDeviceType controllerType = ZWaveDeviceType.UNKNOWN;
     private int sucID = 0;
     private boolean softReset = false;
     private boolean masterController = true;
     private int secureInclusionMode = 0;
+    private volatile boolean noncePrefetch = false;
+    private volatile boolean fastRestart = false;
     private Set<SerialMessageClass> apiCapabilities = new HashSet<>();
 
     private int defaultWakeupPeriod = 0;
@@ -167,6 +201,15 @@ public class ZWaveController {
             zWaveResponseTimeout = timeout;
         }
         logger.info("ZWave timeout is set to {}ms. Soft reset is {}.", zWaveResponseTimeout, softReset);
+
+        setMaxTransactions(config.containsKey("maxTransactions") ? Integer.parseInt(config.get("maxTransactions")) : 0);
+
+        noncePrefetch = "true".equals(config.get("noncePrefetch"));
+        fastRestart = "true".equals(config.get("fastRestart"));
+
+        final Integer initConcurrency = config.containsKey("initConcurrency")
+                ? Integer.parseInt(config.get("initConcurrency")) : 0;
+        nodeInitPipeline = new ZWaveNodeInitPipeline(initConcurrency);
         // this.watchdog = new Timer(true);
         // this.watchdog.schedule(new WatchDogTimerTask(), WATCHDOG_TIMER_PERIOD, WATCHDOG_TIMER_PERIOD);
 
@@ -174,8 +217,7 @@ public class ZWaveController {
 
         // We have a delay in running the initialisation sequence to allow any frames queued in the controller to be
         // received before sending the init sequence. This avoids protocol errors (CAN errors).
-        Timer initTimer = new Timer();
-        initTimer.schedule(new InitializeDelayTask(), 3000);
+        timerService.schedule(new InitializeDelayTask(), 3000);
 
         sendThread = new ZWaveSendThread();
         sendThread.start();
@@ -183,7 +225,7 @@ public class ZWaveController {
         inputThread.start();
     }
 
-    private class InitializeDelayTask extends TimerTask {
+    private class InitializeDelayTask implements Runnable {
         private final Logger logger = LoggerFactory.getLogger(InitializeDelayTask.class);
 
         /**
@@ -234,7 +276,7 @@ public class ZWaveController {
     private void handleIncomingRequestMessage(SerialMessage incomingMessage) {
         logger.trace("Incoming Message type = REQUEST");
 
-        ZWaveCommandProcessor processor = ZWaveCommandProcessor.getMessageDispatcher(incomingMessage.getMessageClass());
+        ZWaveCommandProcessor processor = getMessageDispatcher(incomingMessage);
         if (processor == null) {
             logger.warn(String.format("TODO: Implement processing of Request Message = %s (0x%02X)",
                     incomingMessage.getMessageClass() == null ? "--" : incomingMessage.getMessageClass().getLabel(),
@@ -243,21 +285,33 @@ public class ZWaveController {
             return;
         }
 
+        // Find the transaction this message belongs to.
+        // If we can't correlate it, the processor still gets the last message we sent, but it can't complete anything
+        ZWaveTransaction transaction = transactionManager.getTransactionForRequest(incomingMessage);
+        SerialMessage originalMessage = transaction == null ? lastSentMessage : transaction.getSerialMessage();
+
         boolean result;
         try {
-            result = processor.handleRequest(this, lastSentMessage, incomingMessage);
-            if (processor.isTransactionComplete()) {
-                notifyEventListeners(new ZWaveTransactionCompletedEvent(this.lastSentMessage, result));
-                transactionCompleted.release();
-                logger.trace("Released. Transaction completed permit count -> {}",
-                        transactionCompleted.availablePermits());
+            transactionManager.startFrame(transaction);
+            result = processor.handleRequest(this, originalMessage, incomingMessage);
+            if (transactionManager.isTransactionComplete() && transaction != null) {
+                completeTransaction(transaction, result);
             }
         } catch (ZWaveSerialMessageException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
+            logger.error("Error processing request message: {}", incomingMessage, e);
         }
     }
 
+    /**
+     * Gets the processor for an incoming message
+     *
+     * @param serialMessage the {@link SerialMessage} to process
+     * @return the {@link ZWaveCommandProcessor}, or null if the message class isn't supported
+     */
+    private ZWaveCommandProcessor getMessageDispatcher(SerialMessage serialMessage) {
+        return messageDispatchers[serialMessage.getMessageClassKey() & 0xFF];
+    }
+
     /**
      * Handles a failed SendData request. This can either be because of the
      * stick actively reporting it or because of a time-out of the transaction
@@ -267,7 +321,8 @@ public class ZWaveController {
      *            the original message that was sent
      */
     private void handleFailedSendDataRequest(SerialMessage originalMessage) {
-        new SendDataMessageClass().handleFailedSendDataRequest(this, originalMessage);
+        ((SendDataMessageClass) getMessageDispatcher(originalMessage)).handleFailedSendDataRequest(this,
+                originalMessage);
     }
 
     /**
@@ -280,7 +335,7 @@ public class ZWaveController {
     private void handleIncomingResponseMessage(SerialMessage incomingMessage) throws ZWaveSerialMessageException {
         logger.trace("Incoming Message type = RESPONSE");
 
-        ZWaveCommandProcessor processor = ZWaveCommandProcessor.getMessageDispatcher(incomingMessage.getMessageClass());
+        ZWaveCommandProcessor processor = getMessageDispatcher(incomingMessage);
         if (processor == null) {
             logger.warn(String.format("TODO: Implement processing of Response Message = %s (0x%02X)",
                     incomingMessage.getMessageClass().getLabel(), incomingMessage.getMessageClass().getKey()));
@@ -288,11 +343,24 @@ public class ZWaveController {
             return;
         }
 
-        boolean result = processor.handleResponse(this, lastSentMessage, incomingMessage);
-        if (processor.isTransactionComplete()) {
-            notifyEventListeners(new ZWaveTransactionCompletedEvent(this.lastSentMessage, result));
-            transactionCompleted.release();
-            logger.trace("Released. Transaction completed permit count -> {}", transactionCompleted.availablePermits());
+        // Only one request can be waiting for a response from the controller at any time
+        ZWaveTransaction transaction;
+        synchronized (transactionLock) {
+            transaction = transactionManager.responseReceived();
+            transactionLock.notifyAll();
+        }
+        SerialMessage originalMessage = transaction == null ? lastSentMessage : transaction.getSerialMessage();
+
+        transactionManager.startFrame(transaction);
+        boolean result = processor.handleResponse(this, originalMessage, incomingMessage);
+        if (transaction != null) {
+            if (transactionManager.isTransactionComplete()) {
+                completeTransaction(transaction, result);
+            } else if (incomingMessage.getMessageClass() == SerialMessageClass.SendData && result == false) {
+                // The controller didn't accept the frame, so there won't be a callback.
+                // Free up the node, and retry the message.
+                rejectTransaction(transaction);
+            }
         }
 
         switch (incomingMessage.getMessageClass()) {
@@ -335,24 +403,18 @@ public class ZWaveController {
                 break;
             case SerialApiGetInitData:
                 // this.isConnected = true;
-                final List<Thread> initList = new ArrayList<Thread>();
-                for (Integer nodeId : ((SerialApiGetInitDataMessageClass) processor).getNodes()) {
-                    initList.add(addNode(nodeId));
-                }
+                final List<Integer> nodeIds = new ArrayList<Integer>(
+                        ((SerialApiGetInitDataMessageClass) processor).getNodes());
 
-                // Notify the system that we're up and running
-                new Thread() {
+                // Load all nodes from file before any are started, so the initialisation pipeline knows which
+                // nodes are listening and can start those first.
+                new Thread("ZWaveNodeInit") {
                     @Override
                     public void run() {
-                        for (Thread thread : initList) {
-                            try {
-                                logger.debug("Waiting for init thread {}", thread.getName());
-                                thread.join();
-                                logger.debug("Init thread {} complete", thread.getName());
-                            } catch (InterruptedException e) {
-                            }
-                        }
-                        logger.debug("All init threads complete");
+                        nodeInitPipeline.submitAll(loadNodes(nodeIds));
+
+                        // Notify the system that we're up and running
+                        logger.debug("All nodes loaded");
                         notifyEventListeners(new ZWaveNetworkStateEvent(true));
                     }
                 }.start();
@@ -376,126 +438,190 @@ public class ZWaveController {
     }
 
     /**
-     * Add a node to the controller
+     * Add a node to the controller, and start initialising it straight away
      *
      * @param nodeId
      *            the node number to add
      */
-    private ZWaveInitNodeThread addNode(int nodeId) {
-        ZWaveEvent zEvent = new ZWaveInitializationStateEvent(nodeId, ZWaveNodeInitStage.EMPTYNODE);
-        notifyEventListeners(zEvent);
-
-        ioHandler.deviceDiscovered(nodeId);
-        ZWaveInitNodeThread thread = new ZWaveInitNodeThread(this, nodeId);
+    private void addNode(int nodeId) {
+        ZWaveInitNodeThread thread = new ZWaveInitNodeThread(nodeId);
         thread.setName("Node_" + nodeId + "_init");
         thread.start();
-
-        return thread;
     }
 
     private class ZWaveInitNodeThread extends Thread {
         int nodeId;
-        ZWaveController controller;
 
-        ZWaveInitNodeThread(ZWaveController controller, int nodeId) {
+        ZWaveInitNodeThread(int nodeId) {
             this.nodeId = nodeId;
-            this.controller = controller;
         }
 
         @Override
         public void run() {
             logger.debug("NODE {}: Init node thread start", nodeId);
 
-            // Check if the node exists
-            if (zwaveNodes.get(nodeId) != null) {
-                logger.warn("NODE {}: Attempting to add node that already exists", nodeId);
-                return;
+            ZWaveNode node = createNode(nodeId);
+            if (node != null) {
+                nodeInitPipeline.start(node, ZWaveNodeInitStage.EMPTYNODE);
             }
 
-            boolean serializedOk = false;
-            ZWaveNode node = null;
+            logger.debug("NODE {}: Init node thread finished", nodeId);
+        }
+    }
+
+    /**
+     * Creates the nodes in the network, restoring them from file where possible. The files are loaded in parallel on
+     * a pool of threads, limited to the initialisation concurrency.
+     *
+     * @param nodeIds the node IDs
+     * @return the {@link ZWaveNode}s that were created
+     */
+    private List<ZWaveNode> loadNodes(List<Integer> nodeIds) {
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(nodeIds.size(), nodeInitPipeline.getConcurrency())), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger(0);
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        return new Thread(runnable, "ZWaveNodeLoad-" + count.incrementAndGet());
+                    }
+                });
+
+        List<Future<ZWaveNode>> futures = new ArrayList<Future<ZWaveNode>>();
+        for (final Integer nodeId : nodeIds) {
+            futures.add(executor.submit(new Callable<ZWaveNode>() {
+                @Override
+                public ZWaveNode call() {
+                    ZWaveNode node = createNode(nodeId);
+                    if (node != null && fastRestart) {
+                        node.setFastRestart();
+                    }
+                    return node;
+                }
+            }));
+        }
+        executor.shutdown();
+
+        List<ZWaveNode> nodes = new ArrayList<ZWaveNode>();
+        for (Future<ZWaveNode> future : futures) {
             try {
-                ZWaveNodeSerializer nodeSerializer = new ZWaveNodeSerializer();
-                node = nodeSerializer.DeserializeNode(nodeId);
-            } catch (Exception e) {
-                logger.error("NODE {}: Restore from config: Error deserialising XML file. {}", nodeId, e.toString());
-                node = null;
+                ZWaveNode node = future.get();
+                if (node != null) {
+                    nodes.add(node);
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                logger.error("Error loading node", e.getCause());
             }
+        }
+        return nodes;
+    }
 
-            // Did the node deserialise ok?
-            if (node != null) {
-                // Sanity check the data from the file
-                if (node.getManufacturer() == Integer.MAX_VALUE || node.getHomeId() != controller.homeId
-                        || node.getNodeId() != nodeId) {
-                    logger.warn("NODE {}: Restore from config: Error. Data invalid, ignoring config.", nodeId);
-                    node = null;
-                } else {
-                    // The restore was ok, but we have some work to set up the links that aren't
-                    // made as the deserialiser doesn't call the constructor
-                    serializedOk = true;
-                    logger.debug("NODE {}: Restore from config: Ok.", nodeId);
-                    node.setRestoredFromConfigfile(controller);
-
-                    // Set the controller and node references for all command classes
-                    for (ZWaveCommandClass commandClass : node.getCommandClasses()) {
-                        commandClass.setController(controller);
-                        commandClass.setNode(node);
-
-                        // Handle event handlers
-                        if (commandClass instanceof ZWaveEventListener) {
-                            controller.addEventListener((ZWaveEventListener) commandClass);
-                        }
+    /**
+     * Creates a node and adds it to the controller. If the node was saved to file, it's restored from the file,
+     * otherwise a new node is created. The node's initialisation isn't started.
+     *
+     * @param nodeId
+     *            the node number to add
+     * @return the {@link ZWaveNode}, or null if the node already exists
+     */
+    private ZWaveNode createNode(int nodeId) {
+        notifyEventListeners(new ZWaveInitializationStateEvent(nodeId, ZWaveNodeInitStage.EMPTYNODE));
+
+        ioHandler.deviceDiscovered(nodeId);
+
+        // Check if the node exists
+        if (zwaveNodes.get(nodeId) != null) {
+            logger.warn("NODE {}: Attempting to add node that already exists", nodeId);
+            return null;
+        }
+
+        boolean serializedOk = false;
+        ZWaveNode node = null;
+        try {
+            node = nodePersistence.loadNode(nodeId);
+        } catch (Exception e) {
+            logger.error("NODE {}: Restore from config: Error deserialising XML file. {}", nodeId, e.toString());
+            node = null;
+        }
 
-                        // If this is the multi-instance class, add all command classes for the endpoints
-                        if (commandClass instanceof ZWaveMultiInstanceCommandClass) {
-                            for (ZWaveEndpoint endPoint : ((ZWaveMultiInstanceCommandClass) commandClass)
-                                    .getEndpoints()) {
-                                for (ZWaveCommandClass endpointCommandClass : endPoint.getCommandClasses()) {
-                                    endpointCommandClass.setController(controller);
-                                    endpointCommandClass.setNode(node);
-                                    endpointCommandClass.setEndpoint(endPoint);
-
-                                    // Handle event handlers
-                                    if (endpointCommandClass instanceof ZWaveEventListener) {
-                                        controller.addEventListener((ZWaveEventListener) endpointCommandClass);
-                                    }
+        // Did the node deserialise ok?
+        if (node != null) {
+            // Sanity check the data from the file
+            if (node.getManufacturer() == Integer.MAX_VALUE || node.getHomeId() != homeId
+                    || node.getNodeId() != nodeId) {
+                logger.warn("NODE {}: Restore from config: Error. Data invalid, ignoring config.", nodeId);
+                node = null;
+            } else {
+                // The restore was ok, but we have some work to set up the links that aren't
+                // made as the deserialiser doesn't call the constructor
+                serializedOk = true;
+                logger.debug("NODE {}: Restore from config: Ok.", nodeId);
+                node.setRestoredFromConfigfile(this);
+
+                // Use the saved neighbours until the routing information is updated
+                if (node.getNeighbors() != null) {
+                    topology.updateNode(nodeId, node.isListening(), node.getNeighbors());
+                }
+
+                // Set the controller and node references for all command classes
+                for (ZWaveCommandClass commandClass : node.getCommandClasses()) {
+                    commandClass.setController(this);
+                    commandClass.setNode(node);
+
+                    // Handle event handlers
+                    if (commandClass instanceof ZWaveEventListener) {
+                        addEventListener((ZWaveEventListener) commandClass, nodeId);
+                    }
+
+                    // If this is the multi-instance class, add all command classes for the endpoints
+                    if (commandClass instanceof ZWaveMultiInstanceCommandClass) {
+                        for (ZWaveEndpoint endPoint : ((ZWaveMultiInstanceCommandClass) commandClass).getEndpoints()) {
+                            for (ZWaveCommandClass endpointCommandClass : endPoint.getCommandClasses()) {
+                                endpointCommandClass.setController(this);
+                                endpointCommandClass.setNode(node);
+                                endpointCommandClass.setEndpoint(endPoint);
+
+                                // Handle event handlers
+                                if (endpointCommandClass instanceof ZWaveEventListener) {
+                                    addEventListener((ZWaveEventListener) endpointCommandClass, nodeId);
                                 }
                             }
                         }
                     }
                 }
             }
+        }
 
-            // Create a new node if it wasn't deserialised ok
-            if (node == null) {
-                node = new ZWaveNode(controller.homeId, nodeId, controller);
-            }
-
-            if (nodeId == controller.ownNodeId) {
-                // This is the controller node.
-                // We already know the device type, id, manufacturer so set it here.
-                // It won't be set later as we probably won't request the manufacturer specific data
-                node.setDeviceId(controller.getDeviceId());
-                node.setDeviceType(controller.getDeviceType());
-                node.setManufacturer(controller.getManufactureId());
-            }
-
-            // Place nodes in the local ZWave Controller
-            controller.zwaveNodes.putIfAbsent(nodeId, node);
+        // Create a new node if it wasn't deserialised ok
+        if (node == null) {
+            node = new ZWaveNode(homeId, nodeId, this);
+        }
 
-            // If we loaded from file, then we need to add this to the discovery
-            // since we bypass the initial discovery phases
-            if (serializedOk == true) {
-                ZWaveEvent zEvent = new ZWaveInitializationStateEvent(node.getNodeId(),
-                        ZWaveNodeInitStage.DISCOVERY_COMPLETE);
-                controller.notifyEventListeners(zEvent);
-            }
+        if (nodeId == ownNodeId) {
+            // This is the controller node.
+            // We already know the device type, id, manufacturer so set it here.
+            // It won't be set later as we probably won't request the manufacturer specific data
+            node.setDeviceId(getDeviceId());
+            node.setDeviceType(getDeviceType());
+            node.setManufacturer(getManufactureId());
+        }
 
-            // Kick off the initialisation
-            node.initialiseNode();
+        // Place nodes in the local ZWave Controller
+        zwaveNodes.putIfAbsent(nodeId, node);
 
-            logger.debug("NODE {}: Init node thread finished", nodeId);
+        // If we loaded from file, then we need to add this to the discovery
+        // since we bypass the initial discovery phases
+        if (serializedOk == true) {
+            ZWaveEvent zEvent = new ZWaveInitializationStateEvent(node.getNodeId(),
+                    ZWaveNodeInitStage.DISCOVERY_COMPLETE);
+            notifyEventListeners(zEvent);
         }
+
+        return node;
     }
 
     /**
@@ -554,6 +680,26 @@ public class ZWaveController {
         return this.sendQueue.size();
     }
 
+    /**
+     * Returns the number of messages in the send queue at or above a priority.
+     *
+     * @param lowestPriority the lowest {@link SerialMessagePriority} to count
+     */
+    public int getSendQueueLength(SerialMessagePriority lowestPriority) {
+        return this.sendQueue.size(lowestPriority);
+    }
+
+    /**
+     * Updates the awake state of a battery device in the send queue, so that messages for awake devices are sent
+     * first. This is called by the {@link ZWaveWakeUpCommandClass} whenever the state changes.
+     *
+     * @param nodeId the node ID
+     * @param awake true if the node is awake
+     */
+    public void setNodeAwake(int nodeId, boolean awake) {
+        sendQueue.setNodeAwake(nodeId, awake);
+    }
+
     /**
      * Notify our own event listeners of a ZWave event.
      *
@@ -562,10 +708,19 @@ public class ZWaveController {
      */
     public void notifyEventListeners(ZWaveEvent event) {
         logger.debug("Notifying event listeners: {}", event.getClass().getSimpleName());
-        ArrayList<ZWaveEventListener> copy = new ArrayList<ZWaveEventListener>(zwaveEventListeners);
-        for (ZWaveEventListener listener : copy) {
+        // The listener lists are copy-on-write, so we iterate over a snapshot without copying
+        for (ZWaveEventListener listener : zwaveEventListeners) {
             listener.ZWaveIncomingEvent(event);
         }
+        CopyOnWriteArrayList<ZWaveEventListener> nodeListeners = zwaveNodeEventListeners.get(event.getNodeId());
+        if (nodeListeners != null) {
+            for (ZWaveEventListener listener : nodeListeners) {
+                listener.ZWaveIncomingEvent(event);
+            }
+        }
+
+        // Application listeners are called from the dispatcher so they can't hold up this thread
+        eventDispatcher.dispatch(event);
 
         // We also need to handle the inclusion internally within the controller
         if (event instanceof ZWaveInclusionEvent) {
@@ -652,9 +807,9 @@ public class ZWaveController {
                     // Start initialisation...
                     // If we just included this through the IncludeSlaveFound, then we'll already know the device class
                     if (node.getDeviceClass().getBasicDeviceClass() != Basic.NOT_KNOWN) {
-                        node.initialiseNode(ZWaveNodeInitStage.INCLUSION_START);
+                        nodeInitPipeline.start(node, ZWaveNodeInitStage.INCLUSION_START);
                     } else {
-                        node.initialiseNode(ZWaveNodeInitStage.EMPTYNODE);
+                        nodeInitPipeline.start(node, ZWaveNodeInitStage.EMPTYNODE);
                     }
                     break;
 
@@ -671,10 +826,11 @@ public class ZWaveController {
                         break;
                     }
                     zwaveNodes.remove(incEvent.getNodeId());
+                    nodeInitPipeline.remove(incEvent.getNodeId());
+                    topology.removeNode(incEvent.getNodeId());
 
-                    // Remove the XML file
-                    ZWaveNodeSerializer nodeSerializer = new ZWaveNodeSerializer();
-                    nodeSerializer.DeleteNode(event.getNodeId());
+                    // Remove the saved node
+                    nodePersistence.deleteNode(event.getNodeId());
                     break;
                 default:
                     break;
@@ -688,10 +844,10 @@ public class ZWaveController {
                         break;
                     }
                     this.zwaveNodes.remove(networkEvent.getNodeId());
+                    topology.removeNode(networkEvent.getNodeId());
 
-                    // Remove the XML file
-                    ZWaveNodeSerializer nodeSerializer = new ZWaveNodeSerializer();
-                    nodeSerializer.DeleteNode(event.getNodeId());
+                    // Remove the saved node
+                    nodePersistence.deleteNode(event.getNodeId());
                     break;
                 default:
                     break;
@@ -928,12 +1084,11 @@ public class ZWaveController {
 
     // The following timer class implements a re-triggerable timer to stop the inclusion
     // mode after 30 seconds.
-    private Timer timer = new Timer();
-    private TimerTask timerTask = null;
+    private ScheduledFuture<?> inclusionTimer = null;
     private boolean inclusion = false;
     private boolean exclusion = false;
 
-    private class InclusionTimerTask extends TimerTask {
+    private class InclusionTimerTask implements Runnable {
         @Override
         public void run() {
             logger.debug("Ending inclusion mode.");
@@ -943,15 +1098,12 @@ public class ZWaveController {
 
     private synchronized void startInclusionTimer() {
         // Stop any existing timer
-        if (timerTask != null) {
-            timerTask.cancel();
+        if (inclusionTimer != null) {
+            inclusionTimer.cancel(false);
         }
 
-        // Create the timer task
-        timerTask = new InclusionTimerTask();
-
         // Start the timer for 30 seconds
-        timer.schedule(timerTask, 30000);
+        inclusionTimer = timerService.schedule(new InclusionTimerTask(), 30000);
     }
 
     /**
@@ -972,9 +1124,9 @@ public class ZWaveController {
         exclusion = false;
 
         // Stop the timer
-        if (timerTask != null) {
-            timerTask.cancel();
-            timerTask = null;
+        if (inclusionTimer != null) {
+            inclusionTimer.cancel(false);
+            inclusionTimer = null;
         }
     }
 
@@ -1005,6 +1157,10 @@ public class ZWaveController {
         // If we're resetting, there's no point in queuing messages!
         sendQueue.clear();
         recvQueue.clear();
+        synchronized (transactionLock) {
+            rejectedMessages.clear();
+            rejectRetryTime = 0;
+        }
 
         SerialMessage msg = new ControllerSetDefaultMessageClass().doRequest();
         msg.attempts = 1;
@@ -1081,17 +1237,13 @@ public class ZWaveController {
     }
 
     /**
-     * Returns the next callback ID
+     * Returns the next callback ID. SendData messages are given their callback ID when they're sent, so this is only
+     * needed for other requests that use a callback.
      *
      * @return callback ID
      */
     public int getCallbackId() {
-        if (++sentDataPointer > 0xFF) {
-            sentDataPointer = 1;
-        }
-        logger.trace("Callback ID = {}", sentDataPointer);
-
-        return sentDataPointer;
+        return transactionManager.getNextCallbackId();
     }
 
     /**
@@ -1123,10 +1275,24 @@ public class ZWaveController {
             serialMessage
                     .setTransmitOptions(TRANSMIT_OPTION_ACK | TRANSMIT_OPTION_AUTO_ROUTE | TRANSMIT_OPTION_EXPLORE);
         }
-        serialMessage.setCallbackId(getCallbackId());
         enqueue(serialMessage);
     }
 
+    /**
+     * Resends a SendData message that failed. The message is sent ahead of any newer messages to the same node, so
+     * an older SET can't overwrite a newer one.
+     *
+     * @param serialMessage
+     *            the Serial message to resend.
+     */
+    public void resendData(SerialMessage serialMessage) {
+        synchronized (transactionLock) {
+            // If the transaction is still outstanding, newer messages for the node may be about to be held
+            sendQueue.retry(serialMessage, transactionManager.hasTransaction(serialMessage.getMessageNode()));
+            transactionLock.notifyAll();
+        }
+    }
+
     /**
      * Add a listener for ZWave events to this controller.
      *
@@ -1134,26 +1300,128 @@ public class ZWaveController {
      *            the event listener to add.
      */
     public void addEventListener(ZWaveEventListener eventListener) {
-        synchronized (zwaveEventListeners) {
-            // First, check if this listener is already registered
-            if (zwaveEventListeners.contains(eventListener)) {
-                logger.debug("Event Listener {} already registered", eventListener);
-                return;
-            }
-            zwaveEventListeners.add(eventListener);
+        // Add the listener if it's not already registered
+        if (!zwaveEventListeners.addIfAbsent(eventListener)) {
+            logger.debug("Event Listener {} already registered", eventListener);
+        }
+    }
+
+    /**
+     * Add a listener for ZWave events for a single node to this controller.
+     * The listener will only be called for events where {@link ZWaveEvent#getNodeId()} matches the node.
+     *
+     * @param eventListener
+     *            the event listener to add.
+     * @param nodeId
+     *            the node the listener is interested in.
+     */
+    public void addEventListener(ZWaveEventListener eventListener, int nodeId) {
+        CopyOnWriteArrayList<ZWaveEventListener> nodeListeners = zwaveNodeEventListeners.get(nodeId);
+        if (nodeListeners == null) {
+            zwaveNodeEventListeners.putIfAbsent(nodeId, new CopyOnWriteArrayList<ZWaveEventListener>());
+            nodeListeners = zwaveNodeEventListeners.get(nodeId);
+        }
+
+        // Add the listener if it's not already registered
+        if (!nodeListeners.addIfAbsent(eventListener)) {
+            logger.debug("NODE {}: Event Listener {} already registered", nodeId, eventListener);
         }
     }
 
     /**
      * Remove a listener for ZWave events to this controller.
+     * The listener is removed, whether it was registered for all events or for a single node.
      *
      * @param eventListener
      *            the event listener to remove.
      */
     public void removeEventListener(ZWaveEventListener eventListener) {
-        synchronized (zwaveEventListeners) {
-            zwaveEventListeners.remove(eventListener);
+        zwaveEventListeners.remove(eventListener);
+        for (CopyOnWriteArrayList<ZWaveEventListener> nodeListeners : zwaveNodeEventListeners.values()) {
+            nodeListeners.remove(eventListener);
         }
+        eventDispatcher.removeListener(eventListener);
+    }
+
+    /**
+     * Add an application listener for ZWave events to this controller.
+     * Application listeners are called from the event dispatcher threads rather than the thread that received the
+     * event, so they may take time to process the event without holding up the network.
+     *
+     * @param eventListener
+     *            the event listener to add.
+     */
+    public void addApplicationEventListener(ZWaveEventListener eventListener) {
+        eventDispatcher.addListener(eventListener);
+    }
+
+    /**
+     * Add an application listener for ZWave events for a single node to this controller.
+     * Events for the node are delivered in the order they were received.
+     *
+     * @param eventListener
+     *            the event listener to add.
+     * @param nodeId
+     *            the node the listener is interested in.
+     */
+    public void addApplicationEventListener(ZWaveEventListener eventListener, int nodeId) {
+        eventDispatcher.addListener(eventListener, nodeId);
+    }
+
+    /**
+     * Gets the number of events waiting to be delivered to the application listeners
+     *
+     * @return number of queued events
+     */
+    public int getEventQueueDepth() {
+        return eventDispatcher.getQueueDepth();
+    }
+
+    /**
+     * Gets the time the last event waited before it was delivered to the application listeners
+     *
+     * @return lag in milliseconds
+     */
+    public long getEventLag() {
+        return eventDispatcher.getLastLag();
+    }
+
+    /**
+     * Gets the longest time an event has waited before it was delivered to the application listeners
+     *
+     * @return lag in milliseconds
+     */
+    public long getMaxEventLag() {
+        return eventDispatcher.getMaxLag();
+    }
+
+    /**
+     * Gets the response time histogram for a message class
+     *
+     * @param messageClass the {@link SerialMessageClass}
+     * @return the {@link ZWaveLatencyHistogram}, or null if no transactions of this class have finished
+     */
+    public ZWaveLatencyHistogram getLatencyHistogram(SerialMessageClass messageClass) {
+        return transactionManager.getLatencyHistogram(messageClass);
+    }
+
+    /**
+     * Gets the response time histogram for the messages sent to a node
+     *
+     * @param nodeId the node ID
+     * @return the {@link ZWaveLatencyHistogram}, or null if no transactions to the node have finished
+     */
+    public ZWaveLatencyHistogram getNodeLatencyHistogram(int nodeId) {
+        return transactionManager.getNodeLatencyHistogram(nodeId);
+    }
+
+    /**
+     * Gets the number of transactions that are outstanding
+     *
+     * @return number of transactions
+     */
+    public int getOutstandingTransactions() {
+        return transactionManager.getOutstandingTransactions();
     }
 
     /**
@@ -1290,6 +1558,332 @@ public class ZWaveController {
         return timeOutCount.get();
     }
 
+    /**
+     * Gets the timer service shared by the controller and all nodes
+     *
+     * @return the {@link ZWaveTimerService}
+     */
+    public ZWaveTimerService getTimerService() {
+        return timerService;
+    }
+
+    /**
+     * Checks if secure nodes that are always listening should request nonces before they're needed
+     *
+     * @return true if nonce prefetch is enabled
+     */
+    public boolean isNoncePrefetchEnabled() {
+        return noncePrefetch;
+    }
+
+    /**
+     * Sets whether secure nodes that are always listening should request nonces before they're needed
+     *
+     * @param noncePrefetch true to enable nonce prefetch
+     */
+    public void setNoncePrefetch(boolean noncePrefetch) {
+        this.noncePrefetch = noncePrefetch;
+    }
+
+    /**
+     * Sets the maximum number of SendData transactions that may be outstanding at the same time. Values outside the
+     * range 1 to 8 select the default.
+     *
+     * @param maxTransactions the maximum number of transactions
+     */
+    public void setMaxTransactions(int maxTransactions) {
+        synchronized (transactionLock) {
+            if (maxTransactions >= 1 && maxTransactions <= 8) {
+                maxOutstandingTransactions = maxTransactions;
+            } else {
+                maxOutstandingTransactions = MAX_OUTSTANDING_TRANSACTIONS;
+            }
+
+            // A higher limit may allow waiting messages to be sent
+            transactionLock.notifyAll();
+        }
+        logger.info("ZWave outstanding transaction limit is set to {}.", maxOutstandingTransactions);
+    }
+
+    /**
+     * Sets the maximum number of nodes that are initialised at the same time
+     *
+     * @param initConcurrency the maximum number of nodes, or 0 for the default
+     */
+    public void setInitConcurrency(int initConcurrency) {
+        nodeInitPipeline.setConcurrency(initConcurrency);
+    }
+
+    /**
+     * Sets whether nodes restored from file may skip interviewing the device. This takes effect the next time the
+     * nodes are loaded.
+     *
+     * @param fastRestart true to enable fast restart
+     */
+    public void setFastRestart(boolean fastRestart) {
+        this.fastRestart = fastRestart;
+    }
+
+    /**
+     * Gets the scheduler that runs the security encapsulation for all secure nodes
+     *
+     * @return the {@link ZWaveSecurityEncapsulationScheduler}
+     */
+    public ZWaveSecurityEncapsulationScheduler getSecurityEncapsulationScheduler() {
+        return securityEncapsulationScheduler;
+    }
+
+    /**
+     * Gets the model of the links between nodes in the network. This is updated as routing information is received
+     * for each node.
+     *
+     * @return the {@link ZWaveNetworkTopology}
+     */
+    public ZWaveNetworkTopology getTopology() {
+        return topology;
+    }
+
+    /**
+     * Gets the pipeline that limits the number of nodes initialising at the same time. This also provides the
+     * initialisation progress.
+     *
+     * @return the {@link ZWaveNodeInitPipeline}
+     */
+    public ZWaveNodeInitPipeline getNodeInitPipeline() {
+        return nodeInitPipeline;
+    }
+
+    /**
+     * Gets the number of timers that are currently waiting to run
+     *
+     * @return number of outstanding timeouts
+     */
+    public int getOutstandingTimeouts() {
+        return timerService.getOutstandingTimeouts();
+    }
+
+    /**
+     * Shuts down the controller. This stops the send and receive threads, and cancels all timers.
+     */
+    public void shutdown() {
+        logger.debug("Shutting down ZWave controller");
+        sendThread.interrupt();
+        inputThread.interrupt();
+        timerService.shutdown();
+        nodePersistence.shutdown();
+        eventDispatcher.shutdown();
+        securityEncapsulationScheduler.shutdown();
+        nodeInitPipeline.shutdown();
+    }
+
+    /**
+     * Saves the node to file. The node is written in the background, after a short delay, so that a number of changes
+     * are merged into a single write.
+     *
+     * @param node the {@link ZWaveNode} to save
+     */
+    public void saveNode(ZWaveNode node) {
+        nodePersistence.saveNode(node);
+    }
+
+    /**
+     * Deletes the saved node, and discards any changes waiting to be saved
+     *
+     * @param nodeId the node ID
+     */
+    public void deleteSavedNode(int nodeId) {
+        nodePersistence.deleteNode(nodeId);
+    }
+
+    // Transaction management
+
+    /**
+     * Checks if the incoming message is the expected reply to the request, and if so marks the transaction as
+     * complete. This is called by the message processors.
+     *
+     * @param lastSentMessage the original message we sent to the controller
+     * @param incomingMessage the message received from the controller
+     * @return true if the transaction was completed
+     */
+    public boolean checkTransactionComplete(SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+        return transactionManager.checkTransactionComplete(lastSentMessage, incomingMessage);
+    }
+
+    /**
+     * Marks the transaction for the message being processed as complete. This is called by the message processors.
+     */
+    public void setTransactionComplete() {
+        transactionManager.setTransactionComplete();
+    }
+
+    /**
+     * Releases any messages that were held while the transaction was outstanding, and wakes the send thread.
+     * Must be called with the transactionLock held.
+     *
+     * @param transaction the {@link ZWaveTransaction} that has finished
+     */
+    private void releaseHeldMessages(ZWaveTransaction transaction) {
+        finishedTransactions++;
+        if (transaction.isSendData()) {
+            // Put any messages for this node back in the queue
+            sendQueue.release(transaction.getNodeId());
+        }
+        transactionLock.notifyAll();
+    }
+
+    /**
+     * Completes a transaction, and notifies the listeners.
+     *
+     * @param transaction the {@link ZWaveTransaction} that has completed
+     * @param result the result of the transaction
+     */
+    private void completeTransaction(ZWaveTransaction transaction, boolean result) {
+        long now = System.currentTimeMillis();
+        synchronized (transactionLock) {
+            boolean removed = transactionManager.completeTransaction(transaction, now);
+            releaseHeldMessages(transaction);
+            if (!removed) {
+                return;
+            }
+        }
+
+        long responseTime = now - transaction.getStartTime();
+        if (responseTime > longestResponseTime) {
+            longestResponseTime = responseTime;
+        }
+        logger.debug("NODE {}: Response processed after {}ms/{}ms.", transaction.getNodeId(), responseTime,
+                longestResponseTime);
+
+        notifyEventListeners(new ZWaveTransactionCompletedEvent(transaction.getSerialMessage(), result));
+    }
+
+    /**
+     * Handles a SendData transaction that the controller refused to accept. There will be no callback, so we
+     * remove the transaction and hold the message until the controller is likely to accept it again.
+     * <p>
+     * If other transactions are outstanding, the controller is assumed to be busy with them, and the rejection doesn't
+     * use up an attempt. Messages for the node are held until the rejected message has been resent.
+     *
+     * @param transaction the {@link ZWaveTransaction} that was rejected
+     */
+    private void rejectTransaction(ZWaveTransaction transaction) {
+        SerialMessage serialMessage = transaction.getSerialMessage();
+        synchronized (transactionLock) {
+            if (!transactionManager.removeTransaction(transaction)) {
+                releaseHeldMessages(transaction);
+                return;
+            }
+
+            boolean busy = transactionManager.getOutstandingTransactions() > 0;
+            if (!busy && --serialMessage.attempts < 0) {
+                logger.debug("NODE {}: Too many retries. Discarding message: {}", transaction.getNodeId(),
+                        serialMessage.toString());
+                releaseHeldMessages(transaction);
+                return;
+            }
+
+            logger.debug("NODE {}: Message rejected by controller. Holding until the controller is ready - {} "
+                    + "attempts left!", transaction.getNodeId(), serialMessage.attempts);
+            if (rejectedMessages.isEmpty()) {
+                rejectFinishedTransactions = finishedTransactions;
+                rejectRetryTime = System.currentTimeMillis() + REJECT_BACKOFF;
+            }
+            rejectedMessages.put(transaction.getNodeId(), serialMessage);
+            transactionLock.notifyAll();
+        }
+    }
+
+    /**
+     * Resends messages that were rejected by the controller, once another transaction has finished or the backoff has
+     * expired. Any messages held for the nodes are then released behind the resent messages.
+     */
+    private void resendRejectedMessages() {
+        List<SerialMessage> rejected;
+        synchronized (transactionLock) {
+            if (rejectedMessages.isEmpty() || (finishedTransactions == rejectFinishedTransactions
+                    && System.currentTimeMillis() < rejectRetryTime)) {
+                return;
+            }
+            rejected = new ArrayList<SerialMessage>(rejectedMessages.values());
+            rejectedMessages.clear();
+            rejectRetryTime = 0;
+        }
+
+        for (SerialMessage serialMessage : rejected) {
+            logger.debug("NODE {}: Resending message rejected by controller", serialMessage.getMessageNode());
+            resendData(serialMessage);
+        }
+
+        synchronized (transactionLock) {
+            for (SerialMessage serialMessage : rejected) {
+                sendQueue.release(serialMessage.getMessageNode());
+            }
+            transactionLock.notifyAll();
+        }
+    }
+
+    /**
+     * Checks all outstanding transactions, and handles any that have timed out. Messages held for the nodes are
+     * released after any retries have been queued, so the retries are sent first.
+     */
+    private void handleTransactionTimeouts() {
+        List<ZWaveTransaction> timedOut;
+        synchronized (transactionLock) {
+            timedOut = transactionManager.getTimedOutTransactions(System.currentTimeMillis());
+        }
+        if (timedOut.isEmpty()) {
+            return;
+        }
+
+        for (ZWaveTransaction transaction : timedOut) {
+            handleTransactionTimeout(transaction);
+        }
+
+        synchronized (transactionLock) {
+            for (ZWaveTransaction transaction : timedOut) {
+                releaseHeldMessages(transaction);
+            }
+        }
+    }
+
+    /**
+     * Handles a transaction that has timed out. The message is aborted if required, and is then requeued if it has
+     * attempts remaining.
+     *
+     * @param transaction the {@link ZWaveTransaction} that timed out
+     */
+    private void handleTransactionTimeout(ZWaveTransaction transaction) {
+        SerialMessage timedOutMessage = transaction.getSerialMessage();
+        timeOutCount.incrementAndGet();
+
+        // If this is a SendData message, then we need to abort
+        // This should only be sent if we didn't get the initial ACK!!!
+        // So we need to check the ACK flag and only abort if it's not set
+        if (timedOutMessage.getMessageClass() == SerialMessageClass.SendData && timedOutMessage.isAckPending()) {
+            SerialMessage serialMessage = new SerialMessage(SerialMessageClass.SendDataAbort,
+                    SerialMessageType.Request, SerialMessageClass.SendData, SerialMessagePriority.Immediate);
+            logger.debug("NODE {}: Sending ABORT Message = {}", timedOutMessage.getMessageNode(),
+                    SerialMessage.bb2hex(serialMessage.getMessageBuffer()));
+
+            ioHandler.sendPacket(serialMessage);
+        }
+
+        // Check if we've exceeded the number of retries.
+        // Requeue if we're ok, otherwise discard the message
+        if (--timedOutMessage.attempts >= 0) {
+            logger.debug("NODE {}: Timeout while sending message. Requeueing - {} attempts left!",
+                    timedOutMessage.getMessageNode(), timedOutMessage.attempts);
+            if (timedOutMessage.getMessageClass() == SerialMessageClass.SendData) {
+                handleFailedSendDataRequest(timedOutMessage);
+            } else {
+                enqueue(timedOutMessage);
+            }
+        } else {
+            logger.debug("NODE {}: Too many retries. Discarding message: {}", timedOutMessage.getMessageNode(),
+                    timedOutMessage.toString());
+        }
+    }
+
     // Nested classes and enumerations
 
     /**
@@ -1318,7 +1912,9 @@ public class ZWaveController {
                     }
                     recvMessage = recvQueue.take();
                     logger.debug("Receive queue TAKE: Length={}", recvQueue.size());
-                    logger.debug("Process Message = {}", SerialMessage.bb2hex(recvMessage.getMessageBuffer()));
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Process Message = {}", SerialMessage.bb2hex(recvMessage.getMessageBuffer()));
+                    }
 
                     // logger.debug("Receive ---- do receive");
                     handleIncomingMessage(recvMessage);
@@ -1340,6 +1936,10 @@ public class ZWaveController {
     /**
      * ZWave controller Send Thread. Takes care of sending all messages. It uses a semaphore to synchronize
      * communication with the receiving thread.
+     * <p>
+     * A number of SendData transactions to different nodes can be outstanding at the same time. Messages for a node
+     * that already has a transaction outstanding are held until that transaction completes, so the order of messages
+     * to each node is maintained.
      *
      * @author Jan-Willem Spuij
      * @author Chris Jackson
@@ -1359,6 +1959,7 @@ public class ZWaveController {
         public void run() {
             logger.debug("Starting ZWave thread: Send");
             try {
+                SerialMessage serialMessage = null;
                 while (!interrupted()) {
                     // To avoid sending lots of frames when we still have input frames to process, we wait here until
                     // we've processed all receive frames
@@ -1369,33 +1970,75 @@ public class ZWaveController {
                     }
                     sendAllowed.release();
 
-                    // Take the next message from the send queue
-                    try {
-                        lastSentMessage = sendQueue.take();
-                        logger.debug("Took message from queue for sending. Queue length = {}", sendQueue.size());
-                    } catch (InterruptedException e) {
-                        logger.error("Send thread aborted!!!!!!!! {}", e);
-                        break;
-                    }
+                    handleTransactionTimeouts();
+                    resendRejectedMessages();
 
-                    // Check we got a message
-                    if (lastSentMessage == null) {
-                        continue;
+                    // Wait until we're allowed to start another transaction
+                    long waitTime;
+                    synchronized (transactionLock) {
+                        long now = System.currentTimeMillis();
+                        waitTime = transactionManager.getTransactionWaitTime(now, zWaveResponseTimeout);
+                        if (!rejectedMessages.isEmpty()) {
+                            waitTime = Math.max(1, Math.min(waitTime, rejectRetryTime - now));
+                        }
+                        if (!transactionManager.isTransactionSlotAvailable(serialMessage,
+                                maxOutstandingTransactions)) {
+                            transactionLock.wait(waitTime);
+                            continue;
+                        }
                     }
 
-                    // Get the node for this message
-                    ZWaveNode node = getNode(lastSentMessage.getMessageNode());
-
-                    // If it's a battery device, it needs to be awake, or we queue the frame until it is.
-                    if (node != null && !node.isListening() && !node.isFrequentlyListening()) {
-                        ZWaveWakeUpCommandClass wakeUpCommandClass = (ZWaveWakeUpCommandClass) node
-                                .getCommandClass(CommandClass.WAKE_UP);
+                    // Take the next message from the send queue.
+                    // We only wait until the next transaction times out so that the timeout can be processed.
+                    if (serialMessage == null) {
+                        try {
+                            serialMessage = sendQueue.poll(waitTime, TimeUnit.MILLISECONDS);
+                        } catch (InterruptedException e) {
+                            logger.error("Send thread aborted!!!!!!!! {}", e);
+                            break;
+                        }
 
-                        // If it's a battery operated device, check if it's awake or place in wake-up queue.
-                        if (wakeUpCommandClass != null
-                                && !wakeUpCommandClass.processOutgoingWakeupMessage(lastSentMessage)) {
+                        // Check we got a message
+                        if (serialMessage == null) {
                             continue;
                         }
+                        logger.debug("Took message from queue for sending. Queue length = {}", sendQueue.size());
+
+                        // Get the node for this message
+                        ZWaveNode node = getNode(serialMessage.getMessageNode());
+
+                        // If it's a battery device, it needs to be awake, or we queue the frame until it is.
+                        if (node != null && !node.isListening() && !node.isFrequentlyListening()) {
+                            ZWaveWakeUpCommandClass wakeUpCommandClass = (ZWaveWakeUpCommandClass) node
+                                    .getCommandClass(CommandClass.WAKE_UP);
+
+                            // If it's a battery operated device, check if it's awake or place in wake-up queue.
+                            if (wakeUpCommandClass != null
+                                    && !wakeUpCommandClass.processOutgoingWakeupMessage(serialMessage)) {
+                                serialMessage = null;
+                                continue;
+                            }
+                        }
+
+                        synchronized (transactionLock) {
+                            // If there's already a transaction outstanding for this node, hold the message until
+                            // the transaction completes
+                            if (serialMessage.getMessageClass() == SerialMessageClass.SendData
+                                    && (transactionManager.hasTransaction(serialMessage.getMessageNode())
+                                            || rejectedMessages.containsKey(serialMessage.getMessageNode()))) {
+                                sendQueue.hold(serialMessage);
+                                logger.debug("NODE {}: Transaction outstanding. Holding message.",
+                                        serialMessage.getMessageNode());
+                                serialMessage = null;
+                                continue;
+                            }
+
+                            // Controller requests need to wait for all outstanding transactions to complete
+                            if (!transactionManager.isTransactionSlotAvailable(serialMessage,
+                                    maxOutstandingTransactions)) {
+                                continue;
+                            }
+                        }
                     }
 
                     // A transaction consists of (up to) 4 parts -:
@@ -1410,7 +2053,7 @@ public class ZWaveController {
                     //
                     // A transaction is generally completed at the completion of step 4.
                     // However, for some messages, there may not be a further REQUEST so the transaction is terminated
-                    // at step 2. This is handled by the serial message class processor by setting transactionCompleted.
+                    // at step 2. This is handled by the serial message class processor by completing the transaction.
                     //
                     // It seems that some of these steps may occur out of order.
                     // For example, the requested message at step 4 may be received before the REQUEST at step 3. This
@@ -1418,76 +2061,43 @@ public class ZWaveController {
                     // the controller is lost. The device then sends the requested data, and then finally the ACK is
                     // received. We cover this by setting an 'AckPending' flag in the sent message.
                     // This needs to be cleared before the transaction is completed.
-
-                    // Clear the semaphore used to acknowledge the completed transaction.
-                    transactionCompleted.drainPermits();
-
-                    // Send the REQUEST message TO the controller
-                    ioHandler.sendPacket(lastSentMessage);
-                    lastMessageStartTime = System.currentTimeMillis();
-
-                    if (lastSentMessage instanceof SecurityEncapsulatedSerialMessage) {
-                        // Now that we've sent the encapsulated version, replace lastSentMessage with the original.
-                        // This is required because a resend requires a new nonce to be requested and a new
-                        // security encapsulated message to be built
-                        ((SecurityEncapsulatedSerialMessage) lastSentMessage).setTransmittedAt();
-                        // Take the callbackId from the encapsulated version and copy it to the original message
-                        int callbackId = lastSentMessage.getCallbackId();
-                        lastSentMessage = ((SecurityEncapsulatedSerialMessage) lastSentMessage)
+                    //
+                    // Once we have the RESPONSE at step 2, we can start another SendData transaction to a different
+                    // node. Incoming frames are correlated with their transaction using the callback ID or node ID.
+
+                    // The transaction holds the original message rather than the security encapsulated version.
+                    // This is required because a resend requires a new nonce to be requested and a new
+                    // security encapsulated message to be built
+                    SerialMessage originalMessage = serialMessage;
+                    if (serialMessage instanceof SecurityEncapsulatedSerialMessage) {
+                        originalMessage = ((SecurityEncapsulatedSerialMessage) serialMessage)
                                 .getMessageBeingEncapsulated();
-                        lastSentMessage.setCallbackId(callbackId);
                     }
 
-                    // Now wait for the RESPONSE, or REQUEST message FROM the controller
-                    // This will terminate when the transactionCompleted flag gets set
-                    // So, this might complete on a RESPONSE if there's an error (or no further REQUEST expected) or it
-                    // might complete on a subsequent REQUEST.
-                    try {
-                        if (!transactionCompleted.tryAcquire(1, zWaveResponseTimeout, TimeUnit.MILLISECONDS)) {
-                            timeOutCount.incrementAndGet();
-                            // If this is a SendData message, then we need to abort
-                            // This should only be sent if we didn't get the initial ACK!!!
-                            // So we need to check the ACK flag and only abort if it's not set
-                            if (lastSentMessage.getMessageClass() == SerialMessageClass.SendData
-                                    && lastSentMessage.isAckPending()) {
-                                SerialMessage serialMessage = new SerialMessage(SerialMessageClass.SendDataAbort,
-                                        SerialMessageType.Request, SerialMessageClass.SendData,
-                                        SerialMessagePriority.Immediate);
-                                logger.debug("NODE {}: Sending ABORT Message = {}", lastSentMessage.getMessageNode(),
-                                        SerialMessage.bb2hex(serialMessage.getMessageBuffer()));
-
-                                ioHandler.sendPacket(serialMessage);
-                            }
-
-                            // Check if we've exceeded the number of retries.
-                            // Requeue if we're ok, otherwise discard the message
-                            if (--lastSentMessage.attempts >= 0) {
-                                logger.debug("NODE {}: Timeout while sending message. Requeueing - {} attempts left!",
-                                        lastSentMessage.getMessageNode(), lastSentMessage.attempts);
-                                if (lastSentMessage.getMessageClass() == SerialMessageClass.SendData) {
-                                    handleFailedSendDataRequest(lastSentMessage);
-                                } else {
-                                    enqueue(lastSentMessage);
-                                }
-                            } else {
-                                logger.debug("NODE {}: Too many retries. Discarding message: {}",
-                                        lastSentMessage.getMessageNode(), lastSentMessage.toString());
-                            }
-                            continue;
+                    // Register the transaction before sending so we don't miss a fast response
+                    synchronized (transactionLock) {
+                        // The callback ID is allocated now rather than when the message was queued, so it can't be
+                        // in use by another outstanding transaction. It's copied to the original message so the
+                        // transaction can be correlated with the callback.
+                        if (serialMessage.getMessageClass() == SerialMessageClass.SendData) {
+                            serialMessage.setCallbackId(transactionManager.getNextCallbackId());
+                            originalMessage.setCallbackId(serialMessage.getCallbackId());
                         }
-                        long responseTime = System.currentTimeMillis() - lastMessageStartTime;
-                        if (responseTime > longestResponseTime) {
-                            longestResponseTime = responseTime;
-                        }
-                        logger.debug("NODE {}: Response processed after {}ms/{}ms.", lastSentMessage.getMessageNode(),
-                                responseTime, longestResponseTime);
-                        logger.trace("Acquired. Transaction completed permit count -> {}",
-                                transactionCompleted.availablePermits());
-                    } catch (InterruptedException e) {
-                        logger.error("Send thread aborted!!!!!!!! {}", e);
-                        break;
+                        transactionManager
+                                .startTransaction(new ZWaveTransaction(originalMessage, zWaveResponseTimeout));
+                    }
+                    lastSentMessage = originalMessage;
+
+                    // Send the REQUEST message TO the controller
+                    ioHandler.sendPacket(serialMessage);
+
+                    if (serialMessage instanceof SecurityEncapsulatedSerialMessage) {
+                        ((SecurityEncapsulatedSerialMessage) serialMessage).setTransmittedAt();
                     }
+                    serialMessage = null;
                 }
+            } catch (InterruptedException e) {
+                logger.error("Send thread aborted!!!!!!!! {}", e);
             } catch (Exception e) {
                 logger.error("Exception during ZWave thread: Send", e);
             }
@@ -1495,6 +2105,13 @@ public class ZWaveController {
         }
     }
 
+    /**
+     * Called when the controller acknowledges the last frame we sent
+     */
+    public void incomingAck() {
+        transactionManager.ackReceived();
+    }
+
     public void incomingPacket(SerialMessage packet) {
         // Add the packet to the receive queue
         recvQueue.add(packet);
@@ -0,0 +1,250 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers events to the application listeners (the thing and bridge handlers) on a pool of worker threads.
+ * <p>
+ * The protocol listeners (command classes, initialisation etc) are still called directly by the controller, as they
+ * need to process events before the next frame is handled. Application listeners may be slow (eg updating the
+ * configuration of a thing), so they are called from the worker threads so they can't hold up the serial link.
+ * <p>
+ * Each node is always handled by the same worker, so events for a node are delivered in the order they were
+ * received. Listeners for all events (eg the controller handler and discovery) are called from a single separate
+ * worker, so they receive every event in order and are never called from more than one thread at once. The number of
+ * events waiting to be delivered, and the time they have waited, are available as metrics.
+ */
+public class ZWaveEventDispatcher {
+    private final static Logger logger = LoggerFactory.getLogger(ZWaveEventDispatcher.class);
+
+    private final static int DEFAULT_WORKERS = 4;
+
+    // Events waiting longer than this are logged
+    private final static long LAG_WARNING = 5000;
+
+    private final CopyOnWriteArrayList<ZWaveEventListener> eventListeners =
+            new CopyOnWriteArrayList<ZWaveEventListener>();
+    private final ConcurrentHashMap<Integer, CopyOnWriteArrayList<ZWaveEventListener>> nodeEventListeners =
+            new ConcurrentHashMap<Integer, CopyOnWriteArrayList<ZWaveEventListener>>();
+
+    private final Worker[] workers;
+    private final Worker globalWorker;
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicLong eventsDelivered = new AtomicLong();
+    private volatile long lastLag = 0;
+    private volatile long maxLag = 0;
+
+    /**
+     * Constructor. Creates the dispatcher with the default number of workers.
+     */
+    public ZWaveEventDispatcher() {
+        this(DEFAULT_WORKERS);
+    }
+
+    /**
+     * Constructor. Creates the dispatcher and starts the workers.
+     *
+     * @param workerCount the number of worker threads for the node listeners
+     */
+    public ZWaveEventDispatcher(int workerCount) {
+        workers = new Worker[workerCount];
+        for (int cnt = 0; cnt < workerCount; cnt++) {
+            workers[cnt] = new Worker("ZWaveEvent-" + cnt);
+            workers[cnt].start();
+        }
+        globalWorker = new Worker("ZWaveEvent-global");
+        globalWorker.start();
+    }
+
+    /**
+     * Adds a listener for all events. The listener is always called from the same thread.
+     *
+     * @param eventListener the listener to add
+     */
+    public void addListener(ZWaveEventListener eventListener) {
+        if (!eventListeners.addIfAbsent(eventListener)) {
+            logger.debug("Event Listener {} already registered", eventListener);
+        }
+    }
+
+    /**
+     * Adds a listener for the events from a single node
+     *
+     * @param eventListener the listener to add
+     * @param nodeId the node the listener is interested in
+     */
+    public void addListener(ZWaveEventListener eventListener, int nodeId) {
+        CopyOnWriteArrayList<ZWaveEventListener> nodeListeners = nodeEventListeners.get(nodeId);
+        if (nodeListeners == null) {
+            nodeEventListeners.putIfAbsent(nodeId, new CopyOnWriteArrayList<ZWaveEventListener>());
+            nodeListeners = nodeEventListeners.get(nodeId);
+        }
+
+        if (!nodeListeners.addIfAbsent(eventListener)) {
+            logger.debug("NODE {}: Event Listener {} already registered", nodeId, eventListener);
+        }
+    }
+
+    /**
+     * Removes a listener, whether it was registered for all events or for a single node.
+     * Events already queued are not delivered to the listener once it's removed.
+     *
+     * @param eventListener the listener to remove
+     */
+    public void removeListener(ZWaveEventListener eventListener) {
+        eventListeners.remove(eventListener);
+        for (CopyOnWriteArrayList<ZWaveEventListener> nodeListeners : nodeEventListeners.values()) {
+            nodeListeners.remove(eventListener);
+        }
+    }
+
+    /**
+     * Queues an event for delivery to the listeners
+     *
+     * @param event the {@link ZWaveEvent}
+     */
+    public void dispatch(ZWaveEvent event) {
+        queueDepth.incrementAndGet();
+        AtomicInteger remaining = new AtomicInteger(2);
+        globalWorker.queue.add(new Delivery(event, true, remaining));
+        workers[(event.getNodeId() & 0x7fffffff) % workers.length].queue.add(new Delivery(event, false, remaining));
+    }
+
+    /**
+     * Gets the number of events waiting to be delivered
+     *
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * Gets the time the last delivered event waited in the queue
+     *
+     * @return lag in milliseconds
+     */
+    public long getLastLag() {
+        return lastLag;
+    }
+
+    /**
+     * Gets the longest time any event has waited in the queue
+     *
+     * @return lag in milliseconds
+     */
+    public long getMaxLag() {
+        return maxLag;
+    }
+
+    /**
+     * Gets the total number of events delivered
+     *
+     * @return number of events
+     */
+    public long getEventsDelivered() {
+        return eventsDelivered.get();
+    }
+
+    /**
+     * Stops the workers. Events still in the queue are discarded.
+     */
+    public void shutdown() {
+        for (Worker worker : workers) {
+            worker.interrupt();
+        }
+        globalWorker.interrupt();
+    }
+
+    private void deliver(Delivery delivery) {
+        long lag = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - delivery.queuedTime);
+        lastLag = lag;
+        if (lag > maxLag) {
+            maxLag = lag;
+        }
+        if (lag > LAG_WARNING) {
+            logger.debug("NODE {}: Event delivery delayed by {}ms", delivery.event.getNodeId(), lag);
+        }
+
+        if (delivery.global) {
+            for (ZWaveEventListener listener : eventListeners) {
+                notifyListener(listener, delivery.event);
+            }
+        } else {
+            CopyOnWriteArrayList<ZWaveEventListener> nodeListeners = nodeEventListeners
+                    .get(delivery.event.getNodeId());
+            if (nodeListeners != null) {
+                for (ZWaveEventListener listener : nodeListeners) {
+                    notifyListener(listener, delivery.event);
+                }
+            }
+        }
+
+        // The event is delivered once both the global and the node worker have handled it
+        if (delivery.remaining.decrementAndGet() == 0) {
+            eventsDelivered.incrementAndGet();
+            queueDepth.decrementAndGet();
+        }
+    }
+
+    private void notifyListener(ZWaveEventListener listener, ZWaveEvent event) {
+        try {
+            listener.ZWaveIncomingEvent(event);
+        } catch (Exception e) {
+            logger.error("NODE {}: Exception delivering {}", event.getNodeId(), event.getClass().getSimpleName(), e);
+        }
+    }
+
+    private static class Delivery {
+        private final ZWaveEvent event;
+        private final boolean global;
+        private final AtomicInteger remaining;
+        private final long queuedTime;
+
+        Delivery(ZWaveEvent event, boolean global, AtomicInteger remaining) {
+            this.event = event;
+            this.global = global;
+            this.remaining = remaining;
+            this.queuedTime = System.nanoTime();
+        }
+    }
+
+    private class Worker extends Thread {
+        private final BlockingQueue<Delivery> queue = new LinkedBlockingQueue<Delivery>();
+
+        Worker(String name) {
+            super(name);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!interrupted()) {
+                    deliver(queue.take());
+                }
+            } catch (InterruptedException e) {
+            }
+            logger.debug("Stopped ZWave thread: {}", getName());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Splits the byte stream received from the controller into frames.
+ * <p>
+ * Data is read from the stream in bulk into a single receive buffer that is reused for the life of the decoder.
+ * Frames are passed to the {@link FrameHandler} in place, as an offset and length within the receive buffer, so no
+ * buffers are allocated while receiving. The handler must not hold on to the buffer once it returns.
+ * <p>
+ * The largest frame is only 66 bytes, so rather than wrapping around, any partial frame left at the end of the buffer
+ * is moved back to the start before the next read.
+ */
+public class ZWaveFrameDecoder {
+    public static final int SOF = 0x01;
+    public static final int ACK = 0x06;
+    public static final int NAK = 0x15;
+    public static final int CAN = 0x18;
+
+    private static final int BUFFER_SIZE = 256;
+    private static final int MIN_FRAME_LENGTH = 4;
+    private static final int MAX_FRAME_LENGTH = 64;
+
+    /**
+     * Interface for receiving the decoded frames
+     */
+    public interface FrameHandler {
+        /**
+         * Called when a complete data frame is received. The checksum has not been checked.
+         *
+         * @param buffer the receive buffer
+         * @param offset the offset of the SOF in the buffer
+         * @param length the length of the frame, including the SOF and checksum
+         */
+        void frameReceived(byte[] buffer, int offset, int length);
+
+        /**
+         * Called when a single byte ACK, NAK or CAN frame is received
+         *
+         * @param control the control byte
+         */
+        void controlReceived(int control);
+
+        /**
+         * Called when an unexpected byte is received outside of a frame
+         *
+         * @param value the byte received
+         */
+        void outOfFrameReceived(int value);
+    }
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int readPosition = 0;
+    private int writePosition = 0;
+
+    /**
+     * Reads all available data from the stream into the receive buffer. This blocks according to the timeout
+     * configured on the stream.
+     *
+     * @param inputStream the {@link InputStream} to read from
+     * @return the number of bytes read, 0 or less if nothing was received before the timeout
+     * @throws IOException
+     */
+    public int read(InputStream inputStream) throws IOException {
+        compact();
+        int count = inputStream.read(buffer, writePosition, buffer.length - writePosition);
+        if (count > 0) {
+            writePosition += count;
+        }
+        return count;
+    }
+
+    /**
+     * Adds data to the receive buffer
+     *
+     * @param data the data to add
+     * @param offset the offset of the data in the array
+     * @param length the number of bytes to add
+     */
+    public void write(byte[] data, int offset, int length) {
+        compact();
+        int count = Math.min(length, buffer.length - writePosition);
+        System.arraycopy(data, offset, buffer, writePosition, count);
+        writePosition += count;
+    }
+
+    /**
+     * Processes the receive buffer, passing all complete frames to the handler. Any partial frame remains in the
+     * buffer until more data is received.
+     *
+     * @param handler the {@link FrameHandler} to receive the frames
+     */
+    public void process(FrameHandler handler) {
+        while (readPosition < writePosition) {
+            int value = buffer[readPosition] & 0xff;
+            if (value != SOF) {
+                readPosition++;
+                switch (value) {
+                    case ACK:
+                    case NAK:
+                    case CAN:
+                        handler.controlReceived(value);
+                        break;
+                    default:
+                        handler.outOfFrameReceived(value);
+                        break;
+                }
+                continue;
+            }
+
+            // Wait for the length
+            if (writePosition - readPosition < 2) {
+                break;
+            }
+
+            // Sanity check the frame length. If it's wrong, drop the SOF and resynchronise
+            int frameLength = buffer[readPosition + 1] & 0xff;
+            if (frameLength < MIN_FRAME_LENGTH || frameLength > MAX_FRAME_LENGTH) {
+                readPosition++;
+                handler.outOfFrameReceived(SOF);
+                continue;
+            }
+
+            // Wait for the rest of the frame
+            frameLength += 2;
+            if (writePosition - readPosition < frameLength) {
+                break;
+            }
+
+            handler.frameReceived(buffer, readPosition, frameLength);
+            readPosition += frameLength;
+        }
+    }
+
+    /**
+     * Discards any partial frame. This is called when the receive times out part way through a frame.
+     *
+     * @return true if there was a partial frame in the buffer
+     */
+    public boolean reset() {
+        boolean partial = readPosition != writePosition;
+        readPosition = 0;
+        writePosition = 0;
+        return partial;
+    }
+
+    private void compact() {
+        if (readPosition == 0) {
+            return;
+        }
+        System.arraycopy(buffer, readPosition, buffer, 0, writePosition - readPosition);
+        writePosition -= readPosition;
+        readPosition = 0;
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of transaction response times.
+ * <p>
+ * Response times are counted in fixed buckets, so recording a time doesn't allocate and the histogram can be read
+ * while transactions are being recorded. Transactions that time out are counted separately.
+ */
+public class ZWaveLatencyHistogram {
+    // Upper limit of each bucket in milliseconds. The last bucket holds everything slower.
+    private final static long[] BUCKET_LIMITS = { 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 };
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_LIMITS.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private volatile long max = 0;
+
+    /**
+     * Records the response time of a completed transaction
+     *
+     * @param responseTime the response time in milliseconds
+     */
+    public void record(long responseTime) {
+        int bucket = 0;
+        while (bucket < BUCKET_LIMITS.length && responseTime > BUCKET_LIMITS[bucket]) {
+            bucket++;
+        }
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        total.addAndGet(responseTime);
+        if (responseTime > max) {
+            max = responseTime;
+        }
+    }
+
+    /**
+     * Records a transaction that timed out
+     */
+    public void recordTimeout() {
+        timeouts.incrementAndGet();
+    }
+
+    /**
+     * Gets the number of completed transactions
+     *
+     * @return number of transactions
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Gets the number of transactions that timed out
+     *
+     * @return number of timeouts
+     */
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    /**
+     * Gets the average response time
+     *
+     * @return average response time in milliseconds, or 0 if nothing has been recorded
+     */
+    public long getAverage() {
+        long completed = count.get();
+        return completed == 0 ? 0 : total.get() / completed;
+    }
+
+    /**
+     * Gets the longest response time
+     *
+     * @return response time in milliseconds
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Gets the upper limit of the bucket that the given percentage of response times fall within
+     *
+     * @param percentile the percentile (0 to 100)
+     * @return response time in milliseconds, or -1 if it's slower than the largest bucket
+     */
+    public long getPercentile(int percentile) {
+        long target = (count.get() * percentile + 99) / 100;
+        if (target == 0) {
+            return 0;
+        }
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_LIMITS.length; bucket++) {
+            seen += buckets.get(bucket);
+            if (seen >= target) {
+                return BUCKET_LIMITS[bucket];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the upper limit of each bucket. There is one more bucket than limits, which holds all slower times.
+     *
+     * @return bucket limits in milliseconds
+     */
+    public static long[] getBucketLimits() {
+        return BUCKET_LIMITS.clone();
+    }
+
+    /**
+     * Gets the number of response times in each bucket
+     *
+     * @return the bucket counts
+     */
+    public long[] getBuckets() {
+        long[] values = new long[buckets.length()];
+        for (int bucket = 0; bucket < values.length; bucket++) {
+            values[bucket] = buckets.get(bucket);
+        }
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + ", timeouts=" + getTimeouts() + ", avg=" + getAverage() + "ms, 95%<="
+                + getPercentile(95) + "ms, max=" + getMax() + "ms";
+    }
+}
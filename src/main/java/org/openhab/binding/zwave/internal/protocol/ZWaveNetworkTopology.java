@@ -0,0 +1,374 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Model of the links between the nodes in the network.
+ * <p>
+ * A Z-Wave network has at most 232 nodes, so the neighbours of each node are held in a bitset of four longs, and
+ * searches through the network are done a whole row at a time. The model is updated one node at a time as the routing
+ * information for each node is received from the controller. A link between two nodes is assumed to exist if either
+ * node reports the other as a neighbour.
+ * <p>
+ * Only repeaters (always listening nodes, including the controller) can forward messages, so a route may only pass
+ * through repeaters. Battery devices can be the end of a route, but never the middle.
+ */
+public class ZWaveNetworkTopology {
+    public final static int MAX_NODES = 232;
+
+    private final static int WORDS = (MAX_NODES >> 6) + 1;
+
+    // Neighbours as reported by each node, and the resulting links in both directions
+    private final long[][] reported = new long[MAX_NODES + 1][WORDS];
+    private final long[][] links = new long[MAX_NODES + 1][WORDS];
+    private final long[] repeaters = new long[WORDS];
+
+    /**
+     * Updates the neighbours of a node. This replaces any neighbours previously reported by the node.
+     *
+     * @param nodeId the node ID
+     * @param repeater true if the node can forward messages for other nodes
+     * @param neighbors the node IDs of the neighbours
+     */
+    public synchronized void updateNode(int nodeId, boolean repeater, Collection<Integer> neighbors) {
+        if (!isValid(nodeId)) {
+            return;
+        }
+
+        Arrays.fill(reported[nodeId], 0);
+        for (Integer neighbor : neighbors) {
+            if (isValid(neighbor) && neighbor != nodeId) {
+                set(reported[nodeId], neighbor);
+            }
+        }
+
+        if (repeater) {
+            set(repeaters, nodeId);
+        } else {
+            clear(repeaters, nodeId);
+        }
+        updateLinks(nodeId);
+    }
+
+    /**
+     * Removes a node and all its links
+     *
+     * @param nodeId the node ID
+     */
+    public synchronized void removeNode(int nodeId) {
+        if (!isValid(nodeId)) {
+            return;
+        }
+
+        Arrays.fill(reported[nodeId], 0);
+        for (int node = 1; node <= MAX_NODES; node++) {
+            clear(reported[node], nodeId);
+        }
+        clear(repeaters, nodeId);
+        updateLinks(nodeId);
+    }
+
+    /**
+     * Removes all nodes
+     */
+    public synchronized void clear() {
+        for (int node = 0; node <= MAX_NODES; node++) {
+            Arrays.fill(reported[node], 0);
+            Arrays.fill(links[node], 0);
+        }
+        Arrays.fill(repeaters, 0);
+    }
+
+    /**
+     * Checks if there's a direct link between two nodes
+     *
+     * @param node1 the first node ID
+     * @param node2 the second node ID
+     * @return true if the nodes are neighbours
+     */
+    public synchronized boolean isNeighbor(int node1, int node2) {
+        if (!isValid(node1) || !isValid(node2)) {
+            return false;
+        }
+        return get(links[node1], node2);
+    }
+
+    /**
+     * Gets the neighbours of a node
+     *
+     * @param nodeId the node ID
+     * @return list of node IDs, in order
+     */
+    public synchronized List<Integer> getNeighbors(int nodeId) {
+        if (!isValid(nodeId)) {
+            return new ArrayList<Integer>();
+        }
+        return toList(links[nodeId]);
+    }
+
+    /**
+     * Gets the minimum number of hops between two nodes. A route can only pass through repeaters.
+     *
+     * @param fromNodeId the node the route starts at
+     * @param toNodeId the node at the end of the route
+     * @return the number of hops, 0 if the nodes are the same, or -1 if there's no route between the nodes
+     */
+    public synchronized int getHopCount(int fromNodeId, int toNodeId) {
+        if (!isValid(fromNodeId) || !isValid(toNodeId)) {
+            return -1;
+        }
+        if (fromNodeId == toNodeId) {
+            return 0;
+        }
+
+        long[] visited = new long[WORDS];
+        long[] frontier = new long[WORDS];
+        long[] next = new long[WORDS];
+        set(visited, fromNodeId);
+        set(frontier, fromNodeId);
+
+        for (int hops = 1; expand(fromNodeId, frontier, visited, next); hops++) {
+            if (get(next, toNodeId)) {
+                return hops;
+            }
+            long[] swap = frontier;
+            frontier = next;
+            next = swap;
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the nodes that can be reached from a node
+     *
+     * @param rootNodeId the node ID the routes start at - normally the controller
+     * @return list of node IDs, in order. This doesn't include the root node.
+     */
+    public synchronized List<Integer> getReachableNodes(int rootNodeId) {
+        if (!isValid(rootNodeId)) {
+            return new ArrayList<Integer>();
+        }
+        long[] reachable = getReachable(rootNodeId, 0);
+        clear(reachable, rootNodeId);
+        return toList(reachable);
+    }
+
+    /**
+     * Gets the articulation points of the repeater backbone. These are the repeaters that split the backbone into
+     * separate parts if they fail. Battery devices hanging off a single repeater aren't considered - use
+     * {@link #getSinglePointsOfFailure(int)} to find every node that loses its route.
+     *
+     * @return list of node IDs, in order
+     */
+    public synchronized List<Integer> getArticulationPoints() {
+        int[] discovery = new int[MAX_NODES + 1];
+        int[] low = new int[MAX_NODES + 1];
+        long[] points = new long[WORDS];
+        int[] time = new int[] { 0 };
+
+        for (int node = 1; node <= MAX_NODES; node++) {
+            if (get(repeaters, node) && discovery[node] == 0) {
+                findArticulationPoints(node, 0, discovery, low, points, time);
+            }
+        }
+        return toList(points);
+    }
+
+    private void findArticulationPoints(int node, int parent, int[] discovery, int[] low, long[] points, int[] time) {
+        discovery[node] = low[node] = ++time[0];
+        int children = 0;
+
+        for (int neighbor = nextSet(links[node], 1); neighbor != -1; neighbor = nextSet(links[node], neighbor + 1)) {
+            if (!get(repeaters, neighbor)) {
+                continue;
+            }
+            if (discovery[neighbor] == 0) {
+                children++;
+                findArticulationPoints(neighbor, node, discovery, low, points, time);
+                low[node] = Math.min(low[node], low[neighbor]);
+                if (parent != 0 && low[neighbor] >= discovery[node]) {
+                    set(points, node);
+                }
+            } else if (neighbor != parent) {
+                low[node] = Math.min(low[node], discovery[neighbor]);
+            }
+        }
+
+        if (parent == 0 && children > 1) {
+            set(points, node);
+        }
+    }
+
+    /**
+     * Gets the nodes that can only be reached through a repeater. If the repeater fails, these nodes have no route.
+     *
+     * @param rootNodeId the node ID the routes start at - normally the controller
+     * @param repeaterNodeId the repeater node ID
+     * @return list of node IDs, in order
+     */
+    public synchronized List<Integer> getDependentNodes(int rootNodeId, int repeaterNodeId) {
+        if (!isValid(rootNodeId) || !isValid(repeaterNodeId) || rootNodeId == repeaterNodeId) {
+            return new ArrayList<Integer>();
+        }
+        return toList(getDependents(getReachable(rootNodeId, 0), rootNodeId, repeaterNodeId));
+    }
+
+    /**
+     * Gets all the repeaters that are a single point of failure, with the nodes that depend on them
+     *
+     * @param rootNodeId the node ID the routes start at - normally the controller
+     * @return map of repeater node ID to the list of nodes that can only be reached through it
+     */
+    public synchronized Map<Integer, List<Integer>> getSinglePointsOfFailure(int rootNodeId) {
+        Map<Integer, List<Integer>> failures = new TreeMap<Integer, List<Integer>>();
+        if (!isValid(rootNodeId)) {
+            return failures;
+        }
+
+        long[] reachable = getReachable(rootNodeId, 0);
+        for (int node = nextSet(reachable, 1); node != -1; node = nextSet(reachable, node + 1)) {
+            if (node == rootNodeId || !get(repeaters, node)) {
+                continue;
+            }
+            long[] dependents = getDependents(reachable, rootNodeId, node);
+            if (!isEmpty(dependents)) {
+                failures.put(node, toList(dependents));
+            }
+        }
+        return failures;
+    }
+
+    private long[] getDependents(long[] reachable, int rootNodeId, int repeaterNodeId) {
+        long[] remaining = getReachable(rootNodeId, repeaterNodeId);
+        long[] dependents = new long[WORDS];
+        for (int word = 0; word < WORDS; word++) {
+            dependents[word] = reachable[word] & ~remaining[word];
+        }
+        clear(dependents, repeaterNodeId);
+        return dependents;
+    }
+
+    /**
+     * Finds all nodes that can be reached from the root without passing through the excluded node
+     */
+    private long[] getReachable(int rootNodeId, int excludedNodeId) {
+        long[] visited = new long[WORDS];
+        long[] frontier = new long[WORDS];
+        long[] next = new long[WORDS];
+        set(visited, rootNodeId);
+        set(frontier, rootNodeId);
+        if (excludedNodeId != 0) {
+            set(visited, excludedNodeId);
+        }
+
+        while (expand(rootNodeId, frontier, visited, next)) {
+            long[] swap = frontier;
+            frontier = next;
+            next = swap;
+        }
+        if (excludedNodeId != 0) {
+            clear(visited, excludedNodeId);
+        }
+        return visited;
+    }
+
+    /**
+     * Moves the search on by one hop. The new nodes are added to the visited set and returned in next.
+     *
+     * @return true if any new nodes were found
+     */
+    private boolean expand(int rootNodeId, long[] frontier, long[] visited, long[] next) {
+        Arrays.fill(next, 0);
+        for (int node = nextSet(frontier, 1); node != -1; node = nextSet(frontier, node + 1)) {
+            if (node != rootNodeId && !get(repeaters, node)) {
+                continue;
+            }
+            for (int word = 0; word < WORDS; word++) {
+                next[word] |= links[node][word];
+            }
+        }
+
+        boolean found = false;
+        for (int word = 0; word < WORDS; word++) {
+            next[word] &= ~visited[word];
+            visited[word] |= next[word];
+            found |= next[word] != 0;
+        }
+        return found;
+    }
+
+    private void updateLinks(int nodeId) {
+        for (int node = 1; node <= MAX_NODES; node++) {
+            if (get(reported[nodeId], node) || get(reported[node], nodeId)) {
+                set(links[nodeId], node);
+                set(links[node], nodeId);
+            } else {
+                clear(links[nodeId], node);
+                clear(links[node], nodeId);
+            }
+        }
+    }
+
+    private static boolean isValid(int nodeId) {
+        return nodeId >= 1 && nodeId <= MAX_NODES;
+    }
+
+    private static boolean get(long[] bits, int nodeId) {
+        return (bits[nodeId >> 6] & (1L << nodeId)) != 0;
+    }
+
+    private static void set(long[] bits, int nodeId) {
+        bits[nodeId >> 6] |= 1L << nodeId;
+    }
+
+    private static void clear(long[] bits, int nodeId) {
+        bits[nodeId >> 6] &= ~(1L << nodeId);
+    }
+
+    private static boolean isEmpty(long[] bits) {
+        for (long word : bits) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int nextSet(long[] bits, int from) {
+        int word = from >> 6;
+        if (word >= WORDS) {
+            return -1;
+        }
+        long remaining = bits[word] & (-1L << from);
+        while (true) {
+            if (remaining != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(remaining);
+            }
+            if (++word == WORDS) {
+                return -1;
+            }
+            remaining = bits[word];
+        }
+    }
+
+    private static List<Integer> toList(long[] bits) {
+        List<Integer> nodes = new ArrayList<Integer>();
+        for (int node = nextSet(bits, 1); node != -1; node = nextSet(bits, node + 1)) {
+            nodes.add(node);
+        }
+        return nodes;
+    }
+}
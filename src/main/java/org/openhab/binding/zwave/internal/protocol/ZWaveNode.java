@@ -147,10 +147,10 @@ public class ZWaveNode {
 
         this.controller = controller;
 
-        // Create the initialisation advancer and tell it we've loaded from file
+        // Create the initialisation advancer and tell it we've loaded from file.
+        // The initialisation is started by the controller's initialisation pipeline.
         nodeInitStageAdvancer = new ZWaveNodeInitStageAdvancer(this, controller);
         nodeInitStageAdvancer.setRestoredFromConfigfile();
-        nodeInitStageAdvancer.startInitialisation(ZWaveNodeInitStage.EMPTYNODE);
     }
 
     /**
@@ -522,7 +522,7 @@ public class ZWaveNode {
             supportedCommandClasses.put(key, commandClass);
 
             if (commandClass instanceof ZWaveEventListener) {
-                this.controller.addEventListener((ZWaveEventListener) commandClass);
+                this.controller.addEventListener((ZWaveEventListener) commandClass, nodeId);
             }
         }
     }
@@ -597,6 +597,14 @@ public class ZWaveNode {
         nodeInitStageAdvancer.startInitialisation(startStage);
     }
 
+    /**
+     * Allows the next initialisation to skip interviewing the device if the node was restored from file and the
+     * saved information still matches the device.
+     */
+    public void setFastRestart() {
+        nodeInitStageAdvancer.setFastRestart();
+    }
+
     /**
      * Encapsulates a serial message for sending to a
      * multi-instance instance/ multi-channel endpoint on
@@ -0,0 +1,636 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageClass;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessagePriority;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass.CommandClass;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveSecurityCommandClass;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveWakeUpCommandClass;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Queue of messages waiting to be sent to the controller.
+ * <p>
+ * Messages are held in a queue for each node and priority. Messages are taken from the queue in the following order
+ * -:
+ * <ul>
+ * <li>Security nonce reports are always sent first</li>
+ * <li>Messages for battery devices that are awake</li>
+ * <li>Messages for listening devices, and messages to the controller</li>
+ * <li>Messages for battery devices that are asleep</li>
+ * </ul>
+ * Within each of these groups, messages are sent in priority order. Nodes with messages of the same priority are
+ * served using deficit round-robin, with the payload length as the cost, so that a single busy node can't starve the
+ * rest of the network. Messages for a single node, at the same priority, are always sent in the order they were
+ * queued.
+ * <p>
+ * The listening and awake state of each node is cached, so adding and taking messages doesn't require any node
+ * lookups. The state is refreshed when a node's queue becomes active, and the awake state is updated by the
+ * {@link ZWaveWakeUpCommandClass} through the controller.
+ * <p>
+ * Messages that haven't been sent yet are coalesced as they are added -:
+ * <ul>
+ * <li>A GET that is identical to one already queued for the node is dropped, as long as nothing that might change the
+ * value has been queued for the node since.</li>
+ * <li>A SET for a command class that holds a single value (eg a dimmer level) replaces an older SET for the same node,
+ * endpoint and command, as long as the older SET is the last change queued for the node.</li>
+ * </ul>
+ * Queued messages are indexed by their content, so this doesn't need to search the queue.
+ * <p>
+ * Messages taken from the queue for a node that already has a transaction outstanding are held by the queue until the
+ * transaction finishes, and are then put back at the head of the node's queue. A message that failed is retried
+ * ahead of any newer messages to the node, so a newer SET is never overwritten by an older one.
+ */
+public class ZWaveSendQueue {
+    private final static Logger logger = LoggerFactory.getLogger(ZWaveSendQueue.class);
+
+    private static final int CONTROLLER_QUEUE = -1;
+    private static final int QUANTUM = 16;
+
+    private static final int GROUP_AWAKE = 0;
+    private static final int GROUP_LISTENING = 1;
+    private static final int GROUP_SLEEPING = 2;
+    private static final int GROUPS = 3;
+    private static final int PRIORITIES = SerialMessagePriority.values().length;
+
+    private static final int MULTI_INSTANCE_ENCAP = 0x06;
+    private static final int MULTI_CHANNEL_ENCAP = 0x0D;
+
+    // Command classes where a SET replaces the whole state, so a newer SET makes an older one redundant
+    private static final boolean[] SUPERSEDING_COMMAND_CLASSES = new boolean[256];
+
+    static {
+        for (CommandClass commandClass : new CommandClass[] { CommandClass.BASIC, CommandClass.SWITCH_BINARY,
+                CommandClass.SWITCH_MULTILEVEL, CommandClass.THERMOSTAT_MODE, CommandClass.THERMOSTAT_FAN_MODE }) {
+            SUPERSEDING_COMMAND_CLASSES[commandClass.getKey()] = true;
+        }
+    }
+
+    private final ZWaveController controller;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    private final ArrayDeque<SerialMessage> nonceQueue = new ArrayDeque<SerialMessage>();
+    private final Map<Integer, NodeQueue> nodeQueues = new HashMap<Integer, NodeQueue>();
+    private final Map<Integer, ArrayDeque<SerialMessage>> held = new HashMap<Integer, ArrayDeque<SerialMessage>>();
+    private final ArrayDeque<NodeQueue>[][] activeNodes;
+    private final int[] prioritySize = new int[PRIORITIES];
+    private int size = 0;
+    private long sequence = 0;
+    private long coalescedCount = 0;
+
+    /**
+     * Constructor. Creates a new send queue.
+     *
+     * @param controller the {@link ZWaveController} used to get the initial state of nodes
+     */
+    @SuppressWarnings("unchecked")
+    public ZWaveSendQueue(ZWaveController controller) {
+        this.controller = controller;
+
+        activeNodes = new ArrayDeque[GROUPS][PRIORITIES];
+        for (int group = 0; group < GROUPS; group++) {
+            for (int priority = 0; priority < PRIORITIES; priority++) {
+                activeNodes[group][priority] = new ArrayDeque<NodeQueue>();
+            }
+        }
+    }
+
+    /**
+     * Adds a message to the end of the queue for its node
+     *
+     * @param serialMessage the {@link SerialMessage} to add
+     */
+    public void add(SerialMessage serialMessage) {
+        lock.lock();
+        try {
+            addMessage(serialMessage, false);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a number of messages to the queue
+     *
+     * @param serialMessages the messages to add
+     */
+    public void addAll(Collection<SerialMessage> serialMessages) {
+        lock.lock();
+        try {
+            for (SerialMessage serialMessage : serialMessages) {
+                addMessage(serialMessage, false);
+            }
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Puts messages that were previously taken from the queue back at the head of the queue for their node. This
+     * maintains the order of messages to the node.
+     *
+     * @param serialMessages the messages to requeue, in the order they were originally taken from the queue
+     */
+    public void requeue(List<SerialMessage> serialMessages) {
+        lock.lock();
+        try {
+            ListIterator<SerialMessage> iterator = serialMessages.listIterator(serialMessages.size());
+            while (iterator.hasPrevious()) {
+                addMessage(iterator.previous(), true);
+            }
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Holds a message that was taken from the queue until {@link #release(int)} is called for its node. This is used
+     * while a transaction to the node is outstanding.
+     *
+     * @param serialMessage the {@link SerialMessage} to hold
+     */
+    public void hold(SerialMessage serialMessage) {
+        lock.lock();
+        try {
+            getHeld(serialMessage.getMessageNode()).addLast(serialMessage);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Puts a message that failed to send back in the queue, ahead of any newer messages for its node. If messages are
+     * held for the node, or hold is true, the message is held in front of the held messages. Otherwise it's put at the
+     * head of the node's queue.
+     *
+     * @param serialMessage the {@link SerialMessage} to retry
+     * @param hold true if a transaction to the node is still outstanding
+     */
+    public void retry(SerialMessage serialMessage, boolean hold) {
+        lock.lock();
+        try {
+            if (hold || held.containsKey(serialMessage.getMessageNode())) {
+                getHeld(serialMessage.getMessageNode()).addFirst(serialMessage);
+                return;
+            }
+            addMessage(serialMessage, true);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Puts the messages held for a node back at the head of the queue for the node
+     *
+     * @param nodeId the node ID
+     */
+    public void release(int nodeId) {
+        lock.lock();
+        try {
+            ArrayDeque<SerialMessage> messages = held.remove(nodeId);
+            if (messages == null) {
+                return;
+            }
+            Iterator<SerialMessage> iterator = messages.descendingIterator();
+            while (iterator.hasNext()) {
+                addMessage(iterator.next(), true);
+            }
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ArrayDeque<SerialMessage> getHeld(int nodeId) {
+        ArrayDeque<SerialMessage> messages = held.get(nodeId);
+        if (messages == null) {
+            messages = new ArrayDeque<SerialMessage>();
+            held.put(nodeId, messages);
+        }
+        return messages;
+    }
+
+    /**
+     * Takes the next message from the queue, waiting up to the specified time if the queue is empty
+     *
+     * @param timeout the time to wait
+     * @param unit the {@link TimeUnit} of the timeout
+     * @return the next {@link SerialMessage}, or null if the timeout expired
+     * @throws InterruptedException
+     */
+    public SerialMessage poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return takeMessage();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of messages in the queue
+     *
+     * @return the number of queued messages
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of messages in the queue at or above a priority. Security nonce reports are always counted.
+     *
+     * @param lowestPriority the lowest {@link SerialMessagePriority} to count
+     * @return the number of queued messages
+     */
+    public int size(SerialMessagePriority lowestPriority) {
+        lock.lock();
+        try {
+            int count = nonceQueue.size();
+            for (int priority = 0; priority <= lowestPriority.ordinal(); priority++) {
+                count += prioritySize[priority];
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of messages that have been dropped or replaced as they were added to the queue
+     *
+     * @return the number of coalesced messages
+     */
+    public long getCoalescedCount() {
+        lock.lock();
+        try {
+            return coalescedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all messages from the queue, including any held messages
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            nonceQueue.clear();
+            nodeQueues.clear();
+            held.clear();
+            for (int group = 0; group < GROUPS; group++) {
+                for (int priority = 0; priority < PRIORITIES; priority++) {
+                    activeNodes[group][priority].clear();
+                }
+            }
+            Arrays.fill(prioritySize, 0);
+            size = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Updates the cached awake state of a battery device.
+     * Messages already queued for the node are moved to the correct group.
+     *
+     * @param nodeId the node ID
+     * @param awake true if the node is awake
+     */
+    public void setNodeAwake(int nodeId, boolean awake) {
+        lock.lock();
+        try {
+            NodeQueue nodeQueue = nodeQueues.get(nodeId);
+            if (nodeQueue == null || nodeQueue.awake == awake) {
+                return;
+            }
+            nodeQueue.awake = awake;
+            updateGroup(nodeQueue);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void addMessage(SerialMessage serialMessage, boolean first) {
+        // ZWaveSecurityCommandClass.SECURITY_NONCE_REPORT trumps all
+        if (ZWaveSecurityCommandClass.isSecurityNonceReportMessage(serialMessage)) {
+            size++;
+            if (first) {
+                nonceQueue.addFirst(serialMessage);
+            } else {
+                nonceQueue.addLast(serialMessage);
+            }
+            return;
+        }
+
+        int queueId = CONTROLLER_QUEUE;
+        if (serialMessage.getMessageClass() == SerialMessageClass.SendData
+                || serialMessage.getMessageClass() == SerialMessageClass.RequestNodeInfo) {
+            queueId = serialMessage.getMessageNode();
+        }
+
+        NodeQueue nodeQueue = nodeQueues.get(queueId);
+        if (nodeQueue == null) {
+            nodeQueue = new NodeQueue(queueId);
+            nodeQueues.put(queueId, nodeQueue);
+        }
+
+        // Refresh the cached state when the queue becomes active
+        if (nodeQueue.size == 0) {
+            refreshState(nodeQueue);
+        }
+
+        int priority = serialMessage.getPriority().ordinal();
+        QueuedMessage queuedMessage;
+        if (first) {
+            // Requeued messages are older than anything in the queue, so they aren't coalesced
+            queuedMessage = new QueuedMessage(serialMessage, null, priority, 0);
+        } else {
+            MessageKey key = getMessageKey(serialMessage);
+            if (key != null) {
+                QueuedMessage queued = nodeQueue.index.get(key);
+                if (queued != null && queued.priority == priority && queued.order >= nodeQueue.lastChangeOrder) {
+                    logger.debug("NODE {}: Message coalesced with queued message", serialMessage.getMessageNode());
+                    if (key.set) {
+                        queued.serialMessage = serialMessage;
+                    }
+                    coalescedCount++;
+                    return;
+                }
+            }
+
+            queuedMessage = new QueuedMessage(serialMessage, key, priority, ++sequence);
+            if (key != null) {
+                nodeQueue.index.put(key, queuedMessage);
+            }
+            if (key == null || key.set) {
+                nodeQueue.lastChangeOrder = queuedMessage.order;
+            }
+        }
+
+        if (nodeQueue.messages[priority].isEmpty()) {
+            activeNodes[nodeQueue.group][priority].addLast(nodeQueue);
+        }
+        if (first) {
+            nodeQueue.messages[priority].addFirst(queuedMessage);
+        } else {
+            nodeQueue.messages[priority].addLast(queuedMessage);
+        }
+        nodeQueue.size++;
+        prioritySize[priority]++;
+        size++;
+    }
+
+    /**
+     * Gets the key used to find a queued message that this message can be coalesced with
+     *
+     * @param serialMessage the {@link SerialMessage}
+     * @return the {@link MessageKey}, or null if the message can't be coalesced
+     */
+    private MessageKey getMessageKey(SerialMessage serialMessage) {
+        if (serialMessage.getMessageClass() != SerialMessageClass.SendData) {
+            return null;
+        }
+
+        // Find the command class and command, skipping any multi instance encapsulation
+        byte[] payload = serialMessage.getMessagePayload();
+        int offset = 2;
+        if (payload.length > offset + 1 && (payload[offset] & 0xFF) == CommandClass.MULTI_INSTANCE.getKey()) {
+            if (payload[offset + 1] == MULTI_INSTANCE_ENCAP) {
+                offset += 3;
+            } else if (payload[offset + 1] == MULTI_CHANNEL_ENCAP) {
+                offset += 4;
+            } else {
+                return null;
+            }
+        }
+        if (payload.length <= offset + 1) {
+            return null;
+        }
+
+        int commandClass = payload[offset] & 0xFF;
+        if (commandClass == CommandClass.SECURITY.getKey() || commandClass == CommandClass.NO_OPERATION.getKey()) {
+            return null;
+        }
+
+        // A GET expects a report back from the node, and only identical messages are coalesced
+        if (serialMessage.getExpectedReply() == SerialMessageClass.ApplicationCommandHandler) {
+            return new MessageKey(payload, payload.length, false);
+        }
+
+        // For a SET, everything up to the command must match, but the value can change
+        if (serialMessage.getPriority() == SerialMessagePriority.Set
+                && serialMessage.getExpectedReply() == SerialMessageClass.SendData
+                && SUPERSEDING_COMMAND_CLASSES[commandClass]) {
+            return new MessageKey(payload, offset + 2, true);
+        }
+
+        return null;
+    }
+
+    private SerialMessage takeMessage() {
+        if (!nonceQueue.isEmpty()) {
+            size--;
+            return nonceQueue.poll();
+        }
+
+        for (int group = 0; group < GROUPS; group++) {
+            for (int priority = 0; priority < PRIORITIES; priority++) {
+                ArrayDeque<NodeQueue> active = activeNodes[group][priority];
+                if (active.isEmpty()) {
+                    continue;
+                }
+
+                // Deficit round-robin across all nodes with messages at this priority.
+                // The node at the head of the list sends if it has enough credit, otherwise it's given another
+                // quantum and moved to the back of the list.
+                while (true) {
+                    NodeQueue nodeQueue = active.peek();
+                    ArrayDeque<QueuedMessage> messages = nodeQueue.messages[priority];
+                    int cost = getCost(messages.peek().serialMessage);
+                    if (nodeQueue.deficit[priority] >= cost) {
+                        nodeQueue.deficit[priority] -= cost;
+                        QueuedMessage queuedMessage = messages.poll();
+                        if (messages.isEmpty()) {
+                            active.poll();
+                            nodeQueue.deficit[priority] = 0;
+                        }
+                        if (queuedMessage.key != null && nodeQueue.index.get(queuedMessage.key) == queuedMessage) {
+                            nodeQueue.index.remove(queuedMessage.key);
+                        }
+                        nodeQueue.size--;
+                        prioritySize[priority]--;
+                        size--;
+                        return queuedMessage.serialMessage;
+                    }
+
+                    nodeQueue.deficit[priority] += QUANTUM;
+                    if (active.size() > 1) {
+                        active.addLast(active.poll());
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private int getCost(SerialMessage serialMessage) {
+        return Math.max(1, serialMessage.getMessagePayload().length);
+    }
+
+    private void refreshState(NodeQueue nodeQueue) {
+        nodeQueue.listening = true;
+        nodeQueue.awake = false;
+
+        if (nodeQueue.nodeId != CONTROLLER_QUEUE) {
+            ZWaveNode node = controller.getNode(nodeQueue.nodeId);
+            if (node != null && !node.isListening() && !node.isFrequentlyListening()) {
+                nodeQueue.listening = false;
+                ZWaveWakeUpCommandClass wakeUpCommandClass = (ZWaveWakeUpCommandClass) node
+                        .getCommandClass(CommandClass.WAKE_UP);
+                if (wakeUpCommandClass != null && wakeUpCommandClass.isAwake()) {
+                    nodeQueue.awake = true;
+                }
+            }
+        }
+
+        // The queue is empty, so we don't need to move anything
+        nodeQueue.group = getGroup(nodeQueue);
+    }
+
+    private void updateGroup(NodeQueue nodeQueue) {
+        int group = getGroup(nodeQueue);
+        if (group == nodeQueue.group) {
+            return;
+        }
+
+        for (int priority = 0; priority < PRIORITIES; priority++) {
+            if (!nodeQueue.messages[priority].isEmpty()) {
+                activeNodes[nodeQueue.group][priority].remove(nodeQueue);
+                activeNodes[group][priority].addLast(nodeQueue);
+            }
+        }
+        nodeQueue.group = group;
+    }
+
+    private int getGroup(NodeQueue nodeQueue) {
+        if (nodeQueue.listening) {
+            return GROUP_LISTENING;
+        }
+        return nodeQueue.awake ? GROUP_AWAKE : GROUP_SLEEPING;
+    }
+
+    /**
+     * Holds the queued messages for a single node
+     */
+    private class NodeQueue {
+        private final int nodeId;
+        private final ArrayDeque<QueuedMessage>[] messages;
+        private final Map<MessageKey, QueuedMessage> index = new HashMap<MessageKey, QueuedMessage>();
+        private final int[] deficit = new int[PRIORITIES];
+        private boolean listening = true;
+        private boolean awake = false;
+        private int group = GROUP_LISTENING;
+        private int size = 0;
+
+        // The order of the last message queued that may change the state of the node
+        private long lastChangeOrder = 0;
+
+        @SuppressWarnings("unchecked")
+        NodeQueue(int nodeId) {
+            this.nodeId = nodeId;
+            messages = new ArrayDeque[PRIORITIES];
+            for (int priority = 0; priority < PRIORITIES; priority++) {
+                messages[priority] = new ArrayDeque<QueuedMessage>();
+            }
+        }
+    }
+
+    /**
+     * A message in the queue. A SET can be replaced by a newer one while it keeps its place in the queue.
+     */
+    private static class QueuedMessage {
+        private SerialMessage serialMessage;
+        private final MessageKey key;
+        private final int priority;
+        private final long order;
+
+        QueuedMessage(SerialMessage serialMessage, MessageKey key, int priority, long order) {
+            this.serialMessage = serialMessage;
+            this.key = key;
+            this.priority = priority;
+            this.order = order;
+        }
+    }
+
+    /**
+     * Identifies messages that can be coalesced - the start of the payload, and whether the message is a SET
+     */
+    private static class MessageKey {
+        private final byte[] bytes;
+        private final boolean set;
+        private final int hash;
+
+        MessageKey(byte[] payload, int length, boolean set) {
+            this.bytes = Arrays.copyOf(payload, length);
+            this.set = set;
+            this.hash = Arrays.hashCode(bytes) * 31 + (set ? 1 : 0);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof MessageKey)) {
+                return false;
+            }
+            MessageKey other = (MessageKey) obj;
+            return set == other.set && Arrays.equals(bytes, other.bytes);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Timer service shared by everything in the network that needs to run a task after a delay - wake-up timers,
+ * initialisation retry timers, inclusion timers etc. This uses a single thread for the whole network rather than a
+ * {@link java.util.Timer} thread per node.
+ * <p>
+ * Tasks must be short as they all run on the same thread.
+ */
+public class ZWaveTimerService {
+    private final static Logger logger = LoggerFactory.getLogger(ZWaveTimerService.class);
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    /**
+     * Constructor. Creates the timer service and starts its thread.
+     */
+    public ZWaveTimerService() {
+        executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ZWaveTimer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        // Remove cancelled timers from the queue straight away.
+        // Most of our timers are re-triggerable, so are cancelled far more often than they run.
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Schedules a task to run once after a delay.
+     *
+     * @param task the task to run
+     * @param delay the delay in milliseconds
+     * @return a {@link ScheduledFuture} that can be used to cancel the task
+     */
+    public ScheduledFuture<?> schedule(final Runnable task, long delay) {
+        return executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    logger.error("Exception during ZWave timer task", e);
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets the number of timers that are waiting to run
+     *
+     * @return the number of outstanding timers
+     */
+    public int getOutstandingTimeouts() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stops the timer service. Any outstanding timers are cancelled.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
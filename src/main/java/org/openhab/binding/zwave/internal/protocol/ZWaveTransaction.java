@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageClass;
+
+/**
+ * A transaction is a request sent to the controller, along with all the frames we expect to receive from the
+ * controller before the request is considered complete.
+ * <p>
+ * The controller may have a number of SendData transactions outstanding at the same time. SendData transactions are
+ * correlated with the incoming frames through the callback ID (for the controller callback), or the node ID (for the
+ * data received from the device). All other controller requests are not addressed to a node, and are run exclusively.
+ * <p>
+ * The state of the transaction is updated by the {@link ZWaveTransactionManager} as the frames are received.
+ * <p>
+ * There is no queued state. Messages waiting to be sent are held in the {@link ZWaveSendQueue}, and the transaction is
+ * only created by the send thread once the message is taken from the queue. The callback ID is also allocated at this
+ * point, so until the message is sent there is nothing for the transaction to track.
+ */
+public class ZWaveTransaction {
+    /**
+     * The states a transaction passes through
+     */
+    public enum TransactionState {
+        /** Sent to the controller. A transaction is registered just before its frame is written. */
+        SENT,
+        /** The controller has acknowledged the frame */
+        ACKED,
+        /** The controller has sent its response */
+        RESPONSE_RECEIVED,
+        /** All frames have been received */
+        COMPLETED,
+        /** The transaction didn't complete in time */
+        TIMED_OUT
+    }
+
+    private final SerialMessage serialMessage;
+    private final long startTime;
+    private final long timeoutTime;
+    private volatile TransactionState state = TransactionState.SENT;
+
+    /**
+     * Constructor. Creates a new transaction for the message that is about to be sent to the controller.
+     *
+     * @param serialMessage the {@link SerialMessage} that started the transaction
+     * @param timeout the time (in milliseconds) to wait for the transaction to complete
+     */
+    public ZWaveTransaction(SerialMessage serialMessage, long timeout) {
+        this.serialMessage = serialMessage;
+        this.startTime = System.currentTimeMillis();
+        this.timeoutTime = startTime + timeout;
+    }
+
+    /**
+     * Gets the {@link SerialMessage} that started the transaction
+     *
+     * @return the serial message
+     */
+    public SerialMessage getSerialMessage() {
+        return serialMessage;
+    }
+
+    /**
+     * Gets the node the transaction is addressed to
+     *
+     * @return the node ID
+     */
+    public int getNodeId() {
+        return serialMessage.getMessageNode();
+    }
+
+    /**
+     * Gets the callback ID used to correlate the controller callback with this transaction
+     *
+     * @return the callback ID
+     */
+    public int getCallbackId() {
+        return serialMessage.getCallbackId();
+    }
+
+    /**
+     * Returns true if this is a SendData transaction, which can run concurrently with SendData transactions to other
+     * nodes.
+     *
+     * @return true if this is a SendData transaction
+     */
+    public boolean isSendData() {
+        return serialMessage.getMessageClass() == SerialMessageClass.SendData;
+    }
+
+    /**
+     * Gets the current state of the transaction
+     *
+     * @return the {@link TransactionState}
+     */
+    public TransactionState getState() {
+        return state;
+    }
+
+    /**
+     * Sets the state of the transaction. This is only used by the {@link ZWaveTransactionManager}.
+     *
+     * @param state the new {@link TransactionState}
+     */
+    void setState(TransactionState state) {
+        this.state = state;
+    }
+
+    /**
+     * Checks if the transaction has finished, either because it completed or it timed out
+     *
+     * @return true if the transaction has finished
+     */
+    public boolean isFinished() {
+        return state == TransactionState.COMPLETED || state == TransactionState.TIMED_OUT;
+    }
+
+    /**
+     * Gets the time the transaction was started
+     *
+     * @return start time in milliseconds
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Gets the time at which the transaction will time out
+     *
+     * @return timeout time in milliseconds
+     */
+    public long getTimeoutTime() {
+        return timeoutTime;
+    }
+
+    /**
+     * Checks if the transaction has timed out
+     *
+     * @param now the current time in milliseconds
+     * @return true if the transaction has timed out
+     */
+    public boolean isTimedOut(long now) {
+        return now >= timeoutTime;
+    }
+
+    @Override
+    public String toString() {
+        return "Transaction: node=" + getNodeId() + ", callback=" + getCallbackId() + ", class="
+                + serialMessage.getMessageClass() + ", state=" + state;
+    }
+}
@@ -0,0 +1,469 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageClass;
+import org.openhab.binding.zwave.internal.protocol.ZWaveTransaction.TransactionState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the outstanding transactions, and decides when a transaction is complete.
+ * <p>
+ * There is one manager per controller. SendData transactions are indexed by callback ID and by node, so the frames
+ * received from the controller can be correlated with their transaction. Callback IDs are allocated by the manager as
+ * each message is sent, and IDs still in use by an outstanding transaction are skipped. All other controller requests
+ * are run exclusively. Each transaction is moved through its {@link TransactionState}s as the frames are received,
+ * and transactions that don't complete in time are expired through a timeout wheel.
+ * <p>
+ * The data requested from a device may be received before the controller has acknowledged the request. These frames
+ * are held against the transaction until the acknowledgement is received, and are then checked again so the
+ * transaction can still complete.
+ * <p>
+ * The response time of each completed transaction is recorded in a {@link ZWaveLatencyHistogram} for the message class,
+ * and for the node if it's a SendData transaction.
+ */
+public class ZWaveTransactionManager {
+    private final static Logger logger = LoggerFactory.getLogger(ZWaveTransactionManager.class);
+
+    // Timeout wheel resolution and size. Timeouts beyond the span of the wheel are still handled, but need more than
+    // one revolution.
+    private final static long WHEEL_TICK = 100;
+    private final static int WHEEL_SLOTS = 128;
+
+    private final ZWaveTransaction[] transactionsByCallback = new ZWaveTransaction[256];
+    private final ZWaveTransaction[] transactionsByNode = new ZWaveTransaction[256];
+    private int sendDataTransactions = 0;
+    private int callbackId = 0;
+    private ZWaveTransaction controllerTransaction = null;
+    private ZWaveTransaction responsePending = null;
+
+    private final List<List<ZWaveTransaction>> wheel = new ArrayList<List<ZWaveTransaction>>(WHEEL_SLOTS);
+    private long wheelTick = -1;
+    private int wheelSize = 0;
+
+    private final Map<ZWaveTransaction, List<SerialMessage>> pendingFrames =
+            new HashMap<ZWaveTransaction, List<SerialMessage>>();
+
+    private final Map<SerialMessageClass, ZWaveLatencyHistogram> classLatency =
+            new EnumMap<SerialMessageClass, ZWaveLatencyHistogram>(SerialMessageClass.class);
+    private final ZWaveLatencyHistogram[] nodeLatency = new ZWaveLatencyHistogram[256];
+
+    // Only used by the input thread while it's processing a frame
+    private ZWaveTransaction frameTransaction = null;
+    private boolean transactionComplete = false;
+
+    /**
+     * Constructor. Creates the transaction manager.
+     */
+    public ZWaveTransactionManager() {
+        for (int slot = 0; slot < WHEEL_SLOTS; slot++) {
+            wheel.add(new ArrayList<ZWaveTransaction>(2));
+        }
+    }
+
+    /**
+     * Gets the next callback ID. IDs that are in use by an outstanding SendData transaction are skipped, so a callback
+     * from the controller can only belong to one transaction.
+     *
+     * @return the callback ID, between 1 and 255
+     */
+    public synchronized int getNextCallbackId() {
+        for (int cnt = 0; cnt < 0xFF; cnt++) {
+            if (++callbackId > 0xFF) {
+                callbackId = 1;
+            }
+            if (transactionsByCallback[callbackId] == null) {
+                break;
+            }
+        }
+        logger.trace("Callback ID = {}", callbackId);
+        return callbackId;
+    }
+
+    /**
+     * Registers a new transaction. The transaction must be registered before the message is sent to the controller
+     * as the response can be received before the send returns.
+     *
+     * @param transaction the {@link ZWaveTransaction} to start
+     */
+    public synchronized void startTransaction(ZWaveTransaction transaction) {
+        if (transaction.isSendData()) {
+            if (transactionsByCallback[transaction.getCallbackId() & 0xFF] != null) {
+                logger.warn("NODE {}: Callback ID {} is already in use by NODE {}", transaction.getNodeId(),
+                        transaction.getCallbackId(),
+                        transactionsByCallback[transaction.getCallbackId() & 0xFF].getNodeId());
+            }
+            transactionsByCallback[transaction.getCallbackId() & 0xFF] = transaction;
+            transactionsByNode[transaction.getNodeId() & 0xFF] = transaction;
+            sendDataTransactions++;
+        } else {
+            controllerTransaction = transaction;
+        }
+        responsePending = transaction;
+
+        wheel.get(getWheelSlot(transaction.getTimeoutTime())).add(transaction);
+        wheelSize++;
+    }
+
+    /**
+     * Finds the outstanding transaction that an incoming request from the controller belongs to.
+     * SendData callbacks are correlated through the callback ID, and application data from a device through the
+     * node ID. All other requests belong to the controller transaction.
+     *
+     * @param incomingMessage the incoming request
+     * @return the {@link ZWaveTransaction} or null if the message can't be correlated with a transaction
+     */
+    public synchronized ZWaveTransaction getTransactionForRequest(SerialMessage incomingMessage) {
+        try {
+            switch (incomingMessage.getMessageClass()) {
+                case SendData:
+                    return transactionsByCallback[incomingMessage.getMessagePayloadByte(0) & 0xFF];
+                case ApplicationCommandHandler:
+                    return transactionsByNode[incomingMessage.getMessagePayloadByte(1) & 0xFF];
+                default:
+                    return controllerTransaction;
+            }
+        } catch (ZWaveSerialMessageException e) {
+            logger.debug("Unable to correlate message with transaction: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Records that the controller has acknowledged the last frame we sent
+     */
+    public synchronized void ackReceived() {
+        if (responsePending != null && responsePending.getState() == TransactionState.SENT) {
+            responsePending.setState(TransactionState.ACKED);
+        }
+    }
+
+    /**
+     * Records that the controller has sent its response. Only one request can be waiting for a response at any time.
+     *
+     * @return the {@link ZWaveTransaction} that was waiting for the response, or null if there was none
+     */
+    public synchronized ZWaveTransaction responseReceived() {
+        ZWaveTransaction transaction = responsePending;
+        responsePending = null;
+        if (transaction != null && !transaction.isFinished()) {
+            transaction.setState(TransactionState.RESPONSE_RECEIVED);
+        }
+        return transaction;
+    }
+
+    /**
+     * Checks if there is a transaction outstanding for the node
+     *
+     * @param nodeId the node ID
+     * @return true if a SendData transaction is outstanding
+     */
+    public synchronized boolean hasTransaction(int nodeId) {
+        return transactionsByNode[nodeId & 0xFF] != null;
+    }
+
+    /**
+     * Gets the number of transactions that are outstanding
+     *
+     * @return number of transactions
+     */
+    public synchronized int getOutstandingTransactions() {
+        return sendDataTransactions + (controllerTransaction == null ? 0 : 1);
+    }
+
+    /**
+     * Checks if we're able to start another transaction.
+     * Only one request can be waiting for the controller response. Controller requests (ie anything other than
+     * SendData) are run exclusively, and we limit the number of concurrent SendData transactions.
+     *
+     * @param serialMessage the message we want to send, or null if we don't yet know
+     * @param maxTransactions the maximum number of concurrent SendData transactions
+     * @return true if the transaction can be started
+     */
+    public synchronized boolean isTransactionSlotAvailable(SerialMessage serialMessage, int maxTransactions) {
+        if (responsePending != null || controllerTransaction != null) {
+            return false;
+        }
+        if (serialMessage != null && serialMessage.getMessageClass() != SerialMessageClass.SendData) {
+            return sendDataTransactions == 0;
+        }
+        return sendDataTransactions < maxTransactions;
+    }
+
+    /**
+     * Gets the time until the next outstanding transaction times out
+     *
+     * @param now the current time in milliseconds
+     * @param maxWait the longest time to wait
+     * @return the time to wait in milliseconds
+     */
+    public synchronized long getTransactionWaitTime(long now, long maxWait) {
+        long next = now + maxWait;
+        if (wheelSize != 0) {
+            // Look for the first slot holding a timeout in this revolution of the wheel
+            long tick = now / WHEEL_TICK;
+            for (int cnt = 0; cnt < WHEEL_SLOTS && tick * WHEEL_TICK < next; cnt++, tick++) {
+                List<ZWaveTransaction> slot = wheel.get((int) (tick % WHEEL_SLOTS));
+                for (ZWaveTransaction transaction : slot) {
+                    if (transaction.getTimeoutTime() / WHEEL_TICK <= tick) {
+                        next = Math.min(next, transaction.getTimeoutTime());
+                    }
+                }
+                if (next < now + maxWait) {
+                    break;
+                }
+            }
+        }
+        return Math.max(1, next - now);
+    }
+
+    /**
+     * Completes a transaction, and records the response time
+     *
+     * @param transaction the {@link ZWaveTransaction} that has completed
+     * @param now the current time in milliseconds
+     * @return true if the transaction was outstanding
+     */
+    public synchronized boolean completeTransaction(ZWaveTransaction transaction, long now) {
+        if (!removeTransaction(transaction)) {
+            return false;
+        }
+        transaction.setState(TransactionState.COMPLETED);
+
+        long responseTime = now - transaction.getStartTime();
+        getClassHistogram(transaction).record(responseTime);
+        if (transaction.isSendData()) {
+            getNodeHistogram(transaction.getNodeId()).record(responseTime);
+        }
+        return true;
+    }
+
+    /**
+     * Removes a transaction without completing it. This is used when the controller refuses the request.
+     *
+     * @param transaction the {@link ZWaveTransaction} to remove
+     * @return true if the transaction was outstanding
+     */
+    public synchronized boolean removeTransaction(ZWaveTransaction transaction) {
+        boolean removed = false;
+        if (transaction.isSendData()) {
+            if (transactionsByNode[transaction.getNodeId() & 0xFF] == transaction) {
+                transactionsByNode[transaction.getNodeId() & 0xFF] = null;
+                if (transactionsByCallback[transaction.getCallbackId() & 0xFF] == transaction) {
+                    transactionsByCallback[transaction.getCallbackId() & 0xFF] = null;
+                }
+                sendDataTransactions--;
+                removed = true;
+            }
+        } else if (controllerTransaction == transaction) {
+            controllerTransaction = null;
+            removed = true;
+        }
+        if (responsePending == transaction) {
+            responsePending = null;
+        }
+        if (wheel.get(getWheelSlot(transaction.getTimeoutTime())).remove(transaction)) {
+            wheelSize--;
+        }
+        pendingFrames.remove(transaction);
+        return removed;
+    }
+
+    /**
+     * Removes all transactions that have timed out
+     *
+     * @param now the current time in milliseconds
+     * @return the {@link ZWaveTransaction}s that timed out
+     */
+    public synchronized List<ZWaveTransaction> getTimedOutTransactions(long now) {
+        if (wheelSize == 0) {
+            wheelTick = now / WHEEL_TICK;
+            return Collections.emptyList();
+        }
+
+        // Check every slot we've passed since the last call. If a full revolution has passed, check them all.
+        long nowTick = now / WHEEL_TICK;
+        long firstTick = wheelTick < 0 || nowTick - wheelTick >= WHEEL_SLOTS ? nowTick - WHEEL_SLOTS + 1 : wheelTick;
+        wheelTick = nowTick;
+
+        List<ZWaveTransaction> timedOut = new ArrayList<ZWaveTransaction>();
+        for (long tick = firstTick; tick <= nowTick; tick++) {
+            Iterator<ZWaveTransaction> iterator = wheel.get((int) (tick % WHEEL_SLOTS)).iterator();
+            while (iterator.hasNext()) {
+                ZWaveTransaction transaction = iterator.next();
+                if (transaction.isTimedOut(now)) {
+                    iterator.remove();
+                    wheelSize--;
+                    timedOut.add(transaction);
+                }
+            }
+        }
+
+        for (ZWaveTransaction transaction : timedOut) {
+            removeTransaction(transaction);
+            transaction.setState(TransactionState.TIMED_OUT);
+            getClassHistogram(transaction).recordTimeout();
+            if (transaction.isSendData()) {
+                getNodeHistogram(transaction.getNodeId()).recordTimeout();
+            }
+        }
+        return timedOut;
+    }
+
+    /**
+     * Gets the response time histogram for a message class
+     *
+     * @param messageClass the {@link SerialMessageClass}
+     * @return the {@link ZWaveLatencyHistogram}, or null if no transactions of this class have finished
+     */
+    public synchronized ZWaveLatencyHistogram getLatencyHistogram(SerialMessageClass messageClass) {
+        return classLatency.get(messageClass);
+    }
+
+    /**
+     * Gets the response time histogram for SendData transactions to a node
+     *
+     * @param nodeId the node ID
+     * @return the {@link ZWaveLatencyHistogram}, or null if no transactions to the node have finished
+     */
+    public synchronized ZWaveLatencyHistogram getNodeLatencyHistogram(int nodeId) {
+        return nodeLatency[nodeId & 0xFF];
+    }
+
+    /**
+     * Clears the completion flag before a new frame is processed
+     *
+     * @param transaction the {@link ZWaveTransaction} the frame belongs to, or null if it couldn't be correlated
+     */
+    public void startFrame(ZWaveTransaction transaction) {
+        frameTransaction = transaction;
+        transactionComplete = false;
+    }
+
+    /**
+     * Marks the transaction for the frame being processed as complete
+     */
+    public void setTransactionComplete() {
+        transactionComplete = true;
+    }
+
+    /**
+     * Checks if the frame being processed completed its transaction
+     *
+     * @return true if the transaction was completed
+     */
+    public boolean isTransactionComplete() {
+        return transactionComplete;
+    }
+
+    /**
+     * Checks if this is the expected reply, and if so marks the transaction as complete.
+     * If the request hasn't yet been acknowledged by the controller, the frame is held and checked once the
+     * acknowledgement is received.
+     *
+     * @param lastSentMessage the original message we sent to the controller
+     * @param incomingMessage the frame received from the controller
+     * @return true if the transaction was completed
+     */
+    public synchronized boolean checkTransactionComplete(SerialMessage lastSentMessage,
+            SerialMessage incomingMessage) {
+        if (lastSentMessage == null) {
+            return false;
+        }
+
+        // Frames are only held if they were correlated with this transaction
+        ZWaveTransaction transaction = frameTransaction;
+        if (transaction != null && transaction.getSerialMessage() != lastSentMessage) {
+            transaction = null;
+        }
+
+        // Wait for the ACK before completing the transaction.
+        // This is necessary since we sometimes get the response from the device before the ACK.
+        if (lastSentMessage.isAckPending()) {
+            logger.debug("Checking transaction complete: Message has Ack Pending: {}", lastSentMessage);
+            if (transaction != null && !transaction.isFinished()) {
+                List<SerialMessage> frames = pendingFrames.get(transaction);
+                if (frames == null) {
+                    frames = new ArrayList<SerialMessage>(2);
+                    pendingFrames.put(transaction, frames);
+                }
+                frames.add(incomingMessage);
+            }
+            return false;
+        }
+
+        logger.debug("Checking transaction complete: Sent {}", lastSentMessage);
+        if (isExpectedReply(lastSentMessage, incomingMessage)) {
+            transactionComplete = true;
+            return true;
+        }
+
+        // Check any frames received before the ACK
+        List<SerialMessage> frames = transaction == null ? null : pendingFrames.remove(transaction);
+        if (frames == null) {
+            return false;
+        }
+        for (SerialMessage frame : frames) {
+            if (isExpectedReply(lastSentMessage, frame)) {
+                transactionComplete = true;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isExpectedReply(SerialMessage lastSentMessage, SerialMessage incomingMessage) {
+        if (incomingMessage.getMessageClass() == lastSentMessage.getExpectedReply()
+                && !incomingMessage.isTransactionCanceled()) {
+            logger.debug(
+                    "Checking transaction complete: class={}, callback id={}, expected={}, cancelled={}        transaction complete!",
+                    incomingMessage.getMessageClass(), lastSentMessage.getCallbackId(),
+                    lastSentMessage.getExpectedReply(), incomingMessage.isTransactionCanceled());
+            return true;
+        }
+
+        logger.debug(
+                "Checking transaction complete: class={}, callback id={}, expected={}, cancelled={}      MISMATCH",
+                incomingMessage.getMessageClass(), lastSentMessage.getCallbackId(),
+                lastSentMessage.getExpectedReply(), incomingMessage.isTransactionCanceled());
+        return false;
+    }
+
+    private int getWheelSlot(long time) {
+        return (int) ((time / WHEEL_TICK) % WHEEL_SLOTS);
+    }
+
+    private ZWaveLatencyHistogram getClassHistogram(ZWaveTransaction transaction) {
+        SerialMessageClass messageClass = transaction.getSerialMessage().getMessageClass();
+        ZWaveLatencyHistogram histogram = classLatency.get(messageClass);
+        if (histogram == null) {
+            histogram = new ZWaveLatencyHistogram();
+            classLatency.put(messageClass, histogram);
+        }
+        return histogram;
+    }
+
+    private ZWaveLatencyHistogram getNodeHistogram(int nodeId) {
+        ZWaveLatencyHistogram histogram = nodeLatency[nodeId & 0xFF];
+        if (histogram == null) {
+            histogram = new ZWaveLatencyHistogram();
+            nodeLatency[nodeId & 0xFF] = histogram;
+        }
+        return histogram;
+    }
+}
@@ -8,8 +8,6 @@
  */
 package org.openhab.binding.zwave.internal.protocol.commandclass;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.openhab.binding.zwave.internal.protocol.SerialMessage;
@@ -36,9 +34,6 @@ public class ZWaveApplicationStatusClass extends ZWaveCommandClass {
     @XStreamOmitField
     private final static Logger logger = LoggerFactory.getLogger(ZWaveApplicationStatusClass.class);
 
-    @XStreamOmitField
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-
     private static final int ApplicationStatusBusy = 0x1;
     private static final int ApplicationStatusRejected = 0x2;
 
@@ -8,8 +8,6 @@
  */
 package org.openhab.binding.zwave.internal.protocol.commandclass;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.HashMap;
@@ -242,34 +240,30 @@ public abstract class ZWaveCommandClass {
      */
     public static ZWaveCommandClass getInstance(int classId, ZWaveNode node, ZWaveController controller,
             ZWaveEndpoint endpoint) {
+        CommandClass commandClass = ZWaveCommandClassFactory.getCommandClass(classId);
+        if (commandClass != null && commandClass.equals(CommandClass.MANUFACTURER_PROPRIETARY)) {
+            commandClass = CommandClass.getCommandClass(node.getManufacturer(), node.getDeviceType());
+        }
+        if (commandClass == null) {
+            logger.warn(String.format("NODE %d: Unknown command class 0x%02x", node.getNodeId(), classId));
+            return null;
+        }
+
+        ZWaveCommandClass zwaveCommandClass;
         try {
-            CommandClass commandClass = CommandClass.getCommandClass(classId);
-            if (commandClass != null && commandClass.equals(CommandClass.MANUFACTURER_PROPRIETARY)) {
-                commandClass = CommandClass.getCommandClass(node.getManufacturer(), node.getDeviceType());
-            }
-            if (commandClass == null) {
-                logger.warn(String.format("NODE %d: Unknown command class 0x%02x", node.getNodeId(), classId));
-                return null;
-            }
-            Class<? extends ZWaveCommandClass> commandClassClass = commandClass.getCommandClassClass();
+            zwaveCommandClass = ZWaveCommandClassFactory.createCommandClass(commandClass, node, controller, endpoint);
+        } catch (RuntimeException e) {
+            logger.debug(String.format("NODE %d: Error instantiating command class 0x%02x", node.getNodeId(), classId),
+                    e);
+            return null;
+        }
 
-            if (commandClassClass == null) {
-                logger.warn("NODE {}: Unsupported command class {}", node.getNodeId(), commandClass.getLabel(),
-                        classId);
-                return null;
-            }
-            logger.debug("NODE {}: Creating new instance of command class {}", node.getNodeId(),
-                    commandClass.getLabel());
-
-            Constructor<? extends ZWaveCommandClass> constructor = commandClassClass.getConstructor(ZWaveNode.class,
-                    ZWaveController.class, ZWaveEndpoint.class);
-            return constructor.newInstance(new Object[] { node, controller, endpoint });
-        } catch (InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException
-                | NoSuchMethodException | SecurityException e) {
-            logger.debug(String.format("NODE %d: Error instantiating command class 0x%02x", node.getNodeId(), classId));
-            e.printStackTrace();
+        if (zwaveCommandClass == null) {
+            logger.warn("NODE {}: Unsupported command class {}", node.getNodeId(), commandClass.getLabel(), classId);
             return null;
         }
+        logger.debug("NODE {}: Created new instance of command class {}", node.getNodeId(), commandClass.getLabel());
+        return zwaveCommandClass;
     }
 
     /**
@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol.commandclass;
+
+import org.openhab.binding.zwave.internal.protocol.ZWaveController;
+import org.openhab.binding.zwave.internal.protocol.ZWaveEndpoint;
+import org.openhab.binding.zwave.internal.protocol.ZWaveNode;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass.CommandClass;
+import org.openhab.binding.zwave.internal.protocol.commandclass.proprietary.FibaroFGRM222CommandClass;
+
+/**
+ * Creates command class instances without using reflection.
+ * <p>
+ * Command classes are created for every entry in the node information frame, every endpoint capability report and
+ * every node restored from file. The {@link CommandClass} for each command class byte is held in a table, and the
+ * instance is created directly by the constructor for that class.
+ * <p>
+ * Any new command class needs to be added here as well as to {@link CommandClass}.
+ */
+public class ZWaveCommandClassFactory {
+    private static final CommandClass[] commandClasses = new CommandClass[256];
+
+    static {
+        // Where a key is used twice, the last definition is used
+        for (CommandClass commandClass : CommandClass.values()) {
+            if (commandClass.getKey() < commandClasses.length) {
+                commandClasses[commandClass.getKey()] = commandClass;
+            }
+        }
+    }
+
+    private ZWaveCommandClassFactory() {
+    }
+
+    /**
+     * Gets the command class for the command class code
+     *
+     * @param classId the command class code, or the manufacturer specific key for a proprietary class
+     * @return the {@link CommandClass}, or null if the code isn't known
+     */
+    public static CommandClass getCommandClass(int classId) {
+        if (classId >= 0 && classId < commandClasses.length) {
+            return commandClasses[classId];
+        }
+        return CommandClass.getCommandClass(classId);
+    }
+
+    /**
+     * Creates a new instance of a command class
+     *
+     * @param commandClass the {@link CommandClass} to create
+     * @param node the node this instance commands.
+     * @param controller the controller to send messages to.
+     * @param endpoint the endpoint this Command class belongs to
+     * @return the {@link ZWaveCommandClass}, or null if the command class isn't supported
+     */
+    public static ZWaveCommandClass createCommandClass(CommandClass commandClass, ZWaveNode node,
+            ZWaveController controller, ZWaveEndpoint endpoint) {
+        switch (commandClass) {
+            case NO_OPERATION:
+                return new ZWaveNoOperationCommandClass(node, controller, endpoint);
+            case BASIC:
+                return new ZWaveBasicCommandClass(node, controller, endpoint);
+            case CONTROLLER_REPLICATION:
+                return new ZWaveControllerReplicationCommandClass(node, controller, endpoint);
+            case APPLICATION_STATUS:
+                return new ZWaveApplicationStatusClass(node, controller, endpoint);
+            case SWITCH_BINARY:
+                return new ZWaveBinarySwitchCommandClass(node, controller, endpoint);
+            case SWITCH_MULTILEVEL:
+                return new ZWaveMultiLevelSwitchCommandClass(node, controller, endpoint);
+            case SWITCH_ALL:
+                return new ZWaveSwitchAllCommandClass(node, controller, endpoint);
+            case SWITCH_TOGGLE_BINARY:
+                return new ZWaveBinaryToggleSwitchCommandClass(node, controller, endpoint);
+            case SWITCH_TOGGLE_MULTILEVEL:
+                return new ZWaveMultiLevelToggleSwitchCommandClass(node, controller, endpoint);
+            case CHIMNEY_FAN:
+                return new ZWaveChimneyFanCommandClass(node, controller, endpoint);
+            case SCENE_ACTIVATION:
+                return new ZWaveSceneActivationCommandClass(node, controller, endpoint);
+            case SCENE_ACTUATOR_CONF:
+                return new ZWaveSceneActuatorConfigurationCommandClass(node, controller, endpoint);
+            case SCENE_CONTROLLER_CONF:
+                return new ZWaveSceneControllerConfigurationCommandClass(node, controller, endpoint);
+            case SENSOR_BINARY:
+                return new ZWaveBinarySensorCommandClass(node, controller, endpoint);
+            case SENSOR_MULTILEVEL:
+                return new ZWaveMultiLevelSensorCommandClass(node, controller, endpoint);
+            case METER:
+                return new ZWaveMeterCommandClass(node, controller, endpoint);
+            case COLOR:
+                return new ZWaveColorCommandClass(node, controller, endpoint);
+            case METER_PULSE:
+                return new ZWaveMeterPulseCommandClass(node, controller, endpoint);
+            case METER_TBL_CONFIG:
+                return new ZWaveMeterTblConfigurationCommandClass(node, controller, endpoint);
+            case METER_TBL_MONITOR:
+                return new ZWaveMeterTblMonitorCommandClass(node, controller, endpoint);
+            case HRV_STATUS:
+                return new ZWaveHrvStatusCommandClass(node, controller, endpoint);
+            case HRV_CONTROL:
+                return new ZWaveHrvControlCommandClass(node, controller, endpoint);
+            case THERMOSTAT_MODE:
+                return new ZWaveThermostatModeCommandClass(node, controller, endpoint);
+            case THERMOSTAT_OPERATING_STATE:
+                return new ZWaveThermostatOperatingStateCommandClass(node, controller, endpoint);
+            case THERMOSTAT_SETPOINT:
+                return new ZWaveThermostatSetpointCommandClass(node, controller, endpoint);
+            case THERMOSTAT_FAN_MODE:
+                return new ZWaveThermostatFanModeCommandClass(node, controller, endpoint);
+            case THERMOSTAT_FAN_STATE:
+                return new ZWaveThermostatFanStateCommandClass(node, controller, endpoint);
+            case CLIMATE_CONTROL_SCHEDULE:
+                return new ZWaveClimateControlScheduleCommandClass(node, controller, endpoint);
+            case THERMOSTAT_SETBACK:
+                return new ZWaveThermostatSetbackCommandClass(node, controller, endpoint);
+            case DOOR_LOCK_LOGGING:
+                return new ZWaveDoorLockLoggingCommandClass(node, controller, endpoint);
+            case SCHEDULE_ENTRY_LOCK:
+                return new ZWaveScheduleEntryLockCommandClass(node, controller, endpoint);
+            case BASIC_WINDOW_COVERING:
+                return new ZWaveBasicWindowCoveringCommandClass(node, controller, endpoint);
+            case MTP_WINDOW_COVERING:
+                return new ZWaveMtpWindowCoveringCommandClass(node, controller, endpoint);
+            case SCHEDULE:
+                return new ZWaveScheduleCommandClass(node, controller, endpoint);
+            case CRC_16_ENCAP:
+                return new ZWaveCRC16EncapsulationCommandClass(node, controller, endpoint);
+            case ASSOCIATION_GROUP_INFO:
+                return new ZWaveAssociationGroupInfoCommandClass(node, controller, endpoint);
+            case DEVICE_RESET_LOCALLY:
+                return new ZWaveDeviceResetLocallyCommandClass(node, controller, endpoint);
+            case CENTRAL_SCENE:
+                return new ZWaveCentralSceneCommandClass(node, controller, endpoint);
+            case ZWAVE_PLUS_INFO:
+                return new ZWavePlusCommandClass(node, controller, endpoint);
+            case MULTI_INSTANCE:
+                return new ZWaveMultiInstanceCommandClass(node, controller, endpoint);
+            case DOOR_LOCK:
+                return new ZWaveDoorLockCommandClass(node, controller, endpoint);
+            case USER_CODE:
+                return new ZWaveUserCodeCommandClass(node, controller, endpoint);
+            case BARRIER_OPERATOR:
+                return new ZWaveBarrierOperatorCommandClass(node, controller, endpoint);
+            case CONFIGURATION:
+                return new ZWaveConfigurationCommandClass(node, controller, endpoint);
+            case ALARM:
+                return new ZWaveAlarmCommandClass(node, controller, endpoint);
+            case MANUFACTURER_SPECIFIC:
+                return new ZWaveManufacturerSpecificCommandClass(node, controller, endpoint);
+            case POWERLEVEL:
+                return new ZWavePowerLevelCommandClass(node, controller, endpoint);
+            case PROTECTION:
+                return new ZWaveProtectionCommandClass(node, controller, endpoint);
+            case LOCK:
+                return new ZWaveLockCommandClass(node, controller, endpoint);
+            case NODE_NAMING:
+                return new ZWaveNodeNamingCommandClass(node, controller, endpoint);
+            case FIRMWARE_UPDATE_MD:
+                return new ZWaveFirmwareUpdateCommandClass(node, controller, endpoint);
+            case GROUPING_NAME:
+                return new ZWaveGroupingNameCommandClass(node, controller, endpoint);
+            case BATTERY:
+                return new ZWaveBatteryCommandClass(node, controller, endpoint);
+            case CLOCK:
+                return new ZWaveClockCommandClass(node, controller, endpoint);
+            case HAIL:
+                return new ZWaveHailCommandClass(node, controller, endpoint);
+            case WAKE_UP:
+                return new ZWaveWakeUpCommandClass(node, controller, endpoint);
+            case ASSOCIATION:
+                return new ZWaveAssociationCommandClass(node, controller, endpoint);
+            case VERSION:
+                return new ZWaveVersionCommandClass(node, controller, endpoint);
+            case INDICATOR:
+                return new ZWaveIndicatorCommandClass(node, controller, endpoint);
+            case LANGUAGE:
+                return new ZWaveLanguageCommandClass(node, controller, endpoint);
+            case TIME:
+                return new ZWaveTimeCommandClass(node, controller, endpoint);
+            case TIME_PARAMETERS:
+                return new ZWaveTimeParametersCommandClass(node, controller, endpoint);
+            case MULTI_INSTANCE_ASSOCIATION:
+                return new ZWaveMultiAssociationCommandClass(node, controller, endpoint);
+            case MULTI_CMD:
+                return new ZWaveMultiCommandCommandClass(node, controller, endpoint);
+            case ENERGY_PRODUCTION:
+                return new ZWaveEnergyProductionCommandClass(node, controller, endpoint);
+            case SECURITY:
+                return new ZWaveSecurityCommandClassWithInitialization(node, controller, endpoint);
+            case SENSOR_ALARM:
+                return new ZWaveAlarmSensorCommandClass(node, controller, endpoint);
+            case SILENCE_ALARM:
+                return new ZWaveAlarmSilenceCommandClass(node, controller, endpoint);
+            case SENSOR_CONFIGURATION:
+                return new ZWaveSensorConfigurationCommandClass(node, controller, endpoint);
+            case FIBARO_FGRM_222:
+                return new FibaroFGRM222CommandClass(node, controller, endpoint);
+            default:
+                return null;
+        }
+    }
+}
@@ -8,11 +8,23 @@
  */
 package org.openhab.binding.zwave.internal.protocol.commandclass;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
 import org.openhab.binding.zwave.internal.protocol.SerialMessage;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageClass;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessagePriority;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageType;
 import org.openhab.binding.zwave.internal.protocol.ZWaveController;
 import org.openhab.binding.zwave.internal.protocol.ZWaveEndpoint;
 import org.openhab.binding.zwave.internal.protocol.ZWaveNode;
 import org.openhab.binding.zwave.internal.protocol.ZWaveSerialMessageException;
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveTransactionCompletedEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,6 +33,11 @@ import com.thoughtworks.xstream.annotations.XStreamOmitField;
 
 /**
  * Handles the Multi Command command class.
+ * <p>
+ * As well as decoding incoming Multi Command frames, this class can pack several queued commands for the node into a
+ * single frame. This is used when a battery node wakes up, so that the queued commands are sent with fewer
+ * transactions and the node can go back to sleep sooner. Commands are only packed together if they are addressed to
+ * the same endpoint, and secure or already encapsulated commands are always sent on their own.
  *
  * @author Chris Jackson
  */
@@ -32,6 +49,34 @@ public class ZWaveMultiCommandCommandClass extends ZWaveCommandClass {
 
     private static final int MULTI_COMMMAND_ENCAP = 0x01;
 
+    private static final int MULTI_CHANNEL_ENCAP = 0x0D;
+    private static final int MULTI_CHANNEL_HEADER_LENGTH = 4;
+
+    // Maximum number of application bytes in a single frame
+    private static final int MAX_PAYLOAD_LENGTH = 46;
+
+    // Bytes sent over the air for each frame on top of the application payload - the MAC header and checksum of the
+    // frame, and the ACK frame returned by the node.
+    private static final int FRAME_OVERHEAD = 20;
+
+    // Bytes transmitted per millisecond at 40kbit/s
+    private static final int BYTES_PER_MS = 5;
+
+    @XStreamOmitField
+    private Map<SerialMessage, List<SerialMessage>> batches;
+
+    @XStreamOmitField
+    private Set<SerialMessage> completingMessages;
+
+    @XStreamOmitField
+    private long batchCount = 0;
+
+    @XStreamOmitField
+    private long framesSaved = 0;
+
+    @XStreamOmitField
+    private long bytesSaved = 0;
+
     /**
      * Creates a new instance of the ZWaveMultiCommandCommandClass class.
      *
@@ -41,6 +86,20 @@ public class ZWaveMultiCommandCommandClass extends ZWaveCommandClass {
      */
     public ZWaveMultiCommandCommandClass(ZWaveNode node, ZWaveController controller, ZWaveEndpoint endpoint) {
         super(node, controller, endpoint);
+
+        batches = new IdentityHashMap<SerialMessage, List<SerialMessage>>();
+        completingMessages = Collections.newSetFromMap(new IdentityHashMap<SerialMessage, Boolean>());
+    }
+
+    /**
+     * Resolves uninitialized fields after XML Deserialization.
+     *
+     * @return The current {@link ZWaveMultiCommandCommandClass} instance.
+     */
+    private Object readResolve() {
+        batches = new IdentityHashMap<SerialMessage, List<SerialMessage>>();
+        completingMessages = Collections.newSetFromMap(new IdentityHashMap<SerialMessage, Boolean>());
+        return this;
     }
 
     /**
@@ -124,4 +183,239 @@ public class ZWaveMultiCommandCommandClass extends ZWaveCommandClass {
             offset += serialMessage.getMessagePayloadByte(offset) + 1;
         }
     }
+
+    /**
+     * Takes the next message from a queue. If the message can be batched, as many of the following messages as will
+     * fit are packed with it into a single MULTI_CMD_ENCAP frame. Messages are only taken from the head of the queue,
+     * so they are always sent in the order they were queued.
+     * <p>
+     * When the batched frame completes, {@link #completeBatch} must be called so that a
+     * {@link ZWaveTransactionCompletedEvent} is raised for each of the original messages.
+     *
+     * @param queue the queue of messages waiting to be sent to this node
+     * @return the message to send, or null if the queue is empty
+     */
+    public SerialMessage pollBatch(Queue<SerialMessage> queue) {
+        SerialMessage first = queue.poll();
+        if (first == null) {
+            return null;
+        }
+
+        int headerLength = getBatchHeaderLength(first);
+        if (headerLength < 0) {
+            return first;
+        }
+
+        byte[] firstPayload = first.getMessagePayload();
+        List<SerialMessage> messages = new ArrayList<SerialMessage>();
+        messages.add(first);
+
+        // The endpoint header, the Multi Command class, command and count, then each command with its length
+        int length = headerLength + 3 + (firstPayload[1] & 0xFF) - headerLength + 1;
+        while (true) {
+            SerialMessage next = queue.peek();
+            if (next == null || getBatchHeaderLength(next) != headerLength
+                    || !isSameHeader(firstPayload, next.getMessagePayload(), headerLength)) {
+                break;
+            }
+            int commandLength = (next.getMessagePayload()[1] & 0xFF) - headerLength;
+            if (length + commandLength + 1 > MAX_PAYLOAD_LENGTH) {
+                break;
+            }
+            length += commandLength + 1;
+            messages.add(queue.poll());
+        }
+
+        if (messages.size() == 1) {
+            return first;
+        }
+
+        // Build the batched frame, keeping any endpoint header from the original messages
+        byte[] newPayload = new byte[length + 2];
+        newPayload[0] = (byte) getNode().getNodeId();
+        newPayload[1] = (byte) length;
+        System.arraycopy(firstPayload, 2, newPayload, 2, headerLength);
+        int offset = headerLength + 2;
+        newPayload[offset++] = (byte) getCommandClass().getKey();
+        newPayload[offset++] = MULTI_COMMMAND_ENCAP;
+        newPayload[offset++] = (byte) messages.size();
+
+        SerialMessageClass expectedReply = SerialMessageClass.SendData;
+        SerialMessagePriority priority = first.getPriority();
+        int separateLength = 0;
+        for (SerialMessage message : messages) {
+            byte[] payload = message.getMessagePayload();
+            int commandLength = (payload[1] & 0xFF) - headerLength;
+            newPayload[offset++] = (byte) commandLength;
+            System.arraycopy(payload, headerLength + 2, newPayload, offset, commandLength);
+            offset += commandLength;
+
+            // If any of the commands wants a response, then so does the batch
+            if (message.getExpectedReply() == SerialMessageClass.ApplicationCommandHandler) {
+                expectedReply = SerialMessageClass.ApplicationCommandHandler;
+            }
+            if (message.getPriority().ordinal() < priority.ordinal()) {
+                priority = message.getPriority();
+            }
+            separateLength += (payload[1] & 0xFF) + FRAME_OVERHEAD;
+        }
+
+        SerialMessage result = new SerialMessage(getNode().getNodeId(), SerialMessageClass.SendData,
+                SerialMessageType.Request, expectedReply, priority);
+        result.setMessagePayload(newPayload);
+
+        synchronized (this) {
+            batches.put(result, messages);
+            batchCount++;
+            framesSaved += messages.size() - 1;
+            bytesSaved += separateLength - length - FRAME_OVERHEAD;
+        }
+
+        logger.debug("NODE {}: Batched {} commands into a Multi Command frame of {} bytes", getNode().getNodeId(),
+                messages.size(), length);
+        logger.debug("NODE {}: Multi Command batching has saved {} frames, {} bytes ({}ms airtime) in {} batches",
+                getNode().getNodeId(), framesSaved, bytesSaved, getAirtimeSaved(), batchCount);
+
+        return result;
+    }
+
+    /**
+     * Completes a frame created by {@link #pollBatch}. A {@link ZWaveTransactionCompletedEvent} is raised for each of
+     * the messages that were packed into the batch, so that anything waiting for them sees them complete.
+     *
+     * @param serialMessage the completed message
+     * @param state the state of the completed transaction
+     * @return true if the message was a batch
+     */
+    public boolean completeBatch(SerialMessage serialMessage, boolean state) {
+        List<SerialMessage> messages;
+        synchronized (this) {
+            messages = batches.remove(serialMessage);
+            if (messages == null) {
+                return false;
+            }
+            completingMessages.addAll(messages);
+        }
+
+        try {
+            for (SerialMessage message : messages) {
+                getController().notifyEventListeners(new ZWaveTransactionCompletedEvent(message, state));
+            }
+        } finally {
+            synchronized (this) {
+                completingMessages.removeAll(messages);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a completed message was sent as part of a batch. The batch itself has already been handled when
+     * these messages complete.
+     *
+     * @param serialMessage the completed message
+     * @return true if the message was sent in a batch
+     */
+    public synchronized boolean isBatchedMessage(SerialMessage serialMessage) {
+        return completingMessages.contains(serialMessage);
+    }
+
+    /**
+     * Gets the number of Multi Command frames that have been sent instead of separate frames
+     *
+     * @return number of batches
+     */
+    public synchronized long getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * Gets the number of frames that didn't need to be sent because their commands were batched
+     *
+     * @return number of frames
+     */
+    public synchronized long getFramesSaved() {
+        return framesSaved;
+    }
+
+    /**
+     * Gets the number of bytes that didn't need to be sent over the air because commands were batched. This includes
+     * the ACK frames from the node.
+     *
+     * @return number of bytes
+     */
+    public synchronized long getBytesSaved() {
+        return bytesSaved;
+    }
+
+    /**
+     * Gets an estimate of the airtime saved by batching commands, assuming the node communicates at 40kbit/s
+     *
+     * @return airtime saved in milliseconds
+     */
+    public synchronized long getAirtimeSaved() {
+        return bytesSaved / BYTES_PER_MS;
+    }
+
+    /**
+     * Checks if a message can be batched, and works out the length of the endpoint header that must be kept
+     * outside the Multi Command encapsulation.
+     *
+     * @param serialMessage the message to check
+     * @return the header length, or -1 if the message can't be batched
+     */
+    private int getBatchHeaderLength(SerialMessage serialMessage) {
+        if (serialMessage.getMessageClass() != SerialMessageClass.SendData
+                || serialMessage.getMessageType() != SerialMessageType.Request) {
+            return -1;
+        }
+
+        byte[] payload = serialMessage.getMessagePayload();
+        if (payload.length < 4 || (payload[0] & 0xFF) != getNode().getNodeId()
+                || payload.length < (payload[1] & 0xFF) + 2) {
+            return -1;
+        }
+
+        // Messages to an endpoint can be batched if the endpoint supports Multi Command
+        int headerLength = 0;
+        if ((payload[2] & 0xFF) == CommandClass.MULTI_INSTANCE.getKey()) {
+            if ((payload[3] & 0xFF) != MULTI_CHANNEL_ENCAP || (payload[1] & 0xFF) < MULTI_CHANNEL_HEADER_LENGTH + 2) {
+                return -1;
+            }
+            ZWaveMultiInstanceCommandClass multiInstance = (ZWaveMultiInstanceCommandClass) getNode()
+                    .getCommandClass(CommandClass.MULTI_INSTANCE);
+            ZWaveEndpoint endpoint = multiInstance == null ? null : multiInstance.getEndpoint(payload[5] & 0xFF);
+            if (endpoint == null || endpoint.getCommandClass(CommandClass.MULTI_CMD) == null) {
+                return -1;
+            }
+            headerLength = MULTI_CHANNEL_HEADER_LENGTH;
+        } else if (getNode().doesMessageRequireSecurityEncapsulation(serialMessage)) {
+            return -1;
+        }
+
+        // Encapsulated commands, and NOPs used to check the node is alive, are sent on their own
+        CommandClass commandClass = CommandClass.getCommandClass(payload[headerLength + 2] & 0xFF);
+        if (commandClass == null) {
+            return -1;
+        }
+        switch (commandClass) {
+            case NO_OPERATION:
+            case CRC_16_ENCAP:
+            case MULTI_INSTANCE:
+            case MULTI_CMD:
+            case SECURITY:
+                return -1;
+            default:
+                return headerLength;
+        }
+    }
+
+    private boolean isSameHeader(byte[] payload1, byte[] payload2, int headerLength) {
+        for (int index = 2; index < headerLength + 2; index++) {
+            if (payload1[index] != payload2[index]) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -8,9 +8,6 @@
  */
 package org.openhab.binding.zwave.internal.protocol.commandclass;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
 import java.util.Iterator;
@@ -20,9 +17,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 
-import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
-import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
 import org.openhab.binding.zwave.internal.protocol.SerialMessage;
@@ -35,10 +30,11 @@ import org.openhab.binding.zwave.internal.protocol.ZWaveNode;
 import org.openhab.binding.zwave.internal.protocol.ZWaveSerialMessageException;
 import org.openhab.binding.zwave.internal.protocol.event.ZWaveInclusionEvent;
 import org.openhab.binding.zwave.internal.protocol.event.ZWaveInclusionEvent.Type;
-import org.openhab.binding.zwave.internal.protocol.initialization.ZWaveNodeSerializer;
 import org.openhab.binding.zwave.internal.protocol.security.SecurityEncapsulatedSerialMessage;
 import org.openhab.binding.zwave.internal.protocol.security.ZWaveSecureNonceTracker;
 import org.openhab.binding.zwave.internal.protocol.security.ZWaveSecureNonceTracker.Nonce;
+import org.openhab.binding.zwave.internal.protocol.security.ZWaveSecurityCipher;
+import org.openhab.binding.zwave.internal.protocol.security.ZWaveSecurityEncapsulationScheduler;
 import org.openhab.binding.zwave.internal.protocol.security.ZWaveSecurityPayloadFrame;
 import org.openhab.binding.zwave.internal.protocol.serialmessage.ApplicationCommandMessageClass;
 import org.slf4j.Logger;
@@ -60,19 +56,8 @@ import com.thoughtworks.xstream.annotations.XStreamOmitField;
 public abstract class ZWaveSecurityCommandClass extends ZWaveCommandClass {
     private static final Logger logger = LoggerFactory.getLogger(ZWaveSecurityCommandClass.class);
 
-    /**
-     * Per the z-wave spec, this is the AES key used to derive {@link #encryptKey} from {@link #networkKey}
-     */
-    private static final byte[] DERIVE_ENCRYPT_KEY = { (byte) 0xAA, (byte) 0xAA, (byte) 0xAA, (byte) 0xAA, (byte) 0xAA,
-            (byte) 0xAA, (byte) 0xAA, (byte) 0xAA, (byte) 0xAA, (byte) 0xAA, (byte) 0xAA, (byte) 0xAA, (byte) 0xAA,
-            (byte) 0xAA, (byte) 0xAA, (byte) 0xAA };
-    /**
-     * Per the z-wave spec, this is the AES key used to derive {@link #authKey} from {@link #networkKey}
-     */
-    private static final byte[] DERIVE_AUTH_KEY = { 0x55, 0x55, 0x55, 0x55, 0x55, 0x55, 0x55, 0x55, 0x55, 0x55, 0x55,
-            0x55, 0x55, 0x55, 0x55, 0x55 };
     private static final String AES = "AES";
-    private static final int MAC_LENGTH = 8;
+    private static final int MAC_LENGTH = ZWaveSecurityCipher.MAC_LENGTH;
     private static final int IV_LENGTH = 16;
     static final int HALF_OF_IV = IV_LENGTH / 2;
     /**
@@ -230,16 +215,10 @@ public abstract class ZWaveSecurityCommandClass extends ZWaveCommandClass {
     private SecretKey networkKey;
 
     /**
-     * The encryption key currently in use which is derived from {@link #networkKey}
+     * The encryption and auth contexts currently in use which are derived from {@link #networkKey}
      */
     @XStreamOmitField
-    private SecretKey encryptKey;
-
-    /**
-     * The auth key currently in use which is derived from {@link #networkKey}
-     */
-    @XStreamOmitField
-    private SecretKey authKey;
+    private ZWaveSecurityCipher securityCipher;
 
     /**
      * The error that occurred when trying to load the encryption key from openhab.cfg -> zwave:networkey
@@ -281,13 +260,13 @@ public abstract class ZWaveSecurityCommandClass extends ZWaveCommandClass {
     protected ZWaveSecureNonceTracker nonceGeneration = new ZWaveSecureNonceTracker(getNode());
 
     @XStreamOmitField
-    private Object threadLock = new Object();
-
-    @XStreamOmitField
-    private ZWaveSecurityEncapsulationThread encapsulationThread;
+    private long lastDeviceNonceReceivedAt = 0L;
 
+    /**
+     * Set when a message had to wait for a nonce to be requested from the device
+     */
     @XStreamOmitField
-    private long lastDeviceNonceReceivedAt = 0L;
+    private boolean waitingForNonce = false;
 
     // TODO: DB serialize
     /**
@@ -296,6 +275,17 @@ public abstract class ZWaveSecurityCommandClass extends ZWaveCommandClass {
      */
     private boolean disableEncapNonceGet = false;
 
+    /**
+     * The default time we will wait to receive a response (or if no response will be sent at all)
+     */
+    private static final long DEFAULT_WAIT_FOR_RESPONSE = 10000;
+
+    /**
+     * If we get a {@link ZWaveSecurityCommandClass#SECURITY_NONCE_GET}, then we know the node
+     * is going to send us a security encapsulated response message. Wait additional time to receive that
+     */
+    private static final long NONCE_GET_ADDON = 20000;
+
     static {
         // Initialize the COMMAND_LOOKUP_TABLE
         COMMAND_LOOKUP_TABLE.put(Byte.valueOf(SECURITY_COMMANDS_SUPPORTED_GET), "SECURITY_COMMANDS_SUPPORTED_GET");
@@ -401,7 +391,7 @@ public abstract class ZWaveSecurityCommandClass extends ZWaveCommandClass {
                 debugHex("Received SECURITY_NONCE_REPORT", nonceBytes);
                 nonceGeneration.receivedNonceFromDevice(nonceBytes);
 
-                // Notify the ZWaveSecurityEncapsulationThread since we received a nonce
+                // Notify the encapsulation scheduler since we received a nonce
                 notifyEncapsulationThread();
                 return;
 
@@ -452,8 +442,7 @@ public abstract class ZWaveSecurityCommandClass extends ZWaveCommandClass {
             return null;
         }
         traceHex("in decryptMessage starting at offset, buffer is", data, offset);
-        ByteArrayInputStream bais = new ByteArrayInputStream(data);
-        // check for minimum size here so we can ignore the return value of bais.read() below
+        // check for minimum size here so we don't read past the end of the buffer below
         int minimumSize = offset + ENCAPSULATED_HEADER_LENGTH + ENCAPSULATED_FOOTER_LENGTH;
         if (data.length < minimumSize) {
             logger.debug(
@@ -461,26 +450,27 @@ public abstract class ZWaveSecurityCommandClass extends ZWaveCommandClass {
                     this.getNode().getNodeId(), minimumSize, data.length);
             return null;
         }
+        if (securityCipher == null) {
+            // When loaded from xml, the cipher will be null so we load it here
+            setupNetworkKey(false);
+        }
         try {
-            // advance to the command byte
-            bais.read(new byte[offset]);
-            byte command = (byte) bais.read();
+            byte command = data[offset];
             byte[] initializationVector = new byte[IV_LENGTH];
 
             // The next 8 bytes of packet are the nonce generated by the device for the IV
-            bais.read(initializationVector, 0, HALF_OF_IV);
+            System.arraycopy(data, offset + 1, initializationVector, 0, HALF_OF_IV);
             traceHex("device nonce", initializationVector, 0, HALF_OF_IV);
             int ciphertextSize = data.length - offset - ENCAPSULATED_HEADER_LENGTH - ENCAPSULATED_FOOTER_LENGTH + 1;
 
             // Next are the ciphertext bytes
-            byte[] ciphertextBytes = new byte[ciphertextSize];
-            bais.read(ciphertextBytes);
+            int ciphertextOffset = offset + 1 + HALF_OF_IV;
             logger.trace("NODE {}: Encrypted Packet Sizes: total={}, encrypted={}", getNode().getNodeId(), data.length,
                     ciphertextSize);
-            traceHex("ciphertextBytes", ciphertextBytes);
+            traceHex("ciphertextBytes", data, ciphertextOffset, ciphertextSize);
 
             // We stored the nonce that we sent to the device, retrieve it by the id so we can use it in the IV
-            byte nonceId = (byte) bais.read();
+            byte nonceId = data[ciphertextOffset + ciphertextSize];
             Nonce nonceWeSentToDevice = nonceGeneration.getNonceWeGeneratedById(nonceId);
             if (nonceWeSentToDevice == null) { // probably expired
                 // Error message logged in ZWaveSecureNonceTracker, just return
@@ -489,24 +479,22 @@ public abstract class ZWaveSecurityCommandClass extends ZWaveCommandClass {
             System.arraycopy(nonceWeSentToDevice.getNonceBytes(), 0, initializationVector, HALF_OF_IV, HALF_OF_IV);
             traceHex("IV", initializationVector);
 
-            byte[] macFromPacket = new byte[MAC_LENGTH];
-            bais.read(macFromPacket);
-            Cipher cipher = Cipher.getInstance("AES/OFB/NoPadding");
-            cipher.init(Cipher.DECRYPT_MODE, encryptKey, new IvParameterSpec(initializationVector));
-            byte[] plaintextBytes = cipher.doFinal(ciphertextBytes);
+            // The MAC follows the nonce id. This checks the MAC and decrypts with AES-OFB in one pass.
+            int macOffset = ciphertextOffset + ciphertextSize + 1;
+            byte driverNodeId = (byte) this.getController().getOwnNodeId();
+            byte[] plaintextBytes = new byte[ciphertextSize];
+            boolean macValid = securityCipher.decryptAndVerify(initializationVector, command,
+                    (byte) getNode().getNodeId(), driverNodeId, data, ciphertextOffset, ciphertextSize, macOffset,
+                    plaintextBytes, 0);
             traceHex("plaintextBytes", plaintextBytes);
 
-            byte driverNodeId = (byte) this.getController().getOwnNodeId();
-            byte[] mac = generateMAC(command, ciphertextBytes, (byte) getNode().getNodeId(), driverNodeId,
-                    initializationVector);
-            if (Arrays.equals(mac, macFromPacket)) {
+            if (macValid) {
                 logger.trace("NODE {}: MAC Authentication of packet verified OK", getNode().getNodeId());
             } else {
                 logger.debug("NODE {}: SECURITY_ERROR MAC Authentication of packet failed. Dropping.",
                         getNode().getNodeId());
                 traceHex("full packet", data);
-                traceHex("package mac", macFromPacket);
-                traceHex("our mac", mac);
+                traceHex("package mac", data, macOffset, MAC_LENGTH);
                 if (DROP_PACKETS_ON_MAC_FAILURE) {
                     return null;
                 } else {
@@ -572,27 +560,23 @@ public abstract class ZWaveSecurityCommandClass extends ZWaveCommandClass {
             // Clean up expired items and check for duplicate requests. This is necessary as
             // bombarding a device with messages will typically cause issues and it may stop
             // responding (seen during testing with Kwikset locks)
+            byte[] newMessageBytes = securityPayloadFrameList.get(0).getMessageBytes();
+            long now = System.currentTimeMillis();
             Iterator<ZWaveSecurityPayloadFrame> iter = payloadEncapsulationQueue.iterator();
             while (iter.hasNext()) {
                 ZWaveSecurityPayloadFrame aFrameFromQueue = iter.next();
                 boolean shouldRemove = false;
-                byte[] newMessageTwoBytes = new byte[2];
-                System.arraycopy(securityPayloadFrameList.get(0).getMessageBytes(), 0, newMessageTwoBytes, 0, 2);
                 // Expired frame check
-                if (System.currentTimeMillis() > aFrameFromQueue.getExpirationTime()) {
+                if (now > aFrameFromQueue.getExpirationTime()) {
                     shouldRemove = true;
                     logger.debug("NODE {}: Expired from payloadEncapsulationQueue: {}", getNode().getNodeId(),
                             aFrameFromQueue);
                 } else {
                     // Duplicate message check - if the queue already contains a message like this one, replace it
                     // Compare the first 2 bytes (command class and operation) to do so
-                    byte[] aFrameFromQueueTwoBytes = new byte[2];
-                    System.arraycopy(aFrameFromQueue.getMessageBytes(), 0, aFrameFromQueueTwoBytes, 0, 2);
-                    shouldRemove = Arrays.equals(newMessageTwoBytes, aFrameFromQueueTwoBytes);
-                    logger.debug("NODE {}: payloadEncapsulationQueue similar frame check, shouldRemove={}: {} vs {}",
-                            getNode().getNodeId(), shouldRemove,
-                            SerialMessage.bb2hex(aFrameFromQueue.getMessageBytes()),
-                            SerialMessage.bb2hex(securityPayloadFrameList.get(0).getMessageBytes()));
+                    byte[] aFrameFromQueueBytes = aFrameFromQueue.getMessageBytes();
+                    shouldRemove = aFrameFromQueueBytes[0] == newMessageBytes[0]
+                            && aFrameFromQueueBytes[1] == newMessageBytes[1];
                 }
                 if (shouldRemove) {
                     removeFromEncapsulationQueue(aFrameFromQueue, iter, "Newer request received");
@@ -603,10 +587,55 @@ public abstract class ZWaveSecurityCommandClass extends ZWaveCommandClass {
         // Finally, since we've cleanup duplicates and removed old entries, we can add the new frame(s) to our queue
         payloadEncapsulationQueue.addAll(securityPayloadFrameList);
 
-        // Wake up the {@link ZWaveSecurityEncapsulationThread} so it can do what it needs to
+        // If we're still waiting for the last message to complete, request the nonce now so it's ready when we are
+        if (isNoncePrefetchEnabled() && lastEncapsulatedRequstMessage != null) {
+            prefetchNonce();
+        }
+
+        // Wake up the encapsulation scheduler so it can do what it needs to
         notifyEncapsulationThread();
     }
 
+    /**
+     * Nonce prefetch is used for mains powered nodes when it's enabled in the controller. Battery nodes aren't
+     * listening, so the extra frames would only shorten their battery life.
+     *
+     * @return true if nonces should be requested before they're needed
+     */
+    protected boolean isNoncePrefetchEnabled() {
+        return getController().isNoncePrefetchEnabled() && getNode().isListening();
+    }
+
+    /**
+     * Requests a nonce from the device ahead of the next message, unless we already have one or have requested one
+     */
+    private void prefetchNonce() {
+        if (nonceGeneration.hasUseableDeviceNonce()) {
+            return;
+        }
+        SerialMessage nonceGetMessage = nonceGeneration.buildNonceGetIfNeeded();
+        if (nonceGetMessage != null) {
+            logger.debug("NODE {}: Prefetching nonce", getNode().getNodeId());
+            transmitMessage(nonceGetMessage);
+        }
+    }
+
+    /**
+     * @return the number of messages that were encapsulated without waiting for a nonce from the device
+     */
+    public long getNonceHits() {
+        checkInit();
+        return nonceGeneration.getNonceHits();
+    }
+
+    /**
+     * @return the number of messages that had to wait for a nonce from the device
+     */
+    public long getNonceMisses() {
+        checkInit();
+        return nonceGeneration.getNonceMisses();
+    }
+
     /**
      * Deletes the given frame using iter.remove(). Will automatically delete subsequent frames as needed
      * for multi-part messages
@@ -638,8 +667,8 @@ public abstract class ZWaveSecurityCommandClass extends ZWaveCommandClass {
     /**
      * Gets the next message from {@link #payloadEncapsulationQueue}, encapsulates (encrypts and MACs) it, then
      * transmits
-     * Invoked by {@link ZWaveSecurityEncapsulationThread}. This method must only be called by
-     * {@link ZWaveSecurityEncapsulationThread}
+     * Invoked by {@link #processEncapsulationQueue()}. This method must only be called from the
+     * {@link ZWaveSecurityEncapsulationScheduler}, or during inclusion
      *
      * @throws ZWaveSerialMessageException
      */
@@ -648,8 +677,8 @@ public abstract class ZWaveSecurityCommandClass extends ZWaveCommandClass {
         if (!checkRealNetworkKeyLoaded()) {
             return;
         }
-        if (encryptKey == null) {
-            // When loaded from xml, encrypt key will be null so we load it here
+        if (securityCipher == null) {
+            // When loaded from xml, the cipher will be null so we load it here
             setupNetworkKey(false);
         }
 
@@ -660,6 +689,7 @@ public abstract class ZWaveSecurityCommandClass extends ZWaveCommandClass {
 
         Nonce deviceNonce = nonceGeneration.getUseableDeviceNonce();
         if (deviceNonce == null) {
+            waitingForNonce = true;
             SerialMessage nonceGetMessage = nonceGeneration.buildNonceGetIfNeeded();
             if (nonceGetMessage == null) {
                 // Nothing to do, we are already waiting for a nonce from the device
@@ -675,6 +705,10 @@ public abstract class ZWaveSecurityCommandClass extends ZWaveCommandClass {
             logger.warn("NODE {}: payloadQueue was empty, returning!", getNode().getNodeId());
             return;
         }
+        nonceGeneration.recordNonceUse(!waitingForNonce);
+        waitingForNonce = false;
+        logger.debug("NODE {}: Nonce hit rate {}% ({} hits, {} misses)", getNode().getNodeId(),
+                nonceGeneration.getNonceHitRate(), nonceGeneration.getNonceHits(), nonceGeneration.getNonceMisses());
 
         // Encapsulate the message fragment
         debugHex("SecurityPayloadBytes", securityPayload.getMessageBytes());
@@ -684,10 +718,6 @@ public abstract class ZWaveSecurityCommandClass extends ZWaveCommandClass {
                 SerialMessageType.Request, securityPayload.getOriginalMessage());
         message.setDeviceNonceId(deviceNonce.getNonceBytes()[0]);
 
-        ByteArrayOutputStream outputData = new ByteArrayOutputStream();
-        outputData.write((byte) getNode().getNodeId());
-        outputData.write(securityPayload.getLength() + 20);
-        outputData.write(this.getCommandClass().getKey());
         byte commandByte = SECURITY_MESSAGE_ENCAP;
         if (USE_SECURITY_MESSAGE_ENCAP_NONCE_GET && !disableEncapNonceGet) {
             boolean useNonceGetMessage = false;
@@ -695,11 +725,10 @@ public abstract class ZWaveSecurityCommandClass extends ZWaveCommandClass {
                 useNonceGetMessage = true;
                 logger.debug("NODE {}: using SECURITY_MESSAGE_ENCAP_NONCE_GET with queue size of {}",
                         getNode().getNodeId(), payloadEncapsulationQueue.size());
-            } else if (false) { // Check for messages that we know will have a follow-up request that is secure TODO: DB
-                                // change flag to AGGRESSIVE, etc? or just remove..
-                useNonceGetMessage = bytesAreEqual(securityPayload.getMessageBytes()[0],
-                        ZWaveCommandClass.CommandClass.DOOR_LOCK.getKey())
-                        && bytesAreEqual(securityPayload.getMessageBytes()[1], ZWaveDoorLockCommandClass.DOOR_LOCK_SET);
+            } else if (isNoncePrefetchEnabled()) {
+                // Check for messages that we know will have a follow-up request that is secure.
+                // A SET is normally followed by a GET to read back the new state.
+                useNonceGetMessage = securityPayload.getOriginalMessage().getPriority() == SerialMessagePriority.Set;
                 if (useNonceGetMessage) {
                     logger.debug(
                             "NODE {}: using SECURITY_MESSAGE_ENCAP_NONCE_GET since there will be a followup command",
@@ -713,7 +742,6 @@ public abstract class ZWaveSecurityCommandClass extends ZWaveCommandClass {
         }
         logger.trace("NODE {}: Used nonce to form {} ({}).", getNode().getNodeId(), commandToString(commandByte),
                 securityPayload.getLogMessage());
-        outputData.write(commandByte);
 
         // create the iv
         byte[] initializationVector = new byte[16];
@@ -725,47 +753,44 @@ public abstract class ZWaveSecurityCommandClass extends ZWaveCommandClass {
         // the 2nd half of the IV is the nonce provided by the device
         System.arraycopy(deviceNonce.getNonceBytes(), 0, initializationVector, HALF_OF_IV, HALF_OF_IV);
 
+        int totalParts = securityPayload.getTotalParts();
+        if (totalParts != 1) {
+            // We don't support multi-packet encapsulation at the moment...
+            logger.error("NODE {}: SECURITY_ERROR SecurityPayload had invalid number of parts: {} Send aborted.",
+                    getNode().getNodeId(), totalParts);
+            return;
+        }
+
+        // The frame is built in a single buffer. The plaintext (the sequence byte and the message payload) is
+        // written where the ciphertext goes, and is encrypted in place before the MAC is added.
+        int plaintextLength = 1 + securityPayload.getLength();
+        int ciphertextOffset = 4 + HALF_OF_IV;
+        int nonceIdOffset = ciphertextOffset + plaintextLength;
+        byte[] payload = new byte[nonceIdOffset + 1 + MAC_LENGTH];
+        payload[0] = (byte) getNode().getNodeId();
+        payload[1] = (byte) (payload.length - 2);
+        payload[2] = (byte) this.getCommandClass().getKey();
+        payload[3] = commandByte;
+
+        // Append the first 8 bytes of the IV (our nonce) to the message
+        System.arraycopy(initializationVector, 0, payload, 4, HALF_OF_IV);
+
+        payload[ciphertextOffset] = securityPayload.getSequenceByte();
+        System.arraycopy(securityPayload.getMessageBytes(), 0, payload, ciphertextOffset + 1,
+                securityPayload.getLength());
+        traceHex("Input frame for encryption:", payload, ciphertextOffset, plaintextLength);
+        traceHex("IV:", initializationVector);
+
+        // Append the nonce identifier which is the first byte of the device nonce
+        payload[nonceIdOffset] = deviceNonce.getNonceBytes()[0];
+
         try {
-            // Append the first 8 bytes of the IV (our nonce) to the message
-            outputData.write(initializationVector, 0, HALF_OF_IV);
-
-            int totalParts = securityPayload.getTotalParts();
-            if (totalParts != 1) {
-                // We don't support multi-packet encapsulation at the moment...
-                logger.error("NODE {}: SECURITY_ERROR SecurityPayload had invalid number of parts: {} Send aborted.",
-                        getNode().getNodeId(), totalParts);
-                return;
-            }
-            // at most, the payload will be securityPayload length + 1 byte for the sequence byte
-            byte[] plaintextMessageBytes = new byte[1 + securityPayload.getLength()];
-            plaintextMessageBytes[0] = securityPayload.getSequenceByte();
-            System.arraycopy(securityPayload.getMessageBytes(), 0, plaintextMessageBytes, 1,
-                    securityPayload.getLength());
-            // Append the message payload after encrypting it with AES-OFB
-            traceHex("Input frame for encryption:", plaintextMessageBytes);
-            traceHex("IV:", initializationVector);
-
-            // This will use hardware AES acceleration when possible (default in JDK 8)
-            Cipher encryptCipher = Cipher.getInstance("AES/OFB/NoPadding");
-            encryptCipher.init(Cipher.ENCRYPT_MODE, encryptKey, new IvParameterSpec(initializationVector));
-            byte[] ciphertextBytes = encryptCipher.doFinal(plaintextMessageBytes);
-            traceHex("Encrypted Output", ciphertextBytes);
-            outputData.write(ciphertextBytes);
-
-            // Append the nonce identifier which is the first byte of the device nonce
-            outputData.write(deviceNonce.getNonceBytes()[0]);
-            int commandClassByteOffset = 2;
-            int toMacLength = outputData.toByteArray().length - commandClassByteOffset; // Start at command class byte
-            byte[] toMac = new byte[toMacLength];
-            System.arraycopy(outputData.toByteArray(), commandClassByteOffset, toMac, 0, toMacLength);
-
-            // Generate the MAC
+            // Encrypt the message payload with AES-OFB, then append the MAC
             byte sendingNode = (byte) this.getController().getOwnNodeId();
-            byte[] mac = generateMAC(commandByte, ciphertextBytes, sendingNode, (byte) getNode().getNodeId(),
-                    initializationVector);
-            traceHex("Auth mac", mac);
-            outputData.write(mac);
-            byte[] payload = outputData.toByteArray();
+            securityCipher.encryptAndMac(initializationVector, commandByte, sendingNode, (byte) getNode().getNodeId(),
+                    payload, ciphertextOffset, plaintextLength, payload, ciphertextOffset, nonceIdOffset + 1);
+            traceHex("Encrypted Output", payload, ciphertextOffset, plaintextLength);
+            traceHex("Auth mac", payload, nonceIdOffset + 1, MAC_LENGTH);
             debugHex(
                     String.format("Outgoing encrypted message (device nonce=%02X): ", initializationVector[HALF_OF_IV]),
                     payload);
@@ -773,8 +798,8 @@ public abstract class ZWaveSecurityCommandClass extends ZWaveCommandClass {
             message.setSecurityPayload(securityPayload);
             lastEncapsulatedRequstMessage = message;
             transmitMessage(message);
-        } catch (GeneralSecurityException | IOException e) {
-            logger.error("NODE {}: Error in sendNextMessageWithNonce, message not sent", e);
+        } catch (GeneralSecurityException e) {
+            logger.error("NODE {}: Error in sendNextMessageWithNonce, message not sent", getNode().getNodeId(), e);
         }
     }
 
@@ -788,19 +813,16 @@ public abstract class ZWaveSecurityCommandClass extends ZWaveCommandClass {
         if (nonceGeneration == null) {
             nonceGeneration = new ZWaveSecureNonceTracker(getNode());
         }
-        if (threadLock == null) {
-            threadLock = new Object();
-        }
         if (payloadEncapsulationQueue == null) {
             payloadEncapsulationQueue = new ConcurrentLinkedQueue<ZWaveSecurityPayloadFrame>();
         }
     }
 
-    public void startSecurityEncapsulationThread() {
-        if (encapsulationThread == null) {
-            encapsulationThread = new ZWaveSecurityEncapsulationThread();
-            encapsulationThread.start();
-        }
+    /**
+     * Starts processing the encapsulation queue once secure inclusion has completed
+     */
+    public void startSecurityEncapsulation() {
+        notifyEncapsulationThread();
     }
 
     // package visible for junit
@@ -821,14 +843,8 @@ public abstract class ZWaveSecurityCommandClass extends ZWaveCommandClass {
         }
 
         try {
-            // Derived the message encryption key from the network key
-            Cipher cipher = Cipher.getInstance("AES/ECB/NoPadding");
-            cipher.init(Cipher.ENCRYPT_MODE, networkKey);
-            encryptKey = new SecretKeySpec(cipher.doFinal(DERIVE_ENCRYPT_KEY), AES);
-
-            // Derived the message auth key from the network key
-            cipher.init(Cipher.ENCRYPT_MODE, networkKey);
-            authKey = new SecretKeySpec(cipher.doFinal(DERIVE_AUTH_KEY), AES);
+            // Derive the message encryption and auth keys from the network key
+            securityCipher = new ZWaveSecurityCipher(networkKey);
         } catch (GeneralSecurityException e) {
             logger.error("NODE {}: Error building derived keys {}", getNode().getNodeId(), e);
             keyException = e;
@@ -862,64 +878,9 @@ public abstract class ZWaveSecurityCommandClass extends ZWaveCommandClass {
             throws GeneralSecurityException {
         traceHex("generateMAC ciphertext", ciphertext);
         traceHex("generateMAC iv", iv);
-        // Build a buffer containing a 4-byte header and the encrypted message data, padded with zeros to a 16-byte
-        // boundary.
-        int bufferSize = ciphertext.length + 4; // +4 to account for the header
-        byte[] buffer = new byte[bufferSize];
-        byte[] tempAuth = new byte[16];
-
-        buffer[0] = commandClass;
-        buffer[1] = sendingNode;
-        buffer[2] = receivingNode;
-        buffer[3] = (byte) ciphertext.length;
-        System.arraycopy(ciphertext, 0, buffer, 4, ciphertext.length);
-        traceHex("generateMAC NetworkKey", networkKey.getEncoded());
-        traceHex("generateMAC Raw Auth (minus IV)", buffer);
-
-        // Encrypt the IV with ECB
-        Cipher encryptCipher = Cipher.getInstance("AES/ECB/NoPadding");
-        encryptCipher.init(Cipher.ENCRYPT_MODE, authKey);
-        tempAuth = encryptCipher.doFinal(iv);
-        traceHex("generateMAC tmp1", tempAuth);
-        // our temporary holding
-        byte[] encpck = new byte[16];
-        int block = 0;
-
-        // now xor the buffer with our encrypted IV
-        for (int i = 0; i < bufferSize; i++) {
-            encpck[block] = buffer[i];
-            block++;
-            // if we hit a blocksize, then xor and encrypt
-            if (block == 16) {
-                for (int j = 0; j < 16; j++) {
-                    // here we do our xor
-                    tempAuth[j] = (byte) (encpck[j] ^ tempAuth[j]);
-                    encpck[j] = 0;
-                }
-                // reset encpck for good measure
-                Arrays.fill(encpck, (byte) 0);
-                // reset our block counter back to 0
-                block = 0;
-
-                encryptCipher.init(Cipher.ENCRYPT_MODE, authKey);
-                tempAuth = encryptCipher.doFinal(tempAuth);
-            }
-        }
-
-        // any left over data that isn't a full block size
-        if (block > 0) {
-            for (int i = 0; i < 16; i++) {
-                // encpck from block to 16 is already guaranteed to be 0 so its safe to xor it with out tempAuth
-                tempAuth[i] = (byte) (encpck[i] ^ tempAuth[i]);
-            }
-
-            encryptCipher.init(Cipher.ENCRYPT_MODE, authKey);
-            tempAuth = encryptCipher.doFinal(tempAuth);
-        }
-        // we only care about the first 8 bytes of tempAuth as the mac
-        traceHex("generateMAC Computed Auth", tempAuth);
-        byte[] mac = new byte[8];
-        System.arraycopy(tempAuth, 0, mac, 0, 8);
+        byte[] mac = new byte[MAC_LENGTH];
+        securityCipher.generateMac(iv, commandClass, sendingNode, receivingNode, ciphertext, 0, ciphertext.length, mac,
+                0);
         return mac;
     }
 
@@ -955,14 +916,21 @@ public abstract class ZWaveSecurityCommandClass extends ZWaveCommandClass {
         }
     }
 
+    /**
+     * Clears the security key, so no network key is configured
+     */
+    public static void clearRealNetworkKey() {
+        ZWaveSecurityCommandClass.realNetworkKey = null;
+        ZWaveSecurityCommandClass.keyException = null;
+    }
+
+    /**
+     * Schedules the encapsulation queue to be processed on the {@link ZWaveSecurityEncapsulationScheduler}
+     */
     protected void notifyEncapsulationThread() {
-        long start = System.currentTimeMillis();
-        synchronized (threadLock) {
-            threadLock.notify();
-        }
-        long elapsed = System.currentTimeMillis() - start;
-        if (elapsed > 500) {
-            logger.warn("NODE {}: Took {}ms to get threadLock for notify", getNode().getNodeId(), elapsed);
+        ZWaveSecurityEncapsulationScheduler scheduler = getController().getSecurityEncapsulationScheduler();
+        if (scheduler != null) {
+            scheduler.schedule(this);
         }
     }
 
@@ -1073,115 +1041,85 @@ public abstract class ZWaveSecurityCommandClass extends ZWaveCommandClass {
     }
 
     /**
-     * Security encapsulation thread. This waits for 1) a device nonce to arrive
-     * and 2) the last transaction to be completed. It will then use the device
-     * nonce to security encapsulate the next message in {@link ZWaveSecurityCommandClass#payloadEncapsulationQueue}
-     * and give it to the controller for sending
+     * Processes the encapsulation queue. This is called by the {@link ZWaveSecurityEncapsulationScheduler} when a
+     * device nonce arrives, the last transaction completes, a message is queued, or the time returned from the last
+     * call is reached. It checks if the last message has completed or timed out, and if so uses the device nonce to
+     * security encapsulate the next message in {@link #payloadEncapsulationQueue} and gives it to the controller for
+     * sending.
      *
+     * @return the time at which the queue needs to be checked again if nothing else happens, or 0 if it only needs to
+     *         be checked when something happens
      */
-    private class ZWaveSecurityEncapsulationThread extends Thread {
-        /**
-         * The default time we will wait to receive a response (or if no response will be sent at all)
-         */
-        private static final long DEFAULT_WAIT_FOR_RESPONSE = 10000;
-        /**
-         * If we get a {@link ZWaveSecurityCommandClass#SECURITY_NONCE_GET}, then we know the node
-         * is going to send us a security encapsulated response message. Wait additional time to receive that
-         */
-        private static final long NONCE_GET_ADDON = 20000;
-
-        private ZWaveSecurityEncapsulationThread() {
-            super("ZWaveSecurityEncapsulationThreadForNode" + getNode().getNodeId());
+    public long processEncapsulationQueue() {
+        checkInit();
+        long now = System.currentTimeMillis();
+        if (lastEncapsulatedRequstMessage != null && lastEncapsulatedRequstMessage.isSecurityTransactionComplete()) {
+            // Look ahead in the queue for duplicate messages, if found, ignore them since this was
+            // successful. This is required because security encapsulated messages incur a lot of overhead
+            // on the controller and the device. The user (or other logic in the code) could fire off
+            // many duplicates (such as BATTERY_GET on startup) which just holds up other operations.
+            Iterator<ZWaveSecurityPayloadFrame> iter = payloadEncapsulationQueue.iterator();
+            SerialMessage successfulMessage = lastEncapsulatedRequstMessage.getSecurityPayload().getOriginalMessage();
+            while (iter.hasNext()) {
+                ZWaveSecurityPayloadFrame securityPayloadToBeSent = iter.next();
+                SerialMessage messageToBeSent = securityPayloadToBeSent.getOriginalMessage();
+                if (Arrays.equals(messageToBeSent.getMessagePayload(), successfulMessage.getMessagePayload())) {
+                    removeFromEncapsulationQueue(securityPayloadToBeSent, iter, "look ahead found identical message");
+                }
+            }
+            lastEncapsulatedRequstMessage = null; // We're done with it
         }
 
-        @Override
-        public void run() {
-            logger.debug("NODE {}: Starting Z-Wave thread: security encapsulation", getNode().getNodeId());
-            while (true) {
-                try {
-                    if (lastEncapsulatedRequstMessage != null
-                            && lastEncapsulatedRequstMessage.isSecurityTransactionComplete()) {
-                        // Look ahead in the queue for duplicate messages, if found, ignore them since this was
-                        // successful. This is required because security encapsulated messages incur a lot of overhead
-                        // on the controller and the device. The user (or other logic in the code) could fire off
-                        // many duplicates (such as BATTERY_GET on startup) which just holds up other operations.
-                        Iterator<ZWaveSecurityPayloadFrame> iter = payloadEncapsulationQueue.iterator();
-                        SerialMessage successfulMessage = lastEncapsulatedRequstMessage.getSecurityPayload()
-                                .getOriginalMessage();
-                        while (iter.hasNext()) {
-                            ZWaveSecurityPayloadFrame securityPayloadToBeSent = iter.next();
-                            SerialMessage messageToBeSent = securityPayloadToBeSent.getOriginalMessage();
-                            boolean shouldRemove = Arrays.equals(messageToBeSent.getMessagePayload(),
-                                    successfulMessage.getMessagePayload());
-                            logger.debug(
-                                    "NODE {}: success look ahead check: shouldRemove={} messageToBeSent={} successfulMessage={}",
-                                    getNode().getNodeId(), shouldRemove,
-                                    SerialMessage.bb2hex(messageToBeSent.getMessagePayload()),
-                                    SerialMessage.bb2hex(successfulMessage.getMessagePayload()));
-                            if (shouldRemove) {
-                                removeFromEncapsulationQueue(securityPayloadToBeSent, iter,
-                                        "look ahead found identical message");
-                            }
-                        }
-                        lastEncapsulatedRequstMessage = null; // We're done with it
-                    }
-
-                    boolean transmitNext = lastEncapsulatedRequstMessage == null;
-                    if (!transmitNext && lastEncapsulatedRequstMessage.hasBeenTransmitted()) {
-                        // Recompute the timeout each time
-                        long timeOutAt = lastEncapsulatedRequstMessage.getTransmittedAt() + DEFAULT_WAIT_FOR_RESPONSE;
-                        boolean expectingResponseMessage = lastNonceGetReceivedAt > lastEncapsulatedRequstMessage
-                                .getTransmittedAt();
-                        if (expectingResponseMessage) {
-                            timeOutAt += NONCE_GET_ADDON;
-                        }
-                        // See if we have reached the timeout yet
-                        if (System.currentTimeMillis() > timeOutAt) {
-                            if (expectingResponseMessage) {
-                                logger.error("NODE {}: Timed out waiting on response for encapsulated message {}",
-                                        getNode().getNodeId(), lastEncapsulatedRequstMessage);
-                            } else {
-                                logger.debug("NODE {}: no response expected for security transaction {}",
-                                        getNode().getNodeId(), lastEncapsulatedRequstMessage);
-                            }
-                            // SECURITY_MESSAGE_ENCAP_NONCE_GET doesn't always work. If it's not working with a device,
-                            // we disable it. Check here to see if it's working
-                            logger.debug("NODE {}: TODO: remove checking for SECURITY_MESSAGE_ENCAP_NONCE_GET",
-                                    getNode().getNodeId());
-                            if (bytesAreEqual(lastEncapsulatedRequstMessage.getMessagePayload()[3],
-                                    SECURITY_MESSAGE_ENCAP_NONCE_GET)) {
-                                logger.debug("NODE {}: SECURITY_MESSAGE_ENCAP_NONCE_GET are equal",
-                                        getNode().getNodeId());
-                                if (lastDeviceNonceReceivedAt < lastEncapsulatedRequstMessage.getTransmittedAt()) {
-                                    // The last NONCE_REPORT was received before we sent
-                                    // SECURITY_MESSAGE_ENCAP_NONCE_GET
-                                    // so SECURITY_MESSAGE_ENCAP_NONCE_GET isn't working, disable it
-                                    disableEncapNonceGet = true;
-                                    logger.error("NODE {}: SECURITY_MESSAGE_ENCAP_NONCE_GET disabled",
-                                            getNode().getNodeId());
-                                    // Save the setting so we remember
-                                    new ZWaveNodeSerializer().SerializeNode(getNode());
-                                }
-                            }
-                            lastEncapsulatedRequstMessage = null;
-                            transmitNext = true;
-                        }
-                    }
-
-                    if (transmitNext && !payloadEncapsulationQueue.isEmpty()) {
-                        sendNextMessageUsingDeviceNonce();
-                    }
-
-                    synchronized (threadLock) {
-                        threadLock.wait(1000);
-                    }
-                } catch (InterruptedException e) {
-                    continue;
-                } catch (Exception e) {
-                    logger.error("NODE {}: Exception during Z-Wave thread: security encapsulation",
-                            getNode().getNodeId(), e);
+        long nextCheck = 0;
+        boolean transmitNext = lastEncapsulatedRequstMessage == null;
+        if (!transmitNext && !lastEncapsulatedRequstMessage.hasBeenTransmitted()) {
+            // Still waiting in the send queue. Check back once it's had time to be sent and answered.
+            nextCheck = now + DEFAULT_WAIT_FOR_RESPONSE;
+        } else if (!transmitNext) {
+            // Recompute the timeout each time
+            long timeOutAt = lastEncapsulatedRequstMessage.getTransmittedAt() + DEFAULT_WAIT_FOR_RESPONSE;
+            boolean expectingResponseMessage = lastNonceGetReceivedAt > lastEncapsulatedRequstMessage
+                    .getTransmittedAt();
+            if (expectingResponseMessage) {
+                timeOutAt += NONCE_GET_ADDON;
+            }
+            // See if we have reached the timeout yet
+            if (now > timeOutAt) {
+                if (expectingResponseMessage) {
+                    logger.error("NODE {}: Timed out waiting on response for encapsulated message {}",
+                            getNode().getNodeId(), lastEncapsulatedRequstMessage);
+                } else {
+                    logger.debug("NODE {}: no response expected for security transaction {}", getNode().getNodeId(),
+                            lastEncapsulatedRequstMessage);
+                }
+                // SECURITY_MESSAGE_ENCAP_NONCE_GET doesn't always work. If it's not working with a device,
+                // we disable it. Check here to see if it's working
+                if (bytesAreEqual(lastEncapsulatedRequstMessage.getMessagePayload()[3],
+                        SECURITY_MESSAGE_ENCAP_NONCE_GET)
+                        && lastDeviceNonceReceivedAt < lastEncapsulatedRequstMessage.getTransmittedAt()) {
+                    // The last NONCE_REPORT was received before we sent SECURITY_MESSAGE_ENCAP_NONCE_GET
+                    // so SECURITY_MESSAGE_ENCAP_NONCE_GET isn't working, disable it
+                    disableEncapNonceGet = true;
+                    logger.error("NODE {}: SECURITY_MESSAGE_ENCAP_NONCE_GET disabled", getNode().getNodeId());
+                    // Save the setting so we remember. The node is written in the background.
+                    getController().saveNode(getNode());
                 }
+                lastEncapsulatedRequstMessage = null;
+                transmitNext = true;
+            } else {
+                nextCheck = timeOutAt + 1;
+            }
+        }
+
+        if (transmitNext && !payloadEncapsulationQueue.isEmpty()) {
+            sendNextMessageUsingDeviceNonce();
+            if (lastEncapsulatedRequstMessage != null) {
+                nextCheck = now + DEFAULT_WAIT_FOR_RESPONSE;
+            } else if (!payloadEncapsulationQueue.isEmpty()) {
+                // Waiting for a nonce from the device - if it doesn't arrive, we need to request another
+                nextCheck = nonceGeneration.getNonceRequestExpiresAt() + 1;
             }
         }
+        return nextCheck;
     }
 }
@@ -27,6 +27,7 @@ import org.openhab.binding.zwave.internal.protocol.event.ZWaveTransactionComplet
 import org.openhab.binding.zwave.internal.protocol.initialization.ZWaveNodeInitStageAdvancer;
 import org.openhab.binding.zwave.internal.protocol.security.SecurityEncapsulatedSerialMessage;
 import org.openhab.binding.zwave.internal.protocol.security.ZWaveSecureInclusionStateTracker;
+import org.openhab.binding.zwave.internal.protocol.security.ZWaveSecurityEncapsulationScheduler;
 import org.openhab.binding.zwave.internal.protocol.security.ZWaveSecurityPayloadFrame;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -89,7 +90,7 @@ public class ZWaveSecurityCommandClassWithInitialization extends ZWaveSecurityCo
     public ZWaveSecurityCommandClassWithInitialization(ZWaveNode node, ZWaveController controller,
             ZWaveEndpoint endpoint) {
         super(node, controller, endpoint);
-        controller.addEventListener(this);
+        controller.addEventListener(this, node.getNodeId());
     }
 
     private boolean isSecureInclusionInProgress() {
@@ -126,7 +127,7 @@ public class ZWaveSecurityCommandClassWithInitialization extends ZWaveSecurityCo
     }
 
     /**
-     * During inclusion, {@link ZWaveSecurityCommandClass#ZWaveSecurityEncapsulationThread} is not running
+     * During inclusion, the {@link ZWaveSecurityEncapsulationScheduler} is not used
      * so we override this logic and just have the calling thread (typically ZWaveInputThread) execute the
      * security encapsulation logic
      *
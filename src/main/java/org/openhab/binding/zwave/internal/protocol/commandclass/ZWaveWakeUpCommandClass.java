@@ -13,9 +13,8 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
 
 import org.openhab.binding.zwave.internal.protocol.SerialMessage;
 import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageClass;
@@ -26,6 +25,7 @@ import org.openhab.binding.zwave.internal.protocol.ZWaveEndpoint;
 import org.openhab.binding.zwave.internal.protocol.ZWaveEventListener;
 import org.openhab.binding.zwave.internal.protocol.ZWaveNode;
 import org.openhab.binding.zwave.internal.protocol.ZWaveSerialMessageException;
+import org.openhab.binding.zwave.internal.protocol.ZWaveTimerService;
 import org.openhab.binding.zwave.internal.protocol.event.ZWaveEvent;
 import org.openhab.binding.zwave.internal.protocol.event.ZWaveTransactionCompletedEvent;
 import org.slf4j.Logger;
@@ -81,9 +81,7 @@ public class ZWaveWakeUpCommandClass extends ZWaveCommandClass
     private volatile boolean isAwake = false;
 
     @XStreamOmitField
-    private Timer timer = null;
-    @XStreamOmitField
-    private TimerTask timerTask = null;
+    private ScheduledFuture<?> sleepTimer = null;
 
     @XStreamOmitField
     private boolean initialiseDone = false;
@@ -102,8 +100,6 @@ public class ZWaveWakeUpCommandClass extends ZWaveCommandClass
         versionMax = MAX_SUPPORTED_VERSION;
 
         wakeUpQueue = new ArrayBlockingQueue<SerialMessage>(MAX_BUFFFER_SIZE, true);
-
-        timer = new Timer();
     }
 
     /**
@@ -113,7 +109,6 @@ public class ZWaveWakeUpCommandClass extends ZWaveCommandClass
      */
     private Object readResolve() {
         wakeUpQueue = new ArrayBlockingQueue<SerialMessage>(MAX_BUFFFER_SIZE, true);
-        timer = new Timer();
         return this;
     }
 
@@ -403,13 +398,20 @@ public class ZWaveWakeUpCommandClass extends ZWaveCommandClass
             return;
         }
 
+        // If this completes a Multi Command batch, each of the batched messages is completed as well.
+        // The batched messages are then ignored here, since the next message has already been sent for the batch.
+        ZWaveMultiCommandCommandClass multiCommandClass = (ZWaveMultiCommandCommandClass) getNode()
+                .getCommandClass(CommandClass.MULTI_CMD);
+        if (multiCommandClass != null) {
+            if (multiCommandClass.isBatchedMessage(serialMessage)) {
+                return;
+            }
+            multiCommandClass.completeBatch(serialMessage, ((ZWaveTransactionCompletedEvent) event).getState());
+        }
+
         // Send the next message in the wake-up queue
         if (!this.wakeUpQueue.isEmpty()) {
-            // Get the next message from the queue.
-            // Bump it's priority to highest to try and send it while the node is awake
-            serialMessage = wakeUpQueue.poll();
-            serialMessage.setPriority(SerialMessagePriority.Immediate);
-            getController().sendData(serialMessage);
+            sendNextMessage();
         } else if (isAwake() == true) {
             // No more messages in the queue.
             // Start a timer to send the "Go To Sleep" message
@@ -436,6 +438,7 @@ public class ZWaveWakeUpCommandClass extends ZWaveCommandClass
      */
     public void setAwake(boolean isAwake) {
         this.isAwake = isAwake;
+        this.getController().setNodeAwake(getNode().getNodeId(), isAwake);
 
         if (isAwake) {
             logger.debug("NODE {}: Is awake with {} messages in the wake-up queue.", getNode().getNodeId(),
@@ -449,11 +452,7 @@ public class ZWaveWakeUpCommandClass extends ZWaveCommandClass
             // Handle the wake-up queue for this node.
             // We send the first message, and when that's ACKed, we sent the next
             if (!wakeUpQueue.isEmpty()) {
-                // Get the next message from the queue.
-                // Bump it's priority to highest to try and send it while the node is awake
-                SerialMessage serialMessage = wakeUpQueue.poll();
-                serialMessage.setPriority(SerialMessagePriority.Immediate);
-                this.getController().sendData(serialMessage);
+                sendNextMessage();
             } else {
                 // No messages in the queue.
                 // Start a timer to send the "Go To Sleep" message
@@ -465,6 +464,28 @@ public class ZWaveWakeUpCommandClass extends ZWaveCommandClass
         }
     }
 
+    /**
+     * Sends the next message in the wake-up queue. If the node supports Multi Command, as many queued messages as
+     * possible are packed into a single frame to reduce the time the node needs to stay awake.
+     */
+    private void sendNextMessage() {
+        ZWaveMultiCommandCommandClass multiCommandClass = (ZWaveMultiCommandCommandClass) getNode()
+                .getCommandClass(CommandClass.MULTI_CMD);
+        SerialMessage serialMessage;
+        if (multiCommandClass != null) {
+            serialMessage = multiCommandClass.pollBatch(wakeUpQueue);
+        } else {
+            serialMessage = wakeUpQueue.poll();
+        }
+        if (serialMessage == null) {
+            return;
+        }
+
+        // Bump it's priority to highest to try and send it while the node is awake
+        serialMessage.setPriority(SerialMessagePriority.Immediate);
+        getController().sendData(serialMessage);
+    }
+
     /**
      * Sends a command to the device to set the wakeup interval.
      * The wakeup node is set to the controller.
@@ -529,7 +550,7 @@ public class ZWaveWakeUpCommandClass extends ZWaveCommandClass
      *
      * @author Chris Jackson
      */
-    private class WakeupTimerTask extends TimerTask {
+    private class WakeupTimerTask implements Runnable {
         ZWaveWakeUpCommandClass wakeup;
 
         WakeupTimerTask(ZWaveWakeUpCommandClass wakeup) {
@@ -552,19 +573,21 @@ public class ZWaveWakeUpCommandClass extends ZWaveCommandClass
         // Stop any existing timer
         resetSleepTimer();
 
-        // Create the timer task
-        timerTask = new WakeupTimerTask(this);
-
-        // Start the timer
-        timer.schedule(timerTask, 1000);
+        // Start the timer on the shared timer service
+        ZWaveTimerService timerService = getController().getTimerService();
+        if (timerService == null) {
+            logger.debug("NODE {}: No timer service available", getNode().getNodeId());
+            return;
+        }
+        sleepTimer = timerService.schedule(new WakeupTimerTask(this), 1000);
     }
 
     public synchronized void resetSleepTimer() {
         // Stop any existing timer
-        if (timerTask != null) {
-            timerTask.cancel();
+        if (sleepTimer != null) {
+            sleepTimer.cancel(false);
         }
-        timerTask = null;
+        sleepTimer = null;
     }
 
     /**
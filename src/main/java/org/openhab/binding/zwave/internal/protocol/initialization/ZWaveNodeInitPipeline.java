@@ -0,0 +1,362 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol.initialization;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.openhab.binding.zwave.internal.protocol.ZWaveNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits the number of nodes that are initialising at the same time.
+ * <p>
+ * When the binding starts, every node in the network needs to be initialised. If they are all started together, the
+ * send queue fills with initialisation requests and it can take a long time before anything else gets through. Instead,
+ * nodes are added to the pipeline, and only a limited number are allowed to initialise at once. When a node completes,
+ * the next node is started.
+ * <p>
+ * Nodes are started in the following order -:
+ * <ul>
+ * <li>Listening nodes - these will respond straight away, so can complete quickly</li>
+ * <li>Nodes we know nothing about, as we don't know if they are listening or not</li>
+ * <li>Battery nodes</li>
+ * </ul>
+ * A node releases its place in the pipeline if it has to wait for a wakeup, or if it stops responding, so that it
+ * doesn't hold up the rest of the network. Its initialisation still completes whenever the node responds.
+ * <p>
+ * The pipeline also keeps track of progress so that an estimate of the time remaining can be given.
+ */
+public class ZWaveNodeInitPipeline {
+    private final static Logger logger = LoggerFactory.getLogger(ZWaveNodeInitPipeline.class);
+
+    public final static int DEFAULT_CONCURRENCY = 4;
+
+    private enum InitState {
+        PENDING,
+        ACTIVE,
+        PARKED,
+        DONE
+    }
+
+    private int concurrency;
+
+    private final PriorityQueue<PendingNode> pending = new PriorityQueue<PendingNode>(11, new PendingNodeComparator());
+    private final Map<Integer, InitState> states = new HashMap<Integer, InitState>();
+    private int activeCount = 0;
+    private long sequence = 0;
+    private long startTime = 0;
+    private boolean running = true;
+
+    /**
+     * Constructor
+     *
+     * @param concurrency the maximum number of nodes to initialise at the same time
+     */
+    public ZWaveNodeInitPipeline(int concurrency) {
+        this.concurrency = concurrency < 1 ? DEFAULT_CONCURRENCY : concurrency;
+    }
+
+    /**
+     * Sets the maximum number of nodes that are initialised at the same time. If the limit is raised, waiting nodes
+     * are started straight away. If it's lowered, active nodes are allowed to complete.
+     *
+     * @param concurrency the maximum number of nodes to initialise at the same time
+     */
+    public void setConcurrency(int concurrency) {
+        synchronized (this) {
+            this.concurrency = concurrency < 1 ? DEFAULT_CONCURRENCY : concurrency;
+        }
+        startNodes();
+    }
+
+    /**
+     * Adds a node to the pipeline. The node will be initialised from the start once there is space in the pipeline.
+     *
+     * @param node the {@link ZWaveNode} to initialise
+     */
+    public void submit(ZWaveNode node) {
+        submitAll(Collections.singletonList(node));
+    }
+
+    /**
+     * Adds a number of nodes to the pipeline. All the nodes are added before any are started, so the listening nodes
+     * are started first.
+     *
+     * @param nodes the {@link ZWaveNode}s to initialise
+     */
+    public void submitAll(Collection<ZWaveNode> nodes) {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            for (ZWaveNode node : nodes) {
+                if (states.get(node.getNodeId()) == InitState.PENDING) {
+                    continue;
+                }
+                if (states.isEmpty() || getCompletedCount() == states.size()) {
+                    startTime = System.currentTimeMillis();
+                }
+                setState(node.getNodeId(), InitState.PENDING);
+                pending.add(new PendingNode(node, sequence++));
+            }
+        }
+        startNodes();
+    }
+
+    /**
+     * Adds a node to the pipeline and starts it straight away, even if the pipeline is already full. This is used for
+     * newly included nodes, since they are only awake for a short time, and for nodes the user has asked to
+     * reinitialise.
+     *
+     * @param node the {@link ZWaveNode} to initialise
+     * @param startStage the stage to start the initialisation from
+     */
+    public void start(ZWaveNode node, ZWaveNodeInitStage startStage) {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            if (states.get(node.getNodeId()) == InitState.PENDING) {
+                removePending(node.getNodeId());
+            }
+            if (states.isEmpty() || getCompletedCount() == states.size()) {
+                startTime = System.currentTimeMillis();
+            }
+            setState(node.getNodeId(), InitState.ACTIVE);
+        }
+        node.initialiseNode(startStage);
+    }
+
+    /**
+     * Called when a node has completed initialisation. The next waiting node is started.
+     *
+     * @param nodeId the node ID
+     */
+    public void nodeComplete(int nodeId) {
+        synchronized (this) {
+            if (!states.containsKey(nodeId) || states.get(nodeId) == InitState.DONE) {
+                return;
+            }
+            setState(nodeId, InitState.DONE);
+
+            long remaining = getEstimatedTimeRemaining();
+            logger.debug("NODE {}: Initialisation pipeline - {} of {} nodes complete, {} active, {} waiting. {}",
+                    nodeId, getCompletedCount(), states.size(), activeCount, pending.size(),
+                    remaining < 0 ? "" : String.format("Estimated time remaining %ds.", remaining / 1000));
+        }
+        startNodes();
+    }
+
+    /**
+     * Called when a node can't make progress until it wakes up, or has stopped responding. The node gives up its place
+     * in the pipeline so the next waiting node can start, but its initialisation carries on if it responds.
+     *
+     * @param nodeId the node ID
+     */
+    public void nodeParked(int nodeId) {
+        synchronized (this) {
+            if (states.get(nodeId) != InitState.ACTIVE) {
+                return;
+            }
+            logger.debug("NODE {}: Initialisation pipeline - node waiting, releasing its place", nodeId);
+            setState(nodeId, InitState.PARKED);
+        }
+        startNodes();
+    }
+
+    /**
+     * Removes a node from the pipeline, eg if it's been excluded from the network
+     *
+     * @param nodeId the node ID
+     */
+    public void remove(int nodeId) {
+        synchronized (this) {
+            if (!states.containsKey(nodeId)) {
+                return;
+            }
+            if (states.get(nodeId) == InitState.PENDING) {
+                removePending(nodeId);
+            }
+            setState(nodeId, null);
+        }
+        startNodes();
+    }
+
+    /**
+     * Stops starting any more nodes
+     */
+    public synchronized void shutdown() {
+        running = false;
+        pending.clear();
+    }
+
+    /**
+     * Gets the maximum number of nodes that are initialised at the same time
+     *
+     * @return number of nodes
+     */
+    public synchronized int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Gets the number of nodes that are waiting to start initialisation
+     *
+     * @return number of nodes
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Gets the number of nodes currently holding a place in the pipeline
+     *
+     * @return number of nodes
+     */
+    public synchronized int getActiveCount() {
+        return activeCount;
+    }
+
+    /**
+     * Gets the number of nodes that have completed initialisation
+     *
+     * @return number of nodes
+     */
+    public synchronized int getCompletedCount() {
+        int completed = 0;
+        for (InitState state : states.values()) {
+            if (state == InitState.DONE) {
+                completed++;
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Gets the total number of nodes that have been added to the pipeline
+     *
+     * @return number of nodes
+     */
+    public synchronized int getTotalCount() {
+        return states.size();
+    }
+
+    /**
+     * Gets the initialisation progress
+     *
+     * @return percentage of nodes that have completed initialisation
+     */
+    public synchronized int getProgress() {
+        if (states.isEmpty()) {
+            return 100;
+        }
+        return getCompletedCount() * 100 / states.size();
+    }
+
+    /**
+     * Gets an estimate of the time left until all nodes are initialised. This is based on the average time taken by
+     * the nodes that have already completed, so battery nodes that are waiting for a wakeup will make it inaccurate.
+     *
+     * @return the estimated time in milliseconds, or -1 if no estimate can be made yet
+     */
+    public synchronized long getEstimatedTimeRemaining() {
+        int completed = getCompletedCount();
+        if (completed == 0) {
+            return -1;
+        }
+        long elapsed = System.currentTimeMillis() - startTime;
+        return elapsed * (states.size() - completed) / completed;
+    }
+
+    /**
+     * Starts waiting nodes while there are places in the pipeline. The nodes are started outside the lock, since the
+     * initialisation may call back into the pipeline.
+     */
+    private void startNodes() {
+        List<ZWaveNode> toStart = new ArrayList<ZWaveNode>();
+        synchronized (this) {
+            while (running && activeCount < concurrency && !pending.isEmpty()) {
+                ZWaveNode node = pending.poll().node;
+                setState(node.getNodeId(), InitState.ACTIVE);
+                toStart.add(node);
+            }
+        }
+
+        for (ZWaveNode node : toStart) {
+            logger.debug("NODE {}: Initialisation pipeline - starting node", node.getNodeId());
+            node.initialiseNode();
+        }
+    }
+
+    private void setState(int nodeId, InitState state) {
+        if (states.get(nodeId) == InitState.ACTIVE) {
+            activeCount--;
+        }
+        if (state == null) {
+            states.remove(nodeId);
+            return;
+        }
+        if (state == InitState.ACTIVE) {
+            activeCount++;
+        }
+        states.put(nodeId, state);
+    }
+
+    private void removePending(int nodeId) {
+        Iterator<PendingNode> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().node.getNodeId() == nodeId) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static class PendingNode {
+        private final ZWaveNode node;
+        private final int rank;
+        private final long sequence;
+
+        private PendingNode(ZWaveNode node, long sequence) {
+            this.node = node;
+            this.sequence = sequence;
+
+            // The listening flags are only known if the node was restored from file.
+            // A new node has neither set, and hasn't been given a device class yet.
+            if (node.isListening() || node.isFrequentlyListening()) {
+                rank = 0;
+            } else if (node.getManufacturer() == Integer.MAX_VALUE) {
+                rank = 1;
+            } else {
+                rank = 2;
+            }
+        }
+    }
+
+    private static class PendingNodeComparator implements Comparator<PendingNode> {
+        @Override
+        public int compare(PendingNode node1, PendingNode node2) {
+            if (node1.rank != node2.rank) {
+                return node1.rank < node2.rank ? -1 : 1;
+            }
+            if (node1.sequence != node2.sequence) {
+                return node1.sequence < node2.sequence ? -1 : 1;
+            }
+            return 0;
+        }
+    }
+}
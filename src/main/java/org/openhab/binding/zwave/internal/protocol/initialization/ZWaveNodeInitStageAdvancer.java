@@ -15,9 +15,8 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
 
 import org.eclipse.smarthome.config.core.ConfigDescription;
 import org.eclipse.smarthome.config.core.ConfigDescriptionParameter;
@@ -26,6 +25,7 @@ import org.openhab.binding.zwave.ZWaveBindingConstants;
 import org.openhab.binding.zwave.internal.ZWaveConfigProvider;
 import org.openhab.binding.zwave.internal.protocol.SerialMessage;
 import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageClass;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessagePriority;
 import org.openhab.binding.zwave.internal.protocol.ZWaveAssociation;
 import org.openhab.binding.zwave.internal.protocol.ZWaveController;
 import org.openhab.binding.zwave.internal.protocol.ZWaveDeviceClass.Generic;
@@ -80,6 +80,14 @@ import org.slf4j.LoggerFactory;
  * that are listening first. This is checked after the protocol information is received, and non-listening nodes are
  * held at a WAIT state until the transmit queue drops below 2 frames when they are allowed to proceed to PING.
  * <p>
+ * The number of nodes initialising at the same time is limited by the {@link ZWaveNodeInitPipeline}. The advancer
+ * tells the pipeline when the node is complete, or when it's waiting for a wakeup or not responding, so the next node
+ * can be started.
+ * <p>
+ * If fast restart is enabled, a node restored from file isn't interviewed at all when the binding starts. Once the
+ * protocol information has been read from the controller, and it matches the saved node, the node completes
+ * initialisation and its dynamic values are requested in the background.
+ * <p>
  * The NodeStageAdvancer registers an event listener during the initialisation of a node. This allows it to be notified
  * when each transaction is complete, and we can process this accordingly. The event listener is removed when we stop
  * initialising to reduce processor loading.
@@ -120,7 +128,6 @@ import org.slf4j.LoggerFactory;
  */
 public class ZWaveNodeInitStageAdvancer implements ZWaveEventListener {
 
-    private static final ZWaveNodeSerializer nodeSerializer = new ZWaveNodeSerializer();
     private final static Logger logger = LoggerFactory.getLogger(ZWaveNodeInitStageAdvancer.class);
 
     private ZWaveNode node;
@@ -137,9 +144,12 @@ public class ZWaveNodeInitStageAdvancer implements ZWaveEventListener {
 
     private final int BACKOFF_TIMER_START = 5000;
     private final int BACKOFF_TIMER_MAX = 1800000; // 30 minutes max backoff
+
+    // Once the backoff reaches this, the node is treated as not responding, and gives up its place in the
+    // initialisation pipeline
+    private final int BACKOFF_TIMER_PARK = 40000;
     private int retryTimer;
-    private TimerTask timerTask = null;
-    private Timer timer = null;
+    private ScheduledFuture<?> idleTimer = null;
 
     private int wakeupCount;
 
@@ -153,6 +163,14 @@ public class ZWaveNodeInitStageAdvancer implements ZWaveEventListener {
      */
     private SerialMessage securityLastSentMessage;
 
+    // On a fast restart, the protocol information from the controller is compared with the restored node to check that
+    // the file still describes the same device
+    private boolean fastRestart = false;
+    private Generic restoredGenericClass;
+    private Specific restoredSpecificClass;
+    private boolean restoredListening;
+    private boolean restoredFrequentlyListening;
+
     /**
      * Constructor. Creates a new instance of the ZWaveNodeStageAdvancer class.
      *
@@ -165,9 +183,6 @@ public class ZWaveNodeInitStageAdvancer implements ZWaveEventListener {
         this.node = node;
         this.controller = controller;
 
-        // Create the timer
-        timer = new Timer();
-
         // Initialise the message queue
         msgQueue = new ArrayBlockingQueue<SerialMessage>(MAX_BUFFFER_LEN, true);
     }
@@ -251,6 +266,13 @@ public class ZWaveNodeInitStageAdvancer implements ZWaveEventListener {
             if (msg != null) {
                 freeToSend = false;
 
+                // Initialisation mustn't hold up commands from the user, so requests are sent at config priority.
+                // The security key exchange has to complete within a few seconds, so it's left as it is.
+                if (currentStage != ZWaveNodeInitStage.SECURITY_REPORT
+                        && msg.getPriority().ordinal() < SerialMessagePriority.Config.ordinal()) {
+                    msg.setPriority(SerialMessagePriority.Config);
+                }
+
                 logger.debug("NODE {}: Node advancer - queued packet. Queue length is {}", node.getNodeId(),
                         msgQueue.size());
 
@@ -389,6 +411,21 @@ public class ZWaveNodeInitStageAdvancer implements ZWaveEventListener {
                     break;
 
                 case WAIT:
+                    // On a fast restart, a node restored from file that still matches the device doesn't need to
+                    // be interviewed. We complete straight away, and the dynamic values are requested in the
+                    // background once we're done.
+                    if (fastRestart == true) {
+                        fastRestart = false;
+                        if (isRestoredNodeValid()) {
+                            logger.debug("NODE {}: Node advancer: WAIT - Fast restart, skipping initialisation",
+                                    node.getNodeId());
+                            currentStage = ZWaveNodeInitStage.DONE;
+                            requestDynamicValues();
+                            break;
+                        }
+                        logger.debug("NODE {}: Node advancer: WAIT - Fast restart not possible", node.getNodeId());
+                    }
+
                     logger.debug("NODE {}: Node advancer: WAIT - Listening={}, FrequentlyListening={}",
                             node.getNodeId(), node.isListening(), node.isFrequentlyListening());
 
@@ -408,7 +445,11 @@ public class ZWaveNodeInitStageAdvancer implements ZWaveEventListener {
 
                     // If it's not listening, and not awake,
                     // then wait a while before progressing with initialisation.
+                    // Let other nodes use our place in the pipeline in the meantime.
                     logger.debug("NODE {}: Node advancer: WAIT - Still waiting!", node.getNodeId());
+                    if (controller.getNodeInitPipeline() != null) {
+                        controller.getNodeInitPipeline().nodeParked(node.getNodeId());
+                    }
                     return;
 
                 case PING:
@@ -502,7 +543,7 @@ public class ZWaveNodeInitStageAdvancer implements ZWaveEventListener {
                                 if (securityCommandClass.wasSecureInclusionSuccessful()) {
                                     logger.debug("NODE {}: Secure inclusion complete, continuing with inclusion",
                                             node.getNodeId());
-                                    securityCommandClass.startSecurityEncapsulationThread();
+                                    securityCommandClass.startSecurityEncapsulation();
                                     break;
                                 } else {
                                     // securityCommandClass output a message about the failure
@@ -1017,41 +1058,7 @@ public class ZWaveNodeInitStageAdvancer implements ZWaveEventListener {
 
                 case DYNAMIC_VALUES:
                     // Update all dynamic information from command classes
-                    for (ZWaveCommandClass zwaveDynamicClass : node.getCommandClasses()) {
-                        logger.debug("NODE {}: Node advancer: DYNAMIC_VALUES - checking {}", node.getNodeId(),
-                                zwaveDynamicClass.getCommandClass().getLabel());
-                        if (zwaveDynamicClass instanceof ZWaveCommandClassDynamicState) {
-                            logger.debug("NODE {}: Node advancer: DYNAMIC_VALUES - found    {}", node.getNodeId(),
-                                    zwaveDynamicClass.getCommandClass().getLabel());
-                            ZWaveCommandClassDynamicState zdds = (ZWaveCommandClassDynamicState) zwaveDynamicClass;
-                            int instances = zwaveDynamicClass.getInstances();
-                            logger.debug("NODE {}: Found {} instances of {}", node.getNodeId(), instances,
-                                    zwaveDynamicClass.getCommandClass());
-                            if (instances == 1) {
-                                addToQueue(zdds.getDynamicValues(stageAdvanced));
-                            } else {
-                                for (int i = 1; i <= instances; i++) {
-                                    addToQueue(zdds.getDynamicValues(stageAdvanced), zwaveDynamicClass, i);
-                                }
-                            }
-                        } else if (zwaveDynamicClass instanceof ZWaveMultiInstanceCommandClass) {
-                            ZWaveMultiInstanceCommandClass multiInstanceCommandClass = (ZWaveMultiInstanceCommandClass) zwaveDynamicClass;
-                            for (ZWaveEndpoint endpoint : multiInstanceCommandClass.getEndpoints()) {
-                                for (ZWaveCommandClass endpointCommandClass : endpoint.getCommandClasses()) {
-                                    logger.debug("NODE {}: Node advancer: DYNAMIC_VALUES - checking {} for endpoint {}",
-                                            node.getNodeId(), endpointCommandClass.getCommandClass().getLabel(),
-                                            endpoint.getEndpointId());
-                                    if (endpointCommandClass instanceof ZWaveCommandClassDynamicState) {
-                                        logger.debug("NODE {}: Node advancer: DYNAMIC_VALUES - found    {}",
-                                                node.getNodeId(), endpointCommandClass.getCommandClass().getLabel());
-                                        ZWaveCommandClassDynamicState zdds2 = (ZWaveCommandClassDynamicState) endpointCommandClass;
-                                        addToQueue(zdds2.getDynamicValues(stageAdvanced), endpointCommandClass,
-                                                endpoint.getEndpointId());
-                                    }
-                                }
-                            }
-                        }
-                    }
+                    addToQueue(getDynamicValueMessages(stageAdvanced));
                     logger.debug("NODE {}: Node advancer: DYNAMIC_VALUES - queued {} frames", node.getNodeId(),
                             msgQueue.size());
                     break;
@@ -1099,7 +1106,7 @@ public class ZWaveNodeInitStageAdvancer implements ZWaveEventListener {
                 case DYNAMIC_END:
                 case DONE:
                     // Save the node information to file
-                    nodeSerializer.SerializeNode(node);
+                    controller.saveNode(node);
 
                     if (currentStage != ZWaveNodeInitStage.DONE) {
                         break;
@@ -1116,6 +1123,11 @@ public class ZWaveNodeInitStageAdvancer implements ZWaveEventListener {
                     ZWaveEvent zEvent = new ZWaveInitializationStateEvent(node.getNodeId(), ZWaveNodeInitStage.DONE);
                     controller.notifyEventListeners(zEvent);
 
+                    // Let the next node start
+                    if (controller.getNodeInitPipeline() != null) {
+                        controller.getNodeInitPipeline().nodeComplete(node.getNodeId());
+                    }
+
                     // Return from here as we're now done and we don't want to
                     // increment the stage!
                     return;
@@ -1154,6 +1166,113 @@ public class ZWaveNodeInitStageAdvancer implements ZWaveEventListener {
         } while (msgQueue.isEmpty());
     }
 
+    /**
+     * Gets the messages needed to update the dynamic information from all command classes, including those on
+     * endpoints. The messages are encapsulated ready to send.
+     *
+     * @param refresh true to request all values, false to only request values that haven't been received
+     * @return collection of messages
+     */
+    private Collection<SerialMessage> getDynamicValueMessages(boolean refresh) {
+        Collection<SerialMessage> messages = new ArrayList<SerialMessage>();
+        for (ZWaveCommandClass zwaveDynamicClass : node.getCommandClasses()) {
+            logger.debug("NODE {}: Node advancer: DYNAMIC_VALUES - checking {}", node.getNodeId(),
+                    zwaveDynamicClass.getCommandClass().getLabel());
+            if (zwaveDynamicClass instanceof ZWaveCommandClassDynamicState) {
+                logger.debug("NODE {}: Node advancer: DYNAMIC_VALUES - found    {}", node.getNodeId(),
+                        zwaveDynamicClass.getCommandClass().getLabel());
+                ZWaveCommandClassDynamicState zdds = (ZWaveCommandClassDynamicState) zwaveDynamicClass;
+                int instances = zwaveDynamicClass.getInstances();
+                logger.debug("NODE {}: Found {} instances of {}", node.getNodeId(), instances,
+                        zwaveDynamicClass.getCommandClass());
+                if (instances == 1) {
+                    addMessages(messages, zdds.getDynamicValues(refresh), null, 0);
+                } else {
+                    for (int i = 1; i <= instances; i++) {
+                        addMessages(messages, zdds.getDynamicValues(refresh), zwaveDynamicClass, i);
+                    }
+                }
+            } else if (zwaveDynamicClass instanceof ZWaveMultiInstanceCommandClass) {
+                ZWaveMultiInstanceCommandClass multiInstanceCommandClass = (ZWaveMultiInstanceCommandClass) zwaveDynamicClass;
+                for (ZWaveEndpoint endpoint : multiInstanceCommandClass.getEndpoints()) {
+                    for (ZWaveCommandClass endpointCommandClass : endpoint.getCommandClasses()) {
+                        logger.debug("NODE {}: Node advancer: DYNAMIC_VALUES - checking {} for endpoint {}",
+                                node.getNodeId(), endpointCommandClass.getCommandClass().getLabel(),
+                                endpoint.getEndpointId());
+                        if (endpointCommandClass instanceof ZWaveCommandClassDynamicState) {
+                            logger.debug("NODE {}: Node advancer: DYNAMIC_VALUES - found    {}", node.getNodeId(),
+                                    endpointCommandClass.getCommandClass().getLabel());
+                            ZWaveCommandClassDynamicState zdds2 = (ZWaveCommandClassDynamicState) endpointCommandClass;
+                            addMessages(messages, zdds2.getDynamicValues(refresh), endpointCommandClass,
+                                    endpoint.getEndpointId());
+                        }
+                    }
+                }
+            }
+        }
+        return messages;
+    }
+
+    private void addMessages(Collection<SerialMessage> messages, Collection<SerialMessage> msgs,
+            ZWaveCommandClass commandClass, int endpointId) {
+        if (msgs == null) {
+            return;
+        }
+        for (SerialMessage serialMessage : msgs) {
+            if (commandClass != null) {
+                serialMessage = node.encapsulate(serialMessage, commandClass, endpointId);
+            }
+            if (serialMessage != null) {
+                messages.add(serialMessage);
+            }
+        }
+    }
+
+    /**
+     * Requests all dynamic values from the node in the background, after a fast restart. The requests are sent at
+     * poll priority so they don't hold up anything else, and requests for battery devices are held until they wake
+     * up.
+     */
+    private void requestDynamicValues() {
+        Collection<SerialMessage> messages = getDynamicValueMessages(true);
+        logger.debug("NODE {}: Fast restart - requesting {} dynamic values in the background", node.getNodeId(),
+                messages.size());
+        for (SerialMessage serialMessage : messages) {
+            serialMessage.setPriority(SerialMessagePriority.Poll);
+            controller.sendData(serialMessage);
+        }
+    }
+
+    /**
+     * Checks that a node restored from file still describes the device. The manufacturer information and application
+     * version must have been saved, and the protocol information just received from the controller must match the
+     * saved information. If a different device has been included with the same node ID, the device class is very
+     * unlikely to match.
+     *
+     * @return true if the restored node can be used without interviewing the device
+     */
+    private boolean isRestoredNodeValid() {
+        if (node.getManufacturer() == Integer.MAX_VALUE || node.getDeviceType() == Integer.MAX_VALUE
+                || node.getDeviceId() == Integer.MAX_VALUE) {
+            logger.debug("NODE {}: Restored node has no manufacturer information", node.getNodeId());
+            return false;
+        }
+        if (node.getCommandClass(CommandClass.VERSION) != null && "0.0".equals(node.getApplicationVersion())) {
+            logger.debug("NODE {}: Restored node has no application version", node.getNodeId());
+            return false;
+        }
+        if (node.getDeviceClass().getGenericDeviceClass() != restoredGenericClass
+                || node.getDeviceClass().getSpecificDeviceClass() != restoredSpecificClass
+                || node.isListening() != restoredListening
+                || node.isFrequentlyListening() != restoredFrequentlyListening) {
+            logger.debug("NODE {}: Restored node doesn't match protocol information - was {}:{}, now {}:{}",
+                    node.getNodeId(), restoredGenericClass, restoredSpecificClass,
+                    node.getDeviceClass().getGenericDeviceClass(), node.getDeviceClass().getSpecificDeviceClass());
+            return false;
+        }
+        return true;
+    }
+
     /**
      * Move the messages to the queue
      *
@@ -1256,6 +1375,20 @@ public class ZWaveNodeInitStageAdvancer implements ZWaveEventListener {
      */
     public void setRestoredFromConfigfile() {
         restoredFromConfigfile = true;
+
+        // Remember the restored device details so they can be checked on a fast restart
+        restoredGenericClass = node.getDeviceClass().getGenericDeviceClass();
+        restoredSpecificClass = node.getDeviceClass().getSpecificDeviceClass();
+        restoredListening = node.isListening();
+        restoredFrequentlyListening = node.isFrequentlyListening();
+    }
+
+    /**
+     * Allows the next initialisation to skip interviewing the device if it was restored from file, and the saved
+     * information still matches the device.
+     */
+    public void setFastRestart() {
+        fastRestart = restoredFromConfigfile;
     }
 
     @Override
@@ -1377,7 +1510,7 @@ public class ZWaveNodeInitStageAdvancer implements ZWaveEventListener {
      * The following timer implements a re-triggerable timer. The timer is used to restart initialisation if it stalls
      * using a log backoff.
      */
-    private class IdleTimerTask extends TimerTask {
+    private class IdleTimerTask implements Runnable {
         @Override
         public void run() {
             // Increase the backoff
@@ -1390,6 +1523,11 @@ public class ZWaveNodeInitStageAdvancer implements ZWaveEventListener {
             logger.debug("NODE {}: Stage {}. Initialisation retry timer triggered. Increased to {}", node.getNodeId(),
                     currentStage, retryTimer);
 
+            // If the node isn't responding, don't hold up the rest of the network
+            if (retryTimer >= BACKOFF_TIMER_PARK && controller.getNodeInitPipeline() != null) {
+                controller.getNodeInitPipeline().nodeParked(node.getNodeId());
+            }
+
             // Kickstart comms - clear the queue and run the advancer
             msgQueue.clear();
             advanceNodeStage(null);
@@ -1398,10 +1536,10 @@ public class ZWaveNodeInitStageAdvancer implements ZWaveEventListener {
 
     private synchronized void resetIdleTimer() {
         // Stop any existing timer
-        if (timerTask != null) {
-            timerTask.cancel();
+        if (idleTimer != null) {
+            idleTimer.cancel(false);
         }
-        timerTask = null;
+        idleTimer = null;
     }
 
     private synchronized void startIdleTimer() {
@@ -1414,11 +1552,8 @@ public class ZWaveNodeInitStageAdvancer implements ZWaveEventListener {
         // Stop any existing timer
         resetIdleTimer();
 
-        // Create the timer task
-        timerTask = new IdleTimerTask();
-
-        // Start the timer
-        timer.schedule(timerTask, retryTimer);
+        // Start the timer on the shared timer service
+        idleTimer = controller.getTimerService().schedule(new IdleTimerTask(), retryTimer);
         logger.debug("NODE {}: Initialisation retry timer started {}", node.getNodeId(), retryTimer);
     }
 }
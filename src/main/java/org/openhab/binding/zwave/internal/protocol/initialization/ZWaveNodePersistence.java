@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol.initialization;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.binding.zwave.internal.protocol.ZWaveNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write-behind persistence of nodes.
+ * <p>
+ * Nodes that need to be saved are marked as dirty, and are written to file by the {@link ZWaveNodeSerializer} on a
+ * background thread. The first change to a node schedules a flush after {@link #WRITE_DELAY} milliseconds, and any
+ * further changes made before the flush are merged into a single write. This keeps disk I/O off the receive and
+ * initialisation threads, and reduces the number of writes to the storage.
+ * <p>
+ * All file operations run on the same thread, so a delete is never overtaken by an earlier save.
+ */
+public class ZWaveNodePersistence {
+    private final static Logger logger = LoggerFactory.getLogger(ZWaveNodePersistence.class);
+
+    private final static long WRITE_DELAY = 5000;
+    private final static long SHUTDOWN_TIMEOUT = 10000;
+
+    private final Map<Integer, ZWaveNode> dirtyNodes = new LinkedHashMap<Integer, ZWaveNode>();
+    private final ScheduledThreadPoolExecutor executor;
+    private ScheduledFuture<?> flushFuture = null;
+    private ZWaveNodeSerializer serializer = null;
+
+    /**
+     * Constructor. Creates the persistence service and starts its thread.
+     */
+    public ZWaveNodePersistence() {
+        executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ZWavePersistence");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        // Pending saves are flushed straight away on shutdown, rather than waiting for the delay
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Marks the node as changed so that it will be saved at the next flush
+     *
+     * @param node the {@link ZWaveNode} to save
+     */
+    public void saveNode(ZWaveNode node) {
+        if (node == null) {
+            return;
+        }
+
+        synchronized (dirtyNodes) {
+            dirtyNodes.put(node.getNodeId(), node);
+            if (flushFuture != null) {
+                return;
+            }
+
+            try {
+                flushFuture = executor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        flushNodes();
+                    }
+                }, WRITE_DELAY, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                logger.debug("NODE {}: Save rejected as persistence is stopped", node.getNodeId());
+            }
+        }
+    }
+
+    /**
+     * Loads a node from file. This runs on the calling thread so that nodes can be loaded in parallel.
+     *
+     * @param nodeId the node ID
+     * @return the {@link ZWaveNode} or null if the node couldn't be loaded
+     */
+    public ZWaveNode loadNode(int nodeId) {
+        return getSerializer().DeserializeNode(nodeId);
+    }
+
+    /**
+     * Deletes the saved node. Any changes waiting to be saved are discarded.
+     *
+     * @param nodeId the node ID
+     */
+    public void deleteNode(final int nodeId) {
+        synchronized (dirtyNodes) {
+            dirtyNodes.remove(nodeId);
+        }
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    getSerializer().DeleteNode(nodeId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            getSerializer().DeleteNode(nodeId);
+        }
+    }
+
+    /**
+     * Stops the persistence service. Any nodes waiting to be saved are written before this returns.
+     */
+    public void shutdown() {
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    flushNodes();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return;
+        }
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                logger.warn("Timeout saving nodes during shutdown");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flushNodes() {
+        List<ZWaveNode> nodes;
+        synchronized (dirtyNodes) {
+            nodes = new ArrayList<ZWaveNode>(dirtyNodes.values());
+            dirtyNodes.clear();
+            flushFuture = null;
+        }
+
+        for (ZWaveNode node : nodes) {
+            try {
+                getSerializer().SerializeNode(node);
+            } catch (Exception e) {
+                logger.error("NODE {}: Error saving node", node.getNodeId(), e);
+            }
+        }
+    }
+
+    private synchronized ZWaveNodeSerializer getSerializer() {
+        if (serializer == null) {
+            serializer = new ZWaveNodeSerializer();
+        }
+        return serializer;
+    }
+}
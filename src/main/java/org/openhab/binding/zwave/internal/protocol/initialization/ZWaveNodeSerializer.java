@@ -9,13 +9,19 @@
 package org.openhab.binding.zwave.internal.protocol.initialization;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.smarthome.config.core.ConfigConstants;
 import org.openhab.binding.zwave.ZWaveBindingConstants;
@@ -28,27 +34,57 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.thoughtworks.xstream.XStream;
-import com.thoughtworks.xstream.io.xml.PrettyPrintWriter;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import com.thoughtworks.xstream.io.binary.BinaryStreamDriver;
 import com.thoughtworks.xstream.io.xml.StaxDriver;
 
 /**
- * ZWaveNodeSerializer class. Serializes nodes to XML and back again.
+ * ZWaveNodeSerializer class. Serializes nodes to a file and back again.
+ * <p>
+ * Nodes are stored in a binary file (nodeX.bin) which starts with a header holding a magic number and the format
+ * version, followed by the node in the XStream binary format. This avoids parsing XML when the binding starts. Nodes
+ * stored in the older XML format (nodeX.xml) are read, and converted to the binary format, the first time they are
+ * loaded.
+ * <p>
+ * The XStream instance is configured once and shared, and each node has its own lock, so nodes can be loaded and
+ * saved in parallel. The locks, and the record of what was last saved, belong to the serializer instance, so all
+ * access to a folder should go through a single instance. Files are written to a temporary file which is then moved
+ * into place, and are only written if the node has changed since it was last loaded or saved.
  *
  * @author Chris Jackson
  * @author Jan-Willem Spuij
  */
 public class ZWaveNodeSerializer {
     private final static Logger logger = LoggerFactory.getLogger(ZWaveNodeSerializer.class);
-    private final XStream stream = new XStream(new StaxDriver());
+
+    private final static int FILE_MAGIC = 0x5A574E44;
+    private final static int FORMAT_VERSION = 1;
+    private final static int HEADER_LENGTH = 8;
+
+    private final static XStream stream = createStream();
+    private final static BinaryStreamDriver binaryDriver = new BinaryStreamDriver();
+    private final static StaxDriver xmlDriver = new StaxDriver();
+
+    private final ConcurrentHashMap<Integer, Object> nodeLocks = new ConcurrentHashMap<Integer, Object>();
+    private final ConcurrentHashMap<Integer, byte[]> savedNodes = new ConcurrentHashMap<Integer, byte[]>();
+
     private final String folderName;
 
     /**
      * Constructor. Creates a new instance of the {@link ZWaveNodeSerializer} class.
      */
     public ZWaveNodeSerializer() {
-        logger.trace("Initializing ZWaveNodeSerializer.");
+        this(ConfigConstants.getUserDataFolder() + "/" + ZWaveBindingConstants.BINDING_ID);
+    }
 
-        folderName = ConfigConstants.getUserDataFolder() + "/" + ZWaveBindingConstants.BINDING_ID;
+    /**
+     * Constructor. Creates a new instance of the {@link ZWaveNodeSerializer} class using the specified folder.
+     *
+     * @param folderName
+     *            the folder the node files are stored in
+     */
+    public ZWaveNodeSerializer(String folderName) {
+        this.folderName = folderName;
 
         final File folder = new File(folderName);
 
@@ -57,6 +93,11 @@ public class ZWaveNodeSerializer {
             logger.debug("Creating directory {}", folderName);
             folder.mkdirs();
         }
+    }
+
+    private static XStream createStream() {
+        logger.trace("Initializing ZWaveNodeSerializer.");
+        XStream stream = new XStream(new StaxDriver());
 
         stream.setClassLoader(ZWaveNodeSerializer.class.getClassLoader());
 
@@ -81,80 +122,188 @@ public class ZWaveNodeSerializer {
             }
         }
         logger.trace("Initialized ZWaveNodeSerializer.");
+        return stream;
+    }
+
+    private Object getNodeLock(int nodeId) {
+        Object lock = nodeLocks.get(nodeId);
+        if (lock == null) {
+            Object newLock = new Object();
+            lock = nodeLocks.putIfAbsent(nodeId, newLock);
+            if (lock == null) {
+                lock = newLock;
+            }
+        }
+        return lock;
     }
 
     /**
-     * Serializes an XML tree of a {@link ZWaveNode}
+     * Serializes a {@link ZWaveNode} to file
      *
      * @param node
      *            the node to serialize
      */
     public void SerializeNode(ZWaveNode node) {
-        synchronized (stream) {
-            // Don't serialise if the stage is not at least finished static
-            // If we do serialise when we haven't completed the static stages
-            // then when the binding starts it will have incomplete information!
-            if (node.getNodeInitStage().isStaticComplete() == false) {
-                logger.debug("NODE {}: Serialise aborted as static stages not complete", node.getNodeId());
-                return;
-            }
+        // Don't serialise if the stage is not at least finished static
+        // If we do serialise when we haven't completed the static stages
+        // then when the binding starts it will have incomplete information!
+        if (node.getNodeInitStage().isStaticComplete() == false) {
+            logger.debug("NODE {}: Serialise aborted as static stages not complete", node.getNodeId());
+            return;
+        }
+
+        synchronized (getNodeLock(node.getNodeId())) {
+            writeNode(node);
+        }
+    }
 
-            File file = new File(this.folderName, String.format("node%d.xml", node.getNodeId()));
-            BufferedWriter writer = null;
-
-            logger.debug("NODE {}: Serializing to file {}", node.getNodeId(), file.getPath());
-
-            try {
-                writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
-                stream.marshal(node, new PrettyPrintWriter(writer));
-                writer.flush();
-            } catch (IOException e) {
-                logger.error("NODE {}: Error serializing to file: {}", node.getNodeId(), e.getMessage());
-            } finally {
-                if (writer != null) {
-                    try {
-                        writer.close();
-                    } catch (IOException e) {
-                    }
+    /**
+     * Writes the node to its binary file
+     *
+     * @return true if the file is up to date
+     */
+    private boolean writeNode(ZWaveNode node) {
+        File file = new File(this.folderName, String.format("node%d.bin", node.getNodeId()));
+
+        byte[] data;
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+            DataOutputStream header = new DataOutputStream(buffer);
+            header.writeInt(FILE_MAGIC);
+            header.writeInt(FORMAT_VERSION);
+            header.flush();
+
+            HierarchicalStreamWriter writer = binaryDriver.createWriter(buffer);
+            stream.marshal(node, writer);
+            writer.flush();
+            data = buffer.toByteArray();
+        } catch (IOException e) {
+            logger.error("NODE {}: Error serializing node: {}", node.getNodeId(), e.getMessage());
+            return false;
+        }
+
+        // Don't rewrite the file if nothing has changed
+        if (Arrays.equals(data, savedNodes.get(node.getNodeId())) && file.exists()) {
+            logger.debug("NODE {}: Serialize skipped as node is unchanged", node.getNodeId());
+            return true;
+        }
+
+        logger.debug("NODE {}: Serializing to file {}", node.getNodeId(), file.getPath());
+
+        File tempFile = new File(this.folderName, String.format("node%d.tmp", node.getNodeId()));
+        FileOutputStream output = null;
+        try {
+            output = new FileOutputStream(tempFile);
+            output.write(data);
+            output.getFD().sync();
+            output.close();
+            output = null;
+
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            savedNodes.put(node.getNodeId(), data);
+            return true;
+        } catch (IOException e) {
+            logger.error("NODE {}: Error serializing to file: {}", node.getNodeId(), e.getMessage());
+            return false;
+        } finally {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException e) {
                 }
             }
         }
     }
 
     /**
-     * Deserializes an XML tree of a {@link ZWaveNode}
+     * Deserializes a {@link ZWaveNode} from file.
+     * If the node is only stored in the older XML format, it's converted to the binary format.
      *
      * @param nodeId
      *            the number of the node to deserialize
      * @return returns the Node or null in case Serialization failed.
      */
     public ZWaveNode DeserializeNode(int nodeId) {
-        synchronized (stream) {
-            File file = new File(this.folderName, String.format("node%d.xml", nodeId));
-            BufferedReader reader = null;
-
-            logger.debug("NODE {}: Serializing from file {}", nodeId, file.getPath());
+        synchronized (getNodeLock(nodeId)) {
+            File file = new File(this.folderName, String.format("node%d.bin", nodeId));
+            if (file.exists()) {
+                return readNode(nodeId, file);
+            }
 
-            if (!file.exists()) {
+            File xmlFile = new File(this.folderName, String.format("node%d.xml", nodeId));
+            if (!xmlFile.exists()) {
                 logger.debug("NODE {}: Error serializing from file: file does not exist.", nodeId);
                 return null;
             }
 
-            try {
-                reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
-                return (ZWaveNode) stream.fromXML(reader);
-            } catch (IOException e) {
-                logger.debug("NODE {}: Error serializing from file: {}", nodeId, e.getMessage());
-            } finally {
-                if (reader != null) {
-                    try {
-                        reader.close();
-                    } catch (IOException e) {
-                    }
+            ZWaveNode node = readXmlNode(nodeId, xmlFile);
+            if (node == null) {
+                return null;
+            }
+
+            // Convert the file to the binary format. The XML file is only removed once the binary file has been written
+            // and read back with the same node
+            if (writeNode(node)) {
+                ZWaveNode converted = readNode(nodeId, file);
+                if (converted != null && converted.getNodeId() == node.getNodeId()
+                        && converted.getHomeId() != null && converted.getHomeId().equals(node.getHomeId())) {
+                    logger.debug("NODE {}: Converted {} to binary format", nodeId, xmlFile.getPath());
+                    xmlFile.delete();
+                } else {
+                    logger.warn("NODE {}: Error converting {} to binary format", nodeId, xmlFile.getPath());
+                    file.delete();
+                    savedNodes.remove(nodeId);
+                }
+            }
+            return node;
+        }
+    }
+
+    private ZWaveNode readNode(int nodeId, File file) {
+        logger.debug("NODE {}: Serializing from file {}", nodeId, file.getPath());
+
+        try {
+            byte[] data = Files.readAllBytes(file.toPath());
+            ByteBuffer header = ByteBuffer.wrap(data);
+            if (data.length < HEADER_LENGTH || header.getInt() != FILE_MAGIC) {
+                logger.debug("NODE {}: Error serializing from file: invalid file.", nodeId);
+                return null;
+            }
+            int version = header.getInt();
+            if (version != FORMAT_VERSION) {
+                logger.debug("NODE {}: Error serializing from file: unsupported version {}.", nodeId, version);
+                return null;
+            }
+
+            ZWaveNode node = (ZWaveNode) stream.unmarshal(binaryDriver
+                    .createReader(new ByteArrayInputStream(data, HEADER_LENGTH, data.length - HEADER_LENGTH)));
+            savedNodes.put(nodeId, data);
+            return node;
+        } catch (IOException e) {
+            logger.debug("NODE {}: Error serializing from file: {}", nodeId, e.getMessage());
+        }
+        return null;
+    }
+
+    private ZWaveNode readXmlNode(int nodeId, File file) {
+        BufferedReader reader = null;
+
+        logger.debug("NODE {}: Serializing from file {}", nodeId, file.getPath());
+
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            return (ZWaveNode) stream.unmarshal(xmlDriver.createReader(reader));
+        } catch (IOException e) {
+            logger.debug("NODE {}: Error serializing from file: {}", nodeId, e.getMessage());
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
                 }
             }
-            return null;
         }
+        return null;
     }
 
     /**
@@ -164,9 +313,11 @@ public class ZWaveNodeSerializer {
      * @return true if the file was deleted
      */
     public boolean DeleteNode(int nodeId) {
-        synchronized (stream) {
-            File file = new File(this.folderName, String.format("node%d.xml", nodeId));
+        synchronized (getNodeLock(nodeId)) {
+            savedNodes.remove(nodeId);
+            new File(this.folderName, String.format("node%d.xml", nodeId)).delete();
 
+            File file = new File(this.folderName, String.format("node%d.bin", nodeId));
             return file.delete();
         }
     }
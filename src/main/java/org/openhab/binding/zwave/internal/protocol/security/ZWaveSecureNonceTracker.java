@@ -108,6 +108,16 @@ public class ZWaveSecureNonceTracker {
 
     private long reseedAt = 0L;
 
+    /**
+     * Number of messages that were encapsulated with a device nonce that was already available
+     */
+    private long nonceHits = 0;
+
+    /**
+     * Number of messages that had to wait for a {@link ZWaveSecurityCommandClass#SECURITY_NONCE_GET} round trip
+     */
+    private long nonceMisses = 0;
+
     public ZWaveSecureNonceTracker(ZWaveNode node) {
         this.node = node;
     }
@@ -121,6 +131,52 @@ public class ZWaveSecureNonceTracker {
         return nonce;
     }
 
+    /**
+     * Checks if a device nonce is available without using it
+     *
+     * @return true if there is a device nonce that hasn't expired
+     */
+    public synchronized boolean hasUseableDeviceNonce() {
+        return deviceNonceTable.hasDeviceNonce();
+    }
+
+    /**
+     * Records the use of a device nonce to encapsulate a message
+     *
+     * @param available true if the nonce was available when the message was ready to send, false if we had to
+     *            wait for the device to send it
+     */
+    public synchronized void recordNonceUse(boolean available) {
+        if (available) {
+            nonceHits++;
+        } else {
+            nonceMisses++;
+        }
+    }
+
+    /**
+     * @return the number of messages that were encapsulated without waiting for a nonce
+     */
+    public synchronized long getNonceHits() {
+        return nonceHits;
+    }
+
+    /**
+     * @return the number of messages that had to wait for a nonce from the device
+     */
+    public synchronized long getNonceMisses() {
+        return nonceMisses;
+    }
+
+    /**
+     * @return the percentage of messages that were encapsulated without waiting for a nonce, or 0 if no messages
+     *         have been sent
+     */
+    public synchronized int getNonceHitRate() {
+        long total = nonceHits + nonceMisses;
+        return total == 0 ? 0 : (int) (nonceHits * 100 / total);
+    }
+
     /**
      * @return true if a nonce has been requested from the node and a reply is pending
      */
@@ -134,6 +190,16 @@ public class ZWaveSecureNonceTracker {
         }
     }
 
+    /**
+     * @return the time at which the outstanding nonce request expires, or 0 if no nonce has been requested
+     */
+    public synchronized long getNonceRequestExpiresAt() {
+        if (requestNonceTimer == null) {
+            return 0;
+        }
+        return requestNonceTimer.getExpiresAt();
+    }
+
     public synchronized SerialMessage buildNonceGetIfNeeded() {
         if (hasNonceBeenRequested()) {
             logger.debug("NODE {}: already waiting for nonce", node.getNodeId());
@@ -212,7 +278,7 @@ public class ZWaveSecureNonceTracker {
             // The nonce was not received within the alloted time of us sending the nonce request. Send it again
             logger.warn("NODE {}: SECURITY_ERROR Nonce was not received within {}ms, a new one will be requested.",
                     node.getNodeId(), NonceTimerType.REQUESTED.validityInMillis);
-            // The ZWaveSecurityEncapsulationThread will request a new one for us
+            // The encapsulation scheduler will request a new one for us
             return;
         } else {
             logger.debug("NODE {}: receivedNonceFromDevice nonce received. Stopping requestNonceTimer",
@@ -567,6 +633,11 @@ public class ZWaveSecureNonceTracker {
             timeToNonceMap.put(deviceNonce.getTimer().getExpiresAt(), deviceNonce);
         }
 
+        private boolean hasDeviceNonce() {
+            cleanup();
+            return !timeToNonceMap.isEmpty();
+        }
+
         private Nonce getDeviceNonceToEncryptMessage() {
             logger.debug("NODE {}: getDeviceNonceToEncryptMessage start deviceNonceTable={}, timeToNonceMap={}",
                     node.getNodeId(), deviceNonceTable, timeToNonceMap);
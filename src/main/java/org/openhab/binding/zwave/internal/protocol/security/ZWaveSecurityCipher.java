@@ -0,0 +1,190 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol.security;
+
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Holds the AES contexts used to encapsulate and decapsulate security (S0) frames for a node.
+ * <p>
+ * The encryption and authentication keys are derived from the network key once, and each is held in an AES block
+ * cipher that is initialised once and reused for every frame. The OFB encryption and the CBC-MAC are both built on
+ * the block cipher, so there is no provider lookup or key setup per frame, and the frame data is processed in place
+ * in the caller's buffers.
+ * <p>
+ * A {@link Cipher} isn't thread safe, so the methods are synchronized. Each node has its own instance.
+ */
+public class ZWaveSecurityCipher {
+    /**
+     * Per the z-wave spec, this is the data encrypted with the network key to derive the encryption key
+     */
+    private static final byte[] DERIVE_ENCRYPT_KEY = { (byte) 0xAA, (byte) 0xAA, (byte) 0xAA, (byte) 0xAA, (byte) 0xAA,
+            (byte) 0xAA, (byte) 0xAA, (byte) 0xAA, (byte) 0xAA, (byte) 0xAA, (byte) 0xAA, (byte) 0xAA, (byte) 0xAA,
+            (byte) 0xAA, (byte) 0xAA, (byte) 0xAA };
+    /**
+     * Per the z-wave spec, this is the data encrypted with the network key to derive the authentication key
+     */
+    private static final byte[] DERIVE_AUTH_KEY = { 0x55, 0x55, 0x55, 0x55, 0x55, 0x55, 0x55, 0x55, 0x55, 0x55, 0x55,
+            0x55, 0x55, 0x55, 0x55, 0x55 };
+
+    private static final String AES = "AES";
+    private static final String AES_BLOCK = "AES/ECB/NoPadding";
+
+    public static final int BLOCK_SIZE = 16;
+    public static final int MAC_LENGTH = 8;
+
+    private final Cipher encryptCipher;
+    private final Cipher authCipher;
+
+    // Working blocks, only used while holding the lock
+    private final byte[] keyStream = new byte[BLOCK_SIZE];
+    private final byte[] authState = new byte[BLOCK_SIZE];
+    private final byte[] header = new byte[4];
+
+    /**
+     * Creates the contexts for the given network key
+     *
+     * @param networkKey the network key
+     * @throws GeneralSecurityException if AES isn't available or the key is invalid
+     */
+    public ZWaveSecurityCipher(SecretKey networkKey) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(AES_BLOCK);
+        cipher.init(Cipher.ENCRYPT_MODE, networkKey);
+        SecretKey encryptKey = new SecretKeySpec(cipher.doFinal(DERIVE_ENCRYPT_KEY), AES);
+        SecretKey authKey = new SecretKeySpec(cipher.doFinal(DERIVE_AUTH_KEY), AES);
+
+        encryptCipher = cipher;
+        encryptCipher.init(Cipher.ENCRYPT_MODE, encryptKey);
+        authCipher = Cipher.getInstance(AES_BLOCK);
+        authCipher.init(Cipher.ENCRYPT_MODE, authKey);
+    }
+
+    /**
+     * Encrypts or decrypts data with AES-OFB. OFB is symmetric, so the same call is used in both directions.
+     * The input and output may be the same buffer.
+     *
+     * @param iv the 16 byte initialization vector
+     * @param input the buffer holding the data
+     * @param inputOffset the offset of the data in the input
+     * @param length the length of the data
+     * @param output the buffer to write the result to
+     * @param outputOffset the offset to write the result at
+     * @throws GeneralSecurityException
+     */
+    public synchronized void crypt(byte[] iv, byte[] input, int inputOffset, int length, byte[] output,
+            int outputOffset) throws GeneralSecurityException {
+        System.arraycopy(iv, 0, keyStream, 0, BLOCK_SIZE);
+        for (int position = 0; position < length; position++) {
+            int index = position % BLOCK_SIZE;
+            if (index == 0) {
+                encryptCipher.doFinal(keyStream, 0, BLOCK_SIZE, keyStream, 0);
+            }
+            output[outputOffset + position] = (byte) (input[inputOffset + position] ^ keyStream[index]);
+        }
+    }
+
+    /**
+     * Generates the MAC (message authentication code) of a security encapsulated frame. This is the AES CBC-MAC of the
+     * command, the node ids, and the ciphertext, using the encrypted IV as the initial block.
+     *
+     * @param iv the 16 byte initialization vector
+     * @param command the security command
+     * @param sendingNode the node sending the frame
+     * @param receivingNode the node receiving the frame
+     * @param ciphertext the buffer holding the ciphertext
+     * @param ciphertextOffset the offset of the ciphertext
+     * @param length the length of the ciphertext
+     * @param mac the buffer to write the {@link #MAC_LENGTH} byte MAC to
+     * @param macOffset the offset to write the MAC at
+     * @throws GeneralSecurityException
+     */
+    public synchronized void generateMac(byte[] iv, byte command, byte sendingNode, byte receivingNode,
+            byte[] ciphertext, int ciphertextOffset, int length, byte[] mac, int macOffset)
+            throws GeneralSecurityException {
+        computeAuthState(iv, command, sendingNode, receivingNode, ciphertext, ciphertextOffset, length);
+        System.arraycopy(authState, 0, mac, macOffset, MAC_LENGTH);
+    }
+
+    /**
+     * Encrypts a frame and appends the MAC. The plaintext is encrypted into the output, and the MAC is then generated
+     * from the ciphertext and written to the output. The plaintext may already be in place in the output.
+     *
+     * @param iv the 16 byte initialization vector
+     * @param command the security command
+     * @param sendingNode the node sending the frame
+     * @param receivingNode the node receiving the frame
+     * @param plaintext the buffer holding the plaintext
+     * @param plaintextOffset the offset of the plaintext
+     * @param length the length of the plaintext
+     * @param frame the buffer to write the ciphertext and MAC to
+     * @param ciphertextOffset the offset to write the ciphertext at
+     * @param macOffset the offset to write the MAC at
+     * @throws GeneralSecurityException
+     */
+    public synchronized void encryptAndMac(byte[] iv, byte command, byte sendingNode, byte receivingNode,
+            byte[] plaintext, int plaintextOffset, int length, byte[] frame, int ciphertextOffset, int macOffset)
+            throws GeneralSecurityException {
+        crypt(iv, plaintext, plaintextOffset, length, frame, ciphertextOffset);
+        generateMac(iv, command, sendingNode, receivingNode, frame, ciphertextOffset, length, frame, macOffset);
+    }
+
+    /**
+     * Checks the MAC of a received frame and decrypts it.
+     * The ciphertext is always decrypted so the caller can decide what to do if the MAC doesn't match.
+     *
+     * @param iv the 16 byte initialization vector
+     * @param command the security command
+     * @param sendingNode the node that sent the frame
+     * @param receivingNode the node receiving the frame
+     * @param frame the buffer holding the ciphertext and MAC
+     * @param ciphertextOffset the offset of the ciphertext
+     * @param length the length of the ciphertext
+     * @param macOffset the offset of the MAC
+     * @param plaintext the buffer to write the plaintext to
+     * @param plaintextOffset the offset to write the plaintext at
+     * @return true if the MAC is valid
+     * @throws GeneralSecurityException
+     */
+    public synchronized boolean decryptAndVerify(byte[] iv, byte command, byte sendingNode, byte receivingNode,
+            byte[] frame, int ciphertextOffset, int length, int macOffset, byte[] plaintext, int plaintextOffset)
+            throws GeneralSecurityException {
+        computeAuthState(iv, command, sendingNode, receivingNode, frame, ciphertextOffset, length);
+        int difference = 0;
+        for (int cnt = 0; cnt < MAC_LENGTH; cnt++) {
+            difference |= authState[cnt] ^ frame[macOffset + cnt];
+        }
+        crypt(iv, frame, ciphertextOffset, length, plaintext, plaintextOffset);
+        return difference == 0;
+    }
+
+    private void computeAuthState(byte[] iv, byte command, byte sendingNode, byte receivingNode, byte[] ciphertext,
+            int ciphertextOffset, int length) throws GeneralSecurityException {
+        header[0] = command;
+        header[1] = sendingNode;
+        header[2] = receivingNode;
+        header[3] = (byte) length;
+
+        // The data is padded with zeros to a block boundary, so padding leaves the state unchanged
+        authCipher.doFinal(iv, 0, BLOCK_SIZE, authState, 0);
+        int total = header.length + length;
+        for (int position = 0; position < total; position++) {
+            int index = position % BLOCK_SIZE;
+            byte value = position < header.length ? header[position]
+                    : ciphertext[ciphertextOffset + position - header.length];
+            authState[index] ^= value;
+            if (index == BLOCK_SIZE - 1 || position == total - 1) {
+                authCipher.doFinal(authState, 0, BLOCK_SIZE, authState, 0);
+            }
+        }
+    }
+}
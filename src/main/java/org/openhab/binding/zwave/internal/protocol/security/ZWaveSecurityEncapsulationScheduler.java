@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.internal.protocol.security;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveSecurityCommandClass;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the security encapsulation for all secure nodes in the network on a single thread.
+ * <p>
+ * A node's encapsulation queue is processed when something happens that may allow the next message to be sent - a
+ * message is queued, a nonce is received from the device, or the response to the last message is received. When it
+ * is processed, the node returns the time at which it next needs to be checked if nothing else happens (eg to time
+ * out the last message, or to request a new nonce), and the scheduler wakes up at that time.
+ * <p>
+ * The thread is only started when the first secure node needs it, and sleeps while there is nothing to do.
+ */
+public class ZWaveSecurityEncapsulationScheduler {
+    private final static Logger logger = LoggerFactory.getLogger(ZWaveSecurityEncapsulationScheduler.class);
+
+    // Time to wait before processing a node again if processing failed
+    private final static long RETRY_DELAY = 1000;
+
+    private final Set<ZWaveSecurityCommandClass> ready = new LinkedHashSet<ZWaveSecurityCommandClass>();
+    private final Map<ZWaveSecurityCommandClass, Long> deadlines = new HashMap<ZWaveSecurityCommandClass, Long>();
+
+    private Thread thread = null;
+    private boolean running = true;
+
+    /**
+     * Schedules the node's encapsulation queue to be processed as soon as possible
+     *
+     * @param securityCommandClass the security command class of the node
+     */
+    public synchronized void schedule(ZWaveSecurityCommandClass securityCommandClass) {
+        if (!running) {
+            return;
+        }
+        if (thread == null) {
+            thread = new SchedulerThread();
+            thread.start();
+        }
+        ready.add(securityCommandClass);
+        notifyAll();
+    }
+
+    /**
+     * Removes the node from the scheduler. Any messages still waiting in the node's queue won't be sent.
+     *
+     * @param securityCommandClass the security command class of the node
+     */
+    public synchronized void cancel(ZWaveSecurityCommandClass securityCommandClass) {
+        ready.remove(securityCommandClass);
+        deadlines.remove(securityCommandClass);
+    }
+
+    /**
+     * Gets the number of nodes that are waiting to be processed, or have a timeout pending
+     *
+     * @return number of nodes
+     */
+    public synchronized int getScheduledCount() {
+        Set<ZWaveSecurityCommandClass> scheduled = new LinkedHashSet<ZWaveSecurityCommandClass>(ready);
+        scheduled.addAll(deadlines.keySet());
+        return scheduled.size();
+    }
+
+    /**
+     * Stops the scheduler thread
+     */
+    public synchronized void shutdown() {
+        running = false;
+        ready.clear();
+        deadlines.clear();
+        if (thread != null) {
+            thread.interrupt();
+        }
+        notifyAll();
+    }
+
+    private synchronized void setDeadline(ZWaveSecurityCommandClass securityCommandClass, long deadline) {
+        if (deadline <= 0 || !running) {
+            deadlines.remove(securityCommandClass);
+        } else {
+            deadlines.put(securityCommandClass, deadline);
+        }
+    }
+
+    /**
+     * Waits until a node is ready to be processed, either because it was scheduled, or its deadline has passed
+     *
+     * @return the security command class to process, or null if the scheduler has been shut down
+     * @throws InterruptedException
+     */
+    private synchronized ZWaveSecurityCommandClass takeNext() throws InterruptedException {
+        while (running) {
+            long now = System.currentTimeMillis();
+            long nextDeadline = Long.MAX_VALUE;
+            Iterator<Entry<ZWaveSecurityCommandClass, Long>> iterator = deadlines.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Entry<ZWaveSecurityCommandClass, Long> entry = iterator.next();
+                if (entry.getValue() <= now) {
+                    ready.add(entry.getKey());
+                    iterator.remove();
+                } else if (entry.getValue() < nextDeadline) {
+                    nextDeadline = entry.getValue();
+                }
+            }
+
+            if (!ready.isEmpty()) {
+                Iterator<ZWaveSecurityCommandClass> next = ready.iterator();
+                ZWaveSecurityCommandClass securityCommandClass = next.next();
+                next.remove();
+                return securityCommandClass;
+            }
+
+            wait(nextDeadline == Long.MAX_VALUE ? 0 : nextDeadline - now);
+        }
+        return null;
+    }
+
+    private class SchedulerThread extends Thread {
+        private SchedulerThread() {
+            super("ZWaveSecurityEncapsulation");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            logger.debug("Starting Z-Wave thread: security encapsulation");
+            while (true) {
+                ZWaveSecurityCommandClass securityCommandClass;
+                try {
+                    securityCommandClass = takeNext();
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (securityCommandClass == null) {
+                    break;
+                }
+
+                try {
+                    setDeadline(securityCommandClass, securityCommandClass.processEncapsulationQueue());
+                } catch (Exception e) {
+                    logger.error("Exception during Z-Wave thread: security encapsulation", e);
+                    // Try again shortly rather than leaving the node's messages stuck in the queue
+                    setDeadline(securityCommandClass, System.currentTimeMillis() + RETRY_DELAY);
+                }
+            }
+            logger.debug("Stopped Z-Wave thread: security encapsulation");
+        }
+    }
+}
@@ -157,8 +157,6 @@ public class AddNodeMessageClass extends ZWaveCommandProcessor {
             // TODO Auto-generated catch block
             e.printStackTrace();
         }
-        checkTransactionComplete(lastSentMessage, incomingMessage);
-
-        return transactionComplete;
+        return checkTransactionComplete(zController, lastSentMessage, incomingMessage);
     }
 }
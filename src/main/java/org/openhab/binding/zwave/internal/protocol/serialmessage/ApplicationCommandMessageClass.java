@@ -69,9 +69,10 @@ public class ApplicationCommandMessageClass extends ZWaveCommandProcessor {
                 ZWaveSecurityCommandClass zwaveSecurityCommandClass = (ZWaveSecurityCommandClass) zwaveCommandClass;
                 logger.debug("NODE {}: Preparing to decrypt security encapsulated message, messagePayload={}", nodeId,
                         SerialMessage.bb2hex(incomingMessage.getMessagePayload()));
-                int toDecryptLength = incomingMessage.getMessageBuffer().length - 9;
+                byte[] messageBuffer = incomingMessage.getMessageBuffer();
+                int toDecryptLength = messageBuffer.length - 9;
                 byte[] toDecrypt = new byte[toDecryptLength];
-                System.arraycopy(incomingMessage.getMessageBuffer(), 8, toDecrypt, 0, toDecryptLength);
+                System.arraycopy(messageBuffer, 8, toDecrypt, 0, toDecryptLength);
                 byte[] decryptedBytes = zwaveSecurityCommandClass.decryptMessage(toDecrypt, 0);
                 if (decryptedBytes == null) {
                     logger.error("NODE {}: Failed to decrypt message out of {} .", nodeId, incomingMessage);
@@ -120,8 +121,10 @@ public class ApplicationCommandMessageClass extends ZWaveCommandProcessor {
                 }
             }
 
-            if (node.getNodeId() == lastSentMessage.getMessageNode()) {
-                checkTransactionComplete(lastSentMessage, incomingMessage);
+            if (lastSentMessage == null) {
+                logger.trace("NODE {}: No outstanding transaction for this node.", nodeId);
+            } else if (node.getNodeId() == lastSentMessage.getMessageNode()) {
+                checkTransactionComplete(zController, lastSentMessage, incomingMessage);
             } else {
                 logger.debug("NODE {}: Transaction not completed: node address inconsistent.  lastSent={}, incoming={}",
                         lastSentMessage.getMessageNode(), lastSentMessage.getMessageNode(),
@@ -160,7 +160,7 @@ public class ApplicationUpdateMessageClass extends ZWaveCommandProcessor {
         }
 
         // Check if this completes the transaction
-        checkTransactionComplete(lastSentMessage, incomingMessage);
+        checkTransactionComplete(zController, lastSentMessage, incomingMessage);
 
         return result;
     }
@@ -79,7 +79,7 @@ public class AssignReturnRouteMessageClass extends ZWaveCommandProcessor {
                     ZWaveNetworkEvent.State.Success));
         }
 
-        checkTransactionComplete(lastSentMessage, incomingMessage);
+        checkTransactionComplete(zController, lastSentMessage, incomingMessage);
 
         return true;
     }
@@ -52,7 +52,7 @@ public class AssignSucReturnRouteMessageClass extends ZWaveCommandProcessor {
                     ZWaveNetworkEvent.State.Failure));
         }
 
-        checkTransactionComplete(lastSentMessage, incomingMessage);
+        checkTransactionComplete(zController, lastSentMessage, incomingMessage);
         return true;
     }
 
@@ -34,7 +34,7 @@ public class ControllerSetDefaultMessageClass extends ZWaveCommandProcessor {
             SerialMessage incomingMessage) {
         logger.debug(String.format("Received SetDefault request"));
 
-        checkTransactionComplete(lastSentMessage, incomingMessage);
+        checkTransactionComplete(zController, lastSentMessage, incomingMessage);
 
         return true;
     }
@@ -76,7 +76,7 @@ public class DeleteReturnRouteMessageClass extends ZWaveCommandProcessor {
                     ZWaveNetworkEvent.State.Success));
         }
 
-        checkTransactionComplete(lastSentMessage, incomingMessage);
+        checkTransactionComplete(zController, lastSentMessage, incomingMessage);
 
         return true;
     }
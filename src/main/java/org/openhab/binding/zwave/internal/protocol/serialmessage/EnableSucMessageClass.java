@@ -62,7 +62,7 @@ public class EnableSucMessageClass extends ZWaveCommandProcessor {
             logger.debug("Unable to disable a running SUC!");
         }
 
-        checkTransactionComplete(lastSentMessage, incomingMessage);
+        checkTransactionComplete(zController, lastSentMessage, incomingMessage);
         return true;
     }
 
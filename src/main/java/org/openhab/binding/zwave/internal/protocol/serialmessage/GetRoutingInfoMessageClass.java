@@ -79,10 +79,13 @@ public class GetRoutingInfoMessageClass extends ZWaveCommandProcessor {
             logger.debug("NODE {}: {}", nodeId, neighbors);
         }
 
+        // Only always listening nodes repeat messages for other nodes
+        zController.getTopology().updateNode(nodeId, node.isListening(), node.getNeighbors());
+
         zController.notifyEventListeners(
                 new ZWaveNetworkEvent(ZWaveNetworkEvent.Type.NodeRoutingInfo, nodeId, ZWaveNetworkEvent.State.Success));
 
-        checkTransactionComplete(lastSentMessage, incomingMessage);
+        checkTransactionComplete(zController, lastSentMessage, incomingMessage);
         return true;
     }
 }
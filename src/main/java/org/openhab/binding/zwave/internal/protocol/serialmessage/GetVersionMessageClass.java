@@ -42,7 +42,7 @@ public class GetVersionMessageClass extends ZWaveCommandProcessor {
         logger.debug(String.format("Got MessageGetVersion response. Version = %s, Library Type = 0x%02X", zWaveVersion,
                 ZWaveLibraryType));
 
-        checkTransactionComplete(lastSentMessage, incomingMessage);
+        checkTransactionComplete(zController, lastSentMessage, incomingMessage);
 
         return true;
     }
@@ -139,7 +139,7 @@ public class IdentifyNodeMessageClass extends ZWaveCommandProcessor {
             }
         }
 
-        checkTransactionComplete(lastSentMessage, incomingMessage);
+        checkTransactionComplete(zController, lastSentMessage, incomingMessage);
 
         return true;
     }
@@ -57,7 +57,7 @@ public class IsFailedNodeMessageClass extends ZWaveCommandProcessor {
             logger.debug("NODE {}: Is currently marked as healthy by the controller", nodeId);
         }
 
-        checkTransactionComplete(lastSentMessage, incomingMessage);
+        checkTransactionComplete(zController, lastSentMessage, incomingMessage);
 
         return true;
     }
@@ -42,7 +42,7 @@ public class MemoryGetIdMessageClass extends ZWaveCommandProcessor {
         logger.debug(String.format("Got MessageMemoryGetId response. Home id = 0x%08X, Controller Node id = %d", homeId,
                 ownNodeId));
 
-        checkTransactionComplete(lastSentMessage, incomingMessage);
+        checkTransactionComplete(zController, lastSentMessage, incomingMessage);
 
         return true;
     }
@@ -77,33 +77,33 @@ public class RemoveFailedNodeMessageClass extends ZWaveCommandProcessor {
                 break;
             case FAILED_NODE_NOT_PRIMARY_CONTROLLER:
                 logger.debug("NODE {}: Remove failed node failed as not Primary Controller for node!", nodeId);
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 report = Report.FAILED_NODE_NOT_PRIMARY_CONTROLLER;
                 break;
             case FAILED_NODE_NO_CALLBACK_FUNCTION:
                 logger.debug("NODE {}: Remove failed node failed as no callback function!", nodeId);
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 report = Report.FAILED_NODE_NO_CALLBACK_FUNCTION;
                 break;
             case FAILED_NODE_NOT_FOUND:
                 logger.debug("NODE {}: Remove failed node failed as node not found", nodeId);
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 report = Report.FAILED_NODE_NOT_FOUND;
                 break;
             case FAILED_NODE_REMOVE_PROCESS_BUSY:
                 logger.debug("NODE {}: Remove failed node failed as Controller Busy!", nodeId);
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 report = Report.FAILED_NODE_REMOVE_PROCESS_BUSY;
                 break;
             case FAILED_NODE_REMOVE_FAIL:
                 logger.debug("NODE {}: Remove failed node failed!", nodeId);
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 report = Report.FAILED_NODE_REMOVE_FAIL;
                 break;
             default:
                 logger.debug("NODE {}: Remove failed node not placed on stack due to error 0x{}.", nodeId,
                         Integer.toHexString(incomingMessage.getMessagePayloadByte(0)));
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 report = Report.FAILED_NODE_UNKNOWN_FAIL;
                 break;
         }
@@ -127,27 +127,27 @@ public class RemoveFailedNodeMessageClass extends ZWaveCommandProcessor {
         switch (incomingMessage.getMessagePayloadByte(1)) {
             case FAILED_NODE_OK:
                 logger.debug("NODE {}: Unable to remove failed node as it has not failed!", nodeId);
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 state = ZWaveNetworkEvent.State.Failure;
                 report = Report.FAILED_NODE_OK;
                 break;
             case FAILED_NODE_REMOVED:
                 logger.debug("NODE {}: Successfully removed node from controller!", nodeId);
                 zController.notifyEventListeners(new ZWaveNetworkEvent(Type.DeleteNode, nodeId, State.Success));
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 state = ZWaveNetworkEvent.State.Success;
                 report = Report.FAILED_NODE_REMOVED;
                 break;
             case FAILED_NODE_NOT_REMOVED:
                 logger.debug("NODE {}: Unable to remove failed node!", nodeId);
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 state = ZWaveNetworkEvent.State.Failure;
                 report = Report.FAILED_NODE_NOT_REMOVED;
                 break;
             default:
                 logger.debug("NODE {}: Remove failed node failed with response 0x{}.", nodeId,
                         Integer.toHexString(incomingMessage.getMessagePayloadByte(1)));
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 state = ZWaveNetworkEvent.State.Failure;
                 report = Report.FAILED_NODE_UNKNOWN_FAIL;
                 break;
@@ -103,8 +103,6 @@ public class RemoveNodeMessageClass extends ZWaveCommandProcessor {
                 logger.debug("Remove Node: Unknown request ({}).", incomingMessage.getMessagePayloadByte(1));
                 break;
         }
-        checkTransactionComplete(lastSentMessage, incomingMessage);
-
-        return transactionComplete;
+        return checkTransactionComplete(zController, lastSentMessage, incomingMessage);
     }
 }
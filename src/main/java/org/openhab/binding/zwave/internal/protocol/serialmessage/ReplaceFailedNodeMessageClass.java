@@ -79,37 +79,37 @@ public class ReplaceFailedNodeMessageClass extends ZWaveCommandProcessor {
             case FAILED_NODE_NOT_PRIMARY_CONTROLLER:
                 // The replacing process was aborted because the controller is not a primary/inclusion/SIS controller.
                 logger.debug("NODE {}: Replace failed node failed as not Primary Controller for node!", nodeId);
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 report = Report.FAILED_NODE_NOT_PRIMARY_CONTROLLER;
                 break;
             case FAILED_NODE_NO_CALLBACK_FUNCTION:
                 // The replacing process was aborted because no call back function is used.
                 logger.debug("NODE {}: Replace failed node failed as no callback function!", nodeId);
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 report = Report.FAILED_NODE_NO_CALLBACK_FUNCTION;
                 break;
             case FAILED_NODE_NOT_FOUND:
                 // The replacing process aborted because the node was found, thereby not a failing node.
                 logger.debug("NODE {}: Replace failed node failed as node if functioning!", nodeId);
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 report = Report.FAILED_NODE_NOT_FOUND;
                 break;
             case FAILED_NODE_REMOVE_PROCESS_BUSY:
                 // The replacing process is busy.
                 logger.debug("NODE {}: Replace failed node failed as Controller Busy!", nodeId);
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 report = Report.FAILED_NODE_REMOVE_PROCESS_BUSY;
                 break;
             case FAILED_NODE_REMOVE_FAIL:
                 // The replacing process could not be started because of transmitter busy.
                 logger.debug("NODE {}: Replace failed node failed!", nodeId);
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 report = Report.FAILED_NODE_REMOVE_FAIL;
                 break;
             default:
                 logger.debug("NODE {}: Replace failed node not placed on stack due to error 0x{}.", nodeId,
                         Integer.toHexString(incomingMessage.getMessagePayloadByte(0)));
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 report = Report.FAILED_NODE_UNKNOWN_FAIL;
                 break;
         }
@@ -134,26 +134,26 @@ public class ReplaceFailedNodeMessageClass extends ZWaveCommandProcessor {
             case FAILED_NODE_OK:
                 // The node is working properly (removed from the failed nodes list). Replace process is stopped.
                 logger.debug("NODE {}: Unable to remove failed node as it is not a failed node!", nodeId);
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 state = ZWaveNetworkEvent.State.Failure;
                 report = Report.FAILED_NODE_OK;
                 break;
             case FAILED_NODE_REMOVED:
                 logger.debug("NODE {}: Successfully removed node from controller database!", nodeId);
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 state = ZWaveNetworkEvent.State.Failure;
                 report = Report.FAILED_NODE_REMOVED;
                 break;
             case FAILED_NODE_NOT_REMOVED:
                 logger.debug("NODE {}: Unable to remove failed node!", nodeId);
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 state = ZWaveNetworkEvent.State.Failure;
                 report = Report.FAILED_NODE_NOT_REMOVED;
                 break;
             default:
                 logger.debug("NODE {}: Replace failed node returned with response 0x{}.", nodeId,
                         Integer.toHexString(incomingMessage.getMessagePayloadByte(1)));
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 state = ZWaveNetworkEvent.State.Failure;
                 report = Report.FAILED_NODE_UNKNOWN_FAIL;
                 break;
@@ -52,7 +52,7 @@ public class RequestNetworkUpdateMessageClass extends ZWaveCommandProcessor {
             logger.debug("RequestNetworkUpdate started.");
         } else {
             logger.warn("RequestNetworkUpdate not placed on stack.");
-            transactionComplete = true;
+            setTransactionComplete(zController);
         }
 
         return true;
@@ -68,32 +68,32 @@ public class RequestNetworkUpdateMessageClass extends ZWaveCommandProcessor {
             case ZW_SUC_UPDATE_DONE:
                 // The node is working properly (removed from the failed nodes list). Replace process is stopped.
                 logger.debug("Network updated.");
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 state = ZWaveNetworkEvent.State.Success;
                 break;
             case ZW_SUC_UPDATE_ABORT:
                 logger.debug("The update process aborted because of an error.");
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 state = ZWaveNetworkEvent.State.Failure;
                 break;
             case ZW_SUC_UPDATE_WAIT:
                 logger.debug("The SUC node is busy.");
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 state = ZWaveNetworkEvent.State.Failure;
                 break;
             case ZW_SUC_UPDATE_DISABLED:
                 logger.debug("The SUC functionality is disabled.");
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 state = ZWaveNetworkEvent.State.Failure;
                 break;
             case ZW_SUC_UPDATE_OVERFLOW:
                 logger.debug("The controller requested an update after more than 64 changes.");
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 state = ZWaveNetworkEvent.State.Failure;
                 break;
             default:
                 logger.info("Unknown error");
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 state = ZWaveNetworkEvent.State.Failure;
                 break;
         }
@@ -43,7 +43,7 @@ public class RequestNodeInfoMessageClass extends ZWaveCommandProcessor {
             logger.debug("Request node info not placed on stack due to error.");
         }
 
-        checkTransactionComplete(lastSentMessage, incomingMessage);
+        checkTransactionComplete(zController, lastSentMessage, incomingMessage);
 
         return true;
     }
@@ -51,21 +51,21 @@ public class RequestNodeNeighborUpdateMessageClass extends ZWaveCommandProcessor
             case REQUEST_NEIGHBOR_UPDATE_STARTED:
                 logger.debug("NODE {}: NodeNeighborUpdate STARTED", nodeId);
                 // We're done
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 break;
             case REQUEST_NEIGHBOR_UPDATE_DONE:
                 logger.debug("NODE {}: NodeNeighborUpdate DONE", nodeId);
 
                 zController.notifyEventListeners(new ZWaveNetworkEvent(ZWaveNetworkEvent.Type.NodeNeighborUpdate,
                         nodeId, ZWaveNetworkEvent.State.Success));
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 break;
             case REQUEST_NEIGHBOR_UPDATE_FAILED:
                 logger.debug("NODE {}: NodeNeighborUpdate FAILED", nodeId);
 
                 zController.notifyEventListeners(new ZWaveNetworkEvent(ZWaveNetworkEvent.Type.NodeNeighborUpdate,
                         nodeId, ZWaveNetworkEvent.State.Failure));
-                transactionComplete = true;
+                setTransactionComplete(zController);
                 break;
         }
         return true;
@@ -67,6 +67,11 @@ public class SendDataMessageClass extends ZWaveCommandProcessor {
             return false;
         }
 
+        if (lastSentMessage == null || lastSentMessage.getCallbackId() != callbackId) {
+            logger.warn("No outstanding transaction for callback Id {}, ignoring.", callbackId);
+            return false;
+        }
+
         ZWaveNode node = zController.getNode(lastSentMessage.getMessageNode());
         if (node == null) {
             logger.warn("Node {} not found!", lastSentMessage.getMessageNode());
@@ -76,12 +81,6 @@ public class SendDataMessageClass extends ZWaveCommandProcessor {
         logger.debug("NODE {}: SendData Request. CallBack ID = {}, Status = {}({})", node.getNodeId(), callbackId,
                 status.getLabel(), status.getKey());
 
-        if (lastSentMessage == null || lastSentMessage.getCallbackId() != callbackId) {
-            logger.warn("NODE {}: Already processed another send data request for this callback Id, ignoring.",
-                    node.getNodeId());
-            return false;
-        }
-
         switch (status) {
             case COMPLETE_OK:
                 // Consider this as a received frame since the controller did receive an ACK from the device.
@@ -93,7 +92,7 @@ public class SendDataMessageClass extends ZWaveCommandProcessor {
                 } else {
                     node.resetResendCount();
                 }
-                checkTransactionComplete(lastSentMessage, incomingMessage);
+                checkTransactionComplete(zController, lastSentMessage, incomingMessage);
                 return true;
             case COMPLETE_NO_ACK:
                 // Handle WAKE_UP_NO_MORE_INFORMATION differently
@@ -102,7 +101,7 @@ public class SendDataMessageClass extends ZWaveCommandProcessor {
                 byte[] payload = lastSentMessage.getMessagePayload();
                 if (payload.length >= 4 && (payload[2] & 0xFF) == ZWaveCommandClass.CommandClass.WAKE_UP.getKey()
                         && (payload[3] & 0xFF) == ZWaveWakeUpCommandClass.WAKE_UP_NO_MORE_INFORMATION) {
-                    checkTransactionComplete(lastSentMessage, incomingMessage);
+                    checkTransactionComplete(zController, lastSentMessage, incomingMessage);
 
                     logger.debug("NODE {}: WAKE_UP_NO_MORE_INFORMATION. Treated as ACK.", node.getNodeId());
 
@@ -115,7 +114,7 @@ public class SendDataMessageClass extends ZWaveCommandProcessor {
                 try {
                     handleFailedSendDataRequest(zController, lastSentMessage);
                 } finally {
-                    transactionComplete = true;
+                    setTransactionComplete(zController);
                 }
                 break;
             default:
@@ -160,7 +159,7 @@ public class SendDataMessageClass extends ZWaveCommandProcessor {
         }
 
         logger.debug("NODE {}: Got an error while sending data. Resending message.", node.getNodeId());
-        zController.sendData(originalMessage);
+        zController.resendData(originalMessage);
         return true;
     }
 
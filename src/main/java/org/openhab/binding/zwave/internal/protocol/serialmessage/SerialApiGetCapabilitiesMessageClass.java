@@ -76,7 +76,7 @@ public class SerialApiGetCapabilitiesMessageClass extends ZWaveCommandProcessor
             }
         }
 
-        checkTransactionComplete(lastSentMessage, incomingMessage);
+        checkTransactionComplete(zController, lastSentMessage, incomingMessage);
 
         return true;
     }
@@ -47,6 +47,8 @@ public class SerialApiGetInitDataMessageClass extends ZWaveCommandProcessor {
             return false;
         }
 
+        // The processor is reused, so clear the nodes from any previous response
+        zwaveNodes.clear();
         int nodeId = 1;
 
         // loop bytes
@@ -73,7 +75,7 @@ public class SerialApiGetInitDataMessageClass extends ZWaveCommandProcessor {
         logger.info(String.format("# Nodes = %d", zwaveNodes.size()));
         logger.info("----------------------------------------------------------------------------");
 
-        checkTransactionComplete(lastSentMessage, incomingMessage);
+        checkTransactionComplete(zController, lastSentMessage, incomingMessage);
 
         return true;
     }
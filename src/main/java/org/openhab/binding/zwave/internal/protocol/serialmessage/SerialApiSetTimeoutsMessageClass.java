@@ -42,7 +42,7 @@ public class SerialApiSetTimeoutsMessageClass extends ZWaveCommandProcessor {
         logger.debug("Got SerialApiSetTimeouts response. ACK={}, BYTE={}", incomingMessage.getMessagePayloadByte(0),
                 incomingMessage.getMessagePayloadByte(1));
 
-        checkTransactionComplete(lastSentMessage, incomingMessage);
+        checkTransactionComplete(zController, lastSentMessage, incomingMessage);
 
         return true;
     }
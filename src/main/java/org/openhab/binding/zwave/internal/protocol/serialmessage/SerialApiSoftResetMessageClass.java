@@ -34,7 +34,7 @@ public class SerialApiSoftResetMessageClass extends ZWaveCommandProcessor {
             SerialMessage incomingMessage) {
         logger.debug(String.format("Received soft reset response"));
 
-        checkTransactionComplete(lastSentMessage, incomingMessage);
+        checkTransactionComplete(zController, lastSentMessage, incomingMessage);
 
         return true;
     }
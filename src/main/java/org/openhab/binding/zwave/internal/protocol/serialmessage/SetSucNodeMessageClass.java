@@ -65,7 +65,7 @@ public class SetSucNodeMessageClass extends ZWaveCommandProcessor {
             logger.debug("NODE {}: SetSucNodeID command OK.", nodeId);
         } else {
             logger.debug("NODE {}: SetSucNodeID command failed.", nodeId);
-            checkTransactionComplete(lastSentMessage, incomingMessage);
+            checkTransactionComplete(zController, lastSentMessage, incomingMessage);
         }
 
         return true;
@@ -78,7 +78,7 @@ public class SetSucNodeMessageClass extends ZWaveCommandProcessor {
 
         logger.debug("NODE {}: SetSucNodeID node request.", nodeId);
 
-        checkTransactionComplete(lastSentMessage, incomingMessage);
+        checkTransactionComplete(zController, lastSentMessage, incomingMessage);
         if (incomingMessage.getMessagePayloadByte(1) != 0x00) {
             logger.debug("NODE {}: SetSucNodeID failed with error 0x{}.", nodeId,
                     Integer.toHexString(incomingMessage.getMessagePayloadByte(1)));
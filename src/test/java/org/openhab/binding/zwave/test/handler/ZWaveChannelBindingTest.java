@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.test.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.smarthome.core.thing.ThingTypeUID;
+import org.junit.Test;
+import org.openhab.binding.zwave.handler.ZWaveChannelBinding;
+import org.openhab.binding.zwave.handler.ZWaveThingChannel.DataType;
+
+/**
+ * Test cases for {@link ZWaveChannelBinding}.
+ */
+public class ZWaveChannelBindingTest {
+    private final ThingTypeUID thingType = new ThingTypeUID("zwave", "fibaro_fgs222_00_000");
+
+    @Test
+    public void testParse() {
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put("binding:*:OnOffType", "SWITCH_BINARY:1,BASIC:1;type=test, scale=2");
+        properties.put("other:property", "ignored");
+
+        ZWaveChannelBinding.clearCache();
+        List<ZWaveChannelBinding> bindings = ZWaveChannelBinding.getBindings(thingType, "switch_binary1", properties);
+        assertEquals(1, bindings.size());
+
+        ZWaveChannelBinding binding = bindings.get(0);
+        assertTrue(binding.isCommand());
+        assertTrue(binding.isState());
+        assertEquals(DataType.OnOffType, binding.getDataType());
+        assertEquals(2, binding.getCommandClasses().size());
+        assertEquals("SWITCH_BINARY", binding.getCommandClasses().get(0).getCommandClass());
+        assertEquals(1, binding.getCommandClasses().get(0).getEndpoint());
+        assertEquals("BASIC", binding.getCommandClasses().get(1).getCommandClass());
+        assertEquals("test", binding.getArguments().get("type"));
+        assertEquals("2", binding.getArguments().get("scale"));
+    }
+
+    @Test
+    public void testStateBinding() {
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put("binding:State:UnknownType", "METER");
+
+        ZWaveChannelBinding.clearCache();
+        ZWaveChannelBinding binding = ZWaveChannelBinding.getBindings(thingType, "meter_watts", properties).get(0);
+        assertFalse(binding.isCommand());
+        assertTrue(binding.isState());
+        assertEquals(DataType.DecimalType, binding.getDataType());
+        assertEquals(0, binding.getCommandClasses().get(0).getEndpoint());
+        assertTrue(binding.getArguments().isEmpty());
+    }
+
+    @Test
+    public void testCache() {
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put("binding:*:OnOffType", "SWITCH_BINARY:1");
+
+        ZWaveChannelBinding.clearCache();
+        List<ZWaveChannelBinding> bindings = ZWaveChannelBinding.getBindings(thingType, "switch_binary1", properties);
+
+        // Things of the same type share the bindings
+        assertSame(bindings, ZWaveChannelBinding.getBindings(thingType, "switch_binary1",
+                new HashMap<String, String>(properties)));
+
+        // ...but different channels and thing types don't
+        assertNotSame(bindings, ZWaveChannelBinding.getBindings(thingType, "switch_binary2", properties));
+        assertNotSame(bindings, ZWaveChannelBinding.getBindings(new ThingTypeUID("zwave", "other"),
+                "switch_binary1", properties));
+
+        // Changed properties are parsed again
+        properties.put("binding:*:OnOffType", "SWITCH_BINARY:2");
+        List<ZWaveChannelBinding> updated = ZWaveChannelBinding.getBindings(thingType, "switch_binary1", properties);
+        assertNotSame(bindings, updated);
+        assertEquals(2, updated.get(0).getCommandClasses().get(0).getEndpoint());
+    }
+}
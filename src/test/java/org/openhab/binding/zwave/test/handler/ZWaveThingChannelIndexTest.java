@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.test.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+
+import org.eclipse.smarthome.core.thing.ChannelUID;
+import org.junit.Test;
+import org.openhab.binding.zwave.handler.ZWaveThingChannel;
+import org.openhab.binding.zwave.handler.ZWaveThingChannel.DataType;
+import org.openhab.binding.zwave.handler.ZWaveThingChannelIndex;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass.CommandClass;
+
+/**
+ * Test cases for {@link ZWaveThingChannelIndex}.
+ */
+public class ZWaveThingChannelIndexTest {
+    private ZWaveThingChannel createChannel(String channelId, DataType dataType, String commandClass, int endpoint) {
+        return new ZWaveThingChannel(null, new ChannelUID("zwave:device:controller:node5:" + channelId), dataType,
+                commandClass, endpoint, new HashMap<String, String>());
+    }
+
+    @Test
+    public void testStateChannels() {
+        ZWaveThingChannel switch1 = createChannel("switch_binary1", DataType.OnOffType, "SWITCH_BINARY", 1);
+        ZWaveThingChannel switch2 = createChannel("switch_binary2", DataType.OnOffType, "SWITCH_BINARY", 2);
+        ZWaveThingChannel power1 = createChannel("meter_watts1", DataType.DecimalType, "METER", 1);
+        ZWaveThingChannel energy1 = createChannel("meter_kwh1", DataType.DecimalType, "METER", 1);
+        ZWaveThingChannel unknown = createChannel("unknown", DataType.DecimalType, "switch_binary", 0);
+
+        ZWaveThingChannelIndex index = new ZWaveThingChannelIndex(Collections.<ZWaveThingChannel> emptyList(),
+                Arrays.asList(switch1, switch2, power1, energy1, unknown));
+
+        assertEquals(1, index.getStateChannels(1, CommandClass.SWITCH_BINARY).length);
+        assertSame(switch1, index.getStateChannels(1, CommandClass.SWITCH_BINARY)[0]);
+        assertSame(switch2, index.getStateChannels(2, CommandClass.SWITCH_BINARY)[0]);
+
+        // Channels are returned in the order they were defined
+        ZWaveThingChannel[] meters = index.getStateChannels(1, CommandClass.METER);
+        assertEquals(2, meters.length);
+        assertSame(power1, meters[0]);
+        assertSame(energy1, meters[1]);
+
+        // Command class names must match the label exactly
+        assertEquals(0, index.getStateChannels(0, CommandClass.SWITCH_BINARY).length);
+        assertEquals(0, index.getStateChannels(2, CommandClass.METER).length);
+        assertEquals(0, index.getStateChannels(3, CommandClass.SWITCH_BINARY).length);
+    }
+
+    @Test
+    public void testCommandChannels() {
+        ZWaveThingChannel dimmer = createChannel("switch_dimmer", DataType.PercentType, "SWITCH_MULTILEVEL", 0);
+        ZWaveThingChannel dimmerOnOff = createChannel("switch_dimmer", DataType.OnOffType, "SWITCH_MULTILEVEL", 0);
+        ZWaveThingChannel dimmerBasic = createChannel("switch_dimmer", DataType.OnOffType, "BASIC", 0);
+
+        ZWaveThingChannelIndex index = new ZWaveThingChannelIndex(Arrays.asList(dimmer, dimmerOnOff, dimmerBasic),
+                Collections.<ZWaveThingChannel> emptyList());
+
+        ChannelUID uid = new ChannelUID("zwave:device:controller:node5:switch_dimmer");
+        assertSame(dimmer, index.getCommandChannel(uid, DataType.PercentType));
+        assertSame(dimmerOnOff, index.getCommandChannel(uid, DataType.OnOffType));
+        assertNull(index.getCommandChannel(uid, DataType.StopMoveType));
+        assertNull(index.getCommandChannel(new ChannelUID("zwave:device:controller:node5:switch_binary"),
+                DataType.OnOffType));
+    }
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.test.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.openhab.binding.zwave.internal.ZWaveHealScheduler;
+import org.openhab.binding.zwave.internal.ZWaveHealScheduler.HealHandler;
+
+/**
+ * Test cases for {@link ZWaveHealScheduler}.
+ */
+public class ZWaveHealSchedulerTest {
+    private final static long HOUR = 3600000;
+
+    private class TestScheduler extends ZWaveHealScheduler {
+        long time;
+
+        TestScheduler(HealHandler handler) {
+            super(handler);
+
+            // Start just before 2 AM
+            Calendar calendar = Calendar.getInstance();
+            calendar.set(2016, Calendar.JUNE, 1, 1, 59, 0);
+            time = calendar.getTimeInMillis();
+        }
+
+        @Override
+        protected long getTime() {
+            return time;
+        }
+
+        void run(long until) {
+            while (time < until) {
+                time += 5000;
+                process();
+            }
+        }
+    }
+
+    private class TestHandler implements HealHandler {
+        List<Integer> nodes = new ArrayList<Integer>();
+        Map<Integer, Integer> deadCounts = new HashMap<Integer, Integer>();
+        Map<Integer, Integer> retryCounts = new HashMap<Integer, Integer>();
+        List<Integer> healed = new ArrayList<Integer>();
+        Map<Integer, Integer> healing = new HashMap<Integer, Integer>();
+        int maxHealing = 0;
+        int pendingMessages = 0;
+        int healChecks = 1;
+
+        @Override
+        public List<Integer> getHealNodes() {
+            return nodes;
+        }
+
+        @Override
+        public int getDeadCount(int nodeId) {
+            return deadCounts.containsKey(nodeId) ? deadCounts.get(nodeId) : 0;
+        }
+
+        @Override
+        public int getRetryCount(int nodeId) {
+            return retryCounts.containsKey(nodeId) ? retryCounts.get(nodeId) : 0;
+        }
+
+        @Override
+        public boolean healNode(int nodeId) {
+            healed.add(nodeId);
+            healing.put(nodeId, 0);
+            maxHealing = Math.max(maxHealing, healing.size());
+            return true;
+        }
+
+        @Override
+        public boolean isHealComplete(int nodeId) {
+            Integer checks = healing.get(nodeId);
+            if (checks == null) {
+                return true;
+            }
+            if (checks + 1 >= healChecks) {
+                healing.remove(nodeId);
+                return true;
+            }
+            healing.put(nodeId, checks + 1);
+            return false;
+        }
+
+        @Override
+        public int getPendingMessages() {
+            return pendingMessages;
+        }
+    }
+
+    @Test
+    public void testOrder() {
+        TestHandler handler = new TestHandler();
+        handler.nodes.addAll(Arrays.asList(2, 3, 4, 5, 6));
+        handler.retryCounts.put(3, 10);
+        handler.retryCounts.put(5, 20);
+        handler.deadCounts.put(6, 1);
+
+        TestScheduler scheduler = new TestScheduler(handler);
+        scheduler.setWindow(2, 4);
+
+        // Nothing happens before the window starts
+        scheduler.run(scheduler.time + 50000);
+        assertTrue(handler.healed.isEmpty());
+
+        scheduler.run(scheduler.time + 4 * HOUR);
+        assertEquals(Arrays.asList(6, 5, 3, 2, 4), handler.healed);
+        assertFalse(scheduler.isHealing());
+
+        // The heal is repeated the next night
+        scheduler.run(scheduler.time + 24 * HOUR);
+        assertEquals(10, handler.healed.size());
+    }
+
+    @Test
+    public void testSpread() {
+        TestHandler handler = new TestHandler();
+        for (int node = 2; node < 10; node++) {
+            handler.nodes.add(node);
+        }
+
+        TestScheduler scheduler = new TestScheduler(handler);
+        scheduler.setWindow(2, 4);
+
+        // Heals are spread across the window rather than all starting together
+        scheduler.run(scheduler.time + HOUR);
+        assertTrue(handler.healed.size() < 4);
+        scheduler.run(scheduler.time + 3 * HOUR);
+        assertEquals(8, handler.healed.size());
+    }
+
+    @Test
+    public void testConcurrency() {
+        TestHandler handler = new TestHandler();
+        for (int node = 2; node < 100; node++) {
+            handler.nodes.add(node);
+        }
+
+        // Each heal takes about 5 minutes
+        handler.healChecks = 60;
+
+        TestScheduler scheduler = new TestScheduler(handler);
+        scheduler.setWindow(2, 1);
+        scheduler.run(scheduler.time + HOUR);
+
+        // No more than two nodes are healed at the same time
+        assertTrue(handler.healed.size() > 2);
+        assertTrue(handler.healed.size() < 98);
+        assertEquals(2, handler.maxHealing);
+
+        // Nodes not healed by the end of the window are dropped
+        scheduler.run(scheduler.time + HOUR);
+        assertFalse(scheduler.isHealing());
+    }
+
+    @Test
+    public void testPause() {
+        TestHandler handler = new TestHandler();
+        handler.nodes.addAll(Arrays.asList(2, 3));
+        handler.pendingMessages = 1;
+
+        TestScheduler scheduler = new TestScheduler(handler);
+        scheduler.setWindow(2, 4);
+        scheduler.run(scheduler.time + 2 * HOUR);
+        assertTrue(handler.healed.isEmpty());
+        assertTrue(scheduler.isHealing());
+
+        handler.pendingMessages = 0;
+        scheduler.run(scheduler.time + 2 * HOUR);
+        assertEquals(2, handler.healed.size());
+    }
+
+    @Test
+    public void testDisabled() {
+        TestHandler handler = new TestHandler();
+        handler.nodes.addAll(Arrays.asList(2, 3));
+
+        TestScheduler scheduler = new TestScheduler(handler);
+        scheduler.setWindow(-1, 4);
+        scheduler.run(scheduler.time + 24 * HOUR);
+        assertTrue(handler.healed.isEmpty());
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.test.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.openhab.binding.zwave.internal.ZWavePollingScheduler;
+import org.openhab.binding.zwave.internal.ZWavePollingScheduler.PollingHandler;
+
+/**
+ * Test cases for {@link ZWavePollingScheduler}.
+ */
+public class ZWavePollingSchedulerTest {
+    private class TestScheduler extends ZWavePollingScheduler {
+        long time = 1000000;
+
+        @Override
+        protected long getTime() {
+            return time;
+        }
+
+        void run(long until) {
+            while (time < until) {
+                time += 1000;
+                process();
+            }
+        }
+    }
+
+    private class TestHandler implements PollingHandler {
+        int polls = 0;
+        int messages = 1;
+        int refreshes = 0;
+        long lastReport = 0;
+
+        @Override
+        public int poll(boolean refresh) {
+            polls++;
+            if (refresh) {
+                refreshes++;
+            }
+            return messages;
+        }
+
+        @Override
+        public long getLastReportTime() {
+            return lastReport;
+        }
+    }
+
+    @Test
+    public void testPeriod() {
+        TestScheduler scheduler = new TestScheduler();
+        TestHandler handler = new TestHandler();
+        scheduler.register(2, handler, 60000);
+
+        scheduler.run(scheduler.time + 600000);
+        assertEquals(10, handler.polls);
+
+        scheduler.unregister(2);
+        scheduler.run(scheduler.time + 600000);
+        assertEquals(10, handler.polls);
+    }
+
+    @Test
+    public void testSpread() {
+        TestScheduler scheduler = new TestScheduler();
+        TestHandler[] handlers = new TestHandler[10];
+        for (int node = 0; node < handlers.length; node++) {
+            handlers[node] = new TestHandler();
+            scheduler.register(node + 1, handlers[node], 60000);
+        }
+
+        // No more than a few nodes should be polled in any 6 second window
+        for (int window = 0; window < 10; window++) {
+            int before = 0;
+            for (TestHandler handler : handlers) {
+                before += handler.polls;
+            }
+            scheduler.run(scheduler.time + 6000);
+            int after = 0;
+            for (TestHandler handler : handlers) {
+                after += handler.polls;
+            }
+            assertTrue(after - before <= 3);
+        }
+    }
+
+    @Test
+    public void testReportPostponesPoll() {
+        TestScheduler scheduler = new TestScheduler();
+        TestHandler handler = new TestHandler();
+        scheduler.register(2, handler, 60000);
+
+        // The node keeps reporting, so we should never need to poll
+        for (int cnt = 0; cnt < 10; cnt++) {
+            handler.lastReport = scheduler.time;
+            scheduler.run(scheduler.time + 30000);
+        }
+        assertEquals(0, handler.polls);
+
+        // Once the reports stop, polling restarts
+        scheduler.run(scheduler.time + 120000);
+        assertTrue(handler.polls > 0);
+    }
+
+    @Test
+    public void testRefresh() {
+        TestScheduler scheduler = new TestScheduler();
+        TestHandler handler = new TestHandler();
+        scheduler.register(2, handler, 3600000);
+
+        // A refresh is processed even though the node reported recently
+        handler.lastReport = scheduler.time;
+        scheduler.pollNow(2, 50);
+        scheduler.run(scheduler.time + 2000);
+        assertEquals(1, handler.polls);
+        assertEquals(1, handler.refreshes);
+    }
+
+    @Test
+    public void testReportFresh() {
+        // Reports received while the poll is being answered don't count
+        assertFalse(ZWavePollingScheduler.isReportFresh(105000, 100000, 60000, 110000));
+        assertTrue(ZWavePollingScheduler.isReportFresh(115000, 100000, 60000, 120000));
+
+        // A report only postpones polling for one period
+        assertFalse(ZWavePollingScheduler.isReportFresh(115000, 100000, 60000, 175000));
+        assertFalse(ZWavePollingScheduler.isReportFresh(0, 0, 60000, 1000));
+    }
+
+    @Test
+    public void testAirtimeLimit() {
+        TestScheduler scheduler = new TestScheduler();
+        TestHandler handler = new TestHandler();
+        handler.messages = 50;
+        scheduler.register(2, handler, 15000);
+
+        // Polling at 50 messages every 15 seconds exceeds the bandwidth share, so polls must be limited
+        scheduler.run(scheduler.time + 600000);
+        assertTrue(handler.polls < 35);
+        assertTrue(handler.polls > 20);
+    }
+}
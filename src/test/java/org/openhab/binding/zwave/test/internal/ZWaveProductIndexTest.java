@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.test.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.smarthome.core.thing.ThingTypeUID;
+import org.junit.Test;
+import org.openhab.binding.zwave.internal.ZWaveProduct;
+import org.openhab.binding.zwave.internal.ZWaveProductIndex;
+
+/**
+ * Test cases for {@link ZWaveProductIndex}.
+ */
+public class ZWaveProductIndexTest {
+
+    @Test
+    public void testFind() {
+        List<ZWaveProduct> products = new ArrayList<ZWaveProduct>();
+        ZWaveProduct productV1 = new ZWaveProduct(new ThingTypeUID("xx:v1"), 1, 2, 3, null, "1.9");
+        ZWaveProduct productV2 = new ZWaveProduct(new ThingTypeUID("xx:v2"), 1, 2, 3, "1.10", null);
+        ZWaveProduct anyId = new ZWaveProduct(new ThingTypeUID("xx:any"), 1, 2, null);
+        ZWaveProduct other = new ZWaveProduct(new ThingTypeUID("xx:other"), 4, 2, 3);
+        products.add(productV2);
+        products.add(productV1);
+        products.add(anyId);
+        products.add(other);
+
+        ZWaveProductIndex index = new ZWaveProductIndex(products);
+        assertEquals(4, index.size());
+
+        assertEquals(productV1, index.find(1, 2, 3, "1.2"));
+        assertEquals(productV1, index.find(1, 2, 3, "1.9"));
+        assertEquals(productV2, index.find(1, 2, 3, "1.11"));
+        assertEquals(anyId, index.find(1, 2, 9, "1.2"));
+        assertEquals(other, index.find(4, 2, 3, "1.2"));
+        assertNull(index.find(1, 3, 3, "1.2"));
+        assertNull(index.find(5, 2, 3, "1.2"));
+    }
+
+    @Test
+    public void testFirstMatch() {
+        // Where products overlap, the first in the list must be used
+        List<ZWaveProduct> products = new ArrayList<ZWaveProduct>();
+        ZWaveProduct anyId = new ZWaveProduct(new ThingTypeUID("xx:any"), 1, 2, null);
+        ZWaveProduct exact = new ZWaveProduct(new ThingTypeUID("xx:exact"), 1, 2, 3, "1.0", "2.0");
+        ZWaveProduct exactLater = new ZWaveProduct(new ThingTypeUID("xx:later"), 1, 2, 3, "0.0", "3.0");
+        products.add(anyId);
+        products.add(exact);
+        products.add(exactLater);
+
+        ZWaveProductIndex index = new ZWaveProductIndex(products);
+        assertEquals(anyId, index.find(1, 2, 3, "1.5"));
+
+        products.remove(anyId);
+        index = new ZWaveProductIndex(products);
+        assertEquals(exact, index.find(1, 2, 3, "1.5"));
+        assertEquals(exactLater, index.find(1, 2, 3, "0.5"));
+        assertEquals(exactLater, index.find(1, 2, 3, "2.5"));
+    }
+}
@@ -8,11 +8,14 @@
  */
 package org.openhab.binding.zwave.test.internal.protocol;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import org.junit.Test;
 import org.openhab.binding.zwave.internal.protocol.SerialMessage;
 import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageClass;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessagePriority;
 import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageType;
 import org.openhab.binding.zwave.internal.protocol.ZWaveSerialMessageException;
 
@@ -55,4 +58,30 @@ public class SerialMessageTest {
         msg = new SerialMessage(packetDataFaulty);
         assertEquals(msg.isValid, false);
     }
+
+    @Test
+    public void TestMessageBuffer() {
+        SerialMessage msg = new SerialMessage(2, SerialMessageClass.SendData, SerialMessageType.Request,
+                SerialMessageClass.SendData, SerialMessagePriority.Get);
+        msg.setMessagePayload(new byte[] { 0x02, 0x02, 0x25, 0x02 });
+        msg.setTransmitOptions(0x25);
+        msg.setCallbackId(1);
+
+        byte[] buffer = msg.getMessageBuffer();
+        assertArrayEquals(new byte[] { 0x01, 0x09, 0x00, 0x13, 0x02, 0x02, 0x25, 0x02, 0x25, 0x01, (byte) 0xE6 },
+                buffer);
+
+        // The buffer is only encoded once
+        assertSame(buffer, msg.getMessageBuffer());
+
+        // Changing the callback must update the buffer
+        msg.setCallbackId(2);
+        assertArrayEquals(new byte[] { 0x01, 0x09, 0x00, 0x13, 0x02, 0x02, 0x25, 0x02, 0x25, 0x02, (byte) 0xE5 },
+                msg.getMessageBuffer());
+
+        // Changing the payload must update the buffer
+        msg.setMessagePayload(new byte[] { 0x02, 0x03, 0x25, 0x01, (byte) 0xFF });
+        assertEquals(12, msg.getMessageBuffer().length);
+        assertEquals((byte) 0xFF, msg.getMessageBuffer()[8]);
+    }
 }
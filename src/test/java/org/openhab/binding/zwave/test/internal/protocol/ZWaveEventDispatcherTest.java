@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.test.internal.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.openhab.binding.zwave.internal.protocol.ZWaveEventDispatcher;
+import org.openhab.binding.zwave.internal.protocol.ZWaveEventListener;
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveEvent;
+
+/**
+ * Test cases for {@link ZWaveEventDispatcher}.
+ */
+public class ZWaveEventDispatcherTest {
+    private class TestEvent extends ZWaveEvent {
+        final int sequence;
+
+        TestEvent(int nodeId, int sequence) {
+            super(nodeId);
+            this.sequence = sequence;
+        }
+    }
+
+    @Test
+    public void testNodeOrder() throws InterruptedException {
+        ZWaveEventDispatcher dispatcher = new ZWaveEventDispatcher(2);
+        final List<Integer> received = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch latch = new CountDownLatch(100);
+
+        dispatcher.addListener(new ZWaveEventListener() {
+            @Override
+            public void ZWaveIncomingEvent(ZWaveEvent event) {
+                received.add(((TestEvent) event).sequence);
+                latch.countDown();
+            }
+        }, 3);
+
+        for (int cnt = 0; cnt < 100; cnt++) {
+            dispatcher.dispatch(new TestEvent(3, cnt));
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        for (int cnt = 0; cnt < 100; cnt++) {
+            assertEquals(cnt, (int) received.get(cnt));
+        }
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testNodeListeners() throws InterruptedException {
+        ZWaveEventDispatcher dispatcher = new ZWaveEventDispatcher(2);
+        final List<Integer> allNodes = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<Integer> singleNode = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch latch = new CountDownLatch(2);
+
+        dispatcher.addListener(new ZWaveEventListener() {
+            @Override
+            public void ZWaveIncomingEvent(ZWaveEvent event) {
+                allNodes.add(event.getNodeId());
+                latch.countDown();
+            }
+        });
+        dispatcher.addListener(new ZWaveEventListener() {
+            @Override
+            public void ZWaveIncomingEvent(ZWaveEvent event) {
+                singleNode.add(event.getNodeId());
+            }
+        }, 5);
+
+        dispatcher.dispatch(new TestEvent(4, 0));
+        dispatcher.dispatch(new TestEvent(5, 0));
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals(2, allNodes.size());
+        assertEquals(1, singleNode.size());
+        assertEquals(5, (int) singleNode.get(0));
+        assertEquals(0, dispatcher.getQueueDepth());
+        assertEquals(2, dispatcher.getEventsDelivered());
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testGlobalListenerSingleThread() throws InterruptedException {
+        ZWaveEventDispatcher dispatcher = new ZWaveEventDispatcher(4);
+        final List<Integer> received = Collections.synchronizedList(new ArrayList<Integer>());
+        final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+        final CountDownLatch latch = new CountDownLatch(100);
+
+        dispatcher.addListener(new ZWaveEventListener() {
+            @Override
+            public void ZWaveIncomingEvent(ZWaveEvent event) {
+                threads.add(Thread.currentThread());
+                received.add(((TestEvent) event).sequence);
+                latch.countDown();
+            }
+        });
+
+        // Events for different nodes are still delivered in order, from one thread
+        for (int cnt = 0; cnt < 100; cnt++) {
+            dispatcher.dispatch(new TestEvent(cnt % 8, cnt));
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(1, threads.size());
+        for (int cnt = 0; cnt < 100; cnt++) {
+            assertEquals(cnt, (int) received.get(cnt));
+        }
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testSlowListener() throws InterruptedException {
+        ZWaveEventDispatcher dispatcher = new ZWaveEventDispatcher(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        dispatcher.addListener(new ZWaveEventListener() {
+            @Override
+            public void ZWaveIncomingEvent(ZWaveEvent event) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                }
+            }
+        });
+
+        // Dispatching must not block even though the listener is waiting
+        for (int cnt = 0; cnt < 10; cnt++) {
+            dispatcher.dispatch(new TestEvent(2, cnt));
+        }
+        assertEquals(10, dispatcher.getQueueDepth());
+
+        release.countDown();
+        for (int cnt = 0; cnt < 100 && dispatcher.getQueueDepth() != 0; cnt++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, dispatcher.getQueueDepth());
+        dispatcher.shutdown();
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.test.internal.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageClass;
+import org.openhab.binding.zwave.internal.protocol.ZWaveFrameDecoder;
+import org.openhab.binding.zwave.internal.protocol.ZWaveFrameDecoder.FrameHandler;
+
+/**
+ * Test cases for {@link ZWaveFrameDecoder}.
+ */
+public class ZWaveFrameDecoderTest {
+    private final static byte[] packetData = { 0x01, 0x14, 0x00, 0x04, 0x00, 0x2C, 0x0E, 0x32, 0x02, 0x21, 0x34, 0x00,
+            0x00, 0x01, (byte) 0xB8, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x51 };
+
+    private class TestHandler implements FrameHandler {
+        List<SerialMessage> frames = new ArrayList<SerialMessage>();
+        List<Integer> controls = new ArrayList<Integer>();
+        int outOfFrame = 0;
+
+        @Override
+        public void frameReceived(byte[] buffer, int offset, int length) {
+            frames.add(new SerialMessage(buffer, offset, length));
+        }
+
+        @Override
+        public void controlReceived(int control) {
+            controls.add(control);
+        }
+
+        @Override
+        public void outOfFrameReceived(int value) {
+            outOfFrame++;
+        }
+    }
+
+    @Test
+    public void testFrame() {
+        ZWaveFrameDecoder decoder = new ZWaveFrameDecoder();
+        TestHandler handler = new TestHandler();
+
+        byte[] data = new byte[packetData.length + 2];
+        data[0] = ZWaveFrameDecoder.ACK;
+        System.arraycopy(packetData, 0, data, 1, packetData.length);
+        data[data.length - 1] = ZWaveFrameDecoder.CAN;
+
+        decoder.write(data, 0, data.length);
+        decoder.process(handler);
+
+        assertEquals(1, handler.frames.size());
+        assertTrue(handler.frames.get(0).isValid);
+        assertEquals(SerialMessageClass.ApplicationCommandHandler, handler.frames.get(0).getMessageClass());
+        assertEquals(17, handler.frames.get(0).getMessagePayload().length);
+        assertEquals(2, handler.controls.size());
+        assertEquals(ZWaveFrameDecoder.ACK, (int) handler.controls.get(0));
+        assertEquals(ZWaveFrameDecoder.CAN, (int) handler.controls.get(1));
+        assertEquals(0, handler.outOfFrame);
+    }
+
+    @Test
+    public void testPartialFrame() {
+        ZWaveFrameDecoder decoder = new ZWaveFrameDecoder();
+        TestHandler handler = new TestHandler();
+
+        // Deliver the frame in two parts
+        decoder.write(packetData, 0, 10);
+        decoder.process(handler);
+        assertEquals(0, handler.frames.size());
+
+        decoder.write(packetData, 10, packetData.length - 10);
+        decoder.process(handler);
+        assertEquals(1, handler.frames.size());
+        assertTrue(handler.frames.get(0).isValid);
+    }
+
+    @Test
+    public void testManyFrames() {
+        ZWaveFrameDecoder decoder = new ZWaveFrameDecoder();
+        TestHandler handler = new TestHandler();
+
+        // Make sure the buffer is reused once it's been filled
+        for (int cnt = 0; cnt < 50; cnt++) {
+            decoder.write(packetData, 0, packetData.length);
+            decoder.process(handler);
+        }
+        assertEquals(50, handler.frames.size());
+    }
+
+    @Test
+    public void testResynchronise() {
+        ZWaveFrameDecoder decoder = new ZWaveFrameDecoder();
+        TestHandler handler = new TestHandler();
+
+        // Noise, and an SOF with an invalid length, before the real frame
+        byte[] noise = { 0x55, 0x01, 0x70 };
+        decoder.write(noise, 0, noise.length);
+        decoder.write(packetData, 0, packetData.length);
+        decoder.process(handler);
+
+        assertEquals(1, handler.frames.size());
+        assertEquals(3, handler.outOfFrame);
+    }
+
+    @Test
+    public void testReset() {
+        ZWaveFrameDecoder decoder = new ZWaveFrameDecoder();
+        TestHandler handler = new TestHandler();
+
+        decoder.write(packetData, 0, 10);
+        decoder.process(handler);
+        assertTrue(decoder.reset());
+
+        decoder.write(packetData, 0, packetData.length);
+        decoder.process(handler);
+        assertEquals(1, handler.frames.size());
+        assertEquals(false, decoder.reset());
+    }
+}
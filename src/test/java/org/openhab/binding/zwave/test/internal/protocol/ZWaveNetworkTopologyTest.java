@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.test.internal.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.openhab.binding.zwave.internal.protocol.ZWaveNetworkTopology;
+
+/**
+ * Test cases for {@link ZWaveNetworkTopology}.
+ */
+public class ZWaveNetworkTopologyTest {
+    /**
+     * Creates a network with the controller (1) linked to two repeaters (2, 3) that are linked to each other.
+     * Repeater 3 is the only link to repeater 4, which is the only link to battery devices 5 and 232.
+     */
+    private ZWaveNetworkTopology createNetwork() {
+        ZWaveNetworkTopology topology = new ZWaveNetworkTopology();
+        topology.updateNode(1, true, Arrays.asList(2, 3));
+        topology.updateNode(2, true, Arrays.asList(1, 3));
+        topology.updateNode(3, true, Arrays.asList(1, 2, 4));
+        topology.updateNode(4, true, Arrays.asList(3, 5, 232));
+        topology.updateNode(5, false, Arrays.asList(4));
+        topology.updateNode(232, false, Collections.<Integer> emptyList());
+        return topology;
+    }
+
+    @Test
+    public void testNeighbors() {
+        ZWaveNetworkTopology topology = createNetwork();
+
+        assertEquals(Arrays.asList(3, 5, 232), topology.getNeighbors(4));
+        assertTrue(topology.isNeighbor(4, 232));
+
+        // A link is added if only one of the nodes reports it
+        assertTrue(topology.isNeighbor(232, 4));
+
+        // Updates replace the previous neighbours
+        topology.updateNode(4, true, Arrays.asList(3));
+        assertEquals(Arrays.asList(3, 5), topology.getNeighbors(4));
+        assertFalse(topology.isNeighbor(232, 4));
+
+        topology.removeNode(3);
+        assertEquals(Arrays.asList(5), topology.getNeighbors(4));
+        assertEquals(Arrays.asList(2), topology.getNeighbors(1));
+
+        // Invalid node IDs are ignored
+        topology.updateNode(233, true, Arrays.asList(1));
+        assertFalse(topology.isNeighbor(0, 1));
+        assertEquals(0, topology.getNeighbors(233).size());
+    }
+
+    @Test
+    public void testHopCount() {
+        ZWaveNetworkTopology topology = createNetwork();
+
+        assertEquals(0, topology.getHopCount(1, 1));
+        assertEquals(1, topology.getHopCount(1, 2));
+        assertEquals(2, topology.getHopCount(1, 4));
+        assertEquals(3, topology.getHopCount(1, 232));
+        assertEquals(3, topology.getHopCount(5, 1));
+
+        // Battery devices don't repeat
+        topology.updateNode(6, true, Arrays.asList(5));
+        assertEquals(-1, topology.getHopCount(1, 6));
+        assertEquals(Arrays.asList(2, 3, 4, 5, 232), topology.getReachableNodes(1));
+    }
+
+    @Test
+    public void testArticulationPoints() {
+        ZWaveNetworkTopology topology = createNetwork();
+        assertEquals(Arrays.asList(3), topology.getArticulationPoints());
+
+        // A second route to repeater 4 removes the articulation point
+        topology.updateNode(2, true, Arrays.asList(1, 3, 4));
+        assertEquals(0, topology.getArticulationPoints().size());
+    }
+
+    @Test
+    public void testSinglePointsOfFailure() {
+        ZWaveNetworkTopology topology = createNetwork();
+
+        assertEquals(Arrays.asList(4, 5, 232), topology.getDependentNodes(1, 3));
+        assertEquals(Arrays.asList(5, 232), topology.getDependentNodes(1, 4));
+        assertEquals(0, topology.getDependentNodes(1, 2).size());
+
+        Map<Integer, List<Integer>> failures = topology.getSinglePointsOfFailure(1);
+        assertEquals(2, failures.size());
+        assertEquals(Arrays.asList(4, 5, 232), failures.get(3));
+        assertEquals(Arrays.asList(5, 232), failures.get(4));
+    }
+}
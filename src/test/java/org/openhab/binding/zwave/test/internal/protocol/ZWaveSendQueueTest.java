@@ -0,0 +1,266 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.test.internal.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageClass;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessagePriority;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageType;
+import org.openhab.binding.zwave.internal.protocol.ZWaveController;
+import org.openhab.binding.zwave.internal.protocol.ZWaveNode;
+import org.openhab.binding.zwave.internal.protocol.ZWaveSendQueue;
+
+/**
+ * Test cases for {@link ZWaveSendQueue}.
+ */
+public class ZWaveSendQueueTest {
+
+    private SerialMessage createMessage(int nodeId, SerialMessagePriority priority) {
+        SerialMessage serialMessage = new SerialMessage(nodeId, SerialMessageClass.SendData,
+                SerialMessageType.Request, SerialMessageClass.SendData, priority);
+        serialMessage.setMessagePayload(new byte[] { (byte) nodeId, 2, 0x25, 0x02 });
+        return serialMessage;
+    }
+
+    private SerialMessage createGet(int nodeId) {
+        SerialMessage serialMessage = new SerialMessage(nodeId, SerialMessageClass.SendData,
+                SerialMessageType.Request, SerialMessageClass.ApplicationCommandHandler, SerialMessagePriority.Get);
+        serialMessage.setMessagePayload(new byte[] { (byte) nodeId, 2, 0x26, 0x02 });
+        return serialMessage;
+    }
+
+    private SerialMessage createSet(int nodeId, int commandClass, int level) {
+        SerialMessage serialMessage = new SerialMessage(nodeId, SerialMessageClass.SendData,
+                SerialMessageType.Request, SerialMessageClass.SendData, SerialMessagePriority.Set);
+        serialMessage.setMessagePayload(new byte[] { (byte) nodeId, 3, (byte) commandClass, 0x01, (byte) level });
+        return serialMessage;
+    }
+
+    @Test
+    public void testPriorityOrder() throws InterruptedException {
+        ZWaveSendQueue queue = new ZWaveSendQueue(mock(ZWaveController.class));
+
+        SerialMessage poll = createMessage(2, SerialMessagePriority.Poll);
+        SerialMessage set = createMessage(3, SerialMessagePriority.Set);
+        SerialMessage immediate = createMessage(4, SerialMessagePriority.Immediate);
+        queue.add(poll);
+        queue.add(set);
+        queue.add(immediate);
+        assertEquals(3, queue.size());
+        assertEquals(1, queue.size(SerialMessagePriority.Immediate));
+        assertEquals(2, queue.size(SerialMessagePriority.Get));
+
+        assertEquals(immediate, queue.poll(0, TimeUnit.MILLISECONDS));
+        assertEquals(1, queue.size(SerialMessagePriority.Get));
+        assertEquals(set, queue.poll(0, TimeUnit.MILLISECONDS));
+        assertEquals(poll, queue.poll(0, TimeUnit.MILLISECONDS));
+        assertNull(queue.poll(0, TimeUnit.MILLISECONDS));
+        assertEquals(0, queue.size());
+        assertEquals(0, queue.size(SerialMessagePriority.Poll));
+    }
+
+    @Test
+    public void testNodeOrder() throws InterruptedException {
+        ZWaveSendQueue queue = new ZWaveSendQueue(mock(ZWaveController.class));
+
+        List<SerialMessage> messages = new ArrayList<SerialMessage>();
+        for (int cnt = 0; cnt < 10; cnt++) {
+            SerialMessage serialMessage = createMessage(2, SerialMessagePriority.Get);
+            messages.add(serialMessage);
+            queue.add(serialMessage);
+        }
+
+        for (int cnt = 0; cnt < 10; cnt++) {
+            assertEquals(messages.get(cnt), queue.poll(0, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    public void testFairness() throws InterruptedException {
+        ZWaveSendQueue queue = new ZWaveSendQueue(mock(ZWaveController.class));
+
+        // A busy node fills the queue before a second node queues a single message
+        for (int cnt = 0; cnt < 20; cnt++) {
+            queue.add(createMessage(2, SerialMessagePriority.Poll));
+        }
+        SerialMessage other = createMessage(3, SerialMessagePriority.Poll);
+        queue.add(other);
+
+        int position = 0;
+        while (queue.poll(0, TimeUnit.MILLISECONDS) != other) {
+            position++;
+        }
+        assertEquals(true, position < 5);
+    }
+
+    @Test
+    public void testRequeue() throws InterruptedException {
+        ZWaveSendQueue queue = new ZWaveSendQueue(mock(ZWaveController.class));
+
+        SerialMessage first = createMessage(2, SerialMessagePriority.Get);
+        SerialMessage second = createMessage(2, SerialMessagePriority.Get);
+        SerialMessage third = createMessage(2, SerialMessagePriority.Get);
+        queue.add(first);
+        queue.add(second);
+        queue.add(third);
+
+        List<SerialMessage> held = new ArrayList<SerialMessage>();
+        held.add(queue.poll(0, TimeUnit.MILLISECONDS));
+        held.add(queue.poll(0, TimeUnit.MILLISECONDS));
+        queue.requeue(held);
+
+        assertEquals(first, queue.poll(0, TimeUnit.MILLISECONDS));
+        assertEquals(second, queue.poll(0, TimeUnit.MILLISECONDS));
+        assertEquals(third, queue.poll(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testRetryBeforeHeldSet() throws InterruptedException {
+        ZWaveSendQueue queue = new ZWaveSendQueue(mock(ZWaveController.class));
+
+        // The first SET is sent, and the newer SET is held while the transaction is outstanding
+        SerialMessage older = createSet(2, 0x26, 10);
+        SerialMessage newer = createSet(2, 0x26, 50);
+        queue.add(older);
+        assertSame(older, queue.poll(0, TimeUnit.MILLISECONDS));
+        queue.add(newer);
+        queue.hold(queue.poll(0, TimeUnit.MILLISECONDS));
+        assertNull(queue.poll(0, TimeUnit.MILLISECONDS));
+
+        // The first SET fails and is retried. It must still be sent before the newer SET.
+        queue.retry(older, true);
+        assertNull(queue.poll(0, TimeUnit.MILLISECONDS));
+        queue.release(2);
+        assertSame(older, queue.poll(0, TimeUnit.MILLISECONDS));
+        assertSame(newer, queue.poll(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testRetryBeforeQueuedSet() throws InterruptedException {
+        ZWaveSendQueue queue = new ZWaveSendQueue(mock(ZWaveController.class));
+
+        SerialMessage older = createSet(2, 0x26, 10);
+        SerialMessage newer = createSet(2, 0x26, 50);
+        queue.add(older);
+        assertSame(older, queue.poll(0, TimeUnit.MILLISECONDS));
+        queue.add(newer);
+
+        // The retry goes ahead of the newer SET that is still queued, and isn't coalesced with it
+        queue.retry(older, false);
+        assertEquals(2, queue.size());
+        assertSame(older, queue.poll(0, TimeUnit.MILLISECONDS));
+        assertSame(newer, queue.poll(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testAwakeNode() throws InterruptedException {
+        ZWaveController controller = mock(ZWaveController.class);
+        ZWaveNode node = mock(ZWaveNode.class);
+        when(node.isListening()).thenReturn(false);
+        when(node.isFrequentlyListening()).thenReturn(false);
+        when(controller.getNode(5)).thenReturn(node);
+        ZWaveSendQueue queue = new ZWaveSendQueue(controller);
+
+        SerialMessage listening = createMessage(2, SerialMessagePriority.Get);
+        SerialMessage battery = createMessage(5, SerialMessagePriority.Get);
+        queue.add(battery);
+        queue.add(listening);
+
+        // Sleeping nodes are served after listening nodes
+        assertEquals(listening, queue.poll(0, TimeUnit.MILLISECONDS));
+        assertEquals(battery, queue.poll(0, TimeUnit.MILLISECONDS));
+
+        // Awake nodes are served first
+        queue.add(battery);
+        queue.add(listening);
+        queue.setNodeAwake(5, true);
+        assertEquals(battery, queue.poll(0, TimeUnit.MILLISECONDS));
+        assertEquals(listening, queue.poll(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testGetCoalesced() throws InterruptedException {
+        ZWaveSendQueue queue = new ZWaveSendQueue(mock(ZWaveController.class));
+
+        SerialMessage first = createGet(2);
+        queue.add(first);
+        queue.add(createGet(2));
+        queue.add(createGet(3));
+        assertEquals(2, queue.size());
+        assertEquals(1, queue.getCoalescedCount());
+
+        assertSame(first, queue.poll(0, TimeUnit.MILLISECONDS));
+
+        // Once the first GET has been taken, another is queued
+        queue.add(createGet(2));
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void testGetAfterSet() throws InterruptedException {
+        ZWaveSendQueue queue = new ZWaveSendQueue(mock(ZWaveController.class));
+
+        // The second GET must be sent after the SET to read the new value
+        queue.add(createGet(2));
+        queue.add(createSet(2, 0x26, 50));
+        queue.add(createGet(2));
+        assertEquals(3, queue.size());
+        assertEquals(0, queue.getCoalescedCount());
+    }
+
+    @Test
+    public void testSetSuperseded() throws InterruptedException {
+        ZWaveSendQueue queue = new ZWaveSendQueue(mock(ZWaveController.class));
+
+        for (int level = 10; level <= 50; level += 10) {
+            queue.add(createSet(2, 0x26, level));
+        }
+        SerialMessage endpoint = createSet(3, 0x26, 99);
+        endpoint.setMessagePayload(new byte[] { 3, 7, 0x60, 0x0D, 0x00, 0x01, 0x26, 0x01, 0x63 });
+        queue.add(endpoint);
+        assertEquals(2, queue.size());
+        assertEquals(4, queue.getCoalescedCount());
+
+        SerialMessage serialMessage = queue.poll(0, TimeUnit.MILLISECONDS);
+        assertEquals(50, serialMessage.getMessagePayload()[4]);
+        assertSame(endpoint, queue.poll(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testSetOrder() throws InterruptedException {
+        ZWaveSendQueue queue = new ZWaveSendQueue(mock(ZWaveController.class));
+
+        // A SET is only replaced if it's the last change queued for the node
+        queue.add(createSet(2, 0x26, 10));
+        queue.add(createSet(2, 0x20, 0));
+        queue.add(createSet(2, 0x26, 50));
+        queue.add(createSet(2, 0x26, 60));
+        assertEquals(3, queue.size());
+
+        assertEquals(10, queue.poll(0, TimeUnit.MILLISECONDS).getMessagePayload()[4]);
+        assertEquals(0, queue.poll(0, TimeUnit.MILLISECONDS).getMessagePayload()[4]);
+        assertEquals(60, queue.poll(0, TimeUnit.MILLISECONDS).getMessagePayload()[4]);
+
+        // Configuration SETs are never replaced
+        queue.add(createSet(2, 0x70, 1));
+        queue.add(createSet(2, 0x70, 2));
+        assertEquals(2, queue.size());
+    }
+}
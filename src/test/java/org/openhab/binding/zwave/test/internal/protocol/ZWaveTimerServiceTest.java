@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.test.internal.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.openhab.binding.zwave.internal.protocol.ZWaveTimerService;
+
+/**
+ * Test cases for {@link ZWaveTimerService}.
+ */
+public class ZWaveTimerServiceTest {
+
+    @Test
+    public void testSchedule() throws InterruptedException {
+        ZWaveTimerService timerService = new ZWaveTimerService();
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        timerService.schedule(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 10);
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        timerService.shutdown();
+    }
+
+    @Test
+    public void testOutstandingTimeouts() {
+        ZWaveTimerService timerService = new ZWaveTimerService();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+
+        ScheduledFuture<?> first = timerService.schedule(task, 60000);
+        timerService.schedule(task, 60000);
+        assertEquals(2, timerService.getOutstandingTimeouts());
+
+        // Cancelled timers are removed straight away
+        first.cancel(false);
+        assertEquals(1, timerService.getOutstandingTimeouts());
+
+        timerService.shutdown();
+    }
+}
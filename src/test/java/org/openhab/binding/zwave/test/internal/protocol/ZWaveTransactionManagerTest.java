@@ -0,0 +1,216 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.test.internal.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageClass;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessagePriority;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageType;
+import org.openhab.binding.zwave.internal.protocol.ZWaveTransaction;
+import org.openhab.binding.zwave.internal.protocol.ZWaveTransaction.TransactionState;
+import org.openhab.binding.zwave.internal.protocol.ZWaveTransactionManager;
+
+/**
+ * Test cases for {@link ZWaveTransactionManager}.
+ */
+public class ZWaveTransactionManagerTest {
+    private SerialMessage createRequest(int nodeId, int callbackId) {
+        SerialMessage request = new SerialMessage(nodeId, SerialMessageClass.SendData, SerialMessageType.Request,
+                SerialMessageClass.ApplicationCommandHandler, SerialMessagePriority.Get);
+        request.setMessagePayload(new byte[] { (byte) nodeId, 2, 0x25, 0x02 });
+        request.setCallbackId(callbackId);
+        request.setAckRequired();
+        return request;
+    }
+
+    private SerialMessage createFrame(SerialMessageClass messageClass) {
+        return new SerialMessage(3, messageClass, SerialMessageType.Request, null, SerialMessagePriority.Get);
+    }
+
+    private SerialMessage createCallback(int callbackId) {
+        SerialMessage callback = new SerialMessage(SerialMessageClass.SendData, SerialMessageType.Request, null,
+                SerialMessagePriority.Get);
+        callback.setMessagePayload(new byte[] { (byte) callbackId, 0 });
+        return callback;
+    }
+
+    @Test
+    public void testCorrelation() {
+        ZWaveTransactionManager manager = new ZWaveTransactionManager();
+        ZWaveTransaction transaction1 = new ZWaveTransaction(createRequest(3, 10), 5000);
+        ZWaveTransaction transaction2 = new ZWaveTransaction(createRequest(4, 11), 5000);
+
+        assertTrue(manager.isTransactionSlotAvailable(null, 3));
+        manager.startTransaction(transaction1);
+        assertEquals(TransactionState.SENT, transaction1.getState());
+
+        // Only one request can wait for the controller response
+        assertFalse(manager.isTransactionSlotAvailable(null, 3));
+        manager.ackReceived();
+        assertEquals(TransactionState.ACKED, transaction1.getState());
+        assertEquals(transaction1, manager.responseReceived());
+        assertEquals(TransactionState.RESPONSE_RECEIVED, transaction1.getState());
+        assertTrue(manager.isTransactionSlotAvailable(null, 3));
+
+        manager.startTransaction(transaction2);
+        manager.responseReceived();
+        assertEquals(2, manager.getOutstandingTransactions());
+        assertTrue(manager.hasTransaction(4));
+
+        assertEquals(transaction2, manager.getTransactionForRequest(createCallback(11)));
+        assertEquals(transaction1, manager.getTransactionForRequest(createCallback(10)));
+        assertNull(manager.getTransactionForRequest(createCallback(12)));
+
+        assertTrue(manager.completeTransaction(transaction1, transaction1.getStartTime() + 150));
+        assertEquals(TransactionState.COMPLETED, transaction1.getState());
+        assertFalse(manager.completeTransaction(transaction1, transaction1.getStartTime() + 150));
+        assertNull(manager.getTransactionForRequest(createCallback(10)));
+        assertEquals(1, manager.getOutstandingTransactions());
+    }
+
+    @Test
+    public void testCallbackIdInUse() {
+        ZWaveTransactionManager manager = new ZWaveTransactionManager();
+        ZWaveTransaction transaction1 = new ZWaveTransaction(createRequest(3, manager.getNextCallbackId()), 5000);
+        manager.startTransaction(transaction1);
+        manager.responseReceived();
+
+        // The IDs wrap many times while the first transaction is outstanding, but its ID is never reused
+        for (int cnt = 0; cnt < 1000; cnt++) {
+            int callbackId = manager.getNextCallbackId();
+            assertTrue(callbackId >= 1 && callbackId <= 255);
+            assertTrue(callbackId != transaction1.getCallbackId());
+        }
+
+        ZWaveTransaction transaction2 = new ZWaveTransaction(createRequest(4, manager.getNextCallbackId()), 5000);
+        manager.startTransaction(transaction2);
+        manager.responseReceived();
+        assertEquals(transaction1, manager.getTransactionForRequest(createCallback(transaction1.getCallbackId())));
+        assertEquals(transaction2, manager.getTransactionForRequest(createCallback(transaction2.getCallbackId())));
+
+        // Once the transaction completes, the ID can be used again
+        manager.completeTransaction(transaction1, transaction1.getStartTime());
+        boolean reused = false;
+        for (int cnt = 0; cnt < 255; cnt++) {
+            reused |= manager.getNextCallbackId() == transaction1.getCallbackId();
+        }
+        assertTrue(reused);
+    }
+
+    @Test
+    public void testTimeout() {
+        ZWaveTransactionManager manager = new ZWaveTransactionManager();
+        ZWaveTransaction transaction1 = new ZWaveTransaction(createRequest(3, 10), 5000);
+        ZWaveTransaction transaction2 = new ZWaveTransaction(createRequest(4, 11), 20000);
+        long start = transaction1.getStartTime();
+
+        manager.startTransaction(transaction1);
+        manager.responseReceived();
+        manager.startTransaction(transaction2);
+        manager.responseReceived();
+
+        assertTrue(manager.getTimedOutTransactions(start + 1000).isEmpty());
+        long waitTime = manager.getTransactionWaitTime(start + 1000, 10000);
+        assertTrue(waitTime <= 4000 && waitTime > 3800);
+
+        List<ZWaveTransaction> timedOut = manager.getTimedOutTransactions(start + 5500);
+        assertEquals(1, timedOut.size());
+        assertEquals(transaction1, timedOut.get(0));
+        assertEquals(TransactionState.TIMED_OUT, transaction1.getState());
+        assertFalse(manager.hasTransaction(3));
+
+        // The second timeout is longer than a revolution of the wheel
+        assertTrue(manager.getTimedOutTransactions(start + 19000).isEmpty());
+        timedOut = manager.getTimedOutTransactions(start + 20500);
+        assertEquals(1, timedOut.size());
+        assertEquals(transaction2, timedOut.get(0));
+        assertEquals(0, manager.getOutstandingTransactions());
+
+        assertEquals(1, manager.getNodeLatencyHistogram(3).getTimeouts());
+        assertEquals(2, manager.getLatencyHistogram(SerialMessageClass.SendData).getTimeouts());
+    }
+
+    @Test
+    public void testLatency() {
+        ZWaveTransactionManager manager = new ZWaveTransactionManager();
+        for (int cnt = 0; cnt < 20; cnt++) {
+            ZWaveTransaction transaction = new ZWaveTransaction(createRequest(3, cnt + 1), 5000);
+            manager.startTransaction(transaction);
+            manager.responseReceived();
+            manager.completeTransaction(transaction, transaction.getStartTime() + (cnt < 19 ? 40 : 1500));
+        }
+
+        assertEquals(20, manager.getNodeLatencyHistogram(3).getCount());
+        assertEquals(50, manager.getNodeLatencyHistogram(3).getPercentile(50));
+        assertEquals(2000, manager.getNodeLatencyHistogram(3).getPercentile(100));
+        assertEquals(1500, manager.getNodeLatencyHistogram(3).getMax());
+        assertNull(manager.getNodeLatencyHistogram(4));
+    }
+
+    @Test
+    public void testExpectedReply() {
+        ZWaveTransactionManager manager = new ZWaveTransactionManager();
+        SerialMessage request = createRequest(3, 10);
+        ZWaveTransaction transaction = new ZWaveTransaction(request, 5000);
+        manager.startTransaction(transaction);
+        request.setAckRecieved();
+
+        manager.startFrame(transaction);
+        assertFalse(manager.checkTransactionComplete(request, createFrame(SerialMessageClass.SendData)));
+        assertFalse(manager.isTransactionComplete());
+
+        SerialMessage reply = createFrame(SerialMessageClass.ApplicationCommandHandler);
+        manager.startFrame(transaction);
+        assertTrue(manager.checkTransactionComplete(request, reply));
+        assertTrue(manager.isTransactionComplete());
+    }
+
+    @Test
+    public void testReplyBeforeAck() {
+        ZWaveTransactionManager manager = new ZWaveTransactionManager();
+        SerialMessage request = createRequest(3, 10);
+        ZWaveTransaction transaction = new ZWaveTransaction(request, 5000);
+        manager.startTransaction(transaction);
+
+        // The data arrives before the ACK, so it can't complete the transaction yet
+        SerialMessage reply = createFrame(SerialMessageClass.ApplicationCommandHandler);
+        manager.startFrame(transaction);
+        assertFalse(manager.checkTransactionComplete(request, reply));
+        assertFalse(manager.isTransactionComplete());
+
+        // Once the ACK is received, the next frame completes the transaction using the data we held
+        request.setAckRecieved();
+        manager.startFrame(transaction);
+        assertTrue(manager.checkTransactionComplete(request, createFrame(SerialMessageClass.SendData)));
+        assertTrue(manager.isTransactionComplete());
+    }
+
+    @Test
+    public void testUncorrelatedReply() {
+        ZWaveTransactionManager manager = new ZWaveTransactionManager();
+        SerialMessage request = createRequest(3, 10);
+        manager.startTransaction(new ZWaveTransaction(request, 5000));
+
+        // A frame that doesn't belong to the transaction isn't held against it
+        manager.startFrame(null);
+        manager.checkTransactionComplete(request, createFrame(SerialMessageClass.ApplicationCommandHandler));
+
+        request.setAckRecieved();
+        manager.startFrame(null);
+        assertFalse(manager.checkTransactionComplete(request, createFrame(SerialMessageClass.SendData)));
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.test.internal.protocol.commandclass;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.openhab.binding.zwave.internal.protocol.ZWaveController;
+import org.openhab.binding.zwave.internal.protocol.ZWaveEndpoint;
+import org.openhab.binding.zwave.internal.protocol.ZWaveNode;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass.CommandClass;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClassFactory;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveSecurityCommandClass;
+
+/**
+ * Test cases for {@link ZWaveCommandClassFactory}.
+ * This checks the factory creates the same class as is defined in {@link CommandClass}.
+ */
+public class ZWaveCommandClassFactoryTest {
+    @After
+    public void clearNetworkKey() {
+        ZWaveSecurityCommandClass.clearRealNetworkKey();
+    }
+
+    @Test
+    public void testAllCommandClasses() {
+        ZWaveController controller = Mockito.mock(ZWaveController.class);
+        ZWaveNode node = Mockito.mock(ZWaveNode.class);
+        ZWaveEndpoint endpoint = Mockito.mock(ZWaveEndpoint.class);
+        Mockito.when(node.getNodeId()).thenReturn(5);
+
+        // The security command class can't be created without a network key
+        ZWaveSecurityCommandClass.setRealNetworkKey(
+                "0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09, 0x0A, 0x0B, 0x0C, 0x0D, 0x0E, 0x0F, 0x10");
+
+        for (CommandClass commandClass : CommandClass.values()) {
+            ZWaveCommandClass instance = ZWaveCommandClassFactory.createCommandClass(commandClass, node, controller,
+                    endpoint);
+            if (commandClass.getCommandClassClass() == null) {
+                assertNull(commandClass.getLabel(), instance);
+            } else {
+                assertEquals(commandClass.getLabel(), commandClass.getCommandClassClass(), instance.getClass());
+            }
+        }
+    }
+
+    @Test
+    public void testNewInstances() {
+        ZWaveController controller = Mockito.mock(ZWaveController.class);
+        ZWaveNode node1 = Mockito.mock(ZWaveNode.class);
+        ZWaveNode node2 = Mockito.mock(ZWaveNode.class);
+        ZWaveEndpoint endpoint = Mockito.mock(ZWaveEndpoint.class);
+
+        // Each node gets its own instance, bound to the endpoint it was created for.
+        // Security needs a network key, so it's left to testAllCommandClasses.
+        for (CommandClass commandClass : CommandClass.values()) {
+            if (commandClass.getCommandClassClass() == null || commandClass == CommandClass.SECURITY) {
+                continue;
+            }
+            ZWaveCommandClass instance1 = ZWaveCommandClassFactory.createCommandClass(commandClass, node1, controller,
+                    endpoint);
+            ZWaveCommandClass instance2 = ZWaveCommandClassFactory.createCommandClass(commandClass, node2, controller,
+                    null);
+            assertNotSame(commandClass.getLabel(), instance1, instance2);
+            assertSame(commandClass.getLabel(), endpoint, instance1.getEndpoint());
+            assertNull(commandClass.getLabel(), instance2.getEndpoint());
+        }
+    }
+
+    @Test
+    public void testLookup() {
+        for (int classId = 0; classId < 256; classId++) {
+            assertEquals(CommandClass.getCommandClass(classId), ZWaveCommandClassFactory.getCommandClass(classId));
+        }
+        assertEquals(CommandClass.FIBARO_FGRM_222,
+                ZWaveCommandClassFactory.getCommandClass(CommandClass.FIBARO_FGRM_222.getKey()));
+    }
+}
@@ -1,15 +1,30 @@
 package org.openhab.binding.zwave.test.internal.protocol.commandclass;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
 
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageClass;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessagePriority;
+import org.openhab.binding.zwave.internal.protocol.SerialMessage.SerialMessageType;
 import org.openhab.binding.zwave.internal.protocol.ZWaveConfigurationParameter;
+import org.openhab.binding.zwave.internal.protocol.ZWaveController;
+import org.openhab.binding.zwave.internal.protocol.ZWaveNode;
 import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveCommandClass.CommandClass;
 import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveMultiCommandCommandClass;
 import org.openhab.binding.zwave.internal.protocol.event.ZWaveCommandClassValueEvent;
 import org.openhab.binding.zwave.internal.protocol.event.ZWaveEvent;
+import org.openhab.binding.zwave.internal.protocol.event.ZWaveTransactionCompletedEvent;
 
 /**
  * Tests for {@link ZWaveMultiCommandCommandClass}
@@ -40,4 +55,74 @@ public class ZWaveMultiCommandCommandClassTest extends ZWaveCommandClassTest {
         assertEquals(1, (int) parameter2.getSize());
         assertEquals(2, (int) parameter2.getValue());
     }
+
+    private SerialMessage createMessage(SerialMessageClass expectedReply, int... command) {
+        SerialMessage message = new SerialMessage(5, SerialMessageClass.SendData, SerialMessageType.Request,
+                expectedReply, SerialMessagePriority.Get);
+        byte[] payload = new byte[command.length + 2];
+        payload[0] = 5;
+        payload[1] = (byte) command.length;
+        for (int index = 0; index < command.length; index++) {
+            payload[index + 2] = (byte) command[index];
+        }
+        message.setMessagePayload(payload);
+        return message;
+    }
+
+    @Test
+    public void BatchMessages() {
+        ZWaveController controller = Mockito.mock(ZWaveController.class);
+        ZWaveNode node = Mockito.mock(ZWaveNode.class);
+        Mockito.when(node.getNodeId()).thenReturn(5);
+        ZWaveMultiCommandCommandClass cls = new ZWaveMultiCommandCommandClass(node, controller, null);
+
+        SerialMessage set = createMessage(SerialMessageClass.SendData, 0x70, 0x04, 0x01, 0x01, 0x05);
+        SerialMessage get = createMessage(SerialMessageClass.ApplicationCommandHandler, 0x70, 0x05, 0x01);
+        SerialMessage nop = createMessage(SerialMessageClass.SendData, 0x00);
+        Queue<SerialMessage> queue = new LinkedList<SerialMessage>();
+        queue.add(set);
+        queue.add(get);
+        queue.add(nop);
+
+        SerialMessage batch = cls.pollBatch(queue);
+        byte[] expectedPayload = { 5, 13, (byte) 0x8f, 0x01, 0x02, 0x05, 0x70, 0x04, 0x01, 0x01, 0x05, 0x03, 0x70,
+                0x05, 0x01 };
+        assertArrayEquals(expectedPayload, batch.getMessagePayload());
+        assertEquals(SerialMessageClass.ApplicationCommandHandler, batch.getExpectedReply());
+        assertEquals(1, cls.getFramesSaved());
+        assertEquals(15, cls.getBytesSaved());
+
+        // The NOP is sent on its own
+        assertSame(nop, cls.pollBatch(queue));
+        assertEquals(0, queue.size());
+
+        // Completing the batch completes the original messages
+        ArgumentCaptor<ZWaveEvent> argument = ArgumentCaptor.forClass(ZWaveEvent.class);
+        Mockito.doNothing().when(controller).notifyEventListeners(argument.capture());
+        assertTrue(cls.completeBatch(batch, true));
+        assertFalse(cls.completeBatch(batch, true));
+        assertEquals(2, argument.getAllValues().size());
+        assertSame(set, ((ZWaveTransactionCompletedEvent) argument.getAllValues().get(0)).getCompletedMessage());
+        assertSame(get, ((ZWaveTransactionCompletedEvent) argument.getAllValues().get(1)).getCompletedMessage());
+    }
+
+    @Test
+    public void BatchMaximumLength() {
+        ZWaveController controller = Mockito.mock(ZWaveController.class);
+        ZWaveNode node = Mockito.mock(ZWaveNode.class);
+        Mockito.when(node.getNodeId()).thenReturn(5);
+        ZWaveMultiCommandCommandClass cls = new ZWaveMultiCommandCommandClass(node, controller, null);
+
+        Queue<SerialMessage> queue = new LinkedList<SerialMessage>();
+        for (int parameter = 1; parameter <= 10; parameter++) {
+            queue.add(createMessage(SerialMessageClass.SendData, 0x70, 0x04, parameter, 0x01, 0x05));
+        }
+
+        // 7 commands fit in a frame
+        SerialMessage batch = cls.pollBatch(queue);
+        assertEquals(45, batch.getMessagePayload()[1]);
+        assertEquals(7, batch.getMessagePayload()[4]);
+        assertEquals(SerialMessageClass.SendData, batch.getExpectedReply());
+        assertEquals(3, queue.size());
+    }
 }
@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.test.internal.protocol.initialization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.openhab.binding.zwave.internal.protocol.ZWaveNode;
+import org.openhab.binding.zwave.internal.protocol.initialization.ZWaveNodeInitPipeline;
+import org.openhab.binding.zwave.internal.protocol.initialization.ZWaveNodeInitStage;
+
+/**
+ * Test cases for {@link ZWaveNodeInitPipeline}.
+ */
+public class ZWaveNodeInitPipelineTest {
+    private ZWaveNode createNode(int nodeId, boolean listening, boolean known) {
+        ZWaveNode node = Mockito.mock(ZWaveNode.class);
+        Mockito.when(node.getNodeId()).thenReturn(nodeId);
+        Mockito.when(node.isListening()).thenReturn(listening);
+        Mockito.when(node.getManufacturer()).thenReturn(known ? 0x86 : Integer.MAX_VALUE);
+        return node;
+    }
+
+    @Test
+    public void testOrdering() {
+        ZWaveNodeInitPipeline pipeline = new ZWaveNodeInitPipeline(1);
+        ZWaveNode battery = createNode(2, false, true);
+        ZWaveNode unknown = createNode(3, false, false);
+        ZWaveNode listening1 = createNode(4, true, true);
+        ZWaveNode listening2 = createNode(5, true, true);
+
+        // The first node starts straight away as the pipeline is empty
+        pipeline.submit(battery);
+        pipeline.submit(unknown);
+        pipeline.submit(listening1);
+        pipeline.submit(listening2);
+        assertEquals(1, pipeline.getActiveCount());
+        assertEquals(3, pipeline.getPendingCount());
+
+        pipeline.nodeComplete(2);
+        pipeline.nodeComplete(4);
+        pipeline.nodeComplete(5);
+
+        InOrder inOrder = Mockito.inOrder(battery, listening1, listening2, unknown);
+        inOrder.verify(battery).initialiseNode();
+        inOrder.verify(listening1).initialiseNode();
+        inOrder.verify(listening2).initialiseNode();
+        inOrder.verify(unknown).initialiseNode();
+    }
+
+    @Test
+    public void testSubmitAll() {
+        ZWaveNodeInitPipeline pipeline = new ZWaveNodeInitPipeline(1);
+        ZWaveNode battery = createNode(2, false, true);
+        ZWaveNode unknown = createNode(3, false, false);
+        ZWaveNode listening = createNode(4, true, true);
+
+        // When the nodes are submitted together, the listening node starts first
+        pipeline.submitAll(Arrays.asList(battery, unknown, listening));
+        assertEquals(1, pipeline.getActiveCount());
+        assertEquals(2, pipeline.getPendingCount());
+        Mockito.verify(listening).initialiseNode();
+
+        pipeline.nodeComplete(4);
+        pipeline.nodeComplete(3);
+
+        InOrder inOrder = Mockito.inOrder(listening, unknown, battery);
+        inOrder.verify(listening).initialiseNode();
+        inOrder.verify(unknown).initialiseNode();
+        inOrder.verify(battery).initialiseNode();
+    }
+
+    @Test
+    public void testConcurrency() {
+        ZWaveNodeInitPipeline pipeline = new ZWaveNodeInitPipeline(2);
+        ZWaveNode node1 = createNode(1, true, true);
+        ZWaveNode node2 = createNode(2, true, true);
+        ZWaveNode node3 = createNode(3, true, true);
+        ZWaveNode node4 = createNode(4, true, true);
+
+        pipeline.submit(node1);
+        pipeline.submit(node2);
+        pipeline.submit(node3);
+        pipeline.submit(node4);
+        Mockito.verify(node1).initialiseNode();
+        Mockito.verify(node2).initialiseNode();
+        Mockito.verify(node3, Mockito.never()).initialiseNode();
+        assertEquals(2, pipeline.getActiveCount());
+
+        // A node waiting for a wakeup releases its place
+        pipeline.nodeParked(1);
+        Mockito.verify(node3).initialiseNode();
+        Mockito.verify(node4, Mockito.never()).initialiseNode();
+
+        // ...but still counts as complete when it finishes, without starting another node
+        pipeline.nodeComplete(1);
+        Mockito.verify(node4, Mockito.never()).initialiseNode();
+        assertEquals(1, pipeline.getCompletedCount());
+
+        pipeline.nodeComplete(2);
+        Mockito.verify(node4).initialiseNode();
+        assertEquals(2, pipeline.getActiveCount());
+        assertEquals(0, pipeline.getPendingCount());
+    }
+
+    @Test
+    public void testSetConcurrency() {
+        ZWaveNodeInitPipeline pipeline = new ZWaveNodeInitPipeline(1);
+        ZWaveNode node1 = createNode(1, true, true);
+        ZWaveNode node2 = createNode(2, true, true);
+
+        pipeline.submitAll(Arrays.asList(node1, node2));
+        Mockito.verify(node2, Mockito.never()).initialiseNode();
+
+        // Raising the limit starts the waiting node
+        pipeline.setConcurrency(2);
+        Mockito.verify(node2).initialiseNode();
+        assertEquals(2, pipeline.getActiveCount());
+        assertEquals(2, pipeline.getConcurrency());
+    }
+
+    @Test
+    public void testStartImmediately() {
+        ZWaveNodeInitPipeline pipeline = new ZWaveNodeInitPipeline(1);
+        ZWaveNode node1 = createNode(1, true, true);
+        ZWaveNode node2 = createNode(2, true, true);
+        ZWaveNode node3 = createNode(3, false, false);
+
+        pipeline.submit(node1);
+        pipeline.submit(node2);
+        pipeline.start(node3, ZWaveNodeInitStage.INCLUSION_START);
+        Mockito.verify(node3).initialiseNode(ZWaveNodeInitStage.INCLUSION_START);
+        assertEquals(2, pipeline.getActiveCount());
+
+        // Node 2 doesn't start until both active nodes are complete
+        pipeline.nodeComplete(3);
+        Mockito.verify(node2, Mockito.never()).initialiseNode();
+        pipeline.nodeComplete(1);
+        Mockito.verify(node2).initialiseNode();
+    }
+
+    @Test
+    public void testProgress() {
+        ZWaveNodeInitPipeline pipeline = new ZWaveNodeInitPipeline(4);
+        assertEquals(100, pipeline.getProgress());
+
+        for (int nodeId = 1; nodeId <= 4; nodeId++) {
+            pipeline.submit(createNode(nodeId, true, true));
+        }
+        assertEquals(0, pipeline.getProgress());
+        assertEquals(-1, pipeline.getEstimatedTimeRemaining());
+
+        pipeline.nodeComplete(1);
+        assertEquals(25, pipeline.getProgress());
+        assertTrue(pipeline.getEstimatedTimeRemaining() >= 0);
+
+        // Removed nodes don't count towards the progress
+        pipeline.remove(2);
+        assertEquals(3, pipeline.getTotalCount());
+        assertEquals(33, pipeline.getProgress());
+
+        pipeline.nodeComplete(3);
+        pipeline.nodeComplete(4);
+        assertEquals(100, pipeline.getProgress());
+        assertEquals(0, pipeline.getEstimatedTimeRemaining());
+    }
+}
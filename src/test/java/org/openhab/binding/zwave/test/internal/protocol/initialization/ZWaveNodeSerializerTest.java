@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.test.internal.protocol.initialization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.openhab.binding.zwave.internal.protocol.ZWaveController;
+import org.openhab.binding.zwave.internal.protocol.ZWaveNode;
+import org.openhab.binding.zwave.internal.protocol.initialization.ZWaveNodeInitStage;
+import org.openhab.binding.zwave.internal.protocol.initialization.ZWaveNodeSerializer;
+
+/**
+ * Test cases for {@link ZWaveNodeSerializer}.
+ */
+public class ZWaveNodeSerializerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ZWaveNode createNode(int nodeId) {
+        ZWaveNode node = new ZWaveNode(0x12345678, nodeId, Mockito.mock(ZWaveController.class));
+        node.setManufacturer(0x86);
+        node.setDeviceType(0x2);
+        node.setDeviceId(0x64);
+        node.setNodeStage(ZWaveNodeInitStage.DONE);
+        return node;
+    }
+
+    private void writeXmlNode(int nodeId) throws IOException {
+        String xml = "<?xml version=\"1.0\" ?><node><homeId>0x12345678</homeId><nodeId>" + nodeId
+                + "</nodeId><manufacturer>0x86</manufacturer><deviceId>0x64</deviceId>"
+                + "<deviceType>0x2</deviceType><listening>true</listening></node>";
+        Files.write(new File(folder.getRoot(), "node" + nodeId + ".xml").toPath(),
+                xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        ZWaveNodeSerializer serializer = new ZWaveNodeSerializer(folder.getRoot().getPath());
+        serializer.SerializeNode(createNode(2));
+
+        // The file starts with the magic number and format version
+        File file = new File(folder.getRoot(), "node2.bin");
+        assertTrue(file.exists());
+        ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        assertEquals(0x5A574E44, header.getInt());
+        assertEquals(1, header.getInt());
+
+        ZWaveNode node = new ZWaveNodeSerializer(folder.getRoot().getPath()).DeserializeNode(2);
+        assertNotNull(node);
+        assertEquals(2, node.getNodeId());
+        assertEquals(0x12345678, node.getHomeId().intValue());
+        assertEquals(0x86, node.getManufacturer());
+        assertEquals(0x2, node.getDeviceType());
+        assertEquals(0x64, node.getDeviceId());
+
+        // A file with the wrong header isn't loaded
+        Files.write(file.toPath(), new byte[] { 0, 0, 0, 0, 0, 0, 0, 1 });
+        assertNull(serializer.DeserializeNode(2));
+    }
+
+    @Test
+    public void testXmlMigration() throws IOException {
+        writeXmlNode(3);
+
+        ZWaveNodeSerializer serializer = new ZWaveNodeSerializer(folder.getRoot().getPath());
+        ZWaveNode node = serializer.DeserializeNode(3);
+        assertNotNull(node);
+        assertEquals(3, node.getNodeId());
+        assertEquals(0x86, node.getManufacturer());
+
+        // The XML file is replaced by the binary file
+        assertTrue(new File(folder.getRoot(), "node3.bin").exists());
+        assertFalse(new File(folder.getRoot(), "node3.xml").exists());
+
+        node = serializer.DeserializeNode(3);
+        assertNotNull(node);
+        assertEquals(0x64, node.getDeviceId());
+    }
+
+    @Test
+    public void testXmlKeptOnWriteFailure() throws IOException {
+        writeXmlNode(4);
+
+        // The temporary file can't be created if a directory is in the way
+        assertTrue(new File(folder.getRoot(), "node4.tmp").mkdir());
+
+        ZWaveNodeSerializer serializer = new ZWaveNodeSerializer(folder.getRoot().getPath());
+        ZWaveNode node = serializer.DeserializeNode(4);
+        assertNotNull(node);
+        assertEquals(4, node.getNodeId());
+
+        assertFalse(new File(folder.getRoot(), "node4.bin").exists());
+        assertTrue(new File(folder.getRoot(), "node4.xml").exists());
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.test.internal.protocol.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.openhab.binding.zwave.internal.protocol.ZWaveNode;
+import org.openhab.binding.zwave.internal.protocol.security.ZWaveSecureNonceTracker;
+
+/**
+ * Test cases for {@link ZWaveSecureNonceTracker}.
+ */
+public class ZWaveSecureNonceTrackerTest {
+    private ZWaveSecureNonceTracker createTracker() {
+        ZWaveNode node = Mockito.mock(ZWaveNode.class);
+        Mockito.when(node.getNodeId()).thenReturn(12);
+        return new ZWaveSecureNonceTracker(node);
+    }
+
+    @Test
+    public void testDeviceNonce() {
+        ZWaveSecureNonceTracker tracker = createTracker();
+        assertFalse(tracker.hasUseableDeviceNonce());
+        assertEquals(0, tracker.getNonceRequestExpiresAt());
+
+        // Only one request is outstanding at a time
+        assertNotNull(tracker.buildNonceGetIfNeeded());
+        assertTrue(tracker.getNonceRequestExpiresAt() > System.currentTimeMillis());
+        assertNull(tracker.buildNonceGetIfNeeded());
+
+        tracker.receivedNonceFromDevice(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        assertEquals(0, tracker.getNonceRequestExpiresAt());
+
+        // Checking doesn't use the nonce
+        assertTrue(tracker.hasUseableDeviceNonce());
+        assertTrue(tracker.hasUseableDeviceNonce());
+        assertNotNull(tracker.getUseableDeviceNonce());
+        assertFalse(tracker.hasUseableDeviceNonce());
+    }
+
+    @Test
+    public void testHitRate() {
+        ZWaveSecureNonceTracker tracker = createTracker();
+        assertEquals(0, tracker.getNonceHitRate());
+
+        tracker.recordNonceUse(true);
+        tracker.recordNonceUse(true);
+        tracker.recordNonceUse(true);
+        tracker.recordNonceUse(false);
+        assertEquals(3, tracker.getNonceHits());
+        assertEquals(1, tracker.getNonceMisses());
+        assertEquals(75, tracker.getNonceHitRate());
+    }
+}
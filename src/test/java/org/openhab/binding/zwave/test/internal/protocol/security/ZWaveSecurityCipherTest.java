@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.test.internal.protocol.security;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+import org.openhab.binding.zwave.internal.protocol.security.ZWaveSecurityCipher;
+
+/**
+ * Test cases for {@link ZWaveSecurityCipher}.
+ * The results are checked against the JCE AES-OFB cipher, and the CBC-MAC computed block by block.
+ */
+public class ZWaveSecurityCipherTest {
+    private final static byte[] NETWORK_KEY = { 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09, 0x0A, 0x0B,
+            0x0C, 0x0D, 0x0E, 0x0F, 0x10 };
+    private final static byte[] IV = { 0x11, 0x22, 0x33, 0x44, 0x55, 0x66, 0x77, (byte) 0x88, (byte) 0x99, (byte) 0xAA,
+            (byte) 0xBB, (byte) 0xCC, (byte) 0xDD, (byte) 0xEE, (byte) 0xFF, 0x00 };
+
+    private SecretKey deriveKey(byte derive) throws GeneralSecurityException {
+        byte[] data = new byte[16];
+        Arrays.fill(data, derive);
+        Cipher cipher = Cipher.getInstance("AES/ECB/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(NETWORK_KEY, "AES"));
+        return new SecretKeySpec(cipher.doFinal(data), "AES");
+    }
+
+    private byte[] referenceEncrypt(byte[] plaintext) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/OFB/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, deriveKey((byte) 0xAA), new IvParameterSpec(IV));
+        return cipher.doFinal(plaintext);
+    }
+
+    private byte[] referenceMac(byte command, byte[] ciphertext) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/ECB/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, deriveKey((byte) 0x55));
+
+        int length = ((ciphertext.length + 4 + 15) / 16) * 16;
+        byte[] buffer = new byte[length];
+        buffer[0] = command;
+        buffer[1] = 1;
+        buffer[2] = 5;
+        buffer[3] = (byte) ciphertext.length;
+        System.arraycopy(ciphertext, 0, buffer, 4, ciphertext.length);
+
+        byte[] state = cipher.doFinal(IV);
+        for (int block = 0; block < length; block += 16) {
+            for (int cnt = 0; cnt < 16; cnt++) {
+                state[cnt] ^= buffer[block + cnt];
+            }
+            state = cipher.doFinal(state);
+        }
+        return Arrays.copyOf(state, 8);
+    }
+
+    private byte[] createPlaintext(int length) {
+        byte[] plaintext = new byte[length];
+        for (int cnt = 0; cnt < length; cnt++) {
+            plaintext[cnt] = (byte) (cnt * 7 + 3);
+        }
+        return plaintext;
+    }
+
+    @Test
+    public void testEncryptAndMac() throws GeneralSecurityException {
+        ZWaveSecurityCipher cipher = new ZWaveSecurityCipher(new SecretKeySpec(NETWORK_KEY, "AES"));
+
+        // Check lengths either side of the block boundaries
+        for (int length : new int[] { 1, 3, 12, 13, 16, 17, 28, 29, 40 }) {
+            byte[] plaintext = createPlaintext(length);
+            byte[] frame = new byte[length + 10];
+            cipher.encryptAndMac(IV, (byte) 0x81, (byte) 1, (byte) 5, plaintext, 0, length, frame, 1, length + 2);
+
+            byte[] ciphertext = referenceEncrypt(plaintext);
+            assertArrayEquals(ciphertext, Arrays.copyOfRange(frame, 1, length + 1));
+            byte[] mac = Arrays.copyOfRange(frame, length + 2, length + 10);
+            assertArrayEquals(referenceMac((byte) 0x81, ciphertext), mac);
+        }
+    }
+
+    @Test
+    public void testRepeatedFrames() throws GeneralSecurityException {
+        ZWaveSecurityCipher cipher = new ZWaveSecurityCipher(new SecretKeySpec(NETWORK_KEY, "AES"));
+
+        // The cipher contexts are reused, so no state may carry over from one frame to the next
+        for (int frameCount = 0; frameCount < 50; frameCount++) {
+            int length = 1 + frameCount % 30;
+            byte[] plaintext = createPlaintext(length);
+            plaintext[0] = (byte) frameCount;
+            byte[] frame = new byte[length + 8];
+            cipher.encryptAndMac(IV, (byte) 0x81, (byte) 1, (byte) 5, plaintext, 0, length, frame, 0, length);
+
+            byte[] ciphertext = referenceEncrypt(plaintext);
+            assertArrayEquals(ciphertext, Arrays.copyOf(frame, length));
+            assertArrayEquals(referenceMac((byte) 0x81, ciphertext), Arrays.copyOfRange(frame, length, length + 8));
+
+            byte[] decrypted = new byte[length];
+            assertTrue(cipher.decryptAndVerify(IV, (byte) 0x81, (byte) 1, (byte) 5, frame, 0, length, length,
+                    decrypted, 0));
+            assertArrayEquals(plaintext, decrypted);
+        }
+    }
+
+    @Test
+    public void testDecryptAndVerify() throws GeneralSecurityException {
+        ZWaveSecurityCipher cipher = new ZWaveSecurityCipher(new SecretKeySpec(NETWORK_KEY, "AES"));
+        byte[] plaintext = createPlaintext(20);
+
+        // Encrypt in place
+        byte[] frame = new byte[28];
+        System.arraycopy(plaintext, 0, frame, 0, 20);
+        cipher.encryptAndMac(IV, (byte) 0x81, (byte) 1, (byte) 5, frame, 0, 20, frame, 0, 20);
+
+        byte[] decrypted = new byte[20];
+        assertTrue(cipher.decryptAndVerify(IV, (byte) 0x81, (byte) 1, (byte) 5, frame, 0, 20, 20, decrypted, 0));
+        assertArrayEquals(plaintext, decrypted);
+
+        // The MAC covers the command and the node ids as well as the ciphertext
+        assertFalse(cipher.decryptAndVerify(IV, (byte) 0xC1, (byte) 1, (byte) 5, frame, 0, 20, 20, decrypted, 0));
+        assertFalse(cipher.decryptAndVerify(IV, (byte) 0x81, (byte) 2, (byte) 5, frame, 0, 20, 20, decrypted, 0));
+        frame[3] ^= 0x01;
+        assertFalse(cipher.decryptAndVerify(IV, (byte) 0x81, (byte) 1, (byte) 5, frame, 0, 20, 20, decrypted, 0));
+    }
+}
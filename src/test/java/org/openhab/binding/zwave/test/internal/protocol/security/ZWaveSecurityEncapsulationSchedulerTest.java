@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.zwave.test.internal.protocol.security;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.openhab.binding.zwave.internal.protocol.commandclass.ZWaveSecurityCommandClass;
+import org.openhab.binding.zwave.internal.protocol.security.ZWaveSecurityEncapsulationScheduler;
+
+/**
+ * Test cases for {@link ZWaveSecurityEncapsulationScheduler}.
+ */
+public class ZWaveSecurityEncapsulationSchedulerTest {
+    @Test
+    public void testSchedule() {
+        ZWaveSecurityEncapsulationScheduler scheduler = new ZWaveSecurityEncapsulationScheduler();
+        ZWaveSecurityCommandClass node1 = Mockito.mock(ZWaveSecurityCommandClass.class);
+        ZWaveSecurityCommandClass node2 = Mockito.mock(ZWaveSecurityCommandClass.class);
+        Mockito.when(node1.processEncapsulationQueue()).thenReturn(0L);
+        Mockito.when(node2.processEncapsulationQueue()).thenReturn(0L);
+
+        scheduler.schedule(node1);
+        scheduler.schedule(node2);
+        Mockito.verify(node1, Mockito.timeout(1000).times(1)).processEncapsulationQueue();
+        Mockito.verify(node2, Mockito.timeout(1000).times(1)).processEncapsulationQueue();
+
+        scheduler.schedule(node1);
+        Mockito.verify(node1, Mockito.timeout(1000).times(2)).processEncapsulationQueue();
+        Mockito.verify(node2, Mockito.times(1)).processEncapsulationQueue();
+        assertEquals(0, scheduler.getScheduledCount());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testDeadline() throws InterruptedException {
+        ZWaveSecurityEncapsulationScheduler scheduler = new ZWaveSecurityEncapsulationScheduler();
+        ZWaveSecurityCommandClass node = Mockito.mock(ZWaveSecurityCommandClass.class);
+
+        // The first time, the node asks to be checked again in 200ms
+        Mockito.when(node.processEncapsulationQueue()).thenReturn(System.currentTimeMillis() + 200, 0L);
+
+        scheduler.schedule(node);
+        Mockito.verify(node, Mockito.timeout(1000).times(1)).processEncapsulationQueue();
+        Thread.sleep(50);
+        assertEquals(1, scheduler.getScheduledCount());
+
+        Mockito.verify(node, Mockito.timeout(1000).times(2)).processEncapsulationQueue();
+        Thread.sleep(300);
+        Mockito.verify(node, Mockito.times(2)).processEncapsulationQueue();
+        assertEquals(0, scheduler.getScheduledCount());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testShutdown() throws InterruptedException {
+        ZWaveSecurityEncapsulationScheduler scheduler = new ZWaveSecurityEncapsulationScheduler();
+        ZWaveSecurityCommandClass node = Mockito.mock(ZWaveSecurityCommandClass.class);
+
+        scheduler.shutdown();
+        scheduler.schedule(node);
+        Thread.sleep(100);
+        Mockito.verify(node, Mockito.never()).processEncapsulationQueue();
+    }
+}